@@ -22,6 +22,10 @@ public class AST {
         this.symbolTable = symbolTable;
     }
 
+    public ASTArena toArena() {
+        return computation == null ? null : ASTArena.encode(computation);
+    }
+
     public Computation getComputation() {
         return computation;
     }
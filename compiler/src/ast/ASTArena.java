@@ -0,0 +1,687 @@
+package ast;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import mocha.Symbol;
+import mocha.Token;
+import types.ArrayType;
+import types.BoolType;
+import types.ErrorType;
+import types.FloatType;
+import types.IntType;
+import types.Type;
+import types.VoidType;
+
+/**
+ * Storage format of the AST cache: a type-checked tree flattened into
+ * parallel primitive arrays (kind, position, token, type, flags, child range),
+ * with tokens in their own parallel arrays and lexemes/types pooled, so it can
+ * be written and mapped back without per-node objects. Node 0 is the
+ * Computation and nodes are numbered in preorder.
+ *
+ * The compiler itself only works on the object tree: {@link #encode} flattens
+ * one after type checking and {@link #toComputation} rebuilds it on a cache hit.
+ */
+public class ASTArena {
+
+    private enum Kind {
+        COMPUTATION, DECLARATION_LIST, VARIABLE_DECLARATION, FUNCTION_DECLARATION, FORMAL, FUNCTION_BODY,
+        STATEMENT_SEQUENCE, ASSIGNMENT, IF, WHILE, REPEAT, RETURN, CALL_STATEMENT, CALL_EXPRESSION,
+        ARGUMENT_LIST, DESIGNATOR, ARRAY_INDEX, DEREFERENCE, LOGICAL_NOT,
+        ADDITION, SUBTRACTION, MULTIPLICATION, DIVISION, MODULO, POWER, LOGICAL_AND, LOGICAL_OR, RELATION,
+        INTEGER_LITERAL, FLOAT_LITERAL, BOOL_LITERAL
+    }
+
+    private static final Kind[] KINDS = Kind.values();
+    private static final Token.Kind[] TOKEN_KINDS = Token.Kind.values();
+
+    private static final byte FLAG_LVALUE = 1;
+    private static final byte FLAG_HAS_BODY = 2; // FunctionDeclaration parsed with a body
+    private static final byte FLAG_NO_TOKEN = 4; // literal built from a value; token holds its text
+
+    // Node arrays
+    private int nodeCount;
+    private byte[] kind = new byte[64];
+    private byte[] flags = new byte[64];
+    private int[] line = new int[64];
+    private int[] column = new int[64];
+    private int[] token = new int[64];      // token id, or -1
+    private int[] typeId = new int[64];     // type pool id, or -1
+    private int[] childStart = new int[64];
+    private int[] childCount = new int[64];
+
+    // Child slots; VARIABLE_DECLARATION stores token ids here instead of node ids
+    private int childPoolSize;
+    private int[] childPool = new int[128];
+
+    // Token arrays
+    private int tokenCount;
+    private byte[] tokenKind = new byte[64];
+    private int[] tokenLexeme = new int[64];
+    private int[] tokenLine = new int[64];
+    private int[] tokenColumn = new int[64];
+
+    private final List<String> lexemes = new ArrayList<>();
+    private final Map<String, Integer> lexemeIds = new HashMap<>();
+    private final List<Type> types = new ArrayList<>();
+    private final Map<Type, Integer> typeIds = new IdentityHashMap<>();
+
+    // Encoding ===================================================================
+
+    public static ASTArena encode(Computation computation) {
+        ASTArena arena = new ASTArena();
+        arena.encodeNode(computation);
+        return arena;
+    }
+
+    private int encodeNode(Node node) {
+        int id = allocNode(node);
+        int[] children;
+
+        if (node instanceof Computation) {
+            Computation n = (Computation) node;
+            children = encodeAll(n.variables(), n.functions(), n.mainStatementSequence());
+        } else if (node instanceof DeclarationList) {
+            children = encodeList(((DeclarationList) node).declarations());
+        } else if (node instanceof VariableDeclaration) {
+            VariableDeclaration n = (VariableDeclaration) node;
+            typeId[id] = internType(n.type());
+            children = new int[n.names().size()];
+            for (int i = 0; i < children.length; i++) {
+                children[i] = internToken(n.names().get(i));
+            }
+        } else if (node instanceof FunctionDeclaration) {
+            FunctionDeclaration n = (FunctionDeclaration) node;
+            token[id] = internToken(n.name());
+            typeId[id] = internType(n.returnType());
+            int formals = n.formals().size();
+            children = new int[formals + (n.body() != null ? 1 : 0)];
+            for (int i = 0; i < formals; i++) {
+                children[i] = encodeFormal(n.formals().get(i), n);
+            }
+            if (n.body() != null) {
+                flags[id] |= FLAG_HAS_BODY;
+                children[formals] = encodeNode(n.body());
+            }
+        } else if (node instanceof FunctionBody) {
+            FunctionBody n = (FunctionBody) node;
+            children = new int[n.locals().size() + 1];
+            for (int i = 0; i < n.locals().size(); i++) {
+                children[i] = encodeNode(n.locals().get(i));
+            }
+            children[children.length - 1] = encodeNode(n.statements());
+        } else if (node instanceof StatementSequence) {
+            children = encodeList(((StatementSequence) node).getStatements());
+        } else if (node instanceof Assignment) {
+            Assignment n = (Assignment) node;
+            token[id] = internToken(n.getOperator());
+            // unary ++/-- assignments carry no source expression
+            children = n.getSource() != null
+                    ? encodeAll(n.getDestination(), n.getSource())
+                    : encodeAll(n.getDestination());
+        } else if (node instanceof IfStatement) {
+            IfStatement n = (IfStatement) node;
+            children = n.elseBlock() != null
+                    ? encodeAll(n.condition(), n.thenBlock(), n.elseBlock())
+                    : encodeAll(n.condition(), n.thenBlock());
+        } else if (node instanceof WhileStatement) {
+            WhileStatement n = (WhileStatement) node;
+            children = encodeAll(n.condition(), n.body());
+        } else if (node instanceof RepeatStatement) {
+            RepeatStatement n = (RepeatStatement) node;
+            children = encodeAll(n.body(), n.condition());
+        } else if (node instanceof ReturnStatement) {
+            ReturnStatement n = (ReturnStatement) node;
+            children = n.value() != null ? encodeAll(n.value()) : new int[0];
+        } else if (node instanceof FunctionCallStatement) {
+            children = encodeAll(((FunctionCallStatement) node).getFunctionCall());
+        } else if (node instanceof FunctionCallExpression) {
+            FunctionCallExpression n = (FunctionCallExpression) node;
+            token[id] = internToken(n.name());
+            children = encodeAll(n.arguments());
+        } else if (node instanceof ArgumentList) {
+            children = encodeList(((ArgumentList) node).args());
+        } else if (node instanceof Designator) {
+            token[id] = internToken(((Designator) node).name());
+            children = new int[0];
+        } else if (node instanceof ArrayIndex) {
+            ArrayIndex n = (ArrayIndex) node;
+            children = encodeAll(n.base(), n.index());
+        } else if (node instanceof Dereference) {
+            children = encodeAll(((Dereference) node).operand());
+        } else if (node instanceof LogicalNot) {
+            children = encodeAll(((LogicalNot) node).operand());
+        } else if (node instanceof IntegerLiteral) {
+            IntegerLiteral n = (IntegerLiteral) node;
+            token[id] = literalToken(id, n.getToken(), Token.Kind.INT_VAL, String.valueOf(n.getValue()), n);
+            children = new int[0];
+        } else if (node instanceof FloatLiteral) {
+            FloatLiteral n = (FloatLiteral) node;
+            token[id] = literalToken(id, n.getToken(), Token.Kind.FLOAT_VAL, String.valueOf(n.getValue()), n);
+            children = new int[0];
+        } else if (node instanceof BoolLiteral) {
+            BoolLiteral n = (BoolLiteral) node;
+            Token.Kind k = n.getValue() ? Token.Kind.TRUE : Token.Kind.FALSE;
+            token[id] = literalToken(id, n.getToken(), k, String.valueOf(n.getValue()), n);
+            children = new int[0];
+        } else {
+            // Binary expressions all share (left, operator, right)
+            Expression left;
+            Expression right;
+            Token op;
+            if (node instanceof Addition) {
+                left = ((Addition) node).getLeft(); op = ((Addition) node).getOperator(); right = ((Addition) node).getRight();
+            } else if (node instanceof Subtraction) {
+                left = ((Subtraction) node).getLeft(); op = ((Subtraction) node).getOperator(); right = ((Subtraction) node).getRight();
+            } else if (node instanceof Multiplication) {
+                left = ((Multiplication) node).getLeft(); op = ((Multiplication) node).getOperator(); right = ((Multiplication) node).getRight();
+            } else if (node instanceof Division) {
+                left = ((Division) node).getLeft(); op = ((Division) node).getOperator(); right = ((Division) node).getRight();
+            } else if (node instanceof Modulo) {
+                left = ((Modulo) node).getLeft(); op = ((Modulo) node).getOperator(); right = ((Modulo) node).getRight();
+            } else if (node instanceof Power) {
+                left = ((Power) node).getLeft(); op = ((Power) node).getOperator(); right = ((Power) node).getRight();
+            } else if (node instanceof LogicalAnd) {
+                left = ((LogicalAnd) node).getLeft(); op = ((LogicalAnd) node).getOperator(); right = ((LogicalAnd) node).getRight();
+            } else if (node instanceof LogicalOr) {
+                left = ((LogicalOr) node).getLeft(); op = ((LogicalOr) node).getOperator(); right = ((LogicalOr) node).getRight();
+            } else if (node instanceof Relation) {
+                left = ((Relation) node).getLeft(); op = ((Relation) node).getOperator(); right = ((Relation) node).getRight();
+            } else {
+                throw new RuntimeException("ASTArena: cannot encode " + node.getClass().getSimpleName());
+            }
+            token[id] = internToken(op);
+            children = encodeAll(left, right);
+        }
+
+        if (node instanceof Expression) {
+            Expression e = (Expression) node;
+            typeId[id] = internType(e.getType());
+            if (e.isLValue()) {
+                flags[id] |= FLAG_LVALUE;
+            }
+        }
+        setChildren(id, children);
+        return id;
+    }
+
+    private int encodeFormal(Symbol formal, FunctionDeclaration owner) {
+        int id = allocNode(owner);
+        kind[id] = (byte) Kind.FORMAL.ordinal();
+        token[id] = internToken(Token.of(Token.Kind.IDENT, formal.name(), owner.lineNumber(), owner.charPosition()));
+        typeId[id] = internType(formal.type());
+        setChildren(id, new int[0]);
+        return id;
+    }
+
+    private int literalToken(int id, Token tok, Token.Kind k, String text, Node n) {
+        if (tok != null) {
+            return internToken(tok);
+        }
+        flags[id] |= FLAG_NO_TOKEN;
+        return internToken(Token.of(k, text, n.lineNumber(), n.charPosition()));
+    }
+
+    private int[] encodeAll(Node... nodes) {
+        int[] ids = new int[nodes.length];
+        for (int i = 0; i < nodes.length; i++) {
+            ids[i] = encodeNode(nodes[i]);
+        }
+        return ids;
+    }
+
+    private int[] encodeList(List<? extends Node> nodes) {
+        int[] ids = new int[nodes.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = encodeNode(nodes.get(i));
+        }
+        return ids;
+    }
+
+    private int allocNode(Node node) {
+        if (nodeCount == kind.length) {
+            int cap = nodeCount * 2;
+            kind = Arrays.copyOf(kind, cap);
+            flags = Arrays.copyOf(flags, cap);
+            line = Arrays.copyOf(line, cap);
+            column = Arrays.copyOf(column, cap);
+            token = Arrays.copyOf(token, cap);
+            typeId = Arrays.copyOf(typeId, cap);
+            childStart = Arrays.copyOf(childStart, cap);
+            childCount = Arrays.copyOf(childCount, cap);
+        }
+        int id = nodeCount++;
+        kind[id] = (byte) kindOf(node).ordinal();
+        line[id] = node.lineNumber();
+        column[id] = node.charPosition();
+        token[id] = -1;
+        typeId[id] = -1;
+        return id;
+    }
+
+    private void setChildren(int id, int[] children) {
+        while (childPoolSize + children.length > childPool.length) {
+            childPool = Arrays.copyOf(childPool, childPool.length * 2);
+        }
+        System.arraycopy(children, 0, childPool, childPoolSize, children.length);
+        childStart[id] = childPoolSize;
+        childCount[id] = children.length;
+        childPoolSize += children.length;
+    }
+
+    private int internToken(Token tok) {
+        if (tokenCount == tokenKind.length) {
+            int cap = tokenCount * 2;
+            tokenKind = Arrays.copyOf(tokenKind, cap);
+            tokenLexeme = Arrays.copyOf(tokenLexeme, cap);
+            tokenLine = Arrays.copyOf(tokenLine, cap);
+            tokenColumn = Arrays.copyOf(tokenColumn, cap);
+        }
+        int id = tokenCount++;
+        tokenKind[id] = (byte) tok.kind().ordinal();
+        tokenLexeme[id] = internLexeme(tok.lexeme());
+        tokenLine[id] = tok.lineNumber();
+        tokenColumn[id] = tok.charPosition();
+        return id;
+    }
+
+    private int internLexeme(String lexeme) {
+        Integer id = lexemeIds.get(lexeme);
+        if (id == null) {
+            id = lexemes.size();
+            lexemes.add(lexeme);
+            lexemeIds.put(lexeme, id);
+        }
+        return id;
+    }
+
+    private int internType(Type type) {
+        if (type == null) {
+            return -1;
+        }
+        Integer id = typeIds.get(type);
+        if (id == null) {
+            id = types.size();
+            types.add(type);
+            typeIds.put(type, id);
+        }
+        return id;
+    }
+
+    private static Kind kindOf(Node node) {
+        if (node instanceof Computation) return Kind.COMPUTATION;
+        if (node instanceof DeclarationList) return Kind.DECLARATION_LIST;
+        if (node instanceof VariableDeclaration) return Kind.VARIABLE_DECLARATION;
+        if (node instanceof FunctionDeclaration) return Kind.FUNCTION_DECLARATION;
+        if (node instanceof FunctionBody) return Kind.FUNCTION_BODY;
+        if (node instanceof StatementSequence) return Kind.STATEMENT_SEQUENCE;
+        if (node instanceof Assignment) return Kind.ASSIGNMENT;
+        if (node instanceof IfStatement) return Kind.IF;
+        if (node instanceof WhileStatement) return Kind.WHILE;
+        if (node instanceof RepeatStatement) return Kind.REPEAT;
+        if (node instanceof ReturnStatement) return Kind.RETURN;
+        if (node instanceof FunctionCallStatement) return Kind.CALL_STATEMENT;
+        if (node instanceof FunctionCallExpression) return Kind.CALL_EXPRESSION;
+        if (node instanceof ArgumentList) return Kind.ARGUMENT_LIST;
+        if (node instanceof Designator) return Kind.DESIGNATOR;
+        if (node instanceof ArrayIndex) return Kind.ARRAY_INDEX;
+        if (node instanceof Dereference) return Kind.DEREFERENCE;
+        if (node instanceof LogicalNot) return Kind.LOGICAL_NOT;
+        if (node instanceof Addition) return Kind.ADDITION;
+        if (node instanceof Subtraction) return Kind.SUBTRACTION;
+        if (node instanceof Multiplication) return Kind.MULTIPLICATION;
+        if (node instanceof Division) return Kind.DIVISION;
+        if (node instanceof Modulo) return Kind.MODULO;
+        if (node instanceof Power) return Kind.POWER;
+        if (node instanceof LogicalAnd) return Kind.LOGICAL_AND;
+        if (node instanceof LogicalOr) return Kind.LOGICAL_OR;
+        if (node instanceof Relation) return Kind.RELATION;
+        if (node instanceof IntegerLiteral) return Kind.INTEGER_LITERAL;
+        if (node instanceof FloatLiteral) return Kind.FLOAT_LITERAL;
+        if (node instanceof BoolLiteral) return Kind.BOOL_LITERAL;
+        throw new RuntimeException("ASTArena: cannot encode " + node.getClass().getSimpleName());
+    }
+
+    // Queries ====================================================================
+
+    private Kind kind(int node) {
+        return KINDS[kind[node]];
+    }
+
+    private int childCount(int node) {
+        return childCount[node];
+    }
+
+    private int child(int node, int i) {
+        return childPool[childStart[node] + i];
+    }
+
+    private Type type(int node) {
+        return typeId[node] < 0 ? null : types.get(typeId[node]);
+    }
+
+    // Lexeme of the node's own token (identifier, operator or literal text), or null
+    private String lexeme(int node) {
+        return token[node] < 0 ? null : lexemes.get(tokenLexeme[token[node]]);
+    }
+
+    // Decoding ===================================================================
+
+    public Computation toComputation() {
+        return (Computation) decode(0);
+    }
+
+    private Node decode(int id) {
+        int l = line[id];
+        int c = column[id];
+        Node node;
+        switch (kind(id)) {
+            case COMPUTATION:
+                node = new Computation(l, c, new Symbol("main"),
+                        (DeclarationList) decode(child(id, 0)),
+                        (DeclarationList) decode(child(id, 1)),
+                        (StatementSequence) decode(child(id, 2)));
+                break;
+            case DECLARATION_LIST: {
+                DeclarationList list = new DeclarationList(l, c);
+                for (int i = 0; i < childCount(id); i++) {
+                    list.add(decode(child(id, i)));
+                }
+                node = list;
+                break;
+            }
+            case VARIABLE_DECLARATION: {
+                List<Token> names = new ArrayList<>(childCount(id));
+                for (int i = 0; i < childCount(id); i++) {
+                    names.add(tokenAt(child(id, i)));
+                }
+                node = new VariableDeclaration(l, c, type(id), names);
+                break;
+            }
+            case FUNCTION_DECLARATION: {
+                boolean hasBody = (flags[id] & FLAG_HAS_BODY) != 0;
+                int formals = childCount(id) - (hasBody ? 1 : 0);
+                List<Symbol> params = new ArrayList<>(formals);
+                for (int i = 0; i < formals; i++) {
+                    params.add(new Symbol(lexeme(child(id, i)), type(child(id, i))));
+                }
+                FunctionBody body = hasBody ? (FunctionBody) decode(child(id, formals)) : null;
+                node = new FunctionDeclaration(l, c, tokenAt(token[id]), params, type(id), body);
+                break;
+            }
+            case FUNCTION_BODY: {
+                int locals = childCount(id) - 1;
+                List<VariableDeclaration> decls = new ArrayList<>(locals);
+                for (int i = 0; i < locals; i++) {
+                    decls.add((VariableDeclaration) decode(child(id, i)));
+                }
+                node = new FunctionBody(l, c, decls, (StatementSequence) decode(child(id, locals)));
+                break;
+            }
+            case STATEMENT_SEQUENCE: {
+                StatementSequence seq = new StatementSequence(l, c);
+                for (int i = 0; i < childCount(id); i++) {
+                    seq.addStatement((Statement) decode(child(id, i)));
+                }
+                node = seq;
+                break;
+            }
+            case ASSIGNMENT:
+                node = new Assignment(l, c, expr(child(id, 0)), tokenAt(token[id]),
+                        childCount(id) > 1 ? expr(child(id, 1)) : null);
+                break;
+            case IF:
+                node = new IfStatement(l, c, expr(child(id, 0)), (StatementSequence) decode(child(id, 1)),
+                        childCount(id) > 2 ? (StatementSequence) decode(child(id, 2)) : null);
+                break;
+            case WHILE:
+                node = new WhileStatement(l, c, expr(child(id, 0)), (StatementSequence) decode(child(id, 1)));
+                break;
+            case REPEAT:
+                node = new RepeatStatement(l, c, (StatementSequence) decode(child(id, 0)), expr(child(id, 1)));
+                break;
+            case RETURN:
+                node = new ReturnStatement(l, c, childCount(id) > 0 ? expr(child(id, 0)) : null);
+                break;
+            case CALL_STATEMENT:
+                node = new FunctionCallStatement(l, c, (FunctionCallExpression) decode(child(id, 0)));
+                break;
+            case CALL_EXPRESSION:
+                node = new FunctionCallExpression(l, c, tokenAt(token[id]), (ArgumentList) decode(child(id, 0)));
+                break;
+            case ARGUMENT_LIST: {
+                ArgumentList args = new ArgumentList(l, c);
+                for (int i = 0; i < childCount(id); i++) {
+                    args.add(expr(child(id, i)));
+                }
+                node = args;
+                break;
+            }
+            case DESIGNATOR:
+                node = new Designator(l, c, tokenAt(token[id]));
+                break;
+            case ARRAY_INDEX:
+                node = new ArrayIndex(l, c, expr(child(id, 0)), expr(child(id, 1)));
+                break;
+            case DEREFERENCE:
+                node = new Dereference(l, c, expr(child(id, 0)));
+                break;
+            case LOGICAL_NOT:
+                node = new LogicalNot(l, c, expr(child(id, 0)));
+                break;
+            case ADDITION:
+                node = new Addition(l, c, expr(child(id, 0)), tokenAt(token[id]), expr(child(id, 1)));
+                break;
+            case SUBTRACTION:
+                node = new Subtraction(l, c, expr(child(id, 0)), tokenAt(token[id]), expr(child(id, 1)));
+                break;
+            case MULTIPLICATION:
+                node = new Multiplication(l, c, expr(child(id, 0)), tokenAt(token[id]), expr(child(id, 1)));
+                break;
+            case DIVISION:
+                node = new Division(l, c, expr(child(id, 0)), tokenAt(token[id]), expr(child(id, 1)));
+                break;
+            case MODULO:
+                node = new Modulo(l, c, expr(child(id, 0)), tokenAt(token[id]), expr(child(id, 1)));
+                break;
+            case POWER:
+                node = new Power(l, c, expr(child(id, 0)), tokenAt(token[id]), expr(child(id, 1)));
+                break;
+            case LOGICAL_AND:
+                node = new LogicalAnd(l, c, expr(child(id, 0)), tokenAt(token[id]), expr(child(id, 1)));
+                break;
+            case LOGICAL_OR:
+                node = new LogicalOr(l, c, expr(child(id, 0)), tokenAt(token[id]), expr(child(id, 1)));
+                break;
+            case RELATION:
+                node = new Relation(l, c, expr(child(id, 0)), tokenAt(token[id]), expr(child(id, 1)));
+                break;
+            case INTEGER_LITERAL:
+                node = (flags[id] & FLAG_NO_TOKEN) != 0
+                        ? new IntegerLiteral(l, c, Integer.parseInt(lexeme(id)))
+                        : new IntegerLiteral(tokenAt(token[id]));
+                break;
+            case FLOAT_LITERAL:
+                node = (flags[id] & FLAG_NO_TOKEN) != 0
+                        ? new FloatLiteral(l, c, Float.parseFloat(lexeme(id)))
+                        : new FloatLiteral(tokenAt(token[id]));
+                break;
+            case BOOL_LITERAL:
+                node = (flags[id] & FLAG_NO_TOKEN) != 0
+                        ? new BoolLiteral(l, c, Boolean.parseBoolean(lexeme(id)))
+                        : new BoolLiteral(tokenAt(token[id]));
+                break;
+            default:
+                throw new RuntimeException("ASTArena: cannot decode " + kind(id));
+        }
+
+        if (node instanceof Expression) {
+            ((Expression) node).setType(type(id));
+            ((Expression) node).setLValue((flags[id] & FLAG_LVALUE) != 0);
+        }
+        return node;
+    }
+
+    private Expression expr(int id) {
+        return (Expression) decode(id);
+    }
+
+    private Token tokenAt(int t) {
+        return Token.of(TOKEN_KINDS[tokenKind[t]], lexemes.get(tokenLexeme[t]), tokenLine[t], tokenColumn[t]);
+    }
+
+    // Serialization ==============================================================
+
+    // Bump whenever the layout or either Kind enum changes
+    private static final int MAGIC = 0x4D415354; // "MAST"
+    private static final int FORMAT_VERSION = 3;
+
+    public void writeTo(DataOutputStream out) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(FORMAT_VERSION);
+
+        out.writeInt(nodeCount);
+        out.write(kind, 0, nodeCount);
+        out.write(flags, 0, nodeCount);
+        writeInts(out, line, nodeCount);
+        writeInts(out, column, nodeCount);
+        writeInts(out, token, nodeCount);
+        writeInts(out, typeId, nodeCount);
+        writeInts(out, childStart, nodeCount);
+        writeInts(out, childCount, nodeCount);
+
+        out.writeInt(childPoolSize);
+        writeInts(out, childPool, childPoolSize);
+
+        out.writeInt(tokenCount);
+        out.write(tokenKind, 0, tokenCount);
+        writeInts(out, tokenLexeme, tokenCount);
+        writeInts(out, tokenLine, tokenCount);
+        writeInts(out, tokenColumn, tokenCount);
+
+        out.writeInt(lexemes.size());
+        for (String lexeme : lexemes) {
+            writeString(out, lexeme);
+        }
+        out.writeInt(types.size());
+        for (Type t : types) {
+            writeType(out, t);
+        }
+    }
+
+    // Reads an arena written by writeTo; the buffer is typically a mapped cache file
+    public static ASTArena readFrom(ByteBuffer in) {
+        if (in.getInt() != MAGIC || in.getInt() != FORMAT_VERSION) {
+            throw new IllegalArgumentException("ASTArena: unrecognized encoding");
+        }
+        ASTArena arena = new ASTArena();
+
+        int n = in.getInt();
+        arena.nodeCount = n;
+        arena.kind = readBytes(in, n);
+        arena.flags = readBytes(in, n);
+        arena.line = readInts(in, n);
+        arena.column = readInts(in, n);
+        arena.token = readInts(in, n);
+        arena.typeId = readInts(in, n);
+        arena.childStart = readInts(in, n);
+        arena.childCount = readInts(in, n);
+
+        arena.childPoolSize = in.getInt();
+        arena.childPool = readInts(in, arena.childPoolSize);
+
+        int t = in.getInt();
+        arena.tokenCount = t;
+        arena.tokenKind = readBytes(in, t);
+        arena.tokenLexeme = readInts(in, t);
+        arena.tokenLine = readInts(in, t);
+        arena.tokenColumn = readInts(in, t);
+
+        int lexemeCount = in.getInt();
+        for (int i = 0; i < lexemeCount; i++) {
+            arena.internLexeme(readString(in));
+        }
+        int typeCount = in.getInt();
+        for (int i = 0; i < typeCount; i++) {
+            arena.internType(readType(in));
+        }
+        return arena;
+    }
+
+    private static void writeInts(DataOutputStream out, int[] values, int count) throws IOException {
+        for (int i = 0; i < count; i++) {
+            out.writeInt(values[i]);
+        }
+    }
+
+    private static int[] readInts(ByteBuffer in, int count) {
+        // keep at least one slot so the doubling growth in alloc* still works
+        int[] values = new int[Math.max(count, 1)];
+        in.asIntBuffer().get(values, 0, count);
+        in.position(in.position() + 4 * count);
+        return values;
+    }
+
+    private static byte[] readBytes(ByteBuffer in, int count) {
+        byte[] values = new byte[Math.max(count, 1)];
+        in.get(values, 0, count);
+        return values;
+    }
+
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer in) {
+        byte[] bytes = new byte[in.getInt()];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeType(DataOutputStream out, Type t) throws IOException {
+        if (t instanceof IntType) {
+            out.writeByte(0);
+        } else if (t instanceof FloatType) {
+            out.writeByte(1);
+        } else if (t instanceof BoolType) {
+            out.writeByte(2);
+        } else if (t instanceof VoidType) {
+            out.writeByte(3);
+        } else if (t instanceof ArrayType) {
+            out.writeByte(4);
+            out.writeInt(((ArrayType) t).getSize());
+            writeType(out, ((ArrayType) t).getElementType());
+        } else if (t instanceof ErrorType) {
+            out.writeByte(5);
+            writeString(out, ((ErrorType) t).getMessage());
+        } else {
+            throw new IllegalArgumentException("ASTArena: cannot serialize type " + t);
+        }
+    }
+
+    private static Type readType(ByteBuffer in) {
+        switch (in.get()) {
+            case 0: return IntType.INSTANCE;
+            case 1: return FloatType.INSTANCE;
+            case 2: return BoolType.INSTANCE;
+            case 3: return VoidType.INSTANCE;
+            case 4: {
+                int size = in.getInt();
+                return ArrayType.of(readType(in), size);
+            }
+            case 5: return new ErrorType(readString(in));
+            default: throw new IllegalArgumentException("ASTArena: bad type tag");
+        }
+    }
+}
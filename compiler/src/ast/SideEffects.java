@@ -0,0 +1,83 @@
+package ast;
+
+import types.ArrayType;
+
+// Whether evaluating an expression can be observed. and/or short-circuit, so
+// their right operand may only be evaluated unconditionally (as a branch-free
+// And/Or) when it cannot be: calls (including the read builtins) write output,
+// read input or change globals, and a division, modulo or array access may
+// trap. Only a nonzero literal divisor or a literal index inside a known bound
+// is known not to.
+public final class SideEffects {
+
+    private SideEffects() {
+    }
+
+    public static boolean mayHave(Expression e) {
+        if (e instanceof FunctionCallExpression) {
+            return true;
+        }
+        if (e instanceof Addition) {
+            return mayHave(((Addition) e).getLeft()) || mayHave(((Addition) e).getRight());
+        }
+        if (e instanceof Subtraction) {
+            return mayHave(((Subtraction) e).getLeft()) || mayHave(((Subtraction) e).getRight());
+        }
+        if (e instanceof Multiplication) {
+            return mayHave(((Multiplication) e).getLeft()) || mayHave(((Multiplication) e).getRight());
+        }
+        if (e instanceof Division) {
+            Expression divisor = ((Division) e).getRight();
+            return !isNonzeroLiteral(divisor) || mayHave(((Division) e).getLeft());
+        }
+        if (e instanceof Modulo) {
+            Expression divisor = ((Modulo) e).getRight();
+            return !isNonzeroLiteral(divisor) || mayHave(((Modulo) e).getLeft());
+        }
+        if (e instanceof Power) {
+            return mayHave(((Power) e).getLeft()) || mayHave(((Power) e).getRight());
+        }
+        if (e instanceof Relation) {
+            return mayHave(((Relation) e).getLeft()) || mayHave(((Relation) e).getRight());
+        }
+        if (e instanceof LogicalAnd) {
+            return mayHave(((LogicalAnd) e).getLeft()) || mayHave(((LogicalAnd) e).getRight());
+        }
+        if (e instanceof LogicalOr) {
+            return mayHave(((LogicalOr) e).getLeft()) || mayHave(((LogicalOr) e).getRight());
+        }
+        if (e instanceof LogicalNot) {
+            return mayHave(((LogicalNot) e).operand());
+        }
+        if (e instanceof Dereference) {
+            return mayHave(((Dereference) e).operand());
+        }
+        if (e instanceof ArrayIndex) {
+            ArrayIndex access = (ArrayIndex) e;
+            return !isInBounds(access) || mayHave(access.base());
+        }
+        // Designators and literals
+        return false;
+    }
+
+    private static boolean isNonzeroLiteral(Expression e) {
+        if (e instanceof IntegerLiteral) {
+            return ((IntegerLiteral) e).getValue() != 0;
+        }
+        if (e instanceof FloatLiteral) {
+            return ((FloatLiteral) e).getValue() != 0.0f;
+        }
+        return false;
+    }
+
+    // Sizes of array parameters are unknown (-1), so only declared arrays qualify
+    private static boolean isInBounds(ArrayIndex access) {
+        if (!(access.index() instanceof IntegerLiteral)
+                || !(access.base().getType() instanceof ArrayType)) {
+            return false;
+        }
+        int index = ((IntegerLiteral) access.index()).getValue();
+        int size = ((ArrayType) access.base().getType()).getSize();
+        return index >= 0 && index < size;
+    }
+}
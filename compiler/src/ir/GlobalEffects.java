@@ -0,0 +1,292 @@
+package ir;
+
+import java.util.*;
+
+import ast.*;
+import mocha.Symbol;
+import mocha.SymbolTable;
+import mocha.Token;
+import types.Type;
+
+/**
+ * Interprocedural mod/ref summaries for scalar globals, computed from the AST
+ * before lowering so every function (including ones lowered in parallel) can
+ * use its callees' summaries.
+ *
+ * uses(f) holds the globals f or anything it calls may read or write; f loads
+ * those on entry and stores them back on exit, so a caller must have them in
+ * memory before the call. mods(f) holds the globals that may be assigned, the
+ * only ones a caller has to reload afterwards. Calls are matched to every
+ * declaration with the same name and arity, which is conservative for
+ * overloads.
+ */
+public class GlobalEffects implements NodeVisitor {
+
+    private final SymbolTable symbolTable;
+    private final Map<String, Symbol> globals = new HashMap<>();
+    private final Map<Symbol, Set<Symbol>> uses = new HashMap<>();
+    private final Map<Symbol, Set<Symbol>> mods = new HashMap<>();
+    private final Map<Symbol, Set<Symbol>> callees = new HashMap<>();
+    private final Map<String, List<FunctionDeclaration>> declarations = new HashMap<>();
+    private final Map<FunctionDeclaration, Symbol> functionSymbols = new HashMap<>();
+
+    // State for the function being scanned
+    private Symbol function;
+    private Set<String> locals;
+
+    public GlobalEffects(SymbolTable symbolTable) {
+        this.symbolTable = symbolTable;
+    }
+
+    public void analyze(Computation comp, List<Symbol> globalNonArrayVars) {
+        for (Symbol global : globalNonArrayVars) {
+            globals.put(global.name(), global);
+        }
+        for (Node node : comp.functions().declarations()) {
+            FunctionDeclaration decl = (FunctionDeclaration) node;
+            List<Type> paramTypes = new ArrayList<>();
+            for (Symbol param : decl.formals()) {
+                paramTypes.add(param.type());
+            }
+            functionSymbols.put(decl, symbolTable.lookupFunction(decl.name().lexeme(), paramTypes));
+            declarations.computeIfAbsent(decl.name().lexeme(), k -> new ArrayList<>()).add(decl);
+        }
+
+        for (Node node : comp.functions().declarations()) {
+            node.accept(this);
+        }
+
+        // Propagate callee effects to callers until nothing changes
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (Map.Entry<Symbol, Set<Symbol>> e : callees.entrySet()) {
+                Symbol caller = e.getKey();
+                for (Symbol callee : e.getValue()) {
+                    changed |= uses.get(caller).addAll(uses.get(callee));
+                    changed |= mods.get(caller).addAll(mods.get(callee));
+                }
+            }
+        }
+    }
+
+    public Set<Symbol> uses(Symbol function) {
+        return uses.getOrDefault(function, Collections.emptySet());
+    }
+
+    public Set<Symbol> mods(Symbol function) {
+        return mods.getOrDefault(function, Collections.emptySet());
+    }
+
+    private Symbol global(Designator node) {
+        String name = node.name().lexeme();
+        return locals.contains(name) ? null : globals.get(name);
+    }
+
+    // Functions ==================================================================
+
+    @Override
+    public void visit(FunctionDeclaration node) {
+        function = functionSymbols.get(node);
+        uses.put(function, new HashSet<>());
+        mods.put(function, new HashSet<>());
+        callees.put(function, new HashSet<>());
+        locals = new HashSet<>();
+        for (Symbol param : node.formals()) {
+            locals.add(param.name());
+        }
+        if (node.body() != null) {
+            node.body().accept(this);
+        }
+    }
+
+    @Override
+    public void visit(FunctionBody node) {
+        node.locals().forEach(decl -> decl.accept(this));
+        node.statements().accept(this);
+    }
+
+    @Override
+    public void visit(VariableDeclaration node) {
+        for (Token name : node.names()) {
+            locals.add(name.lexeme());
+        }
+    }
+
+    @Override
+    public void visit(DeclarationList node) {
+    }
+
+    @Override
+    public void visit(Computation node) {
+    }
+
+    // Statements =================================================================
+
+    @Override
+    public void visit(StatementSequence node) {
+        node.getStatements().forEach(stmt -> stmt.accept(this));
+    }
+
+    @Override
+    public void visit(Assignment node) {
+        if (node.getDestination() instanceof Designator) {
+            Symbol global = global((Designator) node.getDestination());
+            if (global != null) {
+                uses.get(function).add(global);
+                mods.get(function).add(global);
+            }
+        } else {
+            node.getDestination().accept(this);
+        }
+        if (node.getSource() != null) {
+            node.getSource().accept(this);
+        }
+    }
+
+    @Override
+    public void visit(FunctionCallStatement node) {
+        node.getFunctionCall().accept(this);
+    }
+
+    @Override
+    public void visit(IfStatement node) {
+        node.condition().accept(this);
+        node.thenBlock().accept(this);
+        if (node.elseBlock() != null) {
+            node.elseBlock().accept(this);
+        }
+    }
+
+    @Override
+    public void visit(WhileStatement node) {
+        node.condition().accept(this);
+        node.body().accept(this);
+    }
+
+    @Override
+    public void visit(RepeatStatement node) {
+        node.body().accept(this);
+        node.condition().accept(this);
+    }
+
+    @Override
+    public void visit(ReturnStatement node) {
+        if (node.value() != null) {
+            node.value().accept(this);
+        }
+    }
+
+    // Expressions ================================================================
+
+    @Override
+    public void visit(FunctionCallExpression node) {
+        int arity = 0;
+        if (node.arguments() != null && node.arguments().args() != null) {
+            node.arguments().accept(this);
+            arity = node.arguments().args().size();
+        }
+        for (FunctionDeclaration decl : declarations.getOrDefault(node.name().lexeme(), Collections.emptyList())) {
+            if (decl.formals().size() == arity) {
+                callees.get(function).add(functionSymbols.get(decl));
+            }
+        }
+    }
+
+    @Override
+    public void visit(ArgumentList node) {
+        for (Expression arg : node.args()) {
+            arg.accept(this);
+        }
+    }
+
+    @Override
+    public void visit(Designator node) {
+        Symbol global = global(node);
+        if (global != null) {
+            uses.get(function).add(global);
+        }
+    }
+
+    @Override
+    public void visit(ArrayIndex node) {
+        node.base().accept(this);
+        node.index().accept(this);
+    }
+
+    @Override
+    public void visit(Dereference node) {
+        node.operand().accept(this);
+    }
+
+    @Override
+    public void visit(LogicalNot node) {
+        node.operand().accept(this);
+    }
+
+    @Override
+    public void visit(Power node) {
+        node.getLeft().accept(this);
+        node.getRight().accept(this);
+    }
+
+    @Override
+    public void visit(Multiplication node) {
+        node.getLeft().accept(this);
+        node.getRight().accept(this);
+    }
+
+    @Override
+    public void visit(Division node) {
+        node.getLeft().accept(this);
+        node.getRight().accept(this);
+    }
+
+    @Override
+    public void visit(Modulo node) {
+        node.getLeft().accept(this);
+        node.getRight().accept(this);
+    }
+
+    @Override
+    public void visit(LogicalAnd node) {
+        node.getLeft().accept(this);
+        node.getRight().accept(this);
+    }
+
+    @Override
+    public void visit(Addition node) {
+        node.getLeft().accept(this);
+        node.getRight().accept(this);
+    }
+
+    @Override
+    public void visit(Subtraction node) {
+        node.getLeft().accept(this);
+        node.getRight().accept(this);
+    }
+
+    @Override
+    public void visit(LogicalOr node) {
+        node.getLeft().accept(this);
+        node.getRight().accept(this);
+    }
+
+    @Override
+    public void visit(Relation node) {
+        node.getLeft().accept(this);
+        node.getRight().accept(this);
+    }
+
+    @Override
+    public void visit(BoolLiteral node) {
+    }
+
+    @Override
+    public void visit(IntegerLiteral node) {
+    }
+
+    @Override
+    public void visit(FloatLiteral node) {
+    }
+}
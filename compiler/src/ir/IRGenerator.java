@@ -1,16 +1,24 @@
 package ir;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Set;
-import java.util.Stack;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import ast.*;
 import mocha.Symbol;
 import mocha.SymbolTable;
 import mocha.Token;
 import ir.cfg.CFG;
 import ir.cfg.BasicBlock;
+import ir.ssa.BraunSSABuilder;
+import ir.ssa.SSAConverter;
 import ir.tac.*;
 import types.Type;
 import types.BoolType;
@@ -23,12 +31,14 @@ public class IRGenerator implements NodeVisitor {
     private int instructionCounter;
     private int blockCounter;
     private int nextTempNumber;
+    private int conditionBlockCounter;  // numbers reserved for branchOn's blocks
 
     private int fpOffset;
     private int gpOffset;
     private int paramOffset;
 
-    private Stack<Variable> freeTemps;
+    private Deque<Variable> freeTemps;
+    private List<Variable> temps;  // every temp created, in number order
 
     private Set<Symbol> initializedGlobals;
     private Set<Symbol> initializedLocals;
@@ -38,12 +48,17 @@ public class IRGenerator implements NodeVisitor {
 
     private List<Symbol> globalVariables;
     private List<Symbol> globalNonArrayVars;
+    private GlobalEffects globalEffects;  // which globals each function may touch
 
     private List<CFG> cfgs;
     private CFG currentCFG;
     private BasicBlock currentBlock;
     private SymbolTable symbolTable;
-    private Stack<Value> valueStack;
+    private Deque<Value> valueStack;
+    private boolean directSSA;
+    private boolean boundsChecks;
+    private boolean convertToSSA;
+    private StringBuilder deferredWarnings;  // set on workers, printed when adopted
 
     public IRGenerator(SymbolTable symTable) {
         this.instructionCounter = 0;
@@ -51,21 +66,125 @@ public class IRGenerator implements NodeVisitor {
         this.nextTempNumber = 0;
         this.cfgs = new ArrayList<>();
         this.symbolTable = symTable;
-        this.valueStack = new Stack<>();
-        this.freeTemps = new Stack<>();
+        this.valueStack = new ArrayDeque<>();
+        this.freeTemps = new ArrayDeque<>();
+        this.temps = new ArrayList<>();
         this.initializedGlobals = new HashSet<>();
-        this.needsDefaultInitGlobals = new HashSet<>();
-        this.needsDefaultInitLocals = new HashSet<>();
+        this.needsDefaultInitGlobals = new LinkedHashSet<>();
+        this.needsDefaultInitLocals = new LinkedHashSet<>();
         this.globalVariables = new ArrayList<>();
         this.globalNonArrayVars = new ArrayList<>();
     }
 
+    // Emit each function already in SSA form instead of leaving it to SSAConverter
+    public void setDirectSSA(boolean directSSA) {
+        this.directSSA = directSSA;
+    }
+
+    // Check every array index against its dimension (DLX CHKI)
+    public void setBoundsChecks(boolean boundsChecks) {
+        this.boundsChecks = boundsChecks;
+    }
+
     public List<CFG> generate(AST ast) {
         assignGlobalOffsets(ast.getComputation().variables());
+        analyzeGlobalEffects(ast.getComputation());
         ast.getComputation().accept(this);
         return cfgs;
     }
 
+    // Lowers every function and puts it in SSA form as soon as it is lowered.
+    // With threads > 1 each function declaration is lowered and converted by its
+    // own generator on a pool; results are renumbered in declaration order, so
+    // the CFGs are identical to the serial ones. Main goes last on this thread
+    // since it continues the last function's frame offset and free temps.
+    public List<CFG> generateSSA(AST ast, int threads) {
+        convertToSSA = true;
+        Computation comp = ast.getComputation();
+        if (threads <= 1 || comp.functions().declarations().size() < 2) {
+            return generate(ast);
+        }
+
+        assignGlobalOffsets(comp.variables());
+        analyzeGlobalEffects(comp);
+        comp.variables().declarations().forEach(decl -> decl.accept(this));
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<IRGenerator>> lowered = new ArrayList<>();
+            for (Node func : comp.functions().declarations()) {
+                lowered.add(pool.submit(() -> lowerIsolated(func)));
+            }
+            for (Future<IRGenerator> worker : lowered) {
+                adopt(worker.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("IR generation interrupted", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new RuntimeException(e.getCause());
+        } finally {
+            pool.shutdown();
+        }
+
+        lowerMain(comp);
+        return cfgs;
+    }
+
+    private IRGenerator lowerIsolated(Node func) {
+        IRGenerator worker = new IRGenerator(symbolTable.fork());
+        worker.blockCounter = 0;
+        worker.gpOffset = gpOffset;
+        worker.globalVariables = globalVariables;
+        worker.globalNonArrayVars = globalNonArrayVars;
+        worker.globalEffects = globalEffects;
+        worker.directSSA = directSSA;
+        worker.boundsChecks = boundsChecks;
+        worker.convertToSSA = convertToSSA;
+        worker.deferredWarnings = new StringBuilder();
+        func.accept(worker);
+        return worker;
+    }
+
+    // Shifts a worker's block numbers, instruction ids and temps past everything
+    // lowered so far, then takes over its CFG and the state main inherits
+    private void adopt(IRGenerator worker) {
+        for (CFG cfg : worker.cfgs) {
+            for (BasicBlock block : cfg.getAllBlocks()) {
+                block.setNum(block.getNum() + blockCounter);
+                for (Phi phi : block.getPhis()) {
+                    phi.setId(phi.getId() + instructionCounter);
+                }
+                for (TAC instruction : block.getInstructions()) {
+                    instruction.setId(instruction.getId() + instructionCounter);
+                }
+            }
+            cfgs.add(cfg);
+        }
+        for (Variable temp : worker.temps) {
+            temp.setTempIndex(temp.getTempIndex() + nextTempNumber);
+            temp.getSymbol().setName("$t" + temp.getTempIndex());
+            temps.add(temp);
+        }
+        blockCounter += worker.blockCounter;
+        instructionCounter += worker.instructionCounter;
+        nextTempNumber += worker.nextTempNumber;
+        fpOffset = worker.fpOffset;
+        freeTemps = worker.freeTemps;
+        System.err.print(worker.deferredWarnings);
+    }
+
+    private void warn(String message) {
+        if (deferredWarnings != null) {
+            deferredWarnings.append(message).append('\n');
+        } else {
+            System.err.println(message);
+        }
+    }
+
     private void assignGlobalOffsets(DeclarationList globals) {
         for (Node node : globals.declarations()) {
             if (node instanceof VariableDeclaration) {
@@ -94,16 +213,25 @@ public class IRGenerator implements NodeVisitor {
         return 4;
     }
 
-    private void loadAllGlobals() {
+    private void analyzeGlobalEffects(Computation comp) {
+        globalEffects = new GlobalEffects(symbolTable);
+        globalEffects.analyze(comp, globalNonArrayVars);
+    }
+
+    // Only globals the callee may assign can differ from our copy after the call
+    private void reloadGlobals(Symbol callee) {
+        Set<Symbol> mods = globalEffects.mods(callee);
         for (Symbol global : globalNonArrayVars) {
-            Variable var = new Variable(global);
-            addInstruction(new LoadGP(nextInstructionId(), var, global.getGlobalOffset()));
-            // Conservative: assume loaded implies potentially used/read, preventing warnings
+            if (mods.contains(global)) {
+                Variable var = new Variable(global);
+                addInstruction(new LoadGP(nextInstructionId(), var, global.getGlobalOffset()));
+            }
+            // Every global holds a defined value after a call, so later reads don't warn
             initializedGlobals.add(global);
         }
     }
 
-    private void insertEntryLoads(BasicBlock entryBlock, int insertionIndex) {
+    private void insertEntryLoads(BasicBlock entryBlock) {
         // Optimization: Only load globals that were actually used in the function/main
         // We insert these in reverse order at the specific index so they appear in correct order
         // (Though order of loads doesn't strictly matter for correctness)
@@ -117,14 +245,22 @@ public class IRGenerator implements NodeVisitor {
             }
         }
         
-        // Insert into block
-        entryBlock.getInstructions().addAll(insertionIndex, loads);
+        // Insert at the start of the block
+        entryBlock.getInstructions().addAll(0, loads);
     }
 
     private void storeUsedGlobals() {
+        storeUsedGlobals(null);
+    }
+
+    // With a callee, only the globals it (or anything it calls) touches need to
+    // be in memory: it loads exactly those on entry and stores them on exit
+    private void storeUsedGlobals(Symbol callee) {
+        Set<Symbol> calleeUses = callee != null ? globalEffects.uses(callee) : null;
         for (Symbol global : globalNonArrayVars) {
             // Optimization: Only store globals that were USED and MODIFIED (Initialized)
-            if (usedGlobalsInFunction.contains(global) && initializedGlobals.contains(global)) {
+            if (usedGlobalsInFunction.contains(global) && initializedGlobals.contains(global)
+                    && (calleeUses == null || calleeUses.contains(global))) {
                 Variable var = new Variable(global);
                 addInstruction(new StoreGP(nextInstructionId(), var, global.getGlobalOffset()));
             }
@@ -143,6 +279,17 @@ public class IRGenerator implements NodeVisitor {
         return ++instructionCounter;
     }
 
+    // Entry loads and default inits are spliced in after lowering, so the SSA
+    // pass runs once the function's TAC is complete
+    private void finishCFG() {
+        if (directSSA) {
+            new BraunSSABuilder(currentCFG).build();
+        } else if (convertToSSA) {
+            new SSAConverter(currentCFG).convertToSSA();
+        }
+        cfgs.add(currentCFG);
+    }
+
     private Variable getTemp() {
         if (!freeTemps.isEmpty()) {
             Variable temp = freeTemps.pop();
@@ -155,16 +302,18 @@ public class IRGenerator implements NodeVisitor {
             Symbol tempSym = new Symbol("$t" + tempNum);
             tempSym.setFpOffset(offset);
 
-            return new Variable(tempSym, true, tempNum);
+            Variable temp = new Variable(tempSym, true, tempNum);
+            temps.add(temp);
+            return temp;
         }
     }
 
     private Variable getTemp(boolean isFloat) {
         Variable temp = getTemp();
         if (isFloat) {
-            temp.getSymbol().setType(new FloatType());
+            temp.getSymbol().setType(FloatType.INSTANCE);
         } else {
-            temp.getSymbol().setType(new IntType());
+            temp.getSymbol().setType(IntType.INSTANCE);
         }
         return temp;
     }
@@ -209,7 +358,7 @@ public class IRGenerator implements NodeVisitor {
 
             if (!isUserInit) {
                 // Warn on first use
-                System.err.println("WARNING: Variable '" + sym.name() + "' may be used before initialization");
+                warn("WARNING: Variable '" + sym.name() + "' may be used before initialization");
                 
                 // Mark this variable as needing default initialization
                 // (will be initialized at entry block)
@@ -274,35 +423,6 @@ public class IRGenerator implements NodeVisitor {
         throw new RuntimeException("Cannot extract immediate value from: " + v);
     }
 
-    private boolean isZero(Value v) {
-        if (isImmediate(v)) {
-            return getImmediateValue(v) == 0;
-        }
-        return false;
-    }
-
-    /**
-     * Calculate the size of elements at this array dimension.
-     * For multi-dimensional arrays, returns the size of the sub-array.
-     * For final dimensions, returns 4 (size of scalar).
-     */
-    private int calculateElementSize(Expression base) {
-        Type baseType = getExpressionType(base);
-
-        if (baseType instanceof ArrayType) {
-            ArrayType arrType = (ArrayType) baseType;
-            Type elemType = arrType.getElementType();
-
-            if (elemType instanceof ArrayType) {
-                return ((ArrayType) elemType).getAllocationSize();
-            } else {
-                return 4;
-            }
-        }
-
-        return 4;
-    }
-
     /**
      * Check if this is an intermediate array access (multi-dimensional).
      * Returns true if the base expression's type is an array whose elements are
@@ -389,57 +509,95 @@ public class IRGenerator implements NodeVisitor {
         }
     }
 
-    @Override
-    public void visit(ArrayIndex node) {
-        node.base().accept(this);
-        node.index().accept(this);
-
-        Value indexVal = loadIfNeeded(valueStack.pop());
+    /**
+     * Address of the element (or sub-array) named by a whole a[i][j]... chain,
+     * formed with a single Adda: each index is scaled by its dimension's stride
+     * from the array type and the products are summed, with all constant
+     * indices folded into one immediate. Bounds checks, when enabled, test each
+     * index against its dimension as soon as it is evaluated.
+     */
+    private Variable elementAddress(ArrayIndex node) {
+        List<Expression> indices = new ArrayList<>();
+        Expression root = node;
+        while (root instanceof ArrayIndex) {
+            indices.add(0, ((ArrayIndex) root).index());
+            root = ((ArrayIndex) root).base();
+        }
+        ArrayType arrayType = (ArrayType) getExpressionType(root);
+        // Strides past an unknown size are meaningless; TypeChecker rejects such parameters
+        for (int d = 1; d < arrayType.getDimensions().size(); d++) {
+            if (arrayType.getDimensions().get(d) < 0) {
+                throw new RuntimeException("Unsized inner dimension in array " + arrayType);
+            }
+        }
+        root.accept(this);
         Value baseAddr = valueStack.pop();
 
-        // For multi-dim arrays, this is critical!
-        int elementSize = calculateElementSize(node.base());
+        int constantOffset = 0;
+        Value offset = null;
+        for (int d = 0; d < indices.size(); d++) {
+            indices.get(d).accept(this);
+            Value indexVal = loadIfNeeded(valueStack.pop());
+
+            int dimension = arrayType.getDimensions().get(d);
+            if (boundsChecks && dimension > 0) {
+                boolean provenInRange = isImmediate(indexVal)
+                        && getImmediateValue(indexVal) >= 0 && getImmediateValue(indexVal) < dimension;
+                if (!provenInRange) {
+                    addInstruction(new Chk(nextInstructionId(), indexVal, dimension));
+                }
+            }
 
-        Value scaledIndex;
-        if (isImmediate(indexVal) && isZero(indexVal)) {
-            scaledIndex = new Immediate(0);
-        } else if (isImmediate(indexVal)) {
-            int idx = getImmediateValue(indexVal);
-            scaledIndex = new Immediate(idx * elementSize);
-        } else {
-            Variable tempScaled = getTemp();
-            addInstruction(new Mul(nextInstructionId(), tempScaled, indexVal, new Immediate(elementSize), false));
-            scaledIndex = tempScaled;
+            int stride = 4 * arrayType.getStrides().get(d);
+            if (isImmediate(indexVal)) {
+                constantOffset += getImmediateValue(indexVal) * stride;
+                continue;
+            }
+            Variable scaled = getTemp();
+            addInstruction(new Mul(nextInstructionId(), scaled, indexVal, new Immediate(stride), false));
+            freeTemp(indexVal);
+            if (offset == null) {
+                offset = scaled;
+            } else {
+                Variable sum = getTemp();
+                addInstruction(new Add(nextInstructionId(), sum, offset, scaled));
+                freeTemp(offset);
+                freeTemp(scaled);
+                offset = sum;
+            }
+        }
+
+        if (offset == null) {
+            offset = new Immediate(constantOffset);
+        } else if (constantOffset != 0) {
+            Variable sum = getTemp();
+            addInstruction(new Add(nextInstructionId(), sum, offset, new Immediate(constantOffset)));
+            freeTemp(offset);
+            offset = sum;
         }
 
         Variable elementAddr = getTemp();
-        addInstruction(new Adda(nextInstructionId(), elementAddr, baseAddr, scaledIndex));
+        addInstruction(new Adda(nextInstructionId(), elementAddr, baseAddr, offset));
+        freeTemp(offset);
+        freeTemp(baseAddr);
+        return elementAddr;
+    }
+
+    @Override
+    public void visit(ArrayIndex node) {
+        Variable elementAddr = elementAddress(node);
 
         // Intermediate: arr[i] in arr[i][j] -> return ADDRESS
         // Final: arr[i][j] or arr[i] (1D) -> LOAD and return VALUE
-        boolean isIntermediateAccess = isIntermediateArrayAccess(node.base());
-
-        if (isIntermediateAccess) {
+        if (isIntermediateArrayAccess(node.base())) {
             valueStack.push(elementAddr);
-
-            if (indexVal != scaledIndex && indexVal instanceof Variable)
-                freeTemp(indexVal);
-            if (scaledIndex instanceof Variable)
-                freeTemp(scaledIndex);
-            freeTemp(baseAddr);
         } else {
             Variable loadedValue = getTemp();
             // FIX: Set type of loaded value so isFloat() works correctly!
             loadedValue.getSymbol().setType(getExpressionType(node));
-            
+
             addInstruction(new Load(nextInstructionId(), loadedValue, elementAddr));
             valueStack.push(loadedValue);
-
-            if (indexVal != scaledIndex && indexVal instanceof Variable)
-                freeTemp(indexVal);
-            if (scaledIndex instanceof Variable)
-                freeTemp(scaledIndex);
-            freeTemp(baseAddr);
             freeTemp(elementAddr);
         }
     }
@@ -504,108 +662,35 @@ public class IRGenerator implements NodeVisitor {
         valueStack.push(temp);
     }
 
-    /* diasabled: Short-circuiting
+    // As values, and/or short-circuit like they do as conditions. A right
+    // operand that cannot be observed is evaluated anyway and combined with
+    // And/Or, which needs no branch
     @Override
     public void visit(LogicalAnd node) {
+        if (SideEffects.mayHave(node.getRight())) {
+            shortCircuit(node.getLeft(), node.getRight(), true);
+            return;
+        }
         node.getLeft().accept(this);
         Value leftVal = loadIfNeeded(valueStack.pop());
-        
-        // If leftVal is a Literal, move it to a temp to avoid register conflicts
-        if (leftVal instanceof Literal) {
-            Variable leftTemp = getTemp();
-            addInstruction(new Mov(nextInstructionId(), leftTemp, leftVal));
-            leftVal = leftTemp;
-        }
-
-        BasicBlock evalRightBlock = new BasicBlock(++blockCounter);
-        BasicBlock endBlock = new BasicBlock(++blockCounter);
-        BasicBlock current = currentBlock;
 
-        Variable result = getTemp();
-        addInstruction(new Mov(nextInstructionId(), result, new Immediate(0)));
-
-        currentCFG.addBlock(evalRightBlock);
-        currentCFG.addBlock(endBlock);
-
-        // Logic: IF (Left == False) THEN Done ELSE CheckRight.
-        addInstruction(new Beq(nextInstructionId(), leftVal, endBlock));
-        freeTemp(leftVal);
-
-        current.addSuccessor(endBlock);
-        current.addSuccessor(evalRightBlock);
-        evalRightBlock.addPredecessor(current);
-        endBlock.addPredecessor(current);
-
-        currentBlock = evalRightBlock;
         node.getRight().accept(this);
-        
-        // Use currentBlock (NOT evalRightBlock) because the right child might have added blocks
         Value rightVal = loadIfNeeded(valueStack.pop());
 
-        addInstruction(new Mov(nextInstructionId(), result, rightVal));
-        freeTemp(rightVal);
-
-        addInstruction(new Bra(nextInstructionId(), endBlock));
-        
-        currentBlock.addSuccessor(endBlock);
-        endBlock.addPredecessor(currentBlock);
-
-        currentBlock = endBlock;
-        valueStack.push(result);
-    }
-
-    @Override
-    public void visit(LogicalOr node) {
-        node.getLeft().accept(this);
-        Value leftVal = loadIfNeeded(valueStack.pop());
-        
-        // If leftVal is a Literal, move it to a temp to avoid register conflicts
-        if (leftVal instanceof Literal) {
-            Variable leftTemp = getTemp();
-            addInstruction(new Mov(nextInstructionId(), leftTemp, leftVal));
-            leftVal = leftTemp;
-        }
-
-        BasicBlock evalRightBlock = new BasicBlock(++blockCounter);
-        BasicBlock endBlock = new BasicBlock(++blockCounter);
-        BasicBlock current = currentBlock;
-
         Variable result = getTemp();
-        addInstruction(new Mov(nextInstructionId(), result, new Immediate(1)));
-
-        currentCFG.addBlock(evalRightBlock);
-        currentCFG.addBlock(endBlock);
+        addInstruction(new And(nextInstructionId(), result, leftVal, rightVal));
 
-        // Logic: IF (Left == True) THEN Done ELSE CheckRight.
-        // Bne branches when value != 0 (TRUE), Beq branches when value == 0 (FALSE)
-        addInstruction(new Bne(nextInstructionId(), leftVal, endBlock));
         freeTemp(leftVal);
-
-        current.addSuccessor(endBlock);
-        current.addSuccessor(evalRightBlock);
-        endBlock.addPredecessor(current);
-        evalRightBlock.addPredecessor(current);
-
-        currentBlock = evalRightBlock;
-        node.getRight().accept(this);
-
-        Value rightVal = loadIfNeeded(valueStack.pop());
-
-        addInstruction(new Mov(nextInstructionId(), result, rightVal));
         freeTemp(rightVal);
-
-        addInstruction(new Bra(nextInstructionId(), endBlock));
-        
-        currentBlock.addSuccessor(endBlock);
-        endBlock.addPredecessor(currentBlock);
-
-        currentBlock = endBlock;
         valueStack.push(result);
     }
-    */
 
     @Override
-    public void visit(LogicalAnd node) {
+    public void visit(LogicalOr node) {
+        if (SideEffects.mayHave(node.getRight())) {
+            shortCircuit(node.getLeft(), node.getRight(), false);
+            return;
+        }
         node.getLeft().accept(this);
         Value leftVal = loadIfNeeded(valueStack.pop());
 
@@ -613,26 +698,45 @@ public class IRGenerator implements NodeVisitor {
         Value rightVal = loadIfNeeded(valueStack.pop());
 
         Variable result = getTemp();
-        addInstruction(new And(nextInstructionId(), result, leftVal, rightVal));
+        addInstruction(new Or(nextInstructionId(), result, leftVal, rightVal));
 
         freeTemp(leftVal);
         freeTemp(rightVal);
         valueStack.push(result);
     }
 
-    @Override
-    public void visit(LogicalOr node) {
-        node.getLeft().accept(this);
+    // result = left; the right operand's block runs only when left does not
+    // already decide the outcome, and overwrites result before the join
+    private void shortCircuit(Expression left, Expression right, boolean isAnd) {
+        left.accept(this);
         Value leftVal = loadIfNeeded(valueStack.pop());
+        Variable result = getTemp();
+        addInstruction(new Mov(nextInstructionId(), result, leftVal));
+        freeTemp(leftVal);
 
-        node.getRight().accept(this);
-        Value rightVal = loadIfNeeded(valueStack.pop());
+        BasicBlock rightBlock = new BasicBlock(++blockCounter);
+        BasicBlock joinBlock = new BasicBlock(++blockCounter);
+        currentCFG.addBlock(rightBlock);
+        currentCFG.addBlock(joinBlock);
 
-        Variable result = getTemp();
-        addInstruction(new Or(nextInstructionId(), result, leftVal, rightVal));
+        // beq leaves on false: and is decided by a false left, or needs the right
+        addInstruction(new Beq(nextInstructionId(), result, isAnd ? joinBlock : rightBlock));
+        addInstruction(new Bra(nextInstructionId(), isAnd ? rightBlock : joinBlock));
+        currentBlock.addSuccessor(rightBlock);
+        rightBlock.addPredecessor(currentBlock);
+        currentBlock.addSuccessor(joinBlock);
+        joinBlock.addPredecessor(currentBlock);
 
-        freeTemp(leftVal);
+        currentBlock = rightBlock;
+        right.accept(this);
+        Value rightVal = loadIfNeeded(valueStack.pop());
+        addInstruction(new Mov(nextInstructionId(), result, rightVal));
         freeTemp(rightVal);
+        addInstruction(new Bra(nextInstructionId(), joinBlock));
+        currentBlock.addSuccessor(joinBlock);
+        joinBlock.addPredecessor(currentBlock);
+
+        currentBlock = joinBlock;
         valueStack.push(result);
     }
     
@@ -844,18 +948,18 @@ public class IRGenerator implements NodeVisitor {
                     }
                 }
 
-                storeUsedGlobals();
-
                 // Lookup specific function symbol based on name AND argument types
                 Symbol funcSym = symbolTable.lookupFunction(funcName, argTypes);
 
+                storeUsedGlobals(funcSym);
+
                 Variable returnTemp = getTemp();
                 if (funcSym.type() instanceof FuncType) {
                     returnTemp.getSymbol().setType(((FuncType) funcSym.type()).getReturnType());
                 }
                 addInstruction(new Call(nextInstructionId(), returnTemp, funcSym, args));
 
-                loadAllGlobals();
+                reloadGlobals(funcSym);
 
                 for (Value arg : args) {
                     freeTemp(arg);
@@ -872,19 +976,19 @@ public class IRGenerator implements NodeVisitor {
         } else if (v instanceof Immediate) {
             Object val = ((Immediate) v).getValue();
             if (val instanceof Integer)
-                return new IntType();
+                return IntType.INSTANCE;
             if (val instanceof Float)
-                return new FloatType();
+                return FloatType.INSTANCE;
             if (val instanceof Boolean)
-                return new BoolType();
+                return BoolType.INSTANCE;
         } else if (v instanceof Literal) {
             ast.Expression expr = ((Literal) v).getValue();
             if (expr instanceof ast.IntegerLiteral)
-                return new IntType();
+                return IntType.INSTANCE;
             if (expr instanceof ast.FloatLiteral)
-                return new FloatType();
+                return FloatType.INSTANCE;
             if (expr instanceof ast.BoolLiteral)
-                return new BoolType();
+                return BoolType.INSTANCE;
         }
         throw new RuntimeException("Unknown type for value: " + v);
     }
@@ -995,28 +1099,7 @@ public class IRGenerator implements NodeVisitor {
     }
 
     private void handleArrayAssignment(ArrayIndex dest, Token op, Value rhs) {
-        dest.base().accept(this);
-        dest.index().accept(this);
-        Value indexVal = loadIfNeeded(valueStack.pop());
-        Value baseVal = valueStack.pop();
-
-        // CRITICAL: must match visit(ArrayIndex) scaling
-        int elementSize = calculateElementSize(dest.base());
-
-        Value scaledIndex;
-        if (isImmediate(indexVal) && isZero(indexVal)) {
-            scaledIndex = new Immediate(0);
-        } else if (isImmediate(indexVal)) {
-            int val = getImmediateValue(indexVal);
-            scaledIndex = new Immediate(val * elementSize);
-        } else {
-            Variable tempScaled = getTemp();
-            addInstruction(new Mul(nextInstructionId(), tempScaled, indexVal, new Immediate(elementSize), false));
-            scaledIndex = tempScaled;
-        }
-
-        Variable addrTemp = getTemp();
-        addInstruction(new Adda(nextInstructionId(), addrTemp, baseVal, scaledIndex));
+        Variable addrTemp = elementAddress(dest);
 
         if (op.kind() == Token.Kind.ASSIGN) {
             addInstruction(new Store(nextInstructionId(), rhs, addrTemp));
@@ -1060,17 +1143,16 @@ public class IRGenerator implements NodeVisitor {
         }
 
         freeTemp(addrTemp);
-        freeTemp(indexVal);
-        if (scaledIndex instanceof Variable)
-            freeTemp(scaledIndex);
-        freeTemp(baseVal);
     }
 
     @Override
     public void visit(Computation node) {
         node.variables().declarations().forEach(decl -> decl.accept(this));
         node.functions().declarations().forEach(func -> func.accept(this));
+        lowerMain(node);
+    }
 
+    private void lowerMain(Computation node) {
         // CRITICAL FIX: Do NOT reset blockCounter! IDs must be globally unique.
         Symbol mainSymbol = new Symbol("main");
         currentCFG = new CFG(mainSymbol);
@@ -1081,14 +1163,14 @@ public class IRGenerator implements NodeVisitor {
 
         // Reset global tracking for main's CFG (each CFG tracks independently)
         initializedGlobals = new HashSet<>();
-        needsDefaultInitGlobals = new HashSet<>();
+        needsDefaultInitGlobals = new LinkedHashSet<>();
         usedGlobalsInFunction = new HashSet<>();  // Track which globals are used in main
 
         // loadUsedGlobals(); // Deferred to insertEntryLoads at end
         
         // Remember the entry block and insertion point for default initializations
         BasicBlock entryBlock = currentBlock;
-        int insertionPoint = entryBlock.getInstructions().size();
+        TAC insertionPoint = entryBlock.getInstructions().last();
 
         node.mainStatementSequence().accept(this);
         
@@ -1097,11 +1179,13 @@ public class IRGenerator implements NodeVisitor {
         for (Symbol global : needsDefaultInitGlobals) {
             Variable var = new Variable(global);
             initializeVariableToDefault(var);
-            defaultInits.add(currentBlock.getInstructions().remove(currentBlock.getInstructions().size() - 1));
+            TAC init = currentBlock.getInstructions().last();
+            currentBlock.getInstructions().unlink(init);
+            defaultInits.add(init);
         }
         
         for (int i = defaultInits.size() - 1; i >= 0; i--) {
-            entryBlock.getInstructions().add(insertionPoint, defaultInits.get(i));
+            entryBlock.getInstructions().insertAfter(insertionPoint, defaultInits.get(i));
         }
         
         // Optimization: For MAIN, globals are fresh and 0-initialized by runtime.
@@ -1128,7 +1212,7 @@ public class IRGenerator implements NodeVisitor {
         entryBlock.getInstructions().addAll(0, globalInits);
 
         addInstruction(new End(nextInstructionId()));
-        cfgs.add(currentCFG);
+        finishCFG();
     }
 
     @Override
@@ -1136,11 +1220,69 @@ public class IRGenerator implements NodeVisitor {
         node.getStatements().forEach(stmt -> stmt.accept(this));
     }
 
+    // Jumping code: control leaves the current block for trueTarget or
+    // falseTarget without materializing the condition. An and/or branches out
+    // after its left operand whenever that decides it, so the right operand
+    // is only evaluated when needed.
+    private void branchOn(Expression cond, BasicBlock trueTarget, BasicBlock falseTarget) {
+        if (cond instanceof LogicalAnd) {
+            BasicBlock rightBlock = nextConditionBlock();
+            branchOn(((LogicalAnd) cond).getLeft(), rightBlock, falseTarget);
+            currentBlock = rightBlock;
+            branchOn(((LogicalAnd) cond).getRight(), trueTarget, falseTarget);
+        } else if (cond instanceof LogicalOr) {
+            BasicBlock rightBlock = nextConditionBlock();
+            branchOn(((LogicalOr) cond).getLeft(), trueTarget, rightBlock);
+            currentBlock = rightBlock;
+            branchOn(((LogicalOr) cond).getRight(), trueTarget, falseTarget);
+        } else if (cond instanceof LogicalNot) {
+            branchOn(((LogicalNot) cond).operand(), falseTarget, trueTarget);
+        } else {
+            cond.accept(this);
+            Value conditionValue = loadIfNeeded(valueStack.pop());
+            // beq leaves on FALSE; the explicit bra keeps TRUE independent of block order
+            addInstruction(new Beq(nextInstructionId(), conditionValue, falseTarget));
+            addInstruction(new Bra(nextInstructionId(), trueTarget));
+            freeTemp(conditionValue);
+            currentBlock.addSuccessor(trueTarget);
+            trueTarget.addPredecessor(currentBlock);
+            currentBlock.addSuccessor(falseTarget);
+            falseTarget.addPredecessor(currentBlock);
+        }
+    }
+
+    private int conditionBlocks(Expression cond) {
+        if (cond instanceof LogicalAnd) {
+            return 1 + conditionBlocks(((LogicalAnd) cond).getLeft()) + conditionBlocks(((LogicalAnd) cond).getRight());
+        }
+        if (cond instanceof LogicalOr) {
+            return 1 + conditionBlocks(((LogicalOr) cond).getLeft()) + conditionBlocks(((LogicalOr) cond).getRight());
+        }
+        if (cond instanceof LogicalNot) {
+            return conditionBlocks(((LogicalNot) cond).operand());
+        }
+        return 0;
+    }
+
+    // The blocks branchOn creates are numbered before the statement's targets,
+    // so they read in source order next to them. Nothing relies on numbers for
+    // edge direction: blocks nested in a body are numbered after the targets
+    // reserved before it, so an edge to a lower number need not be a back edge.
+    private int reserveConditionBlocks(Expression cond) {
+        int base = blockCounter;
+        blockCounter += conditionBlocks(cond);
+        return base;
+    }
+
+    private BasicBlock nextConditionBlock() {
+        BasicBlock block = new BasicBlock(++conditionBlockCounter);
+        currentCFG.addBlock(block);
+        return block;
+    }
+
     @Override
     public void visit(IfStatement node) {
-        node.condition().accept(this);
-        Value conditionValue = loadIfNeeded(valueStack.pop());
-
+        int conditionBase = reserveConditionBlocks(node.condition());
         BasicBlock thenBlock = new BasicBlock(++blockCounter);
         BasicBlock joinBlock = new BasicBlock(++blockCounter);
         BasicBlock elseBlock = node.elseBlock() != null ? new BasicBlock(++blockCounter) : null;
@@ -1150,21 +1292,9 @@ public class IRGenerator implements NodeVisitor {
         if (elseBlock != null)
             currentCFG.addBlock(elseBlock);
 
-        BasicBlock branchBlock = currentBlock;
-
-        // CRITICAL: beq branches when condition == 0 (FALSE)
-        // Fall-through happens when condition != 0 (TRUE)
         BasicBlock falseTarget = elseBlock != null ? elseBlock : joinBlock;
-
-        addInstruction(new Beq(nextInstructionId(), conditionValue, falseTarget));
-        // Explicit jump to THEN to handle block reordering
-        addInstruction(new Bra(nextInstructionId(), thenBlock));
-        freeTemp(conditionValue);
-
-        branchBlock.addSuccessor(thenBlock);
-        thenBlock.addPredecessor(branchBlock);
-        branchBlock.addSuccessor(falseTarget);
-        falseTarget.addPredecessor(branchBlock);
+        conditionBlockCounter = conditionBase;
+        branchOn(node.condition(), thenBlock, falseTarget);
 
         currentBlock = thenBlock;
         node.thenBlock().accept(this);
@@ -1186,6 +1316,7 @@ public class IRGenerator implements NodeVisitor {
     @Override
     public void visit(WhileStatement node) {
         BasicBlock loopHeader = new BasicBlock(++blockCounter);
+        int conditionBase = reserveConditionBlocks(node.condition());
         BasicBlock loopBody = new BasicBlock(++blockCounter);
         BasicBlock loopExit = new BasicBlock(++blockCounter);
 
@@ -1198,17 +1329,8 @@ public class IRGenerator implements NodeVisitor {
         loopHeader.addPredecessor(currentBlock);
 
         currentBlock = loopHeader;
-        node.condition().accept(this);
-        Value conditionValue = loadIfNeeded(valueStack.pop());
-
-        // Branch to exit if condition is FALSE (beq means "branch if zero")
-        addInstruction(new Beq(nextInstructionId(), conditionValue, loopExit));
-        addInstruction(new Bra(nextInstructionId(), loopBody));
-        freeTemp(conditionValue);
-        loopHeader.addSuccessor(loopExit);
-        loopHeader.addSuccessor(loopBody);
-        loopExit.addPredecessor(loopHeader);
-        loopBody.addPredecessor(loopHeader);
+        conditionBlockCounter = conditionBase;
+        branchOn(node.condition(), loopBody, loopExit);
 
         currentBlock = loopBody;
         node.body().accept(this);
@@ -1222,6 +1344,7 @@ public class IRGenerator implements NodeVisitor {
     @Override
     public void visit(RepeatStatement node) {
         BasicBlock bodyBlock = new BasicBlock(++blockCounter);
+        int conditionBase = reserveConditionBlocks(node.condition());
         BasicBlock exitBlock = new BasicBlock(++blockCounter);
 
         currentCFG.addBlock(bodyBlock);
@@ -1232,20 +1355,10 @@ public class IRGenerator implements NodeVisitor {
 
         currentBlock = bodyBlock;
         node.body().accept(this);
-        node.condition().accept(this);
-        Value conditionValue = loadIfNeeded(valueStack.pop());
-
-        // The issue is the Beq should be: if TRUE, go to exit; if FALSE, go to body
-        // So: Bne conditionValue exitBlock (if TRUE, exit)
-        addInstruction(new Bne(nextInstructionId(), conditionValue, exitBlock));
-        addInstruction(new Bra(nextInstructionId(), bodyBlock));
-        freeTemp(conditionValue);
-        // CRITICAL FIX: Add edges from currentBlock (where the branch actually is), not bodyBlock
-        // This is important for nested loops where currentBlock != bodyBlock after processing body
-        currentBlock.addSuccessor(bodyBlock);
-        bodyBlock.addPredecessor(currentBlock);
-        currentBlock.addSuccessor(exitBlock);
-        exitBlock.addPredecessor(currentBlock);
+        // Edges leave from currentBlock, which is no longer bodyBlock if the body
+        // or the condition added blocks
+        conditionBlockCounter = conditionBase;
+        branchOn(node.condition(), exitBlock, bodyBlock);
 
         currentBlock = exitBlock;
     }
@@ -1288,14 +1401,14 @@ public class IRGenerator implements NodeVisitor {
         // Skip FP, RA, and return value slot at FP+8
         paramOffset = 12;
         initializedLocals = new HashSet<>();
-        needsDefaultInitLocals = new HashSet<>();
+        needsDefaultInitLocals = new LinkedHashSet<>();
         
         // Reset global tracking for this function's CFG (each CFG tracks independently)
         initializedGlobals = new HashSet<>();
-        needsDefaultInitGlobals = new HashSet<>();
+        needsDefaultInitGlobals = new LinkedHashSet<>();
         usedGlobalsInFunction = new HashSet<>();  // Track which globals are used in this function
         
-        freeTemps = new Stack<>();
+        freeTemps = new ArrayDeque<>();
 
         symbolTable.enterScope();
 
@@ -1338,7 +1451,7 @@ public class IRGenerator implements NodeVisitor {
         
         // Remember the entry block and insertion point for default initializations
         BasicBlock entryBlock = currentBlock;
-        int insertionPoint = entryBlock.getInstructions().size();
+        TAC insertionPoint = entryBlock.getInstructions().last();
 
         if (node.body() != null) {
             node.body().accept(this);
@@ -1349,15 +1462,17 @@ public class IRGenerator implements NodeVisitor {
         for (Symbol local : needsDefaultInitLocals) {
             Variable var = new Variable(local);
             initializeVariableToDefault(var);
-            defaultInits.add(currentBlock.getInstructions().remove(currentBlock.getInstructions().size() - 1));
+            TAC init = currentBlock.getInstructions().last();
+            currentBlock.getInstructions().unlink(init);
+            defaultInits.add(init);
         }
         
         for (int i = defaultInits.size() - 1; i >= 0; i--) {
-            entryBlock.getInstructions().add(insertionPoint, defaultInits.get(i));
+            entryBlock.getInstructions().insertAfter(insertionPoint, defaultInits.get(i));
         }
 
         // Optimization: Insert Loads for used globals
-        insertEntryLoads(entryBlock, 0);
+        insertEntryLoads(entryBlock);
 
         // Ensure globals are stored before implicit return/end
         // Ensure globals are stored before implicit return/end
@@ -1366,7 +1481,7 @@ public class IRGenerator implements NodeVisitor {
         
         // CRITICAL FIX: Set frame size so CodeGenerator allocates stack references
         currentCFG.setFrameSize(Math.abs(fpOffset));
-        cfgs.add(currentCFG);
+        finishCFG();
 
         symbolTable.exitScope();
     }
@@ -0,0 +1,149 @@
+package ir.cfg;
+
+import java.util.*;
+import java.util.function.Function;
+import ir.ssa.DominatorAnalysis;
+import ir.tac.DefUseChains;
+
+/**
+ * Lazily computed, cached analyses of one CFG. Each analysis says what it
+ * depends on; the CFG bumps an epoch whenever blocks or edges change, and a
+ * cached result computed in an older epoch is recomputed on the next get().
+ * Changes to instructions are not tracked here: passes that rewrite
+ * instructions declare what they preserve (BaseOptimization.preservedAnalyses)
+ * and the Optimizer drops the rest after they run.
+ */
+public final class AnalysisManager {
+
+    public enum Dependency {
+        BLOCKS, // the set of blocks
+        EDGES   // blocks and the edges between them
+    }
+
+    public static final class Analysis<T> {
+        private final String name;
+        private final Dependency dependency;
+        private final Function<CFG, T> compute;
+
+        private Analysis(String name, Dependency dependency, Function<CFG, T> compute) {
+            this.name = name;
+            this.dependency = dependency;
+            this.compute = compute;
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+
+    public static final Analysis<List<BasicBlock>> REVERSE_POSTORDER =
+            new Analysis<>("reverse postorder", Dependency.EDGES, AnalysisManager::reversePostorder);
+
+    public static final Analysis<DominatorAnalysis> DOMINATORS =
+            new Analysis<>("dominators", Dependency.EDGES, cfg -> {
+                DominatorAnalysis analysis = new DominatorAnalysis(cfg);
+                analysis.analyze();
+                return analysis;
+            });
+
+    // Kept current by the passes that edit through it; a removed block's
+    // instructions would linger in it, so it depends on the block set
+    public static final Analysis<DefUseChains> DEF_USE =
+            new Analysis<>("def-use chains", Dependency.BLOCKS, DefUseChains::of);
+
+    public static final Set<Analysis<?>> ALL =
+            Collections.unmodifiableSet(new LinkedHashSet<>(Arrays.asList(REVERSE_POSTORDER, DOMINATORS, DEF_USE)));
+
+    private static final class Entry {
+        final Object value;
+        final int epoch;
+
+        Entry(Object value, int epoch) {
+            this.value = value;
+            this.epoch = epoch;
+        }
+    }
+
+    private final CFG cfg;
+    private final Map<Analysis<?>, Entry> cache = new IdentityHashMap<>();
+    private int blockEpoch;
+    private int edgeEpoch;
+
+    AnalysisManager(CFG cfg) {
+        this.cfg = cfg;
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T> T get(Analysis<T> analysis) {
+        Entry entry = cache.get(analysis);
+        if (entry == null || entry.epoch != epoch(analysis)) {
+            entry = new Entry(analysis.compute.apply(cfg), epoch(analysis));
+            cache.put(analysis, entry);
+        }
+        return (T) entry.value;
+    }
+
+    /** Installs a result computed elsewhere as valid for the current CFG. */
+    public <T> void put(Analysis<T> analysis, T value) {
+        cache.put(analysis, new Entry(value, epoch(analysis)));
+    }
+
+    public boolean isCached(Analysis<?> analysis) {
+        Entry entry = cache.get(analysis);
+        return entry != null && entry.epoch == epoch(analysis);
+    }
+
+    public void invalidate(Analysis<?> analysis) {
+        cache.remove(analysis);
+    }
+
+    public void invalidateAllExcept(Set<Analysis<?>> preserved) {
+        cache.keySet().retainAll(preserved);
+    }
+
+    void blocksChanged() {
+        blockEpoch++;
+        edgeEpoch++;
+    }
+
+    void edgesChanged() {
+        edgeEpoch++;
+    }
+
+    private int epoch(Analysis<?> analysis) {
+        return analysis.dependency == Dependency.BLOCKS ? blockEpoch : edgeEpoch;
+    }
+
+    // Blocks reachable from entry, every block before its successors except
+    // along back edges
+    private static List<BasicBlock> reversePostorder(CFG cfg) {
+        List<BasicBlock> post = new ArrayList<>();
+        BasicBlock entry = cfg.getEntryBlock();
+        if (entry == null) {
+            return post;
+        }
+        BitSet visited = new BitSet(cfg.getAllBlocks().size());
+        Deque<BasicBlock> stack = new ArrayDeque<>();
+        Deque<Iterator<BasicBlock>> iters = new ArrayDeque<>();
+        visited.set(entry.getIndex());
+        stack.push(entry);
+        iters.push(entry.getSuccessors().iterator());
+        while (!stack.isEmpty()) {
+            Iterator<BasicBlock> it = iters.peek();
+            if (it.hasNext()) {
+                BasicBlock succ = it.next();
+                if (!visited.get(succ.getIndex())) {
+                    visited.set(succ.getIndex());
+                    stack.push(succ);
+                    iters.push(succ.getSuccessors().iterator());
+                }
+            } else {
+                post.add(stack.pop());
+                iters.pop();
+            }
+        }
+        Collections.reverse(post);
+        return Collections.unmodifiableList(post);
+    }
+}
@@ -3,29 +3,49 @@ package ir.cfg;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
+import ir.tac.InstructionList;
 import ir.tac.TAC;
 import ir.tac.Phi;
 
 public class BasicBlock extends Block implements Iterable<TAC> {
     private int num;
-    private List<TAC> instructions;
+    // Dense position in the owning CFG's block list, assigned by CFG.addBlock
+    CFG cfg;
+    int index = -1;
+    private final InstructionList instructions;
     private List<Phi> phiFunctions;
     private List<BasicBlock> predecessors;
     private List<BasicBlock> successors;
     
     public BasicBlock(int num) {
         this.num = num;
-        this.instructions = new ArrayList<>();
+        this.instructions = new InstructionList();
         this.phiFunctions = new ArrayList<>();
-        this.predecessors = new ArrayList<>();
-        this.successors = new ArrayList<>();
+        this.predecessors = new EdgeList();
+        this.successors = new EdgeList();
     }
     
     public int getNum() {
         return num;
     }
+
+    public void setNum(int num) {
+        this.num = num;
+    }
+
+    /**
+     * Index of this block in its CFG's getAllBlocks(), 0 to size-1, for
+     * analyses that keep per-block data in arrays and BitSets. Removing blocks
+     * renumbers the rest, so indices are only stable between structural edits.
+     */
+    public int getIndex() {
+        if (cfg != null) {
+            cfg.compactBlocks();
+        }
+        return index;
+    }
     
-    public List<TAC> getInstructions() {
+    public InstructionList getInstructions() {
         return instructions;
     }
 
@@ -38,23 +58,26 @@ public class BasicBlock extends Block implements Iterable<TAC> {
     }
 
     public void setInstructions(List<TAC> instructions){
-        this.instructions = instructions;
+        if (instructions == this.instructions) {
+            return;
+        }
+        // The new list may share instructions with the current one
+        List<TAC> copy = new ArrayList<>(instructions);
+        this.instructions.clear();
+        this.instructions.addAll(copy);
     }
     
     public void addInstruction(TAC instruction) {
         instructions.add(instruction);
     }
     
+    // Edge lists ignore blocks that are already present
     public void addPredecessor(BasicBlock pred) {
-        if (!predecessors.contains(pred)) {
-            predecessors.add(pred);
-        }
+        predecessors.add(pred);
     }
     
     public void addSuccessor(BasicBlock succ) {
-        if (!successors.contains(succ)) {
-            successors.add(succ);
-        }
+        successors.add(succ);
     }
     
     @Override
@@ -74,6 +97,12 @@ public class BasicBlock extends Block implements Iterable<TAC> {
     public void addPhi(Phi phi) {
         phiFunctions.add(phi);
     }
+
+    // Drops instructions and phis that optimizations marked eliminated
+    public boolean sweepEliminated() {
+        boolean removed = phiFunctions.removeIf(Phi::isEliminated);
+        return instructions.sweepEliminated() | removed;
+    }
     
     @Override
     public void accept(CFGVisitor visitor) {
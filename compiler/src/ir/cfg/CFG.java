@@ -1,23 +1,29 @@
 package ir.cfg;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import ir.ssa.DominatorAnalysis;
+import ir.tac.DefUseChains;
 import ir.tac.Variable;
 import mocha.Symbol;
 
 public class CFG {
     private Symbol functionSymbol;
     private BasicBlock entryBlock;
-    private List<BasicBlock> blocks;
-    private DominatorAnalysis domAnalysis;
+    private final List<BasicBlock> blocks;
+    private final List<BasicBlock> blocksView;
+    private int removedBlocks;
+    private final AnalysisManager analyses;
     private List<Variable> parameters; // Function parameters
     private int frameSize = 0; // Total bytes for locals + temps
 
     public CFG(Symbol functionSymbol) {
         this.functionSymbol = functionSymbol;
         this.blocks = new ArrayList<>();
+        this.blocksView = Collections.unmodifiableList(blocks);
         this.parameters = new ArrayList<>();
+        this.analyses = new AnalysisManager(this);
     }
 
     public int getFrameSize() {
@@ -42,16 +48,23 @@ public class CFG {
 
     public void setEntryBlock(BasicBlock entryBlock) {
         this.entryBlock = entryBlock;
+        analyses.edgesChanged();
     }
 
     public List<BasicBlock> getAllBlocks() {
-        return blocks;
+        compactBlocks();
+        return blocksView;
     }
 
     public void addBlock(BasicBlock block) {
-        if (!blocks.contains(block)) {
-            blocks.add(block);
+        if (block.cfg == this) {
+            return;
         }
+        compactBlocks();
+        block.cfg = this;
+        block.index = blocks.size();
+        blocks.add(block);
+        analyses.blocksChanged();
     }
 
     public List<Variable> getParameters() {
@@ -66,8 +79,16 @@ public class CFG {
         this.parameters.add(param);
     }
 
+    // Leaves a hole that the next getAllBlocks() closes, so removing many
+    // blocks in a row costs one pass over the list instead of one each
     public void removeBlock(BasicBlock block) {
-        blocks.remove(block);
+        if (block.cfg != this) {
+            return;
+        }
+        blocks.set(block.index, null);
+        block.cfg = null;
+        block.index = -1;
+        removedBlocks++;
         // Also remove this block from successor/predecessor lists of other blocks
         for (BasicBlock successor : block.getSuccessors()) {
             successor.getPredecessors().remove(block);
@@ -76,26 +97,71 @@ public class CFG {
             predecessor.getSuccessors().remove(block);
         }
 
-        // Any modification to the CFG structure invalidates the dominator analysis
-        this.domAnalysis = null;
+        analyses.blocksChanged();
     }
 
-    public void setDominatorAnalysis(DominatorAnalysis domAnalysis) {
-        this.domAnalysis = domAnalysis;
+    void compactBlocks() {
+        if (removedBlocks == 0) {
+            return;
+        }
+        int n = 0;
+        for (BasicBlock block : blocks) {
+            if (block != null) {
+                block.index = n;
+                blocks.set(n++, block);
+            }
+        }
+        blocks.subList(n, blocks.size()).clear();
+        removedBlocks = 0;
     }
 
-    public DominatorAnalysis getDominatorAnalysis() {
-        if (this.domAnalysis == null) {
-            DominatorAnalysis analysis = new DominatorAnalysis(this);
-            analysis.analyze();
-            this.domAnalysis = analysis;
+    public void removeEdge(BasicBlock from, BasicBlock to) {
+        from.getSuccessors().remove(to);
+        to.getPredecessors().remove(from);
+        analyses.edgesChanged();
+    }
+
+    // Code that rewires blocks through their successor/predecessor lists
+    // directly must report it here
+    public void edgesChanged() {
+        analyses.edgesChanged();
+    }
+
+    // Physically drops everything optimizations marked eliminated; instructions
+    // only, so the block structure and dominator analysis stay valid
+    public boolean sweepEliminated() {
+        boolean removed = false;
+        for (BasicBlock block : getAllBlocks()) {
+            removed |= block.sweepEliminated();
         }
-        return domAnalysis;
+        return removed;
+    }
+
+    public AnalysisManager getAnalyses() {
+        return analyses;
+    }
+
+    public DominatorAnalysis getDominatorAnalysis() {
+        return analyses.get(AnalysisManager.DOMINATORS);
+    }
+
+    public List<BasicBlock> getReversePostorder() {
+        return analyses.get(AnalysisManager.REVERSE_POSTORDER);
+    }
+
+    // Maintained by the optimizations that edit through it; anything else that
+    // rewrites the IR must invalidate it
+    public DefUseChains getDefUseChains() {
+        return analyses.get(AnalysisManager.DEF_USE);
+    }
+
+    public void invalidateDefUseChains() {
+        analyses.invalidate(AnalysisManager.DEF_USE);
     }
 
     public String asDotGraph() {
         CFGPrinter printer = new CFGPrinter();
-        // Get dominator analysis (recomputes if null/stale after CFG changes)
+        // Cached dominators, recomputed if blocks or edges changed since
         printer.printCFG(this, getDominatorAnalysis());
         return printer.getResult();
     }
@@ -80,14 +80,9 @@ public class CFGPrinter implements CFGVisitor {
         List<BasicBlock> successors = block.getSuccessors();
         if (successors.isEmpty()) return;
         
-        List<TAC> instructions = block.getInstructions();
-        TAC lastInst = null;
-        
-        for (int i = instructions.size() - 1; i >= 0; i--) {
-            if (!instructions.get(i).isEliminated()) {
-                lastInst = instructions.get(i);
-                break;
-            }
+        TAC lastInst = block.getInstructions().last();
+        while (lastInst != null && lastInst.isEliminated()) {
+            lastInst = lastInst.getPrev();
         }
         
         BasicBlock branchTarget = null;
@@ -0,0 +1,102 @@
+package ir.cfg;
+
+import java.util.*;
+
+/**
+ * Predecessor or successor list of a block. Keeps insertion order like the
+ * ArrayList it replaces, but holds each block at most once (add of a present
+ * block is a no-op returning false) and answers contains/indexOf through an
+ * identity set once it outgrows a linear scan, so a join with thousands of
+ * predecessors is built in linear time.
+ */
+final class EdgeList extends AbstractList<BasicBlock> implements RandomAccess {
+    private static final int HASH_THRESHOLD = 8;
+
+    private final ArrayList<BasicBlock> blocks = new ArrayList<>(2);
+    private Set<BasicBlock> members;
+
+    @Override
+    public BasicBlock get(int i) {
+        return blocks.get(i);
+    }
+
+    @Override
+    public int size() {
+        return blocks.size();
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return members != null ? members.contains(o) : blocks.contains(o);
+    }
+
+    @Override
+    public int indexOf(Object o) {
+        return members != null && !members.contains(o) ? -1 : blocks.indexOf(o);
+    }
+
+    @Override
+    public boolean add(BasicBlock block) {
+        if (contains(block)) {
+            return false;
+        }
+        add(blocks.size(), block);
+        return true;
+    }
+
+    @Override
+    public void add(int i, BasicBlock block) {
+        if (contains(block)) {
+            throw new IllegalArgumentException("Duplicate edge to BB" + block.getNum());
+        }
+        blocks.add(i, block);
+        if (members != null) {
+            members.add(block);
+        } else if (blocks.size() > HASH_THRESHOLD) {
+            members = Collections.newSetFromMap(new IdentityHashMap<>());
+            members.addAll(blocks);
+        }
+        modCount++;
+    }
+
+    @Override
+    public BasicBlock set(int i, BasicBlock block) {
+        BasicBlock old = blocks.get(i);
+        if (old != block && contains(block)) {
+            throw new IllegalArgumentException("Duplicate edge to BB" + block.getNum());
+        }
+        blocks.set(i, block);
+        if (members != null) {
+            members.remove(old);
+            members.add(block);
+        }
+        return old;
+    }
+
+    @Override
+    public BasicBlock remove(int i) {
+        BasicBlock old = blocks.remove(i);
+        if (members != null) {
+            members.remove(old);
+        }
+        modCount++;
+        return old;
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        int i = indexOf(o);
+        if (i < 0) {
+            return false;
+        }
+        remove(i);
+        return true;
+    }
+
+    @Override
+    public void clear() {
+        blocks.clear();
+        members = null;
+        modCount++;
+    }
+}
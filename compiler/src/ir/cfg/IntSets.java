@@ -0,0 +1,74 @@
+package ir.cfg;
+
+import java.util.Arrays;
+
+/**
+ * Sets of small ints kept as sorted arrays, for per-block dataflow facts.
+ * A dense bit vector per block costs blocks x universe bits however little
+ * is live; these cost only what they hold. The operations hand back their
+ * first argument when nothing changes, so a fixpoint that has settled
+ * allocates nothing, and callers may treat the arrays as immutable.
+ */
+public final class IntSets {
+    public static final int[] EMPTY = new int[0];
+
+    private IntSets() {
+    }
+
+    public static boolean contains(int[] set, int value) {
+        return Arrays.binarySearch(set, value) >= 0;
+    }
+
+    // Sorted-set union; returns a itself when b adds nothing
+    public static int[] union(int[] a, int[] b) {
+        int extra = 0;
+        for (int i = 0, j = 0; j < b.length; ) {
+            if (i < a.length && a[i] < b[j]) {
+                i++;
+            } else {
+                if (i == a.length || a[i] != b[j]) {
+                    extra++;
+                } else {
+                    i++;
+                }
+                j++;
+            }
+        }
+        if (extra == 0) {
+            return a;
+        }
+        int[] result = new int[a.length + extra];
+        int i = 0, j = 0, k = 0;
+        while (i < a.length || j < b.length) {
+            if (j == b.length || (i < a.length && a[i] < b[j])) {
+                result[k++] = a[i++];
+            } else if (i == a.length || b[j] < a[i]) {
+                result[k++] = b[j++];
+            } else {
+                result[k++] = a[i++];
+                j++;
+            }
+        }
+        return result;
+    }
+
+    // Sorted-set difference; returns a itself when b removes nothing
+    public static int[] minus(int[] a, int[] b) {
+        int[] result = null;
+        int k = 0;
+        for (int i = 0, j = 0; i < a.length; i++) {
+            while (j < b.length && b[j] < a[i]) {
+                j++;
+            }
+            if (j < b.length && b[j] == a[i]) {
+                if (result == null) {
+                    result = Arrays.copyOf(a, a.length);
+                    k = i;
+                }
+            } else if (result != null) {
+                result[k++] = a[i];
+            }
+        }
+        return result == null ? a : Arrays.copyOf(result, k);
+    }
+}
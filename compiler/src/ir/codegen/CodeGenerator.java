@@ -188,22 +188,15 @@ public class CodeGenerator {
                         liveRegs.add(reg);
                 }
 
-                for (Value op : tac.getOperands()) {
+                // Store and StoreGP sources are operands too
+                for (int i = 0; i < tac.operandCount(); i++) {
+                    Value op = tac.getOperand(i);
                     if (op instanceof Variable) {
                         int reg = getRegisterNumber((Variable) op);
                         if (reg > 0 && reg < 26)
                             liveRegs.add(reg);
                     }
                 }
-
-                if (tac instanceof StoreGP) {
-                    Value src = ((StoreGP) tac).getSrc();
-                    if (src instanceof Variable) {
-                        int reg = getRegisterNumber((Variable) src);
-                        if (reg > 0 && reg < 26)
-                            liveRegs.add(reg);
-                    }
-                }
             }
         }
 
@@ -277,18 +270,17 @@ public class CodeGenerator {
      * For conditional branches, this is the block we go to when the branch is NOT taken.
      */
     private BasicBlock getFallthroughSuccessor(BasicBlock bb) {
-        List<TAC> insts = bb.getInstructions();
+        InstructionList insts = bb.getInstructions();
         if (insts.isEmpty()) return null;
         
         TAC branchInst = null;
-        for (int i = insts.size() - 1; i >= 0; i--) {
-            TAC inst = insts.get(i);
-            if (inst instanceof Beq || inst instanceof Bne || inst instanceof Blt ||
-                inst instanceof Ble || inst instanceof Bgt || inst instanceof Bge) {
+        for (TAC inst = insts.last(); inst != null; inst = inst.getPrev()) {
+            Opcode op = inst.opcode();
+            if (op == Opcode.BRA || op == Opcode.RETURN) {
+                return null;
+            } else if (op.isBranch()) {
                 branchInst = inst;
                 break;
-            } else if (inst instanceof Bra || inst instanceof Return) {
-                return null;
             }
         }
         
@@ -301,7 +293,7 @@ public class CodeGenerator {
             return bb.getSuccessors().isEmpty() ? null : bb.getSuccessors().get(0);
         }
         
-        BasicBlock branchTarget = getBranchTargetFromInst(branchInst);
+        BasicBlock branchTarget = branchInst.getTarget();
         for (BasicBlock succ : bb.getSuccessors()) {
             if (succ != branchTarget) {
                 return succ;
@@ -310,378 +302,423 @@ public class CodeGenerator {
         return null;
     }
     private BasicBlock getBranchTarget(BasicBlock bb) {
-        List<TAC> insts = bb.getInstructions();
-        for (int i = insts.size() - 1; i >= 0; i--) {
-            TAC inst = insts.get(i);
-            BasicBlock target = getBranchTargetFromInst(inst);
-            if (target != null) return target;
+        for (TAC inst = bb.getInstructions().last(); inst != null; inst = inst.getPrev()) {
+            if (inst.opcode().isBranch()) return inst.getTarget();
         }
         return null;
     }
     
-    private BasicBlock getBranchTargetFromInst(TAC inst) {
-        if (inst instanceof Beq) return ((Beq) inst).getTarget();
-        if (inst instanceof Bne) return ((Bne) inst).getTarget();
-        if (inst instanceof Blt) return ((Blt) inst).getTarget();
-        if (inst instanceof Ble) return ((Ble) inst).getTarget();
-        if (inst instanceof Bgt) return ((Bgt) inst).getTarget();
-        if (inst instanceof Bge) return ((Bge) inst).getTarget();
-        if (inst instanceof Bra) return ((Bra) inst).getTarget();
-        return null;
-    }
-
     private void generateInstruction(TAC tac) {
         if (tac.isEliminated()) {
             return;
         }
-        if (tac instanceof Add) {
-            generateBinaryOp((Add) tac, ADD, ADDI);
-        } else if (tac instanceof Sub) {
-            generateBinaryOp((Sub) tac, SUB, SUBI);
-        } else if (tac instanceof Mul) {
-            generateBinaryOp((Mul) tac, MUL, MULI);
-        } else if (tac instanceof Div) {
-            generateBinaryOp((Div) tac, DIV, DIVI);
-        } else if (tac instanceof Mod) {
-            generateBinaryOp((Mod) tac, MOD, MODI);
-        } else if (tac instanceof Pow) {
-            generateBinaryOp((Pow) tac, POW, POWI);
-        }
-        else if (tac instanceof And) {
-            generateBinaryOp((And) tac, AND, ANDI);
-        } else if (tac instanceof Or) {
-            generateBinaryOp((Or) tac, OR, ORI);
-        }
-        else if (tac instanceof Not) {
-            Not not = (Not) tac;
-            int dest = getReg((Variable) not.getDest());
-            int src = getReg((Variable) not.getOperands().get(0));
-            emit(XORI, dest, src, 1);
-        }
-        else if (tac instanceof Mov) {
-            generateMov((Mov) tac);
-        } else if (tac instanceof Load) {
-            Load load = (Load) tac;
-            int dest = getReg((Variable) load.getDest());
-            Value addrVal = load.getOperands().get(0);
-            int addr = (addrVal instanceof Variable) ? getReg((Variable) addrVal) : R0;
-
-            if (!(addrVal instanceof Variable)) {
-                addr = 25;
-                int val = getImmediateValue(addrVal);
-                emit(ADDI, addr, R0, val);
+        switch (tac.opcode()) {
+            case ADD:
+                generateBinaryOp((Add) tac, ADD, ADDI);
+                break;
+            case SUB:
+                generateBinaryOp((Sub) tac, SUB, SUBI);
+                break;
+            case MUL:
+                generateBinaryOp((Mul) tac, MUL, MULI);
+                break;
+            case DIV:
+                generateBinaryOp((Div) tac, DIV, DIVI);
+                break;
+            case MOD:
+                generateBinaryOp((Mod) tac, MOD, MODI);
+                break;
+            case POW:
+                generateBinaryOp((Pow) tac, POW, POWI);
+                break;
+            case AND:
+                generateBinaryOp((And) tac, AND, ANDI);
+                break;
+            case OR:
+                generateBinaryOp((Or) tac, OR, ORI);
+                break;
+            case NOT: {
+                Not not = (Not) tac;
+                int dest = getReg((Variable) not.getDest());
+                int src = getReg((Variable) not.getOperand(0));
+                emit(XORI, dest, src, 1);
+                break;
             }
+            case MOV:
+                generateMov((Mov) tac);
+                break;
+            case LOAD: {
+                Load load = (Load) tac;
+                int dest = getReg((Variable) load.getDest());
+                Value addrVal = load.getOperand(0);
+                int addr = (addrVal instanceof Variable) ? getReg((Variable) addrVal) : R0;
+
+                if (!(addrVal instanceof Variable)) {
+                    addr = 25;
+                    int val = getImmediateValue(addrVal);
+                    emit(ADDI, addr, R0, val);
+                }
 
-            emit(LDW, dest, addr, 0);
-        } else if (tac instanceof Store) {
-            Store store = (Store) tac;
-            Value srcVal = store.getOperands().get(0);
-            Value addrVal = store.getOperands().get(1);
-
-            int src;
-            int addr;
-
-            if (addrVal instanceof Variable) {
-                addr = getReg((Variable) addrVal);
-            } else {
-                addr = 27;
-                emit(ADDI, addr, R0, getImmediateValue(addrVal));
+                emit(LDW, dest, addr, 0);
+                break;
             }
+            case STORE: {
+                Store store = (Store) tac;
+                Value srcVal = store.getOperand(0);
+                Value addrVal = store.getOperand(1);
 
-            if (srcVal instanceof Variable) {
-                src = getReg((Variable) srcVal);
-            } else {
-                src = 25;
-                if (isFloatValue(srcVal)) {
-                    emit(fADDI, src, R0, getFloatImmediateValue(srcVal));
+                int src;
+                int addr;
+
+                if (addrVal instanceof Variable) {
+                    addr = getReg((Variable) addrVal);
                 } else {
-                    emit(ADDI, src, R0, getImmediateValue(srcVal));
+                    addr = 27;
+                    emit(ADDI, addr, R0, getImmediateValue(addrVal));
                 }
-            }
 
-            emit(STW, src, addr, 0);
-        } else if (tac instanceof LoadGP) {
-            LoadGP loadGP = (LoadGP) tac;
-            int dest = getReg(loadGP.getDest());
-            int offset = loadGP.getGpOffset();
-            emit(LDW, dest, GP, offset);
-        } else if (tac instanceof StoreGP) {
-            StoreGP storeGP = (StoreGP) tac;
-            Value srcVal = storeGP.getSrc();
-            int src;
-
-            if (srcVal instanceof Variable) {
-                src = getReg((Variable) srcVal);
-            } else {
-                src = 25;
-                if (isFloatValue(srcVal)) {
-                    emit(fADDI, src, R0, getFloatImmediateValue(srcVal));
+                if (srcVal instanceof Variable) {
+                    src = getReg((Variable) srcVal);
                 } else {
-                    emit(ADDI, src, R0, getImmediateValue(srcVal));
+                    src = 25;
+                    if (isFloatValue(srcVal)) {
+                        emit(fADDI, src, R0, getFloatImmediateValue(srcVal));
+                    } else {
+                        emit(ADDI, src, R0, getImmediateValue(srcVal));
+                    }
                 }
+
+                emit(STW, src, addr, 0);
+                break;
             }
+            case LOAD_GP: {
+                LoadGP loadGP = (LoadGP) tac;
+                int dest = getReg(loadGP.getDest());
+                int offset = loadGP.getGpOffset();
+                emit(LDW, dest, GP, offset);
+                break;
+            }
+            case STORE_GP: {
+                StoreGP storeGP = (StoreGP) tac;
+                Value srcVal = storeGP.getSrc();
+                int src;
 
-            int offset = storeGP.getGpOffset();
-            emit(STW, src, GP, offset);
-        } else if (tac instanceof LoadFP) {
-            LoadFP loadFP = (LoadFP) tac;
-            int dest = getReg((Variable) loadFP.getDest());
-            int offset = loadFP.getFpOffset();
-            emit(LDW, dest, FP, offset);
-        }
-        else if (tac instanceof Adda) {
-            Adda adda = (Adda) tac;
-            int dest = getReg((Variable) adda.getDest());
-            Value base = adda.getOperands().get(0);
-            Value offset = adda.getOperands().get(1);
-
-            if (isImmediate(offset)) {
-                int baseReg;
-                if (base instanceof Variable) {
-                    baseReg = getReg((Variable) base);
+                if (srcVal instanceof Variable) {
+                    src = getReg((Variable) srcVal);
                 } else {
-                    baseReg = 25; // Use R25
-                    int val = getImmediateValue(base);
-                    emit(ADDI, baseReg, R0, val);
+                    src = 25;
+                    if (isFloatValue(srcVal)) {
+                        emit(fADDI, src, R0, getFloatImmediateValue(srcVal));
+                    } else {
+                        emit(ADDI, src, R0, getImmediateValue(srcVal));
+                    }
                 }
-                emit(ADDI, dest, baseReg, getImmediateValue(offset));
-            } else {
-                int baseReg, offsetReg;
 
-                if (base instanceof Variable) {
-                    baseReg = getReg((Variable) base);
+                int offset = storeGP.getGpOffset();
+                emit(STW, src, GP, offset);
+                break;
+            }
+            case LOAD_FP: {
+                LoadFP loadFP = (LoadFP) tac;
+                int dest = getReg((Variable) loadFP.getDest());
+                int offset = loadFP.getFpOffset();
+                emit(LDW, dest, FP, offset);
+                break;
+            }
+            case ADDA: {
+                Adda adda = (Adda) tac;
+                int dest = getReg((Variable) adda.getDest());
+                Value base = adda.getOperand(0);
+                Value offset = adda.getOperand(1);
+
+                if (isImmediate(offset)) {
+                    int baseReg;
+                    if (base instanceof Variable) {
+                        baseReg = getReg((Variable) base);
+                    } else {
+                        baseReg = 25; // Use R25
+                        int val = getImmediateValue(base);
+                        emit(ADDI, baseReg, R0, val);
+                    }
+                    emit(ADDI, dest, baseReg, getImmediateValue(offset));
                 } else {
-                    baseReg = 25;
-                    int val = getImmediateValue(base);
-                    emit(ADDI, baseReg, R0, val);
-                }
+                    int baseReg, offsetReg;
+
+                    if (base instanceof Variable) {
+                        baseReg = getReg((Variable) base);
+                    } else {
+                        baseReg = 25;
+                        int val = getImmediateValue(base);
+                        emit(ADDI, baseReg, R0, val);
+                    }
 
-                if (offset instanceof Variable) {
-                    offsetReg = getReg((Variable) offset);
-                } else {
-                    offsetReg = 25;
-                    int val = getImmediateValue(offset);
-                    emit(ADDI, offsetReg, R0, val);
-                }
+                    if (offset instanceof Variable) {
+                        offsetReg = getReg((Variable) offset);
+                    } else {
+                        offsetReg = 25;
+                        int val = getImmediateValue(offset);
+                        emit(ADDI, offsetReg, R0, val);
+                    }
 
-                emit(ADD, dest, baseReg, offsetReg);
+                    emit(ADD, dest, baseReg, offsetReg);
+                }
+                break;
             }
-        } else if (tac instanceof AddaGP) {
-            AddaGP addaGP = (AddaGP) tac;
-            int dest = getReg(addaGP.getDest());
-            int gpOffset = addaGP.getGpOffset();
-            Value indexOffset = addaGP.getIndex();
-
-            emit(ADDI, dest, GP, gpOffset);
-
-            if (!isZero(indexOffset)) {
-                int indexReg;
-                if (indexOffset instanceof Variable) {
-                    indexReg = getReg((Variable) indexOffset);
-                } else {
-                    indexReg = 25;
-                    int val = getImmediateValue(indexOffset);
-                    emit(ADDI, indexReg, R0, val);
+            case ADDA_GP: {
+                AddaGP addaGP = (AddaGP) tac;
+                int dest = getReg(addaGP.getDest());
+                int gpOffset = addaGP.getGpOffset();
+                Value indexOffset = addaGP.getIndex();
+
+                emit(ADDI, dest, GP, gpOffset);
+
+                if (!isZero(indexOffset)) {
+                    int indexReg;
+                    if (indexOffset instanceof Variable) {
+                        indexReg = getReg((Variable) indexOffset);
+                    } else {
+                        indexReg = 25;
+                        int val = getImmediateValue(indexOffset);
+                        emit(ADDI, indexReg, R0, val);
+                    }
+                    emit(ADD, dest, dest, indexReg);
                 }
-                emit(ADD, dest, dest, indexReg);
+                break;
             }
-        } else if (tac instanceof AddaFP) {
-            AddaFP addaFP = (AddaFP) tac;
-            int dest = getReg(addaFP.getDest());
-            int fpOffset = addaFP.getFpOffset();
-            Value indexOffset = addaFP.getIndex();
-
-            emit(ADDI, dest, FP, fpOffset);
-
-            if (!isZero(indexOffset)) {
-                int indexReg;
-                if (indexOffset instanceof Variable) {
-                    indexReg = getReg((Variable) indexOffset);
-                } else {
-                    indexReg = 25;
-                    int val = getImmediateValue(indexOffset);
-                    emit(ADDI, indexReg, R0, val);
+            case ADDA_FP: {
+                AddaFP addaFP = (AddaFP) tac;
+                int dest = getReg(addaFP.getDest());
+                int fpOffset = addaFP.getFpOffset();
+                Value indexOffset = addaFP.getIndex();
+
+                emit(ADDI, dest, FP, fpOffset);
+
+                if (!isZero(indexOffset)) {
+                    int indexReg;
+                    if (indexOffset instanceof Variable) {
+                        indexReg = getReg((Variable) indexOffset);
+                    } else {
+                        indexReg = 25;
+                        int val = getImmediateValue(indexOffset);
+                        emit(ADDI, indexReg, R0, val);
+                    }
+                    emit(ADD, dest, dest, indexReg);
                 }
-                emit(ADD, dest, dest, indexReg);
+                break;
             }
-        }
-        else if (tac instanceof Cmp) {
-            generateCmp((Cmp) tac);
-        }
-        else if (tac instanceof Bra) {
-            Bra bra = (Bra) tac;
-            int targetID = bra.getTarget().getNum();
-            branchFixups.add(new BranchFixup(pc, targetID, BEQ, R0));
-            emit(BEQ, R0, 0);
-        } else if (tac instanceof Beq) {
-            Beq beq = (Beq) tac;
-            Value condVal = beq.getOperands().get(0);
-            int cond;
-            
-            if (condVal instanceof Variable) {
-                cond = getReg((Variable) condVal);
-            } else {
-                cond = 25;
-                int val = getImmediateValue(condVal);
-                emit(ADDI, cond, R0, val);
+            case CMP:
+                generateCmp((Cmp) tac);
+                break;
+            case BRA: {
+                Bra bra = (Bra) tac;
+                int targetID = bra.getTarget().getNum();
+                branchFixups.add(new BranchFixup(pc, targetID, BEQ, R0));
+                emit(BEQ, R0, 0);
+                break;
             }
+            case BEQ: {
+                Beq beq = (Beq) tac;
+                Value condVal = beq.getOperand(0);
+                int cond;
+
+                if (condVal instanceof Variable) {
+                    cond = getReg((Variable) condVal);
+                } else {
+                    cond = 25;
+                    int val = getImmediateValue(condVal);
+                    emit(ADDI, cond, R0, val);
+                }
 
-            int targetID = beq.getTarget().getNum();
-            branchFixups.add(new BranchFixup(pc, targetID, BEQ, cond));
-            emit(BEQ, cond, 0);
-        } else if (tac instanceof Bne) {
-            Bne bne = (Bne) tac;
-            Value condVal = bne.getOperands().get(0);
-            int cond = (condVal instanceof Variable) ? getReg((Variable) condVal) : R0;
-
-            if (!(condVal instanceof Variable)) {
-                cond = 25;
-                int val = getImmediateValue(condVal);
-                emit(ADDI, cond, R0, val);
+                int targetID = beq.getTarget().getNum();
+                branchFixups.add(new BranchFixup(pc, targetID, BEQ, cond));
+                emit(BEQ, cond, 0);
+                break;
             }
+            case BNE: {
+                Bne bne = (Bne) tac;
+                Value condVal = bne.getOperand(0);
+                int cond = (condVal instanceof Variable) ? getReg((Variable) condVal) : R0;
+
+                if (!(condVal instanceof Variable)) {
+                    cond = 25;
+                    int val = getImmediateValue(condVal);
+                    emit(ADDI, cond, R0, val);
+                }
 
-            int targetID = bne.getTarget().getNum();
-            branchFixups.add(new BranchFixup(pc, targetID, BNE, cond));
-            emit(BNE, cond, 0);
-        } else if (tac instanceof Blt) {
-            Blt blt = (Blt) tac;
-            Value condVal = blt.getOperands().get(0);
-            int cond = (condVal instanceof Variable) ? getReg((Variable) condVal) : R0;
-
-            if (!(condVal instanceof Variable)) {
-                cond = 25;
-                int val = getImmediateValue(condVal);
-                emit(ADDI, cond, R0, val);
+                int targetID = bne.getTarget().getNum();
+                branchFixups.add(new BranchFixup(pc, targetID, BNE, cond));
+                emit(BNE, cond, 0);
+                break;
             }
+            case BLT: {
+                Blt blt = (Blt) tac;
+                Value condVal = blt.getOperand(0);
+                int cond = (condVal instanceof Variable) ? getReg((Variable) condVal) : R0;
+
+                if (!(condVal instanceof Variable)) {
+                    cond = 25;
+                    int val = getImmediateValue(condVal);
+                    emit(ADDI, cond, R0, val);
+                }
 
-            int targetID = blt.getTarget().getNum();
-            branchFixups.add(new BranchFixup(pc, targetID, BLT, cond));
-            emit(BLT, cond, 0);
-        } else if (tac instanceof Ble) {
-            Ble ble = (Ble) tac;
-            Value condVal = ble.getOperands().get(0);
-            int cond = (condVal instanceof Variable) ? getReg((Variable) condVal) : R0;
-
-            if (!(condVal instanceof Variable)) {
-                cond = 25;
-                int val = getImmediateValue(condVal);
-                emit(ADDI, cond, R0, val);
+                int targetID = blt.getTarget().getNum();
+                branchFixups.add(new BranchFixup(pc, targetID, BLT, cond));
+                emit(BLT, cond, 0);
+                break;
             }
+            case BLE: {
+                Ble ble = (Ble) tac;
+                Value condVal = ble.getOperand(0);
+                int cond = (condVal instanceof Variable) ? getReg((Variable) condVal) : R0;
+
+                if (!(condVal instanceof Variable)) {
+                    cond = 25;
+                    int val = getImmediateValue(condVal);
+                    emit(ADDI, cond, R0, val);
+                }
 
-            int targetID = ble.getTarget().getNum();
-            branchFixups.add(new BranchFixup(pc, targetID, BLE, cond));
-            emit(BLE, cond, 0);
-        } else if (tac instanceof Bgt) {
-            Bgt bgt = (Bgt) tac;
-            Value condVal = bgt.getOperands().get(0);
-            int cond = (condVal instanceof Variable) ? getReg((Variable) condVal) : R0;
-
-            if (!(condVal instanceof Variable)) {
-                cond = 25;
-                int val = getImmediateValue(condVal);
-                emit(ADDI, cond, R0, val);
+                int targetID = ble.getTarget().getNum();
+                branchFixups.add(new BranchFixup(pc, targetID, BLE, cond));
+                emit(BLE, cond, 0);
+                break;
             }
+            case BGT: {
+                Bgt bgt = (Bgt) tac;
+                Value condVal = bgt.getOperand(0);
+                int cond = (condVal instanceof Variable) ? getReg((Variable) condVal) : R0;
+
+                if (!(condVal instanceof Variable)) {
+                    cond = 25;
+                    int val = getImmediateValue(condVal);
+                    emit(ADDI, cond, R0, val);
+                }
 
-            int targetID = bgt.getTarget().getNum();
-            branchFixups.add(new BranchFixup(pc, targetID, BGT, cond));
-            emit(BGT, cond, 0);
-        } else if (tac instanceof Bge) {
-            Bge bge = (Bge) tac;
-            Value condVal = bge.getOperands().get(0);
-            int cond = (condVal instanceof Variable) ? getReg((Variable) condVal) : R0;
-
-            if (!(condVal instanceof Variable)) {
-                cond = 25;
-                int val = getImmediateValue(condVal);
-                emit(ADDI, cond, R0, val);
+                int targetID = bgt.getTarget().getNum();
+                branchFixups.add(new BranchFixup(pc, targetID, BGT, cond));
+                emit(BGT, cond, 0);
+                break;
             }
+            case BGE: {
+                Bge bge = (Bge) tac;
+                Value condVal = bge.getOperand(0);
+                int cond = (condVal instanceof Variable) ? getReg((Variable) condVal) : R0;
+
+                if (!(condVal instanceof Variable)) {
+                    cond = 25;
+                    int val = getImmediateValue(condVal);
+                    emit(ADDI, cond, R0, val);
+                }
 
-            int targetID = bge.getTarget().getNum();
-            branchFixups.add(new BranchFixup(pc, targetID, BGE, cond));
-            emit(BGE, cond, 0);
-        }
-        else if (tac instanceof Call) {
-            generateCall((Call) tac);
-        }
-        else if (tac instanceof Return) {
-            generateReturn((Return) tac);
-        }
-        else if (tac instanceof Swap) {
-            Swap swap = (Swap) tac;
-            Variable var1 = (Variable) swap.getOperands().get(0);
-            Variable var2 = (Variable) swap.getOperands().get(1);
-            int reg1 = getReg(var1);
-            int reg2 = getReg(var2);
-            // XOR swap trick: x = x ^ y; y = x ^ y; x = x ^ y
-            emit(XOR, reg1, reg1, reg2);
-            emit(XOR, reg2, reg1, reg2);
-            emit(XOR, reg1, reg1, reg2);
-        }
-        else if (tac instanceof End) {
-            generateReturn(null);
-        }
-        else if (tac instanceof Read) {
-            Read read = (Read) tac;
-            int dest = getReg(read.getDest());
+                int targetID = bge.getTarget().getNum();
+                branchFixups.add(new BranchFixup(pc, targetID, BGE, cond));
+                emit(BGE, cond, 0);
+                break;
+            }
+            case CALL:
+                generateCall((Call) tac);
+                break;
+            case RETURN:
+                generateReturn((Return) tac);
+                break;
+            case SWAP: {
+                Swap swap = (Swap) tac;
+                Variable var1 = (Variable) swap.getDest();
+                Variable var2 = swap.getSrc();
+                int reg1 = getReg(var1);
+                int reg2 = getReg(var2);
+                // XOR swap trick: x = x ^ y; y = x ^ y; x = x ^ y
+                emit(XOR, reg1, reg1, reg2);
+                emit(XOR, reg2, reg1, reg2);
+                emit(XOR, reg1, reg1, reg2);
+                break;
+            }
+            case END:
+                generateReturn(null);
+                break;
+            case READ: {
+                Read read = (Read) tac;
+                int dest = getReg(read.getDest());
 
-            if (read.isFloat()) {
-                emit(RDF, dest);
-            } else {
-                emit(RDI, dest);
+                if (read.isFloat()) {
+                    emit(RDF, dest);
+                } else {
+                    emit(RDI, dest);
+                }
+                break;
             }
-        } else if (tac instanceof ReadB) {
-            ReadB readB = (ReadB) tac;
-            int dest = getReg(readB.getDest());
-            emit(RDB, dest);
-        } else if (tac instanceof Write) {
-            Write write = (Write) tac;
-            Value srcVal = write.getOperands().get(0);
-            int src;
-
-            if (srcVal instanceof Variable) {
-                src = getReg((Variable) srcVal);
-            } else {
-                src = 25;
+            case READ_B: {
+                ReadB readB = (ReadB) tac;
+                int dest = getReg(readB.getDest());
+                emit(RDB, dest);
+                break;
+            }
+            case WRITE: {
+                Write write = (Write) tac;
+                Value srcVal = write.getOperand(0);
+                int src;
+
+                if (srcVal instanceof Variable) {
+                    src = getReg((Variable) srcVal);
+                } else {
+                    src = 25;
+                    if (write.isFloat()) {
+                        emit(fADDI, src, R0, getFloatImmediateValue(srcVal));
+                    } else {
+                        emit(ADDI, src, R0, getImmediateValue(srcVal));
+                    }
+                }
+
                 if (write.isFloat()) {
-                    emit(fADDI, src, R0, getFloatImmediateValue(srcVal));
+                    emit(WRF, src);
                 } else {
-                    emit(ADDI, src, R0, getImmediateValue(srcVal));
+                    emit(WRI, src);
                 }
+                break;
             }
+            case WRITE_B: {
+                WriteB writeB = (WriteB) tac;
+                Value srcVal = writeB.getOperand(0);
+                int src;
 
-            if (write.isFloat()) {
-                emit(WRF, src);
-            } else {
-                emit(WRI, src);
-            }
-        } else if (tac instanceof WriteB) {
-            WriteB writeB = (WriteB) tac;
-            Value srcVal = writeB.getOperands().get(0);
-            int src;
+                if (srcVal instanceof Variable) {
+                    src = getReg((Variable) srcVal);
+                } else {
+                    src = 25;
+                    int val = getImmediateValue(srcVal);
+                    emit(ADDI, src, R0, val);
+                }
 
-            if (srcVal instanceof Variable) {
-                src = getReg((Variable) srcVal);
-            } else {
-                src = 25;
-                int val = getImmediateValue(srcVal);
-                emit(ADDI, src, R0, val);
+                emit(WRB, src);
+                break;
             }
+            case WRITE_NL:
+                emit(WRL);
+                break;
+            case CHK: {
+                Chk chk = (Chk) tac;
+                Value indexVal = chk.getIndex();
+                int index;
 
-            emit(WRB, src);
-        } else if (tac instanceof WriteNL) {
-            emit(WRL);
-        }
+                if (indexVal instanceof Variable) {
+                    index = getReg((Variable) indexVal);
+                } else {
+                    index = 25;
+                    emit(ADDI, index, R0, getImmediateValue(indexVal));
+                }
 
-        else {
-            throw new RuntimeException("Unsupported TAC instruction: " + tac.toString() + " (class: " + tac.getClass().getSimpleName() + ")");
+                emit(CHKI, index, chk.getBound());
+                break;
+            }
+            default:
+                throw new RuntimeException("Unsupported TAC instruction: " + tac.toString() + " (class: " + tac.getClass().getSimpleName() + ")");
         }
     }
 
     private void generateBinaryOp(TAC tac, int regOp, int immOp) {
         int dest = getReg((Variable) tac.getDest());
         
-        Value left = tac.getOperands().get(0);
-        Value right = tac.getOperands().get(1);
+        Value left = tac.getOperand(0);
+        Value right = tac.getOperand(1);
 
         int leftReg;
         if (left instanceof Variable) {
@@ -695,17 +732,7 @@ public class CodeGenerator {
             }
         }
 
-        boolean isFloat = false;
-        if (tac instanceof Add)
-            isFloat = ((Add) tac).isFloat();
-        else if (tac instanceof Sub)
-            isFloat = ((Sub) tac).isFloat();
-        else if (tac instanceof Mul)
-            isFloat = ((Mul) tac).isFloat();
-        else if (tac instanceof Div)
-            isFloat = ((Div) tac).isFloat();
-        else if (tac instanceof Mod)
-            isFloat = ((Mod) tac).isFloat();
+        boolean isFloat = tac.isFloat();
 
         if (isImmediate(right)) {
             if (isFloat) {
@@ -770,7 +797,7 @@ public class CodeGenerator {
 
     private void generateMov(Mov mov) {
         int dest = getReg((Variable) mov.getDest());
-        Value src = mov.getOperands().get(0);
+        Value src = mov.getOperand(0);
 
         if (isImmediate(src)) {
             // Infer type from the immediate value itself (optimizations create immediates without isFloat flag)
@@ -802,8 +829,8 @@ public class CodeGenerator {
     private void generateCmp(Cmp cmp) {
         int dest = getReg(cmp.getDest());
 
-        Value left = cmp.getOperands().get(0);
-        Value right = cmp.getOperands().get(1);
+        Value left = cmp.getOperand(0);
+        Value right = cmp.getOperand(1);
 
         int leftReg;
         if (left instanceof Variable) {
@@ -920,8 +947,8 @@ public class CodeGenerator {
         // Remove special handling for main to ensure stack frame is properly popped
 
         // Store return value in stack slot at FP+8 (above saved FP and RA)
-        if (ret != null && !ret.getOperands().isEmpty()) {
-            Value retVal = ret.getOperands().get(0);
+        if (ret != null && ret.operandCount() > 0) {
+            Value retVal = ret.getOperand(0);
             int srcReg;
 
             if (retVal instanceof Variable) {
@@ -0,0 +1,158 @@
+package ir.jvm;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Minimal class-file writer: a constant pool with the entry kinds JVMGenerator
+ * needs, and static methods carrying only a Code attribute.
+ *
+ * Files are written as version 49 (Java 5), the last format that verifies by
+ * type inference, so methods need no StackMapTable.
+ */
+public class ClassWriter {
+
+    private static final int MAGIC = 0xCAFEBABE;
+    private static final int VERSION = 49;
+
+    private static final int CONSTANT_UTF8 = 1;
+    private static final int CONSTANT_INTEGER = 3;
+    private static final int CONSTANT_CLASS = 7;
+    private static final int CONSTANT_FIELDREF = 9;
+    private static final int CONSTANT_METHODREF = 10;
+    private static final int CONSTANT_NAME_AND_TYPE = 12;
+
+    public static final int ACC_PUBLIC = 0x0001;
+    public static final int ACC_STATIC = 0x0008;
+    public static final int ACC_SUPER = 0x0020;
+
+    private final String className;
+    private final ByteArrayOutputStream poolBytes = new ByteArrayOutputStream();
+    private final DataOutputStream pool = new DataOutputStream(poolBytes);
+    private final Map<String, Integer> poolIndex = new HashMap<>();
+    private int poolCount = 1;
+
+    private final List<byte[]> methods = new ArrayList<>();
+
+    public ClassWriter(String className) {
+        this.className = className;
+    }
+
+    public String className() {
+        return className;
+    }
+
+    // Constant pool ==============================================================
+
+    private int entry(String key, int tag, int a, int b, String utf) {
+        Integer existing = poolIndex.get(key);
+        if (existing != null) {
+            return existing;
+        }
+        try {
+            pool.writeByte(tag);
+            switch (tag) {
+                case CONSTANT_UTF8:
+                    pool.writeUTF(utf);
+                    break;
+                case CONSTANT_INTEGER:
+                    pool.writeInt(a);
+                    break;
+                case CONSTANT_CLASS:
+                    pool.writeShort(a);
+                    break;
+                default:
+                    pool.writeShort(a);
+                    pool.writeShort(b);
+                    break;
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        poolIndex.put(key, poolCount);
+        return poolCount++;
+    }
+
+    public int utf8(String s) {
+        return entry("U" + s, CONSTANT_UTF8, 0, 0, s);
+    }
+
+    public int integer(int value) {
+        return entry("I" + value, CONSTANT_INTEGER, value, 0, null);
+    }
+
+    public int classRef(String internalName) {
+        return entry("C" + internalName, CONSTANT_CLASS, utf8(internalName), 0, null);
+    }
+
+    private int nameAndType(String name, String desc) {
+        return entry("N" + name + ":" + desc, CONSTANT_NAME_AND_TYPE, utf8(name), utf8(desc), null);
+    }
+
+    public int methodRef(String owner, String name, String desc) {
+        return entry("M" + owner + "." + name + desc, CONSTANT_METHODREF, classRef(owner), nameAndType(name, desc), null);
+    }
+
+    public int fieldRef(String owner, String name, String desc) {
+        return entry("F" + owner + "." + name + desc, CONSTANT_FIELDREF, classRef(owner), nameAndType(name, desc), null);
+    }
+
+    // Members ====================================================================
+
+    public void addMethod(int access, String name, String desc, byte[] code, int maxStack, int maxLocals) {
+        if (code.length >= 65536) {
+            throw new RuntimeException("Method too large for the JVM: " + name);
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeShort(access);
+            out.writeShort(utf8(name));
+            out.writeShort(utf8(desc));
+            out.writeShort(1);                   // attributes
+            out.writeShort(utf8("Code"));
+            out.writeInt(12 + code.length);
+            out.writeShort(maxStack);
+            out.writeShort(maxLocals);
+            out.writeInt(code.length);
+            out.write(code);
+            out.writeShort(0);                   // exception table
+            out.writeShort(0);                   // code attributes
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        methods.add(bytes.toByteArray());
+    }
+
+    public byte[] toByteArray() {
+        int thisClass = classRef(className);
+        int superClass = classRef("java/lang/Object");
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(MAGIC);
+            out.writeShort(0);
+            out.writeShort(VERSION);
+            out.writeShort(poolCount);
+            pool.flush();
+            poolBytes.writeTo(out);
+            out.writeShort(ACC_PUBLIC | ACC_SUPER);
+            out.writeShort(thisClass);
+            out.writeShort(superClass);
+            out.writeShort(0);                   // interfaces
+            out.writeShort(0);                   // fields
+            out.writeShort(methods.size());
+            for (byte[] m : methods) {
+                out.write(m);
+            }
+            out.writeShort(0);                   // class attributes
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        return bytes.toByteArray();
+    }
+}
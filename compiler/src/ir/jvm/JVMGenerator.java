@@ -0,0 +1,749 @@
+package ir.jvm;
+
+import ir.cfg.BasicBlock;
+import ir.cfg.CFG;
+import ir.regalloc.SSAElimination;
+import ir.tac.*;
+import mocha.Symbol;
+import types.FuncType;
+
+import java.io.InputStream;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.*;
+
+/**
+ * Backend that lowers optimized CFGs to a JVM class instead of DLX. Phis are
+ * eliminated as for register allocation, then every IR variable becomes an int
+ * local of a static method, one method per CFG, and HotSpot does the register
+ * allocation.
+ *
+ * The IR's memory model is kept as is: LoadGP/StoreGP/Adda* address the byte
+ * memory in JVMRuntime, so arrays (including array parameters, passed by
+ * address) behave as on DLX. Floats travel as raw bits in int locals and are
+ * converted only around the float opcodes.
+ */
+public class JVMGenerator {
+
+    private static final String CLASS_NAME = "MochaProgram";
+    private static final String RUNTIME = "ir/jvm/JVMRuntime";
+    private static final String FLOAT = "java/lang/Float";
+    private static final int MAX_CODE = 65535;
+
+    // JVM opcodes
+    private static final int ICONST_0 = 0x03;
+    private static final int BIPUSH = 0x10;
+    private static final int SIPUSH = 0x11;
+    private static final int LDC_W = 0x13;
+    private static final int ILOAD = 0x15;
+    private static final int IALOAD = 0x2e;
+    private static final int ISTORE = 0x36;
+    private static final int IASTORE = 0x4f;
+    private static final int POP = 0x57;
+    private static final int IADD = 0x60;
+    private static final int FADD = 0x62;
+    private static final int ISUB = 0x64;
+    private static final int FSUB = 0x66;
+    private static final int IMUL = 0x68;
+    private static final int FMUL = 0x6a;
+    private static final int IDIV = 0x6c;
+    private static final int FDIV = 0x6e;
+    private static final int IREM = 0x70;
+    private static final int FREM = 0x72;
+    private static final int INEG = 0x74;
+    private static final int ISHR = 0x7a;
+    private static final int IUSHR = 0x7c;
+    private static final int IAND = 0x7e;
+    private static final int IOR = 0x80;
+    private static final int IXOR = 0x82;
+    private static final int IFEQ = 0x99;
+    private static final int IFNE = 0x9a;
+    private static final int IFLT = 0x9b;
+    private static final int IFGE = 0x9c;
+    private static final int IFGT = 0x9d;
+    private static final int IFLE = 0x9e;
+    private static final int GOTO = 0xa7;
+    private static final int GOTO_W = 0xc8;
+    private static final int IRETURN = 0xac;
+    private static final int GETSTATIC = 0xb2;
+    private static final int INVOKESTATIC = 0xb8;
+    private static final int WIDE = 0xc4;
+
+    private final ClassWriter cw = new ClassWriter(CLASS_NAME);
+    private final Map<Symbol, String> methodNames = new HashMap<>();
+    private final Map<Symbol, String> methodDescs = new HashMap<>();
+    private int globalBytes;
+
+    // Per-method state
+    private byte[] code;
+    private int pc;
+    private Map<Variable, Integer> locals;
+    private int fpLocal;
+    private int maxLocals;
+    private int maxArgs;
+    private Map<BasicBlock, Integer> blockPC;
+    private List<int[]> fixups;          // {branch opcode pc, operand pc}
+    private List<BasicBlock> fixupTargets;
+    // Whether branches are emitted with 32-bit offsets; set when a method's
+    // short offsets do not reach
+    private boolean wideBranches;
+
+    /**
+     * Thrown when a function's code exceeds the JVM's 64KB method limit, before
+     * anything has run, so the caller can pick another execution tier.
+     */
+    public static class MethodTooLargeException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        public MethodTooLargeException(String function, int size) {
+            super("Function " + function + " compiles to " + size
+                    + " bytes of JVM code, over the 65535-byte method limit");
+        }
+    }
+
+    /**
+     * Eliminates phis in place, so the CFGs are not fit for the DLX backend
+     * afterwards.
+     */
+    public byte[] generate(List<CFG> cfgs) {
+        SSAElimination ssaElim = new SSAElimination(cfgs);
+        for (CFG cfg : cfgs) {
+            ssaElim.eliminatePhis(cfg);
+        }
+
+        int index = 0;
+        for (CFG cfg : cfgs) {
+            Symbol sym = cfg.getFunctionSymbol();
+            methodNames.put(sym, sym.name() + "$" + index++);
+            methodDescs.put(sym, descriptor(paramCount(cfg)));
+            scanGlobals(cfg);
+        }
+        for (CFG cfg : cfgs) {
+            generateMethod(cfg);
+        }
+        return cw.toByteArray();
+    }
+
+    /** Generates, loads and runs the program's main. */
+    public void execute(List<CFG> cfgs, InputStream in) {
+        byte[] bytes = generate(cfgs);
+        String mainName = null;
+        for (CFG cfg : cfgs) {
+            if (cfg.getFunctionSymbol().name().equals("main")) {
+                mainName = methodNames.get(cfg.getFunctionSymbol());
+            }
+        }
+        if (mainName == null) {
+            throw new RuntimeException("Main function not found");
+        }
+
+        Class<?> program = new ClassLoader(JVMGenerator.class.getClassLoader()) {
+            Class<?> define() {
+                return defineClass(CLASS_NAME, bytes, 0, bytes.length);
+            }
+        }.define();
+
+        JVMRuntime.reset(in, globalBytes);
+        try {
+            Method main = program.getMethod(mainName);
+            main.invoke(null);
+        } catch (InvocationTargetException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof RuntimeException ? (RuntimeException) cause : new RuntimeException(cause);
+        } catch (ReflectiveOperationException e) {
+            throw new RuntimeException(e);
+        } finally {
+            System.out.flush();
+        }
+    }
+
+    private static int paramCount(CFG cfg) {
+        Symbol sym = cfg.getFunctionSymbol();
+        if (sym.type() instanceof FuncType) {
+            return ((FuncType) sym.type()).getParams().getList().size();
+        }
+        return 0;
+    }
+
+    private static String descriptor(int params) {
+        StringBuilder sb = new StringBuilder("(");
+        for (int i = 0; i < params; i++) {
+            sb.append('I');
+        }
+        return sb.append(")I").toString();
+    }
+
+    // Globals live below GP; the lowest offset used bounds the global area
+    private void scanGlobals(CFG cfg) {
+        for (BasicBlock bb : cfg.getAllBlocks()) {
+            for (TAC tac : bb.getInstructions()) {
+                int off;
+                switch (tac.opcode()) {
+                    case LOAD_GP:
+                        off = ((LoadGP) tac).getGpOffset();
+                        break;
+                    case STORE_GP:
+                        off = ((StoreGP) tac).getGpOffset();
+                        break;
+                    case ADDA_GP:
+                        off = ((AddaGP) tac).getGpOffset();
+                        break;
+                    default:
+                        continue;
+                }
+                globalBytes = Math.max(globalBytes, -off);
+            }
+        }
+    }
+
+    // Methods ====================================================================
+
+    // Short branches first; if any offset does not fit in 16 bits the method
+    // is emitted again with every branch in its goto_w form
+    private void generateMethod(CFG cfg) {
+        wideBranches = false;
+        if (!emitMethod(cfg)) {
+            wideBranches = true;
+            emitMethod(cfg);
+        }
+        if (pc > MAX_CODE) {
+            throw new MethodTooLargeException(cfg.getFunctionName(), pc);
+        }
+
+        Symbol sym = cfg.getFunctionSymbol();
+        cw.addMethod(ClassWriter.ACC_PUBLIC | ClassWriter.ACC_STATIC, methodNames.get(sym), methodDescs.get(sym),
+                Arrays.copyOf(code, pc), 8 + maxArgs, maxLocals);
+    }
+
+    // Emits the method body into code; false if a short branch offset overflowed
+    private boolean emitMethod(CFG cfg) {
+        code = new byte[256];
+        pc = 0;
+        locals = new HashMap<>();
+        blockPC = new HashMap<>();
+        fixups = new ArrayList<>();
+        fixupTargets = new ArrayList<>();
+        maxArgs = 0;
+
+        int params = paramCount(cfg);
+        fpLocal = params;
+        int next = params + 1;
+        for (BasicBlock bb : cfg.getAllBlocks()) {
+            for (TAC tac : bb.getInstructions()) {
+                for (Variable v : variablesOf(tac)) {
+                    if (!locals.containsKey(v)) {
+                        locals.put(v, next++);
+                    }
+                }
+                if (tac.opcode() == Opcode.CALL) {
+                    maxArgs = Math.max(maxArgs, ((Call) tac).getArguments().size());
+                }
+            }
+        }
+        maxLocals = next;
+
+        // Prologue: frame for local arrays, then every local defined on all paths
+        pushInt(cfg.getFrameSize());
+        invoke(RUNTIME, "enter", "(I)I");
+        store(fpLocal);
+        for (int slot = params + 1; slot < next; slot++) {
+            emit(ICONST_0);
+            store(slot);
+        }
+
+        List<BasicBlock> order = layout(cfg);
+        for (BasicBlock bb : order) {
+            blockPC.put(bb, pc);
+            generateBlock(bb);
+        }
+
+        for (int i = 0; i < fixups.size(); i++) {
+            int[] f = fixups.get(i);
+            int offset = blockPC.get(fixupTargets.get(i)) - f[0];
+            if (wideBranches) {
+                code[f[1]] = (byte) (offset >> 24);
+                code[f[1] + 1] = (byte) (offset >> 16);
+                code[f[1] + 2] = (byte) (offset >> 8);
+                code[f[1] + 3] = (byte) offset;
+            } else if (offset != (short) offset) {
+                return false;
+            } else {
+                code[f[1]] = (byte) (offset >> 8);
+                code[f[1] + 1] = (byte) offset;
+            }
+        }
+        return true;
+    }
+
+    private static List<Variable> variablesOf(TAC tac) {
+        List<Variable> vars = new ArrayList<>();
+        if (tac.getDest() instanceof Variable) {
+            vars.add((Variable) tac.getDest());
+        }
+        for (int i = 0; i < tac.operandCount(); i++) {
+            Value op = tac.getOperand(i);
+            if (op instanceof Variable) {
+                vars.add((Variable) op);
+            }
+        }
+        return vars;
+    }
+
+    // Entry first, then the rest in CFG order; every block ends in an explicit jump
+    private static List<BasicBlock> layout(CFG cfg) {
+        List<BasicBlock> order = new ArrayList<>();
+        order.add(cfg.getEntryBlock());
+        for (BasicBlock bb : cfg.getAllBlocks()) {
+            if (bb != cfg.getEntryBlock()) {
+                order.add(bb);
+            }
+        }
+        return order;
+    }
+
+    private void generateBlock(BasicBlock bb) {
+        BasicBlock branchTarget = null;
+        for (TAC tac : bb.getInstructions()) {
+            if (tac.isEliminated()) {
+                continue;
+            }
+            generateInstruction(tac);
+            Opcode op = tac.opcode();
+            if (op == Opcode.BRA || op == Opcode.RETURN || op == Opcode.END) {
+                return;
+            }
+            if (op.isBranch()) {
+                branchTarget = tac.getTarget();
+            }
+        }
+
+        BasicBlock fallthrough = null;
+        for (BasicBlock succ : bb.getSuccessors()) {
+            if (succ != branchTarget) {
+                fallthrough = succ;
+                break;
+            }
+        }
+        if (fallthrough != null) {
+            jump(GOTO, fallthrough);
+        } else {
+            generateReturn(null);
+        }
+    }
+
+    // Instructions ===============================================================
+
+    private void generateInstruction(TAC tac) {
+        switch (tac.opcode()) {
+            case ADD:
+                binary((Assign) tac, ((Add) tac).isFloat() ? FADD : IADD);
+                break;
+            case SUB:
+                binary((Assign) tac, ((Sub) tac).isFloat() ? FSUB : ISUB);
+                break;
+            case MUL:
+                binary((Assign) tac, ((Mul) tac).isFloat() ? FMUL : IMUL);
+                break;
+            case DIV:
+                binary((Assign) tac, ((Div) tac).isFloat() ? FDIV : IDIV);
+                break;
+            case MOD:
+                binary((Assign) tac, ((Mod) tac).isFloat() ? FREM : IREM);
+                break;
+            case ADDA:
+                binary((Assign) tac, IADD);
+                break;
+            case AND:
+                binary((Assign) tac, IAND);
+                break;
+            case OR:
+                binary((Assign) tac, IOR);
+                break;
+            case POW: {
+                Pow pow = (Pow) tac;
+                push(pow.getLeft(), false);
+                push(pow.getRight(), false);
+                invoke(RUNTIME, "pow", "(II)I");
+                storeDest(pow.getDest());
+                break;
+            }
+            case NOT:
+                push(tac.getOperand(0), false);
+                emit(ICONST_0 + 1);
+                emit(IXOR);
+                storeDest(tac.getDest());
+                break;
+            case NEG:
+                push(((Neg) tac).getOperand(), false);
+                emit(INEG);
+                storeDest(tac.getDest());
+                break;
+            case MOV: {
+                Mov mov = (Mov) tac;
+                push(mov.getSrc(), mov.isFloat());
+                storeDest(mov.getDest());
+                break;
+            }
+            case SWAP: {
+                Swap swap = (Swap) tac;
+                load(local((Variable) swap.getDest()));
+                load(local(swap.getSrc()));
+                store(local((Variable) swap.getDest()));
+                store(local(swap.getSrc()));
+                break;
+            }
+            case CMP:
+                generateCmp((Cmp) tac);
+                break;
+            case LOAD:
+                memIndex(((Load) tac).getAddr());
+                emit(IALOAD);
+                storeDest(tac.getDest());
+                break;
+            case STORE: {
+                Store st = (Store) tac;
+                memIndex(st.getAddr());
+                push(st.getSrc(), false);
+                emit(IASTORE);
+                break;
+            }
+            case LOAD_GP: {
+                LoadGP ld = (LoadGP) tac;
+                getMem();
+                pushInt((JVMRuntime.GP + ld.getGpOffset()) >> 2);
+                emit(IALOAD);
+                storeDest(ld.getDest());
+                break;
+            }
+            case STORE_GP: {
+                StoreGP st = (StoreGP) tac;
+                getMem();
+                pushInt((JVMRuntime.GP + st.getGpOffset()) >> 2);
+                push(st.getSrc(), false);
+                emit(IASTORE);
+                break;
+            }
+            case LOAD_FP: {
+                LoadFP ld = (LoadFP) tac;
+                int off = ld.getFpOffset();
+                if (off >= 12) {
+                    // Parameters arrive as method arguments, FP+12 first
+                    load((off - 12) / 4);
+                } else {
+                    getMem();
+                    load(fpLocal);
+                    pushInt(off);
+                    emit(IADD);
+                    pushInt(2);
+                    emit(ISHR);
+                    emit(IALOAD);
+                }
+                storeDest(ld.getDest());
+                break;
+            }
+            case ADDA_GP: {
+                AddaGP adda = (AddaGP) tac;
+                pushInt(JVMRuntime.GP + adda.getGpOffset());
+                push(adda.getIndex(), false);
+                emit(IADD);
+                storeDest(adda.getDest());
+                break;
+            }
+            case ADDA_FP: {
+                AddaFP adda = (AddaFP) tac;
+                load(fpLocal);
+                pushInt(adda.getFpOffset());
+                emit(IADD);
+                push(adda.getIndex(), false);
+                emit(IADD);
+                storeDest(adda.getDest());
+                break;
+            }
+            case BRA:
+                jump(GOTO, tac.getTarget());
+                break;
+            case BEQ:
+                push(tac.getOperand(0), false);
+                jump(IFEQ, tac.getTarget());
+                break;
+            case BNE:
+                push(tac.getOperand(0), false);
+                jump(IFNE, tac.getTarget());
+                break;
+            case BLT:
+                push(tac.getOperand(0), false);
+                jump(IFLT, tac.getTarget());
+                break;
+            case BLE:
+                push(tac.getOperand(0), false);
+                jump(IFLE, tac.getTarget());
+                break;
+            case BGT:
+                push(tac.getOperand(0), false);
+                jump(IFGT, tac.getTarget());
+                break;
+            case BGE:
+                push(tac.getOperand(0), false);
+                jump(IFGE, tac.getTarget());
+                break;
+            case CALL: {
+                Call call = (Call) tac;
+                for (Value arg : call.getArguments()) {
+                    push(arg, false);
+                }
+                Symbol fn = call.getFunction();
+                if (!methodNames.containsKey(fn)) {
+                    throw new RuntimeException("Call to undefined function: " + fn.name());
+                }
+                invoke(CLASS_NAME, methodNames.get(fn), methodDescs.get(fn));
+                if (call.getDest() != null) {
+                    storeDest(call.getDest());
+                } else {
+                    emit(POP);
+                }
+                break;
+            }
+            case RETURN:
+                generateReturn(((Return) tac).getReturnValue());
+                break;
+            case END:
+                generateReturn(null);
+                break;
+            case READ:
+                invoke(RUNTIME, ((Read) tac).isFloat() ? "readFloat" : "readInt", "()I");
+                storeDest(tac.getDest());
+                break;
+            case READ_B:
+                invoke(RUNTIME, "readBool", "()I");
+                storeDest(tac.getDest());
+                break;
+            case WRITE: {
+                Write write = (Write) tac;
+                push(write.getSrc(), write.isFloat());
+                invoke(RUNTIME, write.isFloat() ? "writeFloat" : "writeInt", "(I)V");
+                break;
+            }
+            case WRITE_B:
+                push(tac.getOperand(0), false);
+                invoke(RUNTIME, "writeBool", "(I)V");
+                break;
+            case WRITE_NL:
+                invoke(RUNTIME, "writeLine", "()V");
+                break;
+            case CHK: {
+                Chk chk = (Chk) tac;
+                push(chk.getIndex(), false);
+                pushInt(chk.getBound());
+                invoke(RUNTIME, "check", "(II)V");
+                break;
+            }
+            default:
+                throw new RuntimeException("Unsupported TAC instruction: " + tac + " (class: "
+                        + tac.getClass().getSimpleName() + ")");
+        }
+    }
+
+    private void binary(Assign tac, int op) {
+        boolean isFloat = op == FADD || op == FSUB || op == FMUL || op == FDIV || op == FREM;
+        push(tac.getLeft(), isFloat);
+        if (isFloat) {
+            invoke(FLOAT, "intBitsToFloat", "(I)F");
+        }
+        push(tac.getRight(), isFloat);
+        if (isFloat) {
+            invoke(FLOAT, "intBitsToFloat", "(I)F");
+        }
+        emit(op);
+        if (isFloat) {
+            invoke(FLOAT, "floatToRawIntBits", "(F)I");
+        }
+        storeDest(tac.getDest());
+    }
+
+    // Same -1/0/1 to boolean folding as CodeGenerator.generateCmp
+    private void generateCmp(Cmp cmp) {
+        push(cmp.getLeft(), cmp.isFloat());
+        push(cmp.getRight(), cmp.isFloat());
+        invoke(RUNTIME, cmp.isFloat() ? "fcmp" : "cmp", "(II)I");
+        switch (cmp.getOp()) {
+            case "eq":
+                pushInt(1);
+                emit(IAND);
+                pushInt(1);
+                emit(IXOR);
+                break;
+            case "ne":
+                pushInt(1);
+                emit(IAND);
+                break;
+            case "lt":
+                pushInt(31);
+                emit(IUSHR);
+                break;
+            case "le":
+                pushInt(1);
+                emit(ISUB);
+                pushInt(31);
+                emit(IUSHR);
+                break;
+            case "gt":
+                pushInt(1);
+                emit(IADD);
+                pushInt(1);
+                emit(IUSHR);
+                break;
+            case "ge":
+                pushInt(2);
+                emit(IADD);
+                pushInt(1);
+                emit(IUSHR);
+                break;
+            default:
+                throw new RuntimeException("Unknown comparison: " + cmp.getOp());
+        }
+        storeDest(cmp.getDest());
+    }
+
+    private void generateReturn(Value value) {
+        if (value != null) {
+            push(value, false);
+        } else {
+            emit(ICONST_0);
+        }
+        load(fpLocal);
+        invoke(RUNTIME, "leave", "(I)V");
+        emit(IRETURN);
+    }
+
+    // Operands ===================================================================
+
+    private int local(Variable v) {
+        Integer slot = locals.get(v);
+        if (slot == null) {
+            throw new RuntimeException("Variable without a local: " + v);
+        }
+        return slot;
+    }
+
+    private void storeDest(Value dest) {
+        store(local((Variable) dest));
+    }
+
+    // Pushes a variable or immediate as an int; float immediates as raw bits
+    private void push(Value v, boolean isFloat) {
+        if (v instanceof Variable) {
+            load(local((Variable) v));
+            return;
+        }
+        pushInt(constantBits(v, isFloat));
+    }
+
+    private static int constantBits(Value v, boolean isFloat) {
+        Object val = v instanceof Immediate ? ((Immediate) v).getValue() : null;
+        if (v instanceof Literal) {
+            ast.Expression lit = ((Literal) v).getValue();
+            if (lit instanceof ast.IntegerLiteral) {
+                val = ((ast.IntegerLiteral) lit).getValue();
+            } else if (lit instanceof ast.FloatLiteral) {
+                val = ((ast.FloatLiteral) lit).getValue();
+            } else if (lit instanceof ast.BoolLiteral) {
+                val = ((ast.BoolLiteral) lit).getValue();
+            }
+        }
+        if (val instanceof Float || val instanceof Double) {
+            return Float.floatToRawIntBits(((Number) val).floatValue());
+        }
+        if (val instanceof Integer) {
+            int i = (Integer) val;
+            return isFloat ? Float.floatToRawIntBits(i) : i;
+        }
+        if (val instanceof Boolean) {
+            return (Boolean) val ? 1 : 0;
+        }
+        throw new RuntimeException("Not an immediate: " + v);
+    }
+
+    // mem array and word index for a byte address
+    private void memIndex(Value addr) {
+        getMem();
+        push(addr, false);
+        pushInt(2);
+        emit(ISHR);
+    }
+
+    private void getMem() {
+        emit(GETSTATIC);
+        emitShort(cw.fieldRef(RUNTIME, "mem", "[I"));
+    }
+
+    // Emission ===================================================================
+
+    private void emit(int b) {
+        if (pc == code.length) {
+            code = Arrays.copyOf(code, code.length * 2);
+        }
+        code[pc++] = (byte) b;
+    }
+
+    private void emitShort(int s) {
+        emit(s >> 8);
+        emit(s);
+    }
+
+    private void pushInt(int value) {
+        if (value >= -1 && value <= 5) {
+            emit(ICONST_0 + value);
+        } else if (value == (byte) value) {
+            emit(BIPUSH);
+            emit(value);
+        } else if (value == (short) value) {
+            emit(SIPUSH);
+            emitShort(value);
+        } else {
+            emit(LDC_W);
+            emitShort(cw.integer(value));
+        }
+    }
+
+    private void load(int slot) {
+        localOp(ILOAD, slot);
+    }
+
+    private void store(int slot) {
+        localOp(ISTORE, slot);
+    }
+
+    private void localOp(int op, int slot) {
+        if (slot > 255) {
+            emit(WIDE);
+            emit(op);
+            emitShort(slot);
+        } else {
+            emit(op);
+            emit(slot);
+        }
+    }
+
+    private void invoke(String owner, String name, String desc) {
+        emit(INVOKESTATIC);
+        emitShort(cw.methodRef(owner, name, desc));
+    }
+
+    // With wide branches a goto becomes goto_w, and a conditional branch an
+    // inverted one over a goto_w (if<!cond> +8; goto_w target)
+    private void jump(int op, BasicBlock target) {
+        if (wideBranches && op != GOTO) {
+            emit(IFEQ + ((op - IFEQ) ^ 1)); // ifeq/ifne, iflt/ifge, ifgt/ifle pair up
+            emitShort(8);
+            op = GOTO;
+        }
+        int at = pc;
+        emit(wideBranches ? GOTO_W : op);
+        fixups.add(new int[] {at, pc});
+        fixupTargets.add(target);
+        if (wideBranches) {
+            emitShort(0);
+        }
+        emitShort(0);
+    }
+}
@@ -0,0 +1,134 @@
+package ir.jvm;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.Arrays;
+import java.util.StringTokenizer;
+
+import mocha.DLX;
+
+/**
+ * Support code called from classes emitted by JVMGenerator. Mocha memory is one
+ * shared int[] addressed in bytes like DLX: globals sit just below GP at the top,
+ * frames for local arrays grow down from below the globals.
+ *
+ * Everything here is public so the generated class, defined by its own loader,
+ * can link against it.
+ */
+public final class JVMRuntime {
+
+    public static final int MEM_WORDS = 1 << 20;
+    public static final int GP = MEM_WORDS * 4;
+
+    public static int[] mem = new int[MEM_WORDS];
+    public static int sp;
+
+    private static BufferedReader reader;
+    private static StringTokenizer tokens;
+
+    private JVMRuntime() {
+        throw new IllegalStateException("Utility class");
+    }
+
+    static void reset(InputStream in, int globalBytes) {
+        mem = new int[MEM_WORDS];
+        sp = GP - globalBytes;
+        reader = new BufferedReader(new InputStreamReader(in));
+        tokens = null;
+    }
+
+    // Frames ======================================================================
+
+    // Allocates a zeroed frame and returns its FP
+    public static int enter(int frameBytes) {
+        int fp = sp;
+        sp -= frameBytes;
+        Arrays.fill(mem, sp >> 2, fp >> 2, 0);
+        return fp;
+    }
+
+    public static void leave(int fp) {
+        sp = fp;
+    }
+
+    // Arithmetic with DLX semantics ==============================================
+
+    // CMP: difference clamped to -1/0/1
+    public static int cmp(int a, int b) {
+        int d = a - b;
+        return d < 0 ? -1 : (d > 1 ? 1 : d);
+    }
+
+    // fCMP, including its epsilon
+    public static int fcmp(int a, int b) {
+        float d = Float.intBitsToFloat(a) - Float.intBitsToFloat(b);
+        if (d <= -DLX.EPS) {
+            return -1;
+        }
+        return d >= DLX.EPS ? 1 : 0;
+    }
+
+    public static int pow(int a, int b) {
+        if (a < 0 || b < 0) {
+            throw new RuntimeException("Illegal value (" + a + ")^(" + b + ") in POW");
+        }
+        return (int) Math.round(Math.pow(a, b));
+    }
+
+    // CHKI: index must lie in [0, bound)
+    public static void check(int index, int bound) {
+        if (index < 0 || index >= bound) {
+            throw new RuntimeException("Array index " + index + " out of bounds [0, " + bound + ")");
+        }
+    }
+
+    // Input/output, formatted as DLX.execute does ===============================
+
+    public static int readInt() {
+        System.out.print("int? ");
+        return Integer.parseInt(nextInput());
+    }
+
+    public static int readFloat() {
+        System.out.print("float? ");
+        return Float.floatToRawIntBits(Float.parseFloat(nextInput()));
+    }
+
+    public static int readBool() {
+        System.out.print("true or false? ");
+        return Boolean.parseBoolean(nextInput()) ? 1 : 0;
+    }
+
+    public static void writeInt(int v) {
+        System.out.print(v + " ");
+    }
+
+    public static void writeFloat(int bits) {
+        System.out.printf("%.2f ", Float.intBitsToFloat(bits));
+    }
+
+    public static void writeBool(int v) {
+        System.out.print((v == 1) + " ");
+    }
+
+    public static void writeLine() {
+        System.out.println();
+    }
+
+    private static String nextInput() {
+        try {
+            while (tokens == null || !tokens.hasMoreTokens()) {
+                String line = reader.readLine();
+                if (line == null) {
+                    throw new RuntimeException("Input exhausted");
+                }
+                tokens = new StringTokenizer(line);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Couldn't read data file", e);
+        }
+        return tokens.nextToken();
+    }
+}
@@ -1,8 +1,9 @@
 package ir.optimizations;
 
 import java.util.*;
-import ir.cfg.CFG;
+import ir.cfg.AnalysisManager;
 import ir.cfg.BasicBlock;
+import ir.cfg.CFG;
 import ir.tac.*;
 import ast.BoolLiteral;
 import ast.IntegerLiteral;
@@ -18,6 +19,16 @@ public abstract class BaseOptimization {
 
     protected abstract String getName();
 
+    /**
+     * Analyses still valid after this pass changed the CFG; the Optimizer drops
+     * the rest. Block and edge edits are tracked by the CFG itself and the
+     * def-use chains are edited through, so a pass only needs to override this
+     * if it rewrites instructions some other way.
+     */
+    public Set<AnalysisManager.Analysis<?>> preservedAnalyses() {
+        return AnalysisManager.ALL;
+    }
+
     protected void log(String message) {
         optimizer.logTransformation(getName() + ": " + message);
     }
@@ -62,110 +73,64 @@ public abstract class BaseOptimization {
         return Objects.equals(v1, v2);
     }
 
-    protected static void buildDefUseChains(CFG cfg, Map<Variable, TAC> defs, Map<Variable, Set<TAC>> uses) {
-        for (BasicBlock block : cfg.getAllBlocks()) {
-            if (block == null)
-                continue;
-
-            for (Phi phi : block.getPhis()) {
-                if (phi.isEliminated())
-                    continue;
-                defs.put((Variable) phi.getDest(), phi);
-                if (phi.getArgs() != null) {
-                    for (Value arg : phi.getArgs().values()) {
-                        if (arg instanceof Variable) {
-                            uses.putIfAbsent((Variable) arg, new HashSet<>());
-                            uses.get((Variable) arg).add(phi);
-                        }
-                    }
-                }
-            }
-
-            for (TAC instruction : block.getInstructions()) {
-                if (instruction.isEliminated())
-                    continue;
-
-                Value dest = instruction.getDest();
-                if (dest instanceof Variable)
-                    defs.put((Variable) dest, instruction);
-
-                List<Value> operands = instruction.getOperands();
-                if (operands != null) {
-                    for (Value op : operands) {
-                        if (op instanceof Variable) {
-                            uses.putIfAbsent((Variable) op, new HashSet<>());
-                            uses.get((Variable) op).add(instruction);
-                        }
-                    }
-                }
+    // Blocks not reached from entry, in block order; the reverse postorder
+    // holds exactly the reachable ones
+    protected static List<BasicBlock> unreachableBlocks(CFG cfg) {
+        List<BasicBlock> blocks = cfg.getAllBlocks();
+        BitSet reachable = new BitSet(blocks.size());
+        for (BasicBlock block : cfg.getReversePostorder()) {
+            reachable.set(block.getIndex());
+        }
+        List<BasicBlock> unreachable = new ArrayList<>();
+        for (BasicBlock block : blocks) {
+            if (!reachable.get(block.getIndex())) {
+                unreachable.add(block);
             }
         }
+        return unreachable;
     }
 
     protected static boolean hasSideEffects(TAC instruction) {
-        return instruction instanceof Write ||
-                instruction instanceof WriteB ||
-                instruction instanceof WriteNL ||
-                instruction instanceof Call ||
-                instruction instanceof Return ||
-                instruction instanceof Store ||
-                instruction instanceof StoreGP ||
-                instruction instanceof Bra ||
-                instruction instanceof Beq ||
-                instruction instanceof Bne ||
-                instruction instanceof Blt ||
-                instruction instanceof Ble ||
-                instruction instanceof Bgt ||
-                instruction instanceof Bge ||
-                instruction instanceof End;
+        return instruction.opcode().hasSideEffects();
+    }
+
+    // Integer division and modulo trap on a zero divisor, so they can only be
+    // dropped or folded away when the divisor is a nonzero constant
+    protected static boolean mayTrap(TAC instruction) {
+        if (!(instruction instanceof Div || instruction instanceof Mod) || instruction.isFloat()) {
+            return false;
+        }
+        Integer divisor = getIntegerValue(instruction.getOperand(1));
+        return divisor == null || divisor == 0;
     }
 
     protected static boolean isPureComputation(TAC instruction) {
-        return instruction instanceof Add ||
-                instruction instanceof Sub ||
-                instruction instanceof Mul ||
-                instruction instanceof Div ||
-                instruction instanceof Mod ||
-                instruction instanceof Pow ||
-                instruction instanceof And ||
-                instruction instanceof Or ||
-                instruction instanceof Cmp ||
-                instruction instanceof Mov ||
-                instruction instanceof Adda ||
-                instruction instanceof AddaFP ||
-                instruction instanceof AddaGP;
+        return instruction.opcode().isPure();
     }
 
     protected static boolean isBinaryArithmetic(TAC instruction) {
-        return instruction instanceof Add ||
-                instruction instanceof Sub ||
-                instruction instanceof Mul ||
-                instruction instanceof Div ||
-                instruction instanceof Mod ||
-                instruction instanceof Pow ||
-                instruction instanceof And ||
-                instruction instanceof Or ||
-                instruction instanceof Adda;
+        return instruction.opcode().isArithmetic();
     }
 
     protected static String getExpressionSignature(TAC instruction) {
         StringBuilder sig = new StringBuilder(instruction.getClass().getSimpleName());
-        List<Value> operands = instruction.getOperands();
-        if (operands != null) {
-            for (Value op : operands) {
-                if (op instanceof Variable) {
-                    Variable var = (Variable) op;
-                    // Use symbol identity hash + version to ensure uniqueness across shadowed
-                    // variables
-                    if (var.isTemp()) {
-                        sig.append(":t").append(var.getTempIndex());
-                    } else {
-                        sig.append(":").append(System.identityHashCode(var.getSymbol()))
-                                .append("_").append(var.getVersion());
-                    }
+        if (instruction instanceof Cmp) {
+            sig.append(":").append(((Cmp) instruction).getOp());
+        }
+        for (int i = 0; i < instruction.operandCount(); i++) {
+            Value op = instruction.getOperand(i);
+            if (op instanceof Variable) {
+                Variable var = (Variable) op;
+                // Use symbol identity hash + version to ensure uniqueness across shadowed
+                // variables
+                if (var.isTemp()) {
+                    sig.append(":t").append(var.getTempIndex());
                 } else {
-                    sig.append(":").append(op.toString());
+                    sig.append(":").append(System.identityHashCode(var.getSymbol()))
+                            .append("_").append(var.getVersion());
                 }
+            } else {
+                sig.append(":").append(op.toString());
             }
         }
         return sig.toString();
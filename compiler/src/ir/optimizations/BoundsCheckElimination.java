@@ -0,0 +1,273 @@
+package ir.optimizations;
+
+import java.util.*;
+import ir.cfg.CFG;
+import ir.cfg.BasicBlock;
+import ir.ssa.DominatorAnalysis;
+import ir.tac.*;
+
+/**
+ * Removes bounds checks whose outcome is already known. Walking the dominator
+ * tree, facts of the form "0 <= v" and "v < n" are collected from
+ * - checks that dominate (a check that passed proves both for its index),
+ * - loop and if conditions `v < n` / `v <= n` guarding the block, and
+ * - the definition of v: constants, copies, phis of non-negative values,
+ *   and a non-negative constant added to a non-negative value that is
+ *   bounded where the add runs, so the sum cannot wrap around. That covers
+ *   induction variables counting up from zero under their loop guard.
+ * A check is redundant once both facts hold with a bound no larger than its own.
+ * Facts live in scoped tables that a block's additions are undone from once
+ * its dominator subtree has been walked.
+ */
+public class BoundsCheckElimination extends BaseOptimization {
+    private DominatorAnalysis domAnalysis;
+    private DefUseChains chains;
+    private boolean changed;
+    private Map<Variable, Bound> upper;
+    // Block of each Add, for telling whether a bound holds where it runs
+    private Map<TAC, BasicBlock> addBlocks;
+    private Set<Variable> nonNegative;
+    // Facts added so far, in order, and where each open block's start
+    private List<Undo> undoLog;
+    private Deque<Integer> blockMarks;
+
+    // v < limit, known in block from just after `after` on (from the block's
+    // entry when after is null) and in every block it dominates
+    private static final class Bound {
+        final int limit;
+        final BasicBlock block;
+        final TAC after;
+
+        Bound(int limit, BasicBlock block, TAC after) {
+            this.limit = limit;
+            this.block = block;
+            this.after = after;
+        }
+    }
+
+    // A variable's upper bound before it was narrowed (null if it had none),
+    // or, with nonNegative set, a variable newly known to be non-negative
+    private static final class Undo {
+        final Variable variable;
+        final Bound previousBound;
+        final boolean nonNegative;
+
+        Undo(Variable variable, Bound previousBound, boolean nonNegative) {
+            this.variable = variable;
+            this.previousBound = previousBound;
+            this.nonNegative = nonNegative;
+        }
+    }
+
+    public BoundsCheckElimination(Optimizer optimizer) {
+        super(optimizer);
+    }
+
+    @Override
+    protected String getName() {
+        return "BCE";
+    }
+
+    @Override
+    public boolean optimize(CFG cfg) {
+        this.domAnalysis = cfg.getDominatorAnalysis();
+        if (this.domAnalysis == null) {
+            System.err.println("BCE requires dominator analysis. Run SSA conversion first.");
+            return false;
+        }
+
+        this.chains = cfg.getDefUseChains();
+        this.changed = false;
+        this.upper = new HashMap<>();
+        this.addBlocks = new IdentityHashMap<>();
+        for (BasicBlock block : cfg.getAllBlocks()) {
+            for (TAC instruction : block.getInstructions()) {
+                if (instruction instanceof Add) {
+                    addBlocks.put(instruction, block);
+                }
+            }
+        }
+        this.nonNegative = new HashSet<>();
+        this.undoLog = new ArrayList<>();
+        this.blockMarks = new ArrayDeque<>();
+        domAnalysis.walkDomTree(this::eliminate, this::leave);
+        return this.changed;
+    }
+
+    private void eliminate(BasicBlock block) {
+        blockMarks.push(undoLog.size());
+        addGuard(block);
+
+        for (TAC instruction : block.getInstructions()) {
+            if (instruction.isEliminated() || !(instruction instanceof Chk)) {
+                continue;
+            }
+            Chk chk = (Chk) instruction;
+            Value index = chk.getIndex();
+
+            Integer constant = getIntegerValue(index);
+            boolean redundant;
+            if (constant != null) {
+                redundant = constant >= 0 && constant < chk.getBound();
+            } else if (index instanceof Variable) {
+                Variable v = (Variable) index;
+                Bound bound = upper.get(v);
+                redundant = bound != null && bound.limit <= chk.getBound()
+                        && (nonNegative.contains(v) || isNonNegative(v, new HashSet<>()));
+                // Past this check both facts hold for v
+                narrowUpper(v, chk.getBound(), block, chk);
+                if (nonNegative.add(v)) {
+                    undoLog.add(new Undo(v, null, true));
+                }
+            } else {
+                redundant = false;
+            }
+
+            if (redundant) {
+                chains.eliminate(chk);
+                logInstruction(chk, "Eliminated: " + chk.toString());
+                this.changed = true;
+            }
+        }
+    }
+
+    // Facts learned in block hold only in its dominator subtree
+    private void leave(BasicBlock block) {
+        int mark = blockMarks.pop();
+        for (int i = undoLog.size() - 1; i >= mark; i--) {
+            Undo undo = undoLog.remove(i);
+            if (undo.nonNegative) {
+                nonNegative.remove(undo.variable);
+            } else if (undo.previousBound == null) {
+                upper.remove(undo.variable);
+            } else {
+                upper.put(undo.variable, undo.previousBound);
+            }
+        }
+    }
+
+    private void narrowUpper(Variable v, int limit, BasicBlock block, TAC after) {
+        Bound previous = upper.get(v);
+        if (previous == null || limit < previous.limit) {
+            upper.put(v, new Bound(limit, block, after));
+            undoLog.add(new Undo(v, previous, false));
+        }
+    }
+
+    // A block entered only from a `beq cond, F; bra T` pair knows cond's outcome
+    private void addGuard(BasicBlock block) {
+        if (block.getPredecessors().size() != 1) {
+            return;
+        }
+        BasicBlock pred = block.getPredecessors().get(0);
+        Beq beq = null;
+        Bra bra = null;
+        for (TAC instruction : pred.getInstructions()) {
+            if (instruction.isEliminated()) {
+                continue;
+            }
+            if (instruction instanceof Beq) {
+                beq = (Beq) instruction;
+            } else if (instruction instanceof Bra) {
+                bra = (Bra) instruction;
+            }
+        }
+        if (beq == null || bra == null || beq.getTarget() == bra.getTarget()
+                || (block != beq.getTarget() && block != bra.getTarget())
+                || !(beq.getCondition() instanceof Variable)) {
+            return;
+        }
+        TAC def = chains.getDef((Variable) beq.getCondition());
+        if (!(def instanceof Cmp) || ((Cmp) def).isFloat() || !(((Cmp) def).getLeft() instanceof Variable)) {
+            return;
+        }
+        Cmp cmp = (Cmp) def;
+        Integer limit = getIntegerValue(cmp.getRight());
+        if (limit == null) {
+            return;
+        }
+
+        // Taken beq means the comparison was false
+        boolean holds = block == bra.getTarget();
+        String op = cmp.getOp();
+        Integer bound = null;
+        if ((holds && op.equals("lt")) || (!holds && op.equals("ge"))) {
+            bound = limit;
+        } else if (((holds && op.equals("le")) || (!holds && op.equals("gt"))) && limit < Integer.MAX_VALUE) {
+            bound = limit + 1;
+        }
+        if (bound != null) {
+            narrowUpper((Variable) cmp.getLeft(), bound, block, null);
+        }
+    }
+
+    // Values built only from non-negative constants by copies, phis and
+    // additions that cannot overflow. Phis already on the path are assumed
+    // non-negative: a cycle through them only ever adds non-negative steps to
+    // non-negative starting values, and each step is taken below a bound.
+    private boolean isNonNegative(Value value, Set<Variable> assumed) {
+        Integer constant = getIntegerValue(value);
+        if (constant != null) {
+            return constant >= 0;
+        }
+        if (!(value instanceof Variable)) {
+            return false;
+        }
+        Variable v = (Variable) value;
+        TAC def = chains.getDef(v);
+        if (def instanceof Mov) {
+            return isNonNegative(((Mov) def).getSrc(), assumed);
+        }
+        if (def instanceof Add && !((Add) def).isFloat()) {
+            Add add = (Add) def;
+            Value base = add.getLeft();
+            Integer step = getIntegerValue(add.getRight());
+            if (step == null) {
+                base = add.getRight();
+                step = getIntegerValue(add.getLeft());
+            }
+            return step != null && step >= 0 && isNonNegative(base, assumed) && boundedAt(base, step, add);
+        }
+        if (def instanceof Phi) {
+            if (!assumed.add(v)) {
+                return true;
+            }
+            for (Value arg : ((Phi) def).getArgs().values()) {
+                if (!isNonNegative(arg, assumed)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        return false;
+    }
+
+    // Whether base + step, evaluated at add, stays below 2^31. A variable base
+    // needs an upper bound that holds where the add runs.
+    private boolean boundedAt(Value base, int step, Add add) {
+        Integer constant = getIntegerValue(base);
+        if (constant != null) {
+            return (long) constant + step <= Integer.MAX_VALUE;
+        }
+        Bound bound = upper.get(base);
+        if (bound == null || (long) bound.limit - 1 + step > Integer.MAX_VALUE) {
+            return false;
+        }
+        BasicBlock block = addBlocks.get(add);
+        if (block == null) {
+            return false;
+        }
+        if (block != bound.block) {
+            return domAnalysis.strictlyDominates(bound.block, block);
+        }
+        if (bound.after == null) {
+            return true;
+        }
+        for (TAC t = bound.after.getNext(); t != null; t = t.getNext()) {
+            if (t == add) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -6,9 +6,21 @@ import ir.cfg.BasicBlock;
 import ir.ssa.DominatorAnalysis;
 import ir.tac.*;
 
+/**
+ * Dominator-based value numbering over pure expressions. The dominator tree is
+ * walked with one scoped table of available expressions: a block adds the
+ * signatures it computes first, and takes them out again when its subtree is
+ * done, so nothing is copied per level.
+ */
 public class CommonSubexpressionElimination extends BaseOptimization {
     private DominatorAnalysis domAnalysis;
+    private DefUseChains chains;
     private boolean changed;
+    private Map<String, Variable> available;
+    // Signatures added to available, in order, and where each open block's
+    // additions start
+    private List<String> added;
+    private Deque<Integer> blockMarks;
 
     public CommonSubexpressionElimination(Optimizer optimizer) {
         super(optimizer);
@@ -27,17 +39,20 @@ public class CommonSubexpressionElimination extends BaseOptimization {
             return false;
         }
 
+        this.chains = cfg.getDefUseChains();
         this.changed = false;
-        eliminateRecursive(cfg.getEntryBlock(), new HashMap<>());
+        this.available = new HashMap<>();
+        this.added = new ArrayList<>();
+        this.blockMarks = new ArrayDeque<>();
+        domAnalysis.walkDomTree(this::eliminate, this::leave);
         return this.changed;
     }
 
-    private void eliminateRecursive(BasicBlock block, Map<String, Variable> available) {
-        Map<String, Variable> local = new HashMap<>(available);
+    private void eliminate(BasicBlock block) {
+        blockMarks.push(added.size());
 
-        List<TAC> instructions = block.getInstructions();
-        for (int i = 0; i < instructions.size(); i++) {
-            TAC instruction = instructions.get(i);
+        for (TAC instruction = block.getInstructions().first(), next; instruction != null; instruction = next) {
+            next = instruction.getNext();
 
             // Skip eliminated instructions or instructions that don't have a variable
             // destination
@@ -51,21 +66,26 @@ public class CommonSubexpressionElimination extends BaseOptimization {
                 String signature = getExpressionSignature(instruction);
                 Variable dest = (Variable) instruction.getDest();
 
-                if (local.containsKey(signature)) {
-                    Variable existing = local.get(signature);
+                Variable existing = available.get(signature);
+                if (existing != null) {
                     Mov replacement = new Mov(instruction.getId(), dest, existing);
-                    instructions.set(i, replacement);
+                    chains.replace(instruction, replacement);
                     logInstruction(instruction,
                             "Eliminated: " + instruction.toString() + " -> " + replacement.toString());
                     this.changed = true;
                 } else {
-                    local.put(signature, dest);
+                    available.put(signature, dest);
+                    added.add(signature);
                 }
             }
         }
+    }
 
-        for (BasicBlock child : domAnalysis.getDomTreeChildren(block)) {
-            eliminateRecursive(child, local);
+    // Expressions computed in block are no longer available in its siblings
+    private void leave(BasicBlock block) {
+        int mark = blockMarks.pop();
+        for (int i = added.size() - 1; i >= mark; i--) {
+            available.remove(added.remove(i));
         }
     }
 }
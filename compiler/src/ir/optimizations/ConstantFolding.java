@@ -7,6 +7,8 @@ import ir.tac.*;
 
 public class ConstantFolding extends BaseOptimization {
     private Set<BasicBlock> infiniteLoopsDetected = new HashSet<>();
+    private CFG cfg;
+    private DefUseChains chains;
     
     public ConstantFolding(Optimizer optimizer) { 
         super(optimizer); 
@@ -20,11 +22,13 @@ public class ConstantFolding extends BaseOptimization {
     @Override
     public boolean optimize(CFG cfg) {
         infiniteLoopsDetected.clear();
+        this.cfg = cfg;
+        this.chains = cfg.getDefUseChains();
         boolean changed = foldArithmeticAndComparisons(cfg);
         changed |= optimizeBranches(cfg);
 
-        // optimizeBranches invalidates the dominator analysis
-        // We do so in eliminateUnreachableBlocks
+        // Edges and blocks are removed through the CFG, which drops the
+        // dominators and anything else that depended on them
         changed |= eliminateUnreachableBlocks(cfg);
         return changed;
     }
@@ -35,9 +39,8 @@ public class ConstantFolding extends BaseOptimization {
         for (BasicBlock block : cfg.getAllBlocks()) {
             if (block == null) continue;
             
-            List<TAC> instructions = block.getInstructions();
-            for (int i = 0; i < instructions.size(); i++) {
-                TAC instruction = instructions.get(i);
+            for (TAC instruction = block.getInstructions().first(), next; instruction != null; instruction = next) {
+                next = instruction.getNext();
                 
                 if (instruction.isEliminated() || !(instruction.getDest() instanceof Variable)) {
                     continue;
@@ -45,7 +48,7 @@ public class ConstantFolding extends BaseOptimization {
                 
                 TAC simplified = tryAlgebraicSimplification(instruction);
                 if (simplified != null) {
-                    instructions.set(i, simplified);
+                    chains.replace(instruction, simplified);
                     logInstruction(instruction, "Algebraic simplification: " + instruction.toString() + " -> " + simplified.toString());
                     changed = true;
                     continue;
@@ -56,17 +59,11 @@ public class ConstantFolding extends BaseOptimization {
                     Variable dest = (Variable) instruction.getDest();
                     
                     // Preserve float flag from original instruction
-                    boolean isFloat = false;
-                    if (instruction instanceof Add) isFloat = ((Add) instruction).isFloat();
-                    else if (instruction instanceof Sub) isFloat = ((Sub) instruction).isFloat();
-                    else if (instruction instanceof Mul) isFloat = ((Mul) instruction).isFloat();
-                    else if (instruction instanceof Div) isFloat = ((Div) instruction).isFloat();
-                    else if (instruction instanceof Mod) isFloat = ((Mod) instruction).isFloat();
-                    
-                    Mov newMove = new Mov(instruction.getId(), dest, folded, isFloat);
-                    instructions.set(i, newMove);
+                    Mov newMove = new Mov(instruction.getId(), dest, folded, instruction.isFloat());
+                    chains.replace(instruction, newMove);
                     logInstruction(instruction, "Folded constant: " + instruction.toString() + " -> " + newMove.toString());
                     changed = true;
+                    continue;
                 }
                 
                 // Handle unary Not instruction
@@ -78,7 +75,7 @@ public class ConstantFolding extends BaseOptimization {
                         int result = (operandVal == 0) ? 1 : 0;
                         Variable dest = (Variable) notInst.getDest();
                         Mov newMove = new Mov(notInst.getId(), dest, new Immediate(result));
-                        instructions.set(i, newMove);
+                        chains.replace(instruction, newMove);
                         logInstruction(notInst, "Folded constant: " + notInst.toString() + " -> " + newMove.toString());
                         changed = true;
                     }
@@ -95,26 +92,25 @@ public class ConstantFolding extends BaseOptimization {
         for (BasicBlock block : cfg.getAllBlocks()) {
             if (block == null) continue;
             
-            List<TAC> instructions = block.getInstructions();
+            InstructionList instructions = block.getInstructions();
             if (instructions.isEmpty()) continue;
             
             // Scan for constant branches (might not be the very last instruction)
-            for (int i = 0; i < instructions.size(); i++) {
-                TAC inst = instructions.get(i);
+            for (TAC inst = instructions.first(); inst != null; inst = inst.getNext()) {
                 boolean branchOptimized = false;
                 
                 if (inst instanceof Beq) {
-                    branchOptimized = optimizeConditionalBranch((Beq) inst, block, instructions, true, i);
+                    branchOptimized = optimizeConditionalBranch((Beq) inst, block, true);
                 } else if (inst instanceof Bne) {
-                    branchOptimized = optimizeConditionalBranch((Bne) inst, block, instructions, false, i);
+                    branchOptimized = optimizeConditionalBranch((Bne) inst, block, false);
                 } else if (inst instanceof Blt) {
-                    branchOptimized = optimizeComparisonBranch((Blt) inst, block, instructions, "lt", i);
+                    branchOptimized = optimizeComparisonBranch((Blt) inst, block, "lt");
                 } else if (inst instanceof Ble) {
-                    branchOptimized = optimizeComparisonBranch((Ble) inst, block, instructions, "le", i);
+                    branchOptimized = optimizeComparisonBranch((Ble) inst, block, "le");
                 } else if (inst instanceof Bgt) {
-                    branchOptimized = optimizeComparisonBranch((Bgt) inst, block, instructions, "gt", i);
+                    branchOptimized = optimizeComparisonBranch((Bgt) inst, block, "gt");
                 } else if (inst instanceof Bge) {
-                    branchOptimized = optimizeComparisonBranch((Bge) inst, block, instructions, "ge", i);
+                    branchOptimized = optimizeComparisonBranch((Bge) inst, block, "ge");
                 }
                 
                 if (branchOptimized) {
@@ -130,52 +126,28 @@ public class ConstantFolding extends BaseOptimization {
     }
 
     private boolean eliminateUnreachableBlocks(CFG cfg) {
-        boolean changed = false;
-        Set<BasicBlock> reachable = new HashSet<>();
-        Queue<BasicBlock> worklist = new LinkedList<>();
-        
-        BasicBlock entry = cfg.getEntryBlock();
-        if (entry == null) {
+        if (cfg.getEntryBlock() == null) {
             return false;
         }
-        
-        worklist.add(entry);
-        reachable.add(entry);
-        
-        while (!worklist.isEmpty()) {
-            BasicBlock block = worklist.poll();
-            
-            for (BasicBlock succ : block.getSuccessors()) {
-                if (!reachable.contains(succ)) {
-                    reachable.add(succ);
-                    worklist.add(succ);
-                }
-            }
-        }
-        
-        List<BasicBlock> allBlocks = new ArrayList<>(cfg.getAllBlocks());
-        
-        for (BasicBlock block : allBlocks) {
-            if (!reachable.contains(block)) {
-                cfg.removeBlock(block);
-                changed = true;
-                log("Eliminated unreachable block: BB" + block.getNum());
-            }
+
+        boolean changed = false;
+        for (BasicBlock block : unreachableBlocks(cfg)) {
+            cfg.removeBlock(block);
+            changed = true;
+            log("Eliminated unreachable block: BB" + block.getNum());
         }
-        
         return changed;
     }
     
     private TAC tryAlgebraicSimplification(TAC instruction) {
         if (!isBinaryArithmetic(instruction)) return null;
         
-        List<Value> operands = instruction.getOperands();
-        if (operands == null || operands.size() < 2) return null;
+        if (instruction.operandCount() < 2) return null;
         
         Variable dest = (Variable) instruction.getDest();
         int id = instruction.getId();
-        Value left = operands.get(0);
-        Value right = operands.get(1);
+        Value left = instruction.getOperand(0);
+        Value right = instruction.getOperand(1);
         
         Integer leftVal = getIntegerValue(left);
         Integer rightVal = getIntegerValue(right);
@@ -196,7 +168,7 @@ public class ConstantFolding extends BaseOptimization {
             if (leftVal != null && leftVal == 1) return new Mov(id, dest, right);
         } else if (instruction instanceof Div) {
             if (rightVal != null && rightVal == 1) return new Mov(id, dest, left);
-            if (leftVal != null && leftVal == 0) return new Mov(id, dest, new Immediate(0));
+            if (leftVal != null && leftVal == 0 && !mayTrap(instruction)) return new Mov(id, dest, new Immediate(0));
         } else if (instruction instanceof Pow) {
             if (rightVal != null && rightVal == 0) return new Mov(id, dest, new Immediate(1));
             if (rightVal != null && rightVal == 1) return new Mov(id, dest, left);
@@ -232,11 +204,10 @@ public class ConstantFolding extends BaseOptimization {
         
         if (!isBinaryArithmetic(instruction)) return null;
         
-        List<Value> operands = instruction.getOperands();
-        if (operands == null || operands.size() < 2) return null;
+        if (instruction.operandCount() < 2) return null;
         
-        Value left = operands.get(0);
-        Value right = operands.get(1);
+        Value left = instruction.getOperand(0);
+        Value right = instruction.getOperand(1);
         
         Number leftNum = getNumericValue(left);
         Number rightNum = getNumericValue(right);
@@ -245,71 +216,76 @@ public class ConstantFolding extends BaseOptimization {
         
         try {
             // Check if this is a float operation using the instruction's isFloat flag
-            boolean isFloat = false;
-            if (instruction instanceof Add) isFloat = ((Add) instruction).isFloat();
-            else if (instruction instanceof Sub) isFloat = ((Sub) instruction).isFloat();
-            else if (instruction instanceof Mul) isFloat = ((Mul) instruction).isFloat();
-            else if (instruction instanceof Div) isFloat = ((Div) instruction).isFloat();
-            else if (instruction instanceof Mod) isFloat = ((Mod) instruction).isFloat();
-            
-            if (isFloat) {
+            if (instruction.isFloat()) {
                 double leftVal = leftNum.doubleValue();
                 double rightVal = rightNum.doubleValue();
-                double result = 0.0;
+                double result;
                 
-                if (instruction instanceof Add) {
-                    result = leftVal + rightVal;
-                } else if (instruction instanceof Sub) {
-                    result = leftVal - rightVal;
-                } else if (instruction instanceof Mul) {
-                    result = leftVal * rightVal;
-                } else if (instruction instanceof Div) {
-                    if (rightVal == 0.0) return null;
-                    result = leftVal / rightVal;
-                } else if (instruction instanceof Mod) {
-                    if (rightVal == 0.0) return null;
-                    result = leftVal % rightVal;
-                } else if (instruction instanceof Pow) {
-                    if (leftVal < 0 || rightVal < 0) return null;
-                    result = Math.pow(leftVal, rightVal);
-                } else {
-                    return null;
+                switch (instruction.opcode()) {
+                    case ADD:
+                        result = leftVal + rightVal;
+                        break;
+                    case SUB:
+                        result = leftVal - rightVal;
+                        break;
+                    case MUL:
+                        result = leftVal * rightVal;
+                        break;
+                    case DIV:
+                        if (rightVal == 0.0) return null;
+                        result = leftVal / rightVal;
+                        break;
+                    case MOD:
+                        if (rightVal == 0.0) return null;
+                        result = leftVal % rightVal;
+                        break;
+                    default:
+                        return null;
                 }
                 
                 return new Immediate(result);
             } else {
                 int leftVal = leftNum.intValue();
                 int rightVal = rightNum.intValue();
-                Integer result = null;
+                int result;
                 
-                if (instruction instanceof Add) {
-                    result = leftVal + rightVal;
-                } else if (instruction instanceof Sub) {
-                    result = leftVal - rightVal;
-                } else if (instruction instanceof Mul) {
-                    result = leftVal * rightVal;
-                } else if (instruction instanceof Div) {
-                    if (rightVal == 0) return null;
-                    result = leftVal / rightVal;
-                } else if (instruction instanceof Mod) {
-                    if (rightVal == 0) return null;
-                    result = leftVal % rightVal;
-                } else if (instruction instanceof Pow) {
-                    if (leftVal < 0 || rightVal < 0) return null;
-                    result = (int) Math.pow(leftVal, rightVal);
-                } else if (instruction instanceof And) {
-                    result = leftVal & rightVal;
-                } else if (instruction instanceof Or) {
-                    result = leftVal | rightVal;
+                switch (instruction.opcode()) {
+                    case ADD:
+                        result = leftVal + rightVal;
+                        break;
+                    case SUB:
+                        result = leftVal - rightVal;
+                        break;
+                    case MUL:
+                        result = leftVal * rightVal;
+                        break;
+                    case DIV:
+                        if (rightVal == 0) return null;
+                        result = leftVal / rightVal;
+                        break;
+                    case MOD:
+                        if (rightVal == 0) return null;
+                        result = leftVal % rightVal;
+                        break;
+                    case POW:
+                        if (leftVal < 0 || rightVal < 0) return null;
+                        result = (int) Math.pow(leftVal, rightVal);
+                        break;
+                    case AND:
+                        result = leftVal & rightVal;
+                        break;
+                    case OR:
+                        result = leftVal | rightVal;
+                        break;
+                    default:
+                        return null;
                 }
                 
-                if (result != null) return new Immediate(result);
+                return new Immediate(result);
             }
         } catch (ArithmeticException e) {
             return null;
         }
-        
-        return null;
     }
     
     private Value foldComparison(Cmp cmp) {
@@ -376,8 +352,7 @@ public class ConstantFolding extends BaseOptimization {
         return null;
     }
     
-    private boolean optimizeConditionalBranch(TAC branch, BasicBlock block, 
-                                             List<TAC> instructions, boolean isBeq, int index) {
+    private boolean optimizeConditionalBranch(TAC branch, BasicBlock block, boolean isBeq) {
         Value condition;
         BasicBlock target;
         
@@ -400,7 +375,7 @@ public class ConstantFolding extends BaseOptimization {
         
         if (branchTaken) {
             Bra unconditional = new Bra(branch.getId(), target);
-            instructions.set(index, unconditional);
+            chains.replace(branch, unconditional);
             logInstruction(branch, "Branch always taken: " + branch.toString() + " -> " + unconditional.toString());
             
             if (isInfiniteLoop(block, target)) {
@@ -412,27 +387,25 @@ public class ConstantFolding extends BaseOptimization {
             List<BasicBlock> oldSuccs = new ArrayList<>(block.getSuccessors());
             for (BasicBlock s : oldSuccs) {
                 if (s != target) {
-                     s.getPredecessors().remove(block);
-                     block.getSuccessors().remove(s);
+                    cfg.removeEdge(block, s);
                 }
             }
             
             // Remove dead code after the jump
-            while (instructions.size() > index + 1) {
-                instructions.remove(index + 1);
+            while (unconditional.getNext() != null) {
+                chains.unlink(unconditional.getNext());
             }
             
             return true;
         } else {
-            instructions.remove(index);
+            chains.unlink(branch);
             logInstruction(branch, "Branch never taken: " + branch.toString());
             removeBranchSuccessor(block, target);
             return true;
         }
     }
     
-    private boolean optimizeComparisonBranch(TAC branch, BasicBlock block,
-                                            List<TAC> instructions, String comparison, int index) {
+    private boolean optimizeComparisonBranch(TAC branch, BasicBlock block, String comparison) {
         Value condition;
         BasicBlock target;
         
@@ -465,7 +438,7 @@ public class ConstantFolding extends BaseOptimization {
         
         if (branchTaken) {
             Bra unconditional = new Bra(branch.getId(), target);
-            instructions.set(index, unconditional);
+            chains.replace(branch, unconditional);
             logInstruction(branch, "Branch always taken: " + branch.toString() + " -> " + unconditional.toString());
             
             if (isInfiniteLoop(block, target)) {
@@ -477,32 +450,33 @@ public class ConstantFolding extends BaseOptimization {
             List<BasicBlock> oldSuccs = new ArrayList<>(block.getSuccessors());
             for (BasicBlock s : oldSuccs) {
                 if (s != target) {
-                     s.getPredecessors().remove(block);
-                     block.getSuccessors().remove(s);
+                    cfg.removeEdge(block, s);
                 }
             }
 
             // Remove dead code after the jump
-            while (instructions.size() > index + 1) {
-                instructions.remove(index + 1);
+            while (unconditional.getNext() != null) {
+                chains.unlink(unconditional.getNext());
             }
             
             return true;
         } else {
-            instructions.remove(index);
+            chains.unlink(branch);
             logInstruction(branch, "Branch never taken: " + branch.toString());
             removeBranchSuccessor(block, target);
             return true;
         }
     }
     
+    // An always-taken branch back to a block that dominates this one never
+    // leaves the loop. Block numbers say nothing about edge direction: blocks
+    // nested in a statement are numbered after its join and exit blocks.
     private boolean isInfiniteLoop(BasicBlock current, BasicBlock target) {
-        return target.getNum() <= current.getNum();
+        return cfg.getDominatorAnalysis().dominates(target, current);
     }
     
     
     private void removeBranchSuccessor(BasicBlock block, BasicBlock target) {
-        block.getSuccessors().remove(target);
-        target.getPredecessors().remove(block);
+        cfg.removeEdge(block, target);
     }
 }
@@ -15,12 +15,19 @@ public class CopyPropagation extends BaseOptimization {
         LatticeType type;
         Variable value;
 
-        static LatticeValue TOP() {
+        private static final LatticeValue TOP_VALUE = of(LatticeType.TOP);
+        private static final LatticeValue BOTTOM_VALUE = of(LatticeType.BOTTOM);
+
+        private static LatticeValue of(LatticeType type) {
             LatticeValue lv = new LatticeValue();
-            lv.type = LatticeType.TOP;
+            lv.type = type;
             return lv;
         }
 
+        static LatticeValue TOP() {
+            return TOP_VALUE;
+        }
+
         static LatticeValue COPY(Variable var) {
             LatticeValue lv = new LatticeValue();
             lv.type = LatticeType.COPY;
@@ -29,9 +36,7 @@ public class CopyPropagation extends BaseOptimization {
         }
 
         static LatticeValue BOTTOM() {
-            LatticeValue lv = new LatticeValue();
-            lv.type = LatticeType.BOTTOM;
-            return lv;
+            return BOTTOM_VALUE;
         }
 
         @Override
@@ -59,97 +64,71 @@ public class CopyPropagation extends BaseOptimization {
 
     @Override
     public boolean optimize(CFG cfg) {
-        Map<Variable, Object> defSite = new HashMap<>();
-        Map<Variable, List<Object>> uses = new HashMap<>();
-        Map<Variable, LatticeValue> lattice = new HashMap<>();
-        buildDefUseChains(cfg, defSite, uses, lattice);
-        runWorklist(defSite, uses, lattice);
-        return applyPropagation(cfg, lattice);
+        DefUseChains chains = cfg.getDefUseChains();
+        ValueMap<LatticeValue> lattice = initLattice(chains);
+        runWorklist(chains, lattice);
+        return applyPropagation(chains, lattice);
     }
 
-    private void buildDefUseChains(CFG cfg, Map<Variable, Object> defSite,
-            Map<Variable, List<Object>> uses,
-            Map<Variable, LatticeValue> lattice) {
-        for (BasicBlock block : cfg.getAllBlocks()) {
-            if (block == null)
-                continue;
-
-            for (Phi phi : block.getPhis()) {
-                if (phi.isEliminated())
-                    continue;
-
-                Variable dest = (Variable) phi.getDest();
-                defSite.put(dest, phi);
-                lattice.put(dest, LatticeValue.TOP());
-
-                if (phi.getArgs() != null) {
-                    for (Value arg : phi.getArgs().values()) {
-                        if (arg instanceof Variable) {
-                            Variable argVar = (Variable) arg;
-                            uses.putIfAbsent(argVar, new ArrayList<>());
-                            uses.get(argVar).add(phi);
-                        }
-                    }
-                }
-            }
-
-            for (TAC instruction : block.getInstructions()) {
-                if (instruction.isEliminated())
-                    continue;
-
-                Value dest = instruction.getDest();
-                if (dest instanceof Variable) {
-                    Variable destVar = (Variable) dest;
-                    defSite.put(destVar, instruction);
-                    lattice.put(destVar, LatticeValue.TOP());
-                }
-
-                List<Value> operands = instruction.getOperands();
-                if (operands != null) {
-                    for (Value op : operands) {
-                        if (op instanceof Variable) {
-                            Variable opVar = (Variable) op;
-                            uses.putIfAbsent(opVar, new ArrayList<>());
-                            uses.get(opVar).add(instruction);
-                            lattice.putIfAbsent(opVar, LatticeValue.BOTTOM());
-                        }
-                    }
-                }
+    // Defined values start at TOP; values used but never defined here
+    // (parameters, globals on entry) are unknown
+    private ValueMap<LatticeValue> initLattice(DefUseChains chains) {
+        ValueNumbering numbering = chains.getNumbering();
+        ValueMap<LatticeValue> lattice = new ValueMap<>(numbering);
+        for (int n = 0; n < numbering.size(); n++) {
+            if (chains.getDef(n) != null) {
+                lattice.put(n, LatticeValue.TOP());
+            } else if (!chains.getUses(n).isEmpty()) {
+                lattice.put(n, LatticeValue.BOTTOM());
             }
         }
+        return lattice;
     }
 
-    private void runWorklist(Map<Variable, Object> defSite,
-            Map<Variable, List<Object>> uses,
-            Map<Variable, LatticeValue> lattice) {
-        Queue<Variable> worklist = new LinkedList<>(defSite.keySet());
-        Set<Variable> inWorklist = new HashSet<>(worklist);
+    // Queue of value numbers; each value is queued at most once, so a ring of
+    // size n never overflows
+    private void runWorklist(DefUseChains chains, ValueMap<LatticeValue> lattice) {
+        ValueNumbering numbering = lattice.getNumbering();
+        int size = numbering.size();
+        int[] worklist = new int[Math.max(size, 1)];
+        BitSet inWorklist = new BitSet(size);
+        int head = 0;
+        int count = 0;
+        for (int n = 0; n < size; n++) {
+            if (chains.getDef(n) != null) {
+                worklist[count++] = n;
+                inWorklist.set(n);
+            }
+        }
 
-        while (!worklist.isEmpty()) {
-            Variable var = worklist.poll();
-            inWorklist.remove(var);
+        while (count > 0) {
+            int var = worklist[head];
+            head = (head + 1) % worklist.length;
+            count--;
+            inWorklist.clear(var);
 
             LatticeValue oldValue = lattice.get(var);
-            LatticeValue newValue = evaluate(defSite.get(var), lattice);
+            LatticeValue newValue = evaluate(chains.getDef(var), lattice);
 
             if (!newValue.equals(oldValue)) {
                 lattice.put(var, newValue);
 
-                List<Object> userList = uses.get(var);
-                if (userList != null) {
-                    for (Object use : userList) {
-                        Variable useDef = getDefinedVariable(use);
-                        if (useDef != null && !inWorklist.contains(useDef)) {
-                            worklist.add(useDef);
-                            inWorklist.add(useDef);
-                        }
+                for (TAC use : chains.getUses(var)) {
+                    Value useDef = use.getDest();
+                    if (!(useDef instanceof Variable))
+                        continue;
+                    int n = numbering.lookup((Variable) useDef);
+                    if (n >= 0 && !inWorklist.get(n)) {
+                        worklist[(head + count) % worklist.length] = n;
+                        count++;
+                        inWorklist.set(n);
                     }
                 }
             }
         }
     }
 
-    private LatticeValue evaluate(Object def, Map<Variable, LatticeValue> lattice) {
+    private LatticeValue evaluate(TAC def, ValueMap<LatticeValue> lattice) {
         if (def instanceof Phi)
             return evaluatePhi((Phi) def, lattice);
         if (def instanceof Mov)
@@ -157,7 +136,7 @@ public class CopyPropagation extends BaseOptimization {
         return LatticeValue.BOTTOM();
     }
 
-    private LatticeValue evaluatePhi(Phi phi, Map<Variable, LatticeValue> lattice) {
+    private LatticeValue evaluatePhi(Phi phi, ValueMap<LatticeValue> lattice) {
         Map<BasicBlock, Value> args = phi.getArgs();
         if (args == null || args.isEmpty())
             return LatticeValue.BOTTOM();
@@ -190,7 +169,7 @@ public class CopyPropagation extends BaseOptimization {
         return result != null ? result : LatticeValue.TOP();
     }
 
-    private LatticeValue evaluateMov(Mov mov, Map<Variable, LatticeValue> lattice) {
+    private LatticeValue evaluateMov(Mov mov, ValueMap<LatticeValue> lattice) {
         Value src = mov.getSrc();
 
         // Ignore constant assignments (not a copy)
@@ -215,7 +194,7 @@ public class CopyPropagation extends BaseOptimization {
         return LatticeValue.BOTTOM();
     }
 
-    private LatticeValue getLatticeValue(Value value, Map<Variable, LatticeValue> lattice) {
+    private LatticeValue getLatticeValue(Value value, ValueMap<LatticeValue> lattice) {
         if (value instanceof Variable) {
             return lattice.getOrDefault((Variable) value, LatticeValue.BOTTOM());
         }
@@ -223,70 +202,40 @@ public class CopyPropagation extends BaseOptimization {
         return LatticeValue.BOTTOM();
     }
 
-    private boolean applyPropagation(CFG cfg, Map<Variable, LatticeValue> lattice) {
-        boolean changed = false;
+    // Only values that ended up copies are visited; their users come from the
+    // chains instead of a scan over the whole function
+    private boolean applyPropagation(DefUseChains chains, ValueMap<LatticeValue> lattice) {
+        ValueNumbering numbering = chains.getNumbering();
+        Set<TAC> changed = new LinkedHashSet<>();
 
-        for (BasicBlock block : cfg.getAllBlocks()) {
-            if (block == null)
+        for (int n = 0; n < numbering.size(); n++) {
+            LatticeValue lv = lattice.get(n);
+            if (lv == null || lv.type != LatticeType.COPY)
                 continue;
 
-            for (Phi phi : block.getPhis()) {
-                if (phi.isEliminated())
-                    continue;
-
-                Map<BasicBlock, Value> args = phi.getArgs();
-                if (args != null) {
-                    Map<BasicBlock, Value> newArgs = new HashMap<>();
-                    boolean phiChanged = false;
-
-                    for (Map.Entry<BasicBlock, Value> entry : args.entrySet()) {
-                        Value replacement = getReplacement(entry.getValue(), lattice);
-                        newArgs.put(entry.getKey(), replacement);
-                        if (replacement != entry.getValue())
-                            phiChanged = true;
-                    }
-
-                    if (phiChanged) {
-                        phi.setArgs(newArgs);
-                        changed = true;
-                        logInstruction(phi, "Copy propagated in phi: " + phi.toString());
-                    }
-                }
+            Variable var = numbering.get(n);
+            Value replacement = getReplacement(var, lattice);
+            if (replacement != var) {
+                changed.addAll(chains.replaceAllUsesWith(var, replacement));
             }
+        }
 
-            for (TAC instruction : block.getInstructions()) {
-                if (instruction.isEliminated())
-                    continue;
-
-                List<Value> operands = instruction.getOperands();
-                if (operands != null && !operands.isEmpty()) {
-                    List<Value> newOperands = new ArrayList<>();
-                    boolean instChanged = false;
-
-                    for (Value op : operands) {
-                        Value replacement = getReplacement(op, lattice);
-                        newOperands.add(replacement);
-                        if (replacement != op)
-                            instChanged = true;
-                    }
-
-                    if (instChanged) {
-                        instruction.setOperands(newOperands);
-                        changed = true;
-                        logInstruction(instruction, "Copy propagated in: " + instruction.toString());
-                    }
-                }
+        for (TAC user : changed) {
+            if (user instanceof Phi) {
+                logInstruction(user, "Copy propagated in phi: " + user.toString());
+            } else {
+                logInstruction(user, "Copy propagated in: " + user.toString());
             }
         }
 
-        return changed;
+        return !changed.isEmpty();
     }
 
-    private Value getReplacement(Value value, Map<Variable, LatticeValue> lattice) {
+    private Value getReplacement(Value value, ValueMap<LatticeValue> lattice) {
         return getReplacement(value, lattice, new HashSet<>());
     }
 
-    private Value getReplacement(Value value, Map<Variable, LatticeValue> lattice, Set<Variable> visited) {
+    private Value getReplacement(Value value, ValueMap<LatticeValue> lattice, Set<Variable> visited) {
         if (!(value instanceof Variable))
             return value;
 
@@ -310,15 +259,4 @@ public class CopyPropagation extends BaseOptimization {
 
         return value;
     }
-
-    private Variable getDefinedVariable(Object defOrUse) {
-        if (defOrUse instanceof Phi) {
-            Value dest = ((Phi) defOrUse).getDest();
-            return dest instanceof Variable ? (Variable) dest : null;
-        } else if (defOrUse instanceof TAC) {
-            Value dest = ((TAC) defOrUse).getDest();
-            return dest instanceof Variable ? (Variable) dest : null;
-        }
-        return null;
-    }
 }
@@ -19,17 +19,14 @@ public class DeadCodeElimination extends BaseOptimization {
     public boolean optimize(CFG cfg) {
         boolean changed = false;
 
-        Map<Variable, TAC> defs = new HashMap<>();
-        Map<Variable, Set<TAC>> uses = new HashMap<>();
-        buildDefUseChains(cfg, defs, uses);
+        DefUseChains chains = cfg.getDefUseChains();
+        int size = chains.getNumbering().size();
 
         Queue<TAC> worklist = new LinkedList<>();
-        for (Variable var : defs.keySet()) {
-            if (!uses.containsKey(var) || uses.get(var).isEmpty()) {
-                TAC def = defs.get(var);
-                if (canEliminate(def)) {
-                    worklist.add(def);
-                }
+        for (int n = 0; n < size; n++) {
+            TAC def = chains.getDef(n);
+            if (def != null && chains.getUses(n).isEmpty() && canEliminate(def)) {
+                worklist.add(def);
             }
         }
 
@@ -40,26 +37,20 @@ public class DeadCodeElimination extends BaseOptimization {
                 continue;
             }
 
-            deadInst.setEliminated(true);
+            // Drops deadInst from its operands' use lists
+            chains.eliminate(deadInst);
             changed = true;
             logInstruction(deadInst, "Eliminated: " + deadInst.toString());
 
-            List<Value> operands = getOperands(deadInst);
-            for (Value operand : operands) {
+            for (int i = 0; i < deadInst.operandCount(); i++) {
+                Value operand = deadInst.getOperand(i);
                 if (!(operand instanceof Variable))
                     continue;
 
                 Variable var = (Variable) operand;
-                TAC def = defs.get(var);
-                if (def == null) continue;
-
-                Set<TAC> users = uses.get(var);
-                if (users != null) {
-                    users.remove(deadInst);
-
-                    if (users.isEmpty() && canEliminate(def) && !worklist.contains(def)) {
-                        worklist.add(def);
-                    }
+                TAC def = chains.getDef(var);
+                if (def != null && !chains.isUsed(var) && canEliminate(def) && !worklist.contains(def)) {
+                    worklist.add(def);
                 }
             }
         }
@@ -68,52 +59,20 @@ public class DeadCodeElimination extends BaseOptimization {
     }
     
     private boolean eliminateUnreachableBlocks(CFG cfg) {
-        Set<BasicBlock> reachable = new HashSet<>();
-        Queue<BasicBlock> worklist = new LinkedList<>();
-        
-        // Start from entry block
-        if (cfg.getEntryBlock() != null) {
-            worklist.add(cfg.getEntryBlock());
-            reachable.add(cfg.getEntryBlock());
-        }
-        
-        while (!worklist.isEmpty()) {
-            BasicBlock block = worklist.poll();
-            
-            for (BasicBlock succ : block.getSuccessors()) {
-                if (!reachable.contains(succ)) {
-                    reachable.add(succ);
-                    worklist.add(succ);
-                }
-            }
+        if (cfg.getEntryBlock() == null) {
+            return false;
         }
-        
+
         boolean changed = false;
-        List<BasicBlock> allBlocks = new ArrayList<>(cfg.getAllBlocks());
-        
-        for (BasicBlock block : allBlocks) {
-            if (!reachable.contains(block)) {
-                // Remove block from CFG
-                cfg.removeBlock(block); // CFG has a helper method
-                
-                log("Removed unreachable block: BB" + block.getNum());
-                changed = true;
-            }
+        for (BasicBlock block : unreachableBlocks(cfg)) {
+            cfg.removeBlock(block);
+            log("Removed unreachable block: BB" + block.getNum());
+            changed = true;
         }
-        
         return changed;
     }
 
     private boolean canEliminate(TAC instruction) {
-        return !hasSideEffects(instruction);
-    }
-
-
-    private List<Value> getOperands(TAC instruction) {
-        if (instruction instanceof Phi) {
-            Phi phi = (Phi) instruction;
-            return phi.getArgs() != null ? new ArrayList<>(phi.getArgs().values()) : Collections.emptyList();
-        }
-        return instruction.getOperands() != null ? instruction.getOperands() : Collections.emptyList();
+        return !hasSideEffects(instruction) && !mayTrap(instruction);
     }
 }
@@ -46,6 +46,8 @@ public class Optimizer {
             logTransformation("Function: " + cfg.getFunctionName());
 
             runOptimizationPasses(cfg, optimizationsToApply);
+            // Later stages rewrite the IR without keeping the chains current
+            cfg.invalidateDefUseChains();
         }
 
         return generateOutput(cfgs);
@@ -56,7 +58,7 @@ public class Optimizer {
 
         if (max) {
             // Note: OFE is handled separately as a global pass, but standard per-CFG opts listed here
-            return Arrays.asList("cf", "cp", "cpp", "dce", "cse");
+            return Arrays.asList("cf", "cp", "cpp", "dce", "cse", "bce");
         }
 
         if (opts != null && !opts.isEmpty()) {
@@ -107,20 +109,36 @@ public class Optimizer {
     }
 
     private boolean optimizeCFG(CFG cfg, String optName) {
+        BaseOptimization pass = createPass(optName);
+        if (pass == null) {
+            System.err.println("Unknown optimization: " + optName);
+            return false;
+        }
+        boolean changed = pass.optimize(cfg);
+        if (changed) {
+            cfg.getAnalyses().invalidateAllExcept(pass.preservedAnalyses());
+        }
+        // Later passes and codegen then never walk instructions marked dead
+        cfg.sweepEliminated();
+        return changed;
+    }
+
+    private BaseOptimization createPass(String optName) {
         switch (optName.toLowerCase()) {
             case "cf":
-                return new ConstantFolding(this).optimize(cfg);
+                return new ConstantFolding(this);
             case "cp":
-                return new ConstantPropagation(this).optimize(cfg);
+                return new ConstantPropagation(this);
             case "cpp":
-                return new CopyPropagation(this).optimize(cfg);
+                return new CopyPropagation(this);
             case "dce":
-                return new DeadCodeElimination(this).optimize(cfg);
+                return new DeadCodeElimination(this);
             case "cse":
-                return new CommonSubexpressionElimination(this).optimize(cfg);
+                return new CommonSubexpressionElimination(this);
+            case "bce":
+                return new BoundsCheckElimination(this);
             default:
-                System.err.println("Unknown optimization: " + optName);
-                return false;
+                return null;
         }
     }
 
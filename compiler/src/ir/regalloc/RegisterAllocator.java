@@ -2,6 +2,7 @@ package ir.regalloc;
 
 import ir.cfg.BasicBlock;
 import ir.cfg.CFG;
+import ir.cfg.IntSets;
 import ir.tac.*;
 import mocha.Symbol;
 
@@ -53,21 +54,20 @@ public class RegisterAllocator {
     }
 
     public void allocate(List<CFG> cfgs) {
+        SSAElimination ssaElim = new SSAElimination(cfgs);
         for (CFG cfg : cfgs) {
-            allocate(cfg);
+            allocate(cfg, ssaElim);
         }
     }
 
-    private void allocate(CFG cfg) {
-        SSAElimination ssaElim = new SSAElimination();
+    private void allocate(CFG cfg, SSAElimination ssaElim) {
         ssaElim.eliminatePhis(cfg);
 
         while (true) {
-            Map<BasicBlock, Set<Variable>> liveIn = new HashMap<>();
-            Map<BasicBlock, Set<Variable>> liveOut = new HashMap<>();
-            computeLiveness(cfg, liveIn, liveOut);
+            ValueNumbering numbering = ValueNumbering.of(cfg);
+            int[][] liveOut = computeLiveness(cfg, numbering);
 
-            InterferenceGraph graph = buildInterferenceGraph(cfg, liveOut);
+            InterferenceGraph graph = buildInterferenceGraph(cfg, numbering, liveOut);
 
             Map<Variable, Integer> coloring = colorGraph(graph);
 
@@ -82,93 +82,90 @@ public class RegisterAllocator {
         }
     }
 
-    private void computeLiveness(CFG cfg,
-            Map<BasicBlock, Set<Variable>> liveIn,
-            Map<BasicBlock, Set<Variable>> liveOut) {
-        for (BasicBlock bb : cfg.getAllBlocks()) {
-            liveIn.put(bb, new HashSet<>());
-            liveOut.put(bb, new HashSet<>());
+    /**
+     * Live-out set of every block, indexed like cfg.getAllBlocks(), as sorted
+     * arrays of value numbers. A big straight-line main has about as many
+     * values as blocks but only a few live across each block, so dense bit
+     * vectors per block would be quadratic in memory; these sets only hold
+     * what is live. USE and DEF are gathered once per block.
+     */
+    private int[][] computeLiveness(CFG cfg, ValueNumbering numbering) {
+        List<BasicBlock> blocks = cfg.getAllBlocks();
+        int n = blocks.size();
+
+        int[][] succs = new int[n][];
+        int[][] use = new int[n][];
+        int[][] def = new int[n][];
+        int[][] liveIn = new int[n][];
+        int[][] liveOut = new int[n][];
+        // Scratch sets for one block at a time, cleared after each
+        BitSet blockUse = new BitSet();
+        BitSet blockDef = new BitSet();
+        for (int i = 0; i < n; i++) {
+            BasicBlock bb = blocks.get(i);
+            List<BasicBlock> successors = bb.getSuccessors();
+            succs[i] = new int[successors.size()];
+            for (int k = 0; k < succs[i].length; k++) {
+                succs[i][k] = successors.get(k).getIndex();
+            }
+
+            // USE[B]: read before any write in B; DEF[B]: written in B
+            for (TAC tac : bb.getInstructions()) {
+                for (int k = 0; k < tac.operandCount(); k++) {
+                    Value op = tac.getOperand(k);
+                    if (op instanceof Variable && !isPhysicalRegister((Variable) op)) {
+                        int v = numbering.number((Variable) op);
+                        if (!blockDef.get(v)) {
+                            blockUse.set(v);
+                        }
+                    }
+                }
+                if (tac.getDest() instanceof Variable && !isPhysicalRegister((Variable) tac.getDest())) {
+                    blockDef.set(numbering.number((Variable) tac.getDest()));
+                }
+            }
+            use[i] = blockUse.stream().toArray();
+            def[i] = blockDef.stream().toArray();
+            blockUse.clear();
+            blockDef.clear();
+            liveIn[i] = IntSets.EMPTY;
+            liveOut[i] = IntSets.EMPTY;
         }
 
+        // Sets only grow; union and minus hand back their first argument when
+        // nothing changes, so a settled block allocates nothing
         boolean changed = true;
         while (changed) {
             changed = false;
-            List<BasicBlock> blocks = cfg.getAllBlocks();
-
-            for (int i = blocks.size() - 1; i >= 0; i--) {
-                BasicBlock bb = blocks.get(i);
-
-                Set<Variable> out = new HashSet<>();
-                for (BasicBlock succ : bb.getSuccessors()) {
-                    out.addAll(liveIn.get(succ));
-                }
-
-                if (!out.equals(liveOut.get(bb))) {
-                    liveOut.put(bb, out);
-                    changed = true;
-                }
-
-                // IN[B] = USE[B] union (OUT[B] - DEF[B])
-                Set<Variable> in = new HashSet<>(out);
-                List<TAC> insts = bb.getInstructions();
-
-                for (int j = insts.size() - 1; j >= 0; j--) {
-                    TAC tac = insts.get(j);
-
-                    if (tac.getDest() instanceof Variable) {
-                        Variable def = (Variable) tac.getDest();
-                        if (!isPhysicalRegister(def)) {
-                            in.remove(def);
-                        }
-                    }
-
-                    for (Value op : tac.getOperands()) {
-                        if (op instanceof Variable) {
-                            Variable v = (Variable) op;
-                            if (!isPhysicalRegister(v)) {
-                                in.add(v);
-                            }
-                        }
-                    }
-
-                    if (tac instanceof StoreGP) {
-                        StoreGP sgp = (StoreGP) tac;
-                        if (sgp.getSrc() instanceof Variable) {
-                            Variable v = (Variable) sgp.getSrc();
-                            if (!isPhysicalRegister(v)) {
-                                in.add(v);
-                            }
-                        }
-                    }
-
-                    if (tac instanceof Store) {
-                        Store store = (Store) tac;
-                        if (store.getSrc() instanceof Variable) {
-                            Variable v = (Variable) store.getSrc();
-                            if (!isPhysicalRegister(v)) {
-                                in.add(v);
-                            }
-                        }
-                    }
+            for (int i = n - 1; i >= 0; i--) {
+                for (int succ : succs[i]) {
+                    liveOut[i] = IntSets.union(liveOut[i], liveIn[succ]);
                 }
 
-                if (!in.equals(liveIn.get(bb))) {
-                    liveIn.put(bb, in);
+                // IN[B] = USE[B] union (OUT[B] - DEF[B]); it can only grow,
+                // so a change shows in its size
+                int[] in = IntSets.union(IntSets.minus(liveOut[i], def[i]), use[i]);
+                if (in.length != liveIn[i].length) {
+                    liveIn[i] = in;
                     changed = true;
                 }
             }
         }
+        return liveOut;
     }
 
-    private InterferenceGraph buildInterferenceGraph(CFG cfg, Map<BasicBlock, Set<Variable>> liveOut) {
+    private InterferenceGraph buildInterferenceGraph(CFG cfg, ValueNumbering numbering, int[][] liveOut) {
         InterferenceGraph graph = new InterferenceGraph();
+        List<BasicBlock> blocks = cfg.getAllBlocks();
 
-        for (BasicBlock bb : cfg.getAllBlocks()) {
-            Set<Variable> live = new HashSet<>(liveOut.get(bb));
+        BitSet live = new BitSet();
+        for (int b = 0; b < blocks.size(); b++) {
+            live.clear();
+            for (int v : liveOut[b]) {
+                live.set(v);
+            }
 
-            List<TAC> insts = bb.getInstructions();
-            for (int i = insts.size() - 1; i >= 0; i--) {
-                TAC tac = insts.get(i);
+            for (TAC tac = blocks.get(b).getInstructions().last(); tac != null; tac = tac.getPrev()) {
 
                 Variable def = null;
                 if (tac.getDest() instanceof Variable) {
@@ -176,50 +173,31 @@ public class RegisterAllocator {
                 }
 
                 if (def != null && !isPhysicalRegister(def)) {
-                    for (Variable v : live) {
-                        if (!v.equals(def)) {
-                            graph.addEdge(def, v);
+                    int d = numbering.number(def);
+                    for (int v = live.nextSetBit(0); v >= 0; v = live.nextSetBit(v + 1)) {
+                        if (v != d) {
+                            graph.addEdge(def, numbering.get(v));
                         }
                     }
-                    live.remove(def);
+                    live.clear(d);
                     graph.addNode(def);
                 }
 
                 if (tac instanceof Call) {
-                    for (Variable v : live) {
+                    for (int v = live.nextSetBit(0); v >= 0; v = live.nextSetBit(v + 1)) {
                         for (int r = 1; r <= 24; r++) {
-                             graph.addEdge(v, physicalRegisters.get(r));
+                            graph.addEdge(numbering.get(v), physicalRegisters.get(r));
                         }
                     }
                 }
 
-                for (Value op : tac.getOperands()) {
+                // Store and StoreGP list their source among the operands
+                for (int k = 0; k < tac.operandCount(); k++) {
+                    Value op = tac.getOperand(k);
                     if (op instanceof Variable) {
                         Variable v = (Variable) op;
                         if (!isPhysicalRegister(v)) {
-                            live.add(v);
-                            graph.addNode(v);
-                        }
-                    }
-                }
-
-                if (tac instanceof StoreGP) {
-                    StoreGP sgp = (StoreGP) tac;
-                    if (sgp.getSrc() instanceof Variable) {
-                        Variable v = (Variable) sgp.getSrc();
-                        if (!isPhysicalRegister(v)) {
-                            live.add(v);
-                            graph.addNode(v);
-                        }
-                    }
-                }
-
-                if (tac instanceof Store) {
-                    Store store = (Store) tac;
-                    if (store.getSrc() instanceof Variable) {
-                        Variable v = (Variable) store.getSrc();
-                        if (!isPhysicalRegister(v)) {
-                            live.add(v);
+                            live.set(numbering.number(v));
                             graph.addNode(v);
                         }
                     }
@@ -245,7 +223,7 @@ public class RegisterAllocator {
 
     private Map<Variable, Integer> colorGraph(InterferenceGraph graph) {
         Map<Variable, Integer> coloring = new HashMap<>();
-        Stack<Variable> stack = new Stack<>();
+        Deque<Variable> stack = new ArrayDeque<>();
         Set<Variable> removed = new HashSet<>();
         // Use LinkedHashSet with sorted inputs for deterministic iteration
         Set<Variable> nodes = new LinkedHashSet<>(getSortedNodes(graph.getNodes()));
@@ -332,29 +310,33 @@ public class RegisterAllocator {
             baseReg = physicalRegisters.get(28);
         }
 
-        for (BasicBlock bb : cfg.getAllBlocks()) {
-            List<TAC> newInsts = new ArrayList<>();
+        // Use R26 for address computation (it's reserved for spilling, so safe to use)
+        Variable addrReg = physicalRegisters.get(26);
 
-            for (TAC tac : bb.getInstructions()) {
-                List<Value> operands = tac.getOperands();
-                boolean needLoad = false;
-                List<Value> newOperands = new ArrayList<>();
+        // Reloads go in front of each use and stores after each definition
+        for (BasicBlock bb : cfg.getAllBlocks()) {
+            InstructionList insts = bb.getInstructions();
+            for (TAC tac = insts.first(), next; tac != null; tac = next) {
+                next = tac.getNext();
+                int count = tac.operandCount();
 
                 // Detect if we actually need to spill 'v' in this instruction
                 boolean needSpill = false;
-                for (Value op : operands) {
+                for (int i = 0; i < count; i++) {
+                    Value op = tac.getOperand(i);
                     if (op != null && op.equals(v)) {
                         needSpill = true;
                         break;
                     }
                 }
 
-                int scratchIndex = 0;
                 if (needSpill) {
+                    int scratchIndex = 0;
                     // Detect if R27 or R26 are already used by previous spills in this instruction
                     boolean r27Used = false;
                     boolean r26Used = false;
-                    for (Value op : operands) {
+                    for (int i = 0; i < count; i++) {
+                        Value op = tac.getOperand(i);
                         if (op == null) continue;
                         if (op.equals(physicalRegisters.get(27))) r27Used = true;
                         if (op.equals(physicalRegisters.get(26))) r26Used = true;
@@ -364,20 +346,17 @@ public class RegisterAllocator {
                     if (r26Used && scratchIndex == 1) {
                          throw new RuntimeException("RegisterAllocator: Ran out of scratch registers for spilling instruction: " + tac);
                     }
-                }
 
-                // Use R26 for address computation (it's reserved for spilling, so safe to use)
-                Variable addrReg = physicalRegisters.get(26);
-                Variable[] valueScratchRegs = { physicalRegisters.get(27), physicalRegisters.get(26) };
+                    Variable[] valueScratchRegs = { physicalRegisters.get(27), physicalRegisters.get(26) };
+
+                    // Store and StoreGP sources are operands, so they are reloaded here as well
+                    for (int i = 0; i < count; i++) {
+                        Value op = tac.getOperand(i);
+                        // Skip null operands (some TAC instructions may have null operands)
+                        if (op == null || !op.equals(v)) {
+                            continue;
+                        }
 
-                for (Value op : operands) {
-                    // Skip null operands (some TAC instructions may have null operands)
-                    if (op == null) {
-                        newOperands.add(null);
-                        continue;
-                    }
-                    
-                    if (op.equals(v)) {
                         // Use R27 for first value, R26 for second (if both operands are spilled)
                         if (scratchIndex >= valueScratchRegs.length) {
                             throw new RuntimeException("Instruction has too many spilled operands (max 2 supported)");
@@ -385,34 +364,14 @@ public class RegisterAllocator {
 
                         Variable valueReg = valueScratchRegs[scratchIndex];
                         scratchIndex++;
-                        
-                        // Compute address in R26, then load value into valueReg (R27 or R26)
-                        newInsts.add(new Add(tac.getId(), addrReg, baseReg, new Immediate(offset)));
-                        newInsts.add(new Load(tac.getId(), valueReg, addrReg));
-
-                        newOperands.add(valueReg);
-                        needLoad = true;
-                    } else {
-                        newOperands.add(op);
-                    }
-                }
 
-                if (tac instanceof StoreGP) {
-                    StoreGP sgp = (StoreGP) tac;
-                    if (sgp.getSrc().equals(v)) {
-                        // Use addrReg (R25) for address, R27 for loaded value
-                        Variable valueReg = physicalRegisters.get(27);
-                        newInsts.add(new Add(tac.getId(), addrReg, baseReg, new Immediate(offset)));
-                        newInsts.add(new Load(tac.getId(), valueReg, addrReg));
-                        sgp.setSrc(valueReg);
+                        // Compute address in R26, then load value into valueReg (R27 or R26)
+                        insts.insertBefore(tac, new Add(tac.getId(), addrReg, baseReg, new Immediate(offset)));
+                        insts.insertBefore(tac, new Load(tac.getId(), valueReg, addrReg));
+                        tac.setOperand(i, valueReg);
                     }
                 }
 
-                if (needLoad) {
-                    tac.setOperands(newOperands);
-                }
-                newInsts.add(tac);
-
                 Variable def = (tac.getDest() instanceof Variable) ? (Variable) tac.getDest() : null;
 
                 if (def != null && def.equals(v)) {
@@ -420,46 +379,33 @@ public class RegisterAllocator {
                     // Note: If R27 was used as an input scratch, that's fine,
                     // because the instruction has already executed by now.
                     Variable valueReg = physicalRegisters.get(27);
-                    setDest(tac, valueReg);
+                    tac.setDest(valueReg);
 
-                    newInsts.add(new Add(tac.getId(), addrReg, baseReg, new Immediate(offset)));
-                    newInsts.add(new Store(tac.getId(), valueReg, addrReg));
+                    insts.insertBefore(next, new Add(tac.getId(), addrReg, baseReg, new Immediate(offset)));
+                    insts.insertBefore(next, new Store(tac.getId(), valueReg, addrReg));
                 }
             }
-            bb.setInstructions(newInsts);
         }
     }
 
     private void rewriteCode(CFG cfg, Map<Variable, Integer> coloring) {
         for (BasicBlock bb : cfg.getAllBlocks()) {
             for (TAC tac : bb.getInstructions()) {
-                List<Value> newOperands = new ArrayList<>();
-                boolean changed = false;
-                for (Value op : tac.getOperands()) {
+                for (int i = 0; i < tac.operandCount(); i++) {
+                    Value op = tac.getOperand(i);
                     if (op instanceof Variable && coloring.containsKey(op)) {
-                        newOperands.add(physicalRegisters.get(coloring.get(op)));
-                        changed = true;
-                    } else {
-                        newOperands.add(op);
+                        tac.setOperand(i, physicalRegisters.get(coloring.get(op)));
                     }
                 }
-                if (changed) {
-                    tac.setOperands(newOperands);
-                }
 
                 if (tac.getDest() instanceof Variable) {
                     Variable dest = (Variable) tac.getDest();
                     if (coloring.containsKey(dest)) {
-                        setDest(tac, physicalRegisters.get(coloring.get(dest)));
-                    }
-                }
-
-                if (tac instanceof StoreGP) {
-                    StoreGP sgp = (StoreGP) tac;
-                    if (sgp.getSrc() instanceof Variable && coloring.containsKey(sgp.getSrc())) {
-                        sgp.setSrc(physicalRegisters.get(coloring.get(sgp.getSrc())));
+                        tac.setDest(physicalRegisters.get(coloring.get(dest)));
                     }
                 }
+                // StoreGP's src is operand 0, already rewritten above. Mapping it a
+                // second time would look the physical register up in the coloring.
             }
         }
     }
@@ -481,53 +427,6 @@ public class RegisterAllocator {
         }
     }
 
-    private void setDest(TAC tac, Variable dest) {
-        if (tac instanceof Add)
-            ((Add) tac).setDest(dest);
-        else if (tac instanceof Sub)
-            ((Sub) tac).setDest(dest);
-        else if (tac instanceof Mul)
-            ((Mul) tac).setDest(dest);
-        else if (tac instanceof Div)
-            ((Div) tac).setDest(dest);
-        else if (tac instanceof Mod)
-            ((Mod) tac).setDest(dest);
-        else if (tac instanceof Pow)
-            ((Pow) tac).setDest(dest);
-        else if (tac instanceof And)
-            ((And) tac).setDest(dest);
-        else if (tac instanceof Or)
-            ((Or) tac).setDest(dest);
-        else if (tac instanceof Neg)
-            ((Neg) tac).setDest(dest);
-        else if (tac instanceof Not)
-            ((Not) tac).setDest(dest);
-        else if (tac instanceof Mov)
-            ((Mov) tac).setDest(dest);
-        else if (tac instanceof Load)
-            ((Load) tac).setDest(dest);
-        else if (tac instanceof LoadGP)
-            ((LoadGP) tac).setDest(dest);
-        else if (tac instanceof LoadFP)
-            ((LoadFP) tac).setDest(dest);
-        else if (tac instanceof Call)
-            ((Call) tac).setDest(dest);
-        else if (tac instanceof Cmp)
-            ((Cmp) tac).setDest(dest);
-        else if (tac instanceof Read)
-            ((Read) tac).setDest(dest);
-        else if (tac instanceof ReadB)
-            ((ReadB) tac).setDest(dest);
-        else if (tac instanceof Assign)
-            ((Assign) tac).setDest(dest);
-        else if (tac instanceof Adda)
-            ((Adda) tac).setDest(dest);
-        else if (tac instanceof AddaGP)
-            ((AddaGP) tac).setDest(dest);
-        else if (tac instanceof AddaFP)
-            ((AddaFP) tac).setDest(dest);
-    }
-
     private void removeRedundantMoves(CFG cfg) {
         for (BasicBlock bb : cfg.getAllBlocks()) {
             Iterator<TAC> it = bb.getInstructions().iterator();
@@ -535,9 +434,9 @@ public class RegisterAllocator {
                 TAC tac = it.next();
                 if (tac instanceof Mov) {
                     Mov mov = (Mov) tac;
-                    if (mov.getDest() instanceof Variable && !mov.getOperands().isEmpty() && mov.getOperands().get(0) instanceof Variable) {
+                    if (mov.getDest() instanceof Variable && mov.getSrc() instanceof Variable) {
                         Variable dest = (Variable) mov.getDest();
-                        Variable src = (Variable) mov.getOperands().get(0);
+                        Variable src = (Variable) mov.getSrc();
                         if (dest.getSymbol() != null && src.getSymbol() != null && 
                             dest.getSymbol().name().equals(src.getSymbol().name())) {
                             it.remove();
@@ -8,11 +8,20 @@ import java.util.*;
 
 public class SSAElimination {
 
-    public SSAElimination() {
+    // Blocks from edge splitting must not reuse a number from any CFG of the
+    // program: CodeGenerator resolves branch targets by number program-wide
+    private int nextBlockNum;
+
+    public SSAElimination(List<CFG> cfgs) {
+        int maxNum = 0;
+        for (CFG cfg : cfgs) {
+            for (BasicBlock bb : cfg.getAllBlocks()) {
+                maxNum = Math.max(maxNum, bb.getNum());
+            }
+        }
+        this.nextBlockNum = Math.max(1000, maxNum + 1);
     }
 
-    private static int nextBlockNum = 1000; // Start high to avoid conflicts - MUST be static for global uniqueness!
-
     public void eliminatePhis(CFG cfg) {
         splitCriticalEdges(cfg);
 
@@ -54,6 +63,7 @@ public class SSAElimination {
      */
     private void splitCriticalEdges(CFG cfg) {
         List<BasicBlock> blocks = new ArrayList<>(cfg.getAllBlocks());
+        boolean split = false;
         
         for (BasicBlock pred : blocks) {
             if (pred.getSuccessors().size() <= 1) continue;
@@ -85,8 +95,14 @@ public class SSAElimination {
                         phi.getArgs().put(newBlock, srcVal);
                     }
                 }
+                split = true;
             }
         }
+
+        // The edges above were rewired through the block lists
+        if (split) {
+            cfg.edgesChanged();
+        }
     }
 
     /**
@@ -94,41 +110,8 @@ public class SSAElimination {
      */
     private void updateBranchTarget(BasicBlock pred, BasicBlock oldTarget, BasicBlock newBlock) {
         for (TAC inst : pred.getInstructions()) {
-            if (inst instanceof Beq) {
-                Beq beq = (Beq) inst;
-                if (beq.getTarget() == oldTarget) {
-                    beq.setTarget(newBlock);
-                }
-            } else if (inst instanceof Bne) {
-                Bne bne = (Bne) inst;
-                if (bne.getTarget() == oldTarget) {
-                    bne.setTarget(newBlock);
-                }
-            } else if (inst instanceof Blt) {
-                Blt blt = (Blt) inst;
-                if (blt.getTarget() == oldTarget) {
-                    blt.setTarget(newBlock);
-                }
-            } else if (inst instanceof Ble) {
-                Ble ble = (Ble) inst;
-                if (ble.getTarget() == oldTarget) {
-                    ble.setTarget(newBlock);
-                }
-            } else if (inst instanceof Bgt) {
-                Bgt bgt = (Bgt) inst;
-                if (bgt.getTarget() == oldTarget) {
-                    bgt.setTarget(newBlock);
-                }
-            } else if (inst instanceof Bge) {
-                Bge bge = (Bge) inst;
-                if (bge.getTarget() == oldTarget) {
-                    bge.setTarget(newBlock);
-                }
-            } else if (inst instanceof Bra) {
-                Bra bra = (Bra) inst;
-                if (bra.getTarget() == oldTarget) {
-                    bra.setTarget(newBlock);
-                }
+            if (inst.opcode().isBranch() && inst.getTarget() == oldTarget) {
+                inst.setTarget(newBlock);
             }
         }
     }
@@ -142,20 +125,15 @@ public class SSAElimination {
 
         // This is critical: if there's a conditional branch followed by unconditional branch,
         // we need to insert moves BEFORE the conditional branch so they execute on both paths
-        List<TAC> insts = block.getInstructions();
-        int insertPos = insts.size();
-
-        for (int i = 0; i < insts.size(); i++) {
-            TAC inst = insts.get(i);
-            if (inst instanceof Bra || inst instanceof Beq || inst instanceof Bne ||
-                    inst instanceof Blt || inst instanceof Ble || inst instanceof Bgt ||
-                    inst instanceof Bge || inst instanceof Return) {
-                insertPos = i;
-                break;
-            }
+        InstructionList insts = block.getInstructions();
+        TAC insertPos = insts.first();
+        while (insertPos != null && !insertPos.opcode().isBranch() && insertPos.opcode() != Opcode.RETURN) {
+            insertPos = insertPos.getNext();
         }
 
-        insts.addAll(insertPos, resolvedMoves);
+        for (TAC move : resolvedMoves) {
+            insts.insertBefore(insertPos, move);
+        }
     }
 
     /**
@@ -0,0 +1,302 @@
+package ir.ssa;
+
+import java.util.*;
+import ir.cfg.CFG;
+import ir.cfg.BasicBlock;
+import ir.tac.*;
+import mocha.Symbol;
+
+/**
+ * SSA construction after Braun et al., "Simple and Efficient Construction of
+ * Static Single Assignment Form" (CC 2013). Blocks are filled in reverse
+ * postorder and sealed once every predecessor is filled; reading a variable
+ * looks up the block's current definition and otherwise asks the
+ * predecessors, placing a phi only where they disagree. No dominator tree or
+ * dominance frontiers are needed.
+ *
+ * Naming follows SSAConverter's scheme: each definition of a symbol gets the
+ * next version, and version 0 stands for the value on function entry. The
+ * versions are handed out in fill order rather than dominator-tree order, so
+ * the same program can number them differently on the two paths.
+ *
+ * Lookups walk predecessor chains and fill phi operands with explicit stacks,
+ * so long chains of blocks without a definition do not deepen the call stack.
+ */
+public class BraunSSABuilder {
+    private final CFG cfg;
+    private final Map<Symbol, Map<BasicBlock, Variable>> currentDef = new HashMap<>();
+    private final Map<BasicBlock, Map<Symbol, Phi>> incompletePhis = new HashMap<>();
+    // Indexed by BasicBlock.getIndex()
+    private final BitSet sealed = new BitSet();
+    private final BitSet filled = new BitSet();
+    private final Map<Symbol, Integer> versions = new HashMap<>();
+    private final BitSet reachable = new BitSet();
+    // Blocks on the chain the current lookup is walking
+    private final BitSet onChain = new BitSet();
+    // Trivial phis removed so far, resolved transitively when uses are rewritten
+    private final Map<Variable, Variable> replaced = new HashMap<>();
+    private int nextInstructionId;
+
+    public BraunSSABuilder(CFG cfg) {
+        this.cfg = cfg;
+        int maxId = 0;
+        for (BasicBlock block : cfg.getAllBlocks()) {
+            for (TAC instruction : block.getInstructions()) {
+                maxId = Math.max(maxId, instruction.getId());
+            }
+        }
+        this.nextInstructionId = maxId + 1;
+    }
+
+    public void build() {
+        List<BasicBlock> order = new ArrayList<>(cfg.getReversePostorder());
+        for (BasicBlock block : order) {
+            reachable.set(block.getIndex());
+        }
+        // Unreachable blocks go last; edges from them never feed reachable phis
+        for (BasicBlock block : cfg.getAllBlocks()) {
+            if (!reachable.get(block.getIndex())) {
+                order.add(block);
+            }
+        }
+
+        for (BasicBlock block : order) {
+            trySeal(block);
+            fill(block);
+            filled.set(block.getIndex());
+            for (BasicBlock succ : block.getSuccessors()) {
+                trySeal(succ);
+            }
+        }
+
+        removeTrivialPhis();
+    }
+
+    // Filling ====================================================================
+
+    private void fill(BasicBlock block) {
+        for (TAC instruction : block.getInstructions()) {
+            for (int i = 0; i < instruction.operandCount(); i++) {
+                Value operand = instruction.getOperand(i);
+                if (operand instanceof Variable) {
+                    instruction.setOperand(i, readVariable(((Variable) operand).getSymbol(), block));
+                }
+            }
+
+            Value dest = instruction.getDest();
+            if (dest instanceof Variable) {
+                Symbol sym = ((Variable) dest).getSymbol();
+                Variable version = newVersion(sym);
+                instruction.setDest(version);
+                writeVariable(sym, block, version);
+            }
+        }
+    }
+
+    private Variable newVersion(Symbol sym) {
+        int version = versions.merge(sym, 1, Integer::sum);
+        return new Variable(sym, version);
+    }
+
+    // Sealing ====================================================================
+
+    private void trySeal(BasicBlock block) {
+        if (sealed.get(block.getIndex())) {
+            return;
+        }
+        for (BasicBlock pred : predecessors(block)) {
+            if (!filled.get(pred.getIndex())) {
+                return;
+            }
+        }
+        Map<Symbol, Phi> pending = incompletePhis.remove(block);
+        if (pending != null) {
+            for (Map.Entry<Symbol, Phi> e : pending.entrySet()) {
+                addPhiOperands(e.getKey(), e.getValue(), block);
+            }
+        }
+        sealed.set(block.getIndex());
+    }
+
+    // Variable lookup ============================================================
+
+    private List<BasicBlock> predecessors(BasicBlock block) {
+        if (!reachable.get(block.getIndex())) {
+            return block.getPredecessors();
+        }
+        List<BasicBlock> preds = new ArrayList<>(block.getPredecessors().size());
+        for (BasicBlock pred : block.getPredecessors()) {
+            if (reachable.get(pred.getIndex())) {
+                preds.add(pred);
+            }
+        }
+        return preds;
+    }
+
+    private void writeVariable(Symbol sym, BasicBlock block, Variable value) {
+        currentDef.computeIfAbsent(sym, k -> new HashMap<>()).put(block, value);
+    }
+
+    // A join's phi whose operands are still being read, and the next one to read
+    private static final class PendingOperands {
+        final Phi phi;
+        final List<BasicBlock> preds;
+        int next;
+
+        PendingOperands(Phi phi, List<BasicBlock> preds) {
+            this.phi = phi;
+            this.preds = preds;
+        }
+    }
+
+    private Variable readVariable(Symbol sym, BasicBlock block) {
+        Deque<PendingOperands> pending = new ArrayDeque<>();
+        Variable value = lookup(sym, block, pending);
+        fillOperands(sym, pending);
+        return value;
+    }
+
+    /**
+     * Finds sym's value at the end of block, going up through blocks with a
+     * single predecessor until one has a definition or needs a phi. Every block
+     * passed on the way records the value. A phi placed at a join is pushed on
+     * pending; its operands are read by fillOperands, after its own definition
+     * is in place, so a cycle through the loop finds the phi.
+     */
+    private Variable lookup(Symbol sym, BasicBlock block, Deque<PendingOperands> pending) {
+        Map<BasicBlock, Variable> defs = currentDef.get(sym);
+        List<BasicBlock> chain = new ArrayList<>();
+        Variable value;
+        BasicBlock b = block;
+        while (true) {
+            Variable def = defs != null ? defs.get(b) : null;
+            if (def != null) {
+                value = def;
+                break;
+            }
+            if (onChain.get(b.getIndex())) {
+                // A cycle of single-predecessor blocks: no definition reaches it
+                value = new Variable(sym, 0);
+                break;
+            }
+            chain.add(b);
+            onChain.set(b.getIndex());
+            List<BasicBlock> preds = predecessors(b);
+            if (!sealed.get(b.getIndex())) {
+                // A back edge is still missing; its operands are added on sealing
+                Phi phi = newPhi(sym, b);
+                incompletePhis.computeIfAbsent(b, k -> new LinkedHashMap<>()).put(sym, phi);
+                value = (Variable) phi.getDest();
+                break;
+            } else if (preds.isEmpty()) {
+                value = new Variable(sym, 0);
+                break;
+            } else if (preds.size() == 1) {
+                b = preds.get(0);
+            } else {
+                Phi phi = newPhi(sym, b);
+                pending.push(new PendingOperands(phi, preds));
+                value = (Variable) phi.getDest();
+                break;
+            }
+        }
+        for (BasicBlock c : chain) {
+            onChain.clear(c.getIndex());
+            writeVariable(sym, c, value);
+        }
+        return value;
+    }
+
+    // Reads the operands of pending phis depth first, in predecessor order;
+    // a lookup that places another phi pushes it, and it is finished first
+    private void fillOperands(Symbol sym, Deque<PendingOperands> pending) {
+        while (!pending.isEmpty()) {
+            PendingOperands top = pending.peek();
+            if (top.next == top.preds.size()) {
+                pending.pop();
+                continue;
+            }
+            BasicBlock pred = top.preds.get(top.next++);
+            top.phi.addArgument(pred, lookup(sym, pred, pending));
+        }
+    }
+
+    private Phi newPhi(Symbol sym, BasicBlock block) {
+        Phi phi = new Phi(nextInstructionId++, newVersion(sym));
+        block.addPhi(phi);
+        return phi;
+    }
+
+    private void addPhiOperands(Symbol sym, Phi phi, BasicBlock block) {
+        Deque<PendingOperands> pending = new ArrayDeque<>();
+        pending.push(new PendingOperands(phi, predecessors(block)));
+        fillOperands(sym, pending);
+    }
+
+    // Trivial phis ===============================================================
+
+    private Variable resolve(Variable v) {
+        Variable r = replaced.get(v);
+        while (r != null) {
+            v = r;
+            r = replaced.get(v);
+        }
+        return v;
+    }
+
+    /**
+     * A phi whose operands are all one value (or itself) is that value. Removing
+     * one can make phis that used it trivial, so repeat until none are left;
+     * for reducible CFGs the result is minimal SSA.
+     */
+    private void removeTrivialPhis() {
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (BasicBlock block : cfg.getAllBlocks()) {
+                Iterator<Phi> it = block.getPhis().iterator();
+                while (it.hasNext()) {
+                    Phi phi = it.next();
+                    Variable dest = (Variable) phi.getDest();
+                    Variable same = null;
+                    boolean trivial = true;
+                    for (Value arg : phi.getArgs().values()) {
+                        Variable v = resolve((Variable) arg);
+                        if (v.equals(same) || v.equals(dest)) {
+                            continue;
+                        }
+                        if (same != null) {
+                            trivial = false;
+                            break;
+                        }
+                        same = v;
+                    }
+                    if (trivial) {
+                        replaced.put(dest, same != null ? same : new Variable(dest.getSymbol(), 0));
+                        it.remove();
+                        changed = true;
+                    }
+                }
+            }
+        }
+
+        if (replaced.isEmpty()) {
+            return;
+        }
+        for (BasicBlock block : cfg.getAllBlocks()) {
+            for (Phi phi : block.getPhis()) {
+                for (Map.Entry<BasicBlock, Value> e : phi.getArgs().entrySet()) {
+                    e.setValue(resolve((Variable) e.getValue()));
+                }
+            }
+            for (TAC instruction : block.getInstructions()) {
+                for (int i = 0; i < instruction.operandCount(); i++) {
+                    Value operand = instruction.getOperand(i);
+                    if (operand instanceof Variable && replaced.containsKey(operand)) {
+                        instruction.setOperand(i, resolve((Variable) operand));
+                    }
+                }
+            }
+        }
+    }
+}
@@ -1,153 +1,241 @@
 package ir.ssa;
 
 import java.util.*;
+import java.util.function.Consumer;
 import ir.cfg.CFG;
 import ir.cfg.BasicBlock;
 
+/**
+ * Dominator tree and dominance frontiers of a CFG, after Cooper, Harvey and
+ * Kennedy, "A Simple, Fast Dominance Algorithm". Blocks are numbered in reverse
+ * postorder and the immediate dominators kept in an int array over those
+ * numbers; each pass over the blocks intersects the predecessors' idoms by
+ * walking both up the tree until they meet, and stops once nothing changes
+ * (two passes on reducible CFGs). Tree children and frontiers are then built
+ * once from the idom array, and the tree is numbered in preorder and postorder
+ * so that dominance between two blocks is two integer comparisons.
+ *
+ * Per-block results are indexed by BasicBlock.getIndex(), so the analysis is
+ * only good while the CFG's blocks and edges stay as they were; the CFG's
+ * AnalysisManager recomputes it after they change. Blocks unreachable from
+ * entry have no immediate dominator and are in no one's subtree.
+ */
 public class DominatorAnalysis {
+    private static final int UNDEFINED = -1;
+
     private CFG cfg;
-    private Map<BasicBlock, Set<BasicBlock>> dominators;
-    private Map<BasicBlock, BasicBlock> immediateDominators;
-    private Map<BasicBlock, Set<BasicBlock>> dominanceFrontiers;
-    
+    // Blocks reachable from entry in reverse postorder, and each block's
+    // position in it (UNDEFINED for unreachable blocks) by block index
+    private List<BasicBlock> rpo;
+    private int[] rpoNumber;
+    // Immediate dominator of the block at each RPO position, as an RPO position
+    private int[] idom;
+    private List<List<BasicBlock>> children;
+    // Dominator tree preorder and postorder numbers by block index; a dominates
+    // b iff a's interval [pre, post] encloses b's
+    private int[] preorder;
+    private int[] postorder;
+    private List<Set<BasicBlock>> dominanceFrontiers;
+
     public DominatorAnalysis(CFG cfg) {
         this.cfg = cfg;
-        this.dominators = new HashMap<>();
-        this.immediateDominators = new HashMap<>();
-        this.dominanceFrontiers = new HashMap<>();
     }
-    
+
     public void analyze() {
         computeDominators();
-        computeImmediateDominators();
+        computeDomTreeChildren();
+        computeDomTreeNumbering();
         computeDominanceFrontiers();
     }
-    
+
     public void computeDominators() {
-        BasicBlock entry = cfg.getEntryBlock();
-        Set<BasicBlock> allBlocks = new HashSet<>(cfg.getAllBlocks());
-        
-        dominators.put(entry, new HashSet<>(Arrays.asList(entry)));
-        
-        for (BasicBlock block : allBlocks) {
-            if (block != entry) {
-                dominators.put(block, new HashSet<>(allBlocks));
-            }
+        List<BasicBlock> blocks = cfg.getAllBlocks();
+        rpo = cfg.getReversePostorder();
+        rpoNumber = new int[blocks.size()];
+        Arrays.fill(rpoNumber, UNDEFINED);
+        for (int i = 0; i < rpo.size(); i++) {
+            rpoNumber[rpo.get(i).getIndex()] = i;
         }
-        
+
+        idom = new int[rpo.size()];
+        Arrays.fill(idom, UNDEFINED);
+        if (rpo.isEmpty()) {
+            return;
+        }
+        idom[0] = 0;
+
         boolean changed;
         do {
             changed = false;
-            
-            for (BasicBlock block : allBlocks) {
-                if (block == entry) continue;
-                
-                Set<BasicBlock> newDominators = new HashSet<>();
-                newDominators.add(block);
-                
-                List<BasicBlock> predecessors = block.getPredecessors();
-                if (!predecessors.isEmpty()) {
-                    Set<BasicBlock> intersect = new HashSet<>(dominators.get(predecessors.get(0)));
-                    
-                    for (int i = 1; i < predecessors.size(); i++) {
-                        BasicBlock pred = predecessors.get(i);
-                        intersect.retainAll(dominators.get(pred));
+            for (int b = 1; b < rpo.size(); b++) {
+                int newIdom = UNDEFINED;
+                for (BasicBlock pred : rpo.get(b).getPredecessors()) {
+                    int p = rpoNumber[pred.getIndex()];
+                    if (p == UNDEFINED || idom[p] == UNDEFINED) {
+                        continue; // unreachable, or not reached yet this pass
                     }
-                    
-                    newDominators.addAll(intersect);
+                    newIdom = newIdom == UNDEFINED ? p : intersect(p, newIdom);
                 }
-                
-                if (!newDominators.equals(dominators.get(block))) {
-                    dominators.put(block, newDominators);
+                if (idom[b] != newIdom) {
+                    idom[b] = newIdom;
                     changed = true;
                 }
             }
         } while (changed);
     }
-    
-    public void computeImmediateDominators() {
-        for (BasicBlock block : cfg.getAllBlocks()) {
-            if (block == cfg.getEntryBlock()) continue; // Entry has no IDOM
-
-            Set<BasicBlock> blockDominators = dominators.get(block);
-            BasicBlock immediateDominator = null;
-            
-            for (BasicBlock candidate : blockDominators) {
-                if (candidate == block) continue;
-                
-                // We are looking for the 'closest' dominator.
-                // A dominator 'd' is the IDOM if it is dominated by ALL other strict dominators.
-                boolean isClosest = true;
-                for (BasicBlock other : blockDominators) {
-                    if (other != block && other != candidate) {
-                        // Check if 'other' dominates 'candidate'
-                        // (i.e. 'candidate' is 'below' 'other' in the tree)
-                        if (!dominators.get(candidate).contains(other)) {
-                            isClosest = false;
-                            break;
-                        }
-                    }
-                }
-                
-                if (isClosest) {
-                    immediateDominator = candidate;
-                    break;
-                }
+
+    // Nearest common ancestor of two processed blocks; a block's idom always
+    // has a smaller RPO number, so the finger further down moves up
+    private int intersect(int a, int b) {
+        while (a != b) {
+            while (a > b) {
+                a = idom[a];
+            }
+            while (b > a) {
+                b = idom[b];
+            }
+        }
+        return a;
+    }
+
+    public void computeDomTreeChildren() {
+        int n = cfg.getAllBlocks().size();
+        children = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            children.add(new ArrayList<>(2));
+        }
+        for (int b = 1; b < rpo.size(); b++) {
+            children.get(rpo.get(idom[b]).getIndex()).add(rpo.get(b));
+        }
+        // Children are visited in block-number order so that, like the CFG
+        // listing, a join point comes after the blocks leading into it
+        for (List<BasicBlock> list : children) {
+            if (list.size() > 1) {
+                list.sort((a, b) -> a.getNum() - b.getNum());
             }
-            
-            immediateDominators.put(block, immediateDominator);
         }
     }
-    
+
+    public void computeDomTreeNumbering() {
+        int n = cfg.getAllBlocks().size();
+        preorder = new int[n];
+        postorder = new int[n];
+        Arrays.fill(preorder, UNDEFINED);
+        Arrays.fill(postorder, UNDEFINED);
+        int[] next = new int[2]; // next preorder, next postorder number
+        walkDomTree(block -> preorder[block.getIndex()] = next[0]++,
+                block -> postorder[block.getIndex()] = next[1]++);
+    }
+
     public void computeDominanceFrontiers() {
-        for (BasicBlock block : cfg.getAllBlocks()) {
-            dominanceFrontiers.put(block, new HashSet<>());
+        List<BasicBlock> blocks = cfg.getAllBlocks();
+        dominanceFrontiers = new ArrayList<>(blocks.size());
+        for (int i = 0; i < blocks.size(); i++) {
+            dominanceFrontiers.add(new LinkedHashSet<>());
         }
-        
-        for (BasicBlock block : cfg.getAllBlocks()) {
-            BasicBlock idom = immediateDominators.get(block);
-            if (idom == null) continue;
-            
+
+        for (BasicBlock block : blocks) {
+            BasicBlock idomBlock = getImmediateDominator(block);
+            if (idomBlock == null) continue;
+
             List<BasicBlock> predecessors = block.getPredecessors();
             for (BasicBlock runner : predecessors) {
                 BasicBlock current = runner;
-                while (current != idom) {
-                    dominanceFrontiers.get(current).add(block);
-                    current = immediateDominators.get(current);
+                while (current != idomBlock) {
+                    dominanceFrontiers.get(current.getIndex()).add(block);
+                    current = getImmediateDominator(current);
                     if (current == null) break;
                 }
             }
-            
+
             // CRITICAL FIX: For self-loops (repeat-until), ensure block is in its own DF
             // This is needed so phi nodes are inserted for variables live across the back-edge
             if (predecessors.contains(block)) {
-                dominanceFrontiers.get(block).add(block);
+                dominanceFrontiers.get(block.getIndex()).add(block);
             }
         }
     }
-    
+
     public BasicBlock getImmediateDominator(BasicBlock block) {
-        return immediateDominators.get(block);
+        int b = rpoNumber[block.getIndex()];
+        if (b == UNDEFINED || b == 0) {
+            return null; // unreachable, or entry
+        }
+        return rpo.get(idom[b]);
     }
-    
+
     public Set<BasicBlock> getDominanceFrontier(BasicBlock block) {
-        return dominanceFrontiers.get(block);
+        return Collections.unmodifiableSet(dominanceFrontiers.get(block.getIndex()));
+    }
+
+    /** Whether every path from entry to b passes through a; a block dominates itself. */
+    public boolean dominates(BasicBlock a, BasicBlock b) {
+        int ia = a.getIndex();
+        int ib = b.getIndex();
+        return preorder[ia] != UNDEFINED && preorder[ib] != UNDEFINED
+                && preorder[ia] <= preorder[ib] && postorder[ib] <= postorder[ia];
+    }
+
+    public boolean strictlyDominates(BasicBlock a, BasicBlock b) {
+        return a != b && dominates(a, b);
     }
-    
+
+    /**
+     * The closest block dominating both a and b (one of them, if it dominates
+     * the other), or null if either is unreachable.
+     */
+    public BasicBlock nearestCommonDominator(BasicBlock a, BasicBlock b) {
+        int ra = rpoNumber[a.getIndex()];
+        int rb = rpoNumber[b.getIndex()];
+        if (ra == UNDEFINED || rb == UNDEFINED) {
+            return null;
+        }
+        return rpo.get(intersect(ra, rb));
+    }
+
+    /**
+     * The blocks dominating block, itself included, from block up to entry.
+     * Use dominates() to test a single pair.
+     */
     public Set<BasicBlock> getDominators(BasicBlock block) {
-        return dominators.get(block);
+        Set<BasicBlock> result = new LinkedHashSet<>();
+        for (BasicBlock d = block; d != null; d = getImmediateDominator(d)) {
+            result.add(d);
+        }
+        return result;
     }
-    
+
     public List<BasicBlock> getDomTreeChildren(BasicBlock block) {
-        List<BasicBlock> children = new ArrayList<>();
-        for (Map.Entry<BasicBlock, BasicBlock> entry : immediateDominators.entrySet()) {
-            if (entry.getValue() == block) {
-                children.add(entry.getKey());
+        return Collections.unmodifiableList(children.get(block.getIndex()));
+    }
+
+    /**
+     * Depth-first walk of the dominator tree from entry, children in
+     * getDomTreeChildren order: enter(b) runs before b's subtree and exit(b)
+     * after it, so a pass can keep scoped state that it undoes on exit. Uses
+     * an explicit stack, however deep the tree.
+     */
+    public void walkDomTree(Consumer<BasicBlock> enter, Consumer<BasicBlock> exit) {
+        if (rpo.isEmpty()) {
+            return;
+        }
+        Deque<BasicBlock> stack = new ArrayDeque<>();
+        Deque<Iterator<BasicBlock>> iters = new ArrayDeque<>();
+        BasicBlock entry = rpo.get(0);
+        enter.accept(entry);
+        stack.push(entry);
+        iters.push(children.get(entry.getIndex()).iterator());
+        while (!stack.isEmpty()) {
+            Iterator<BasicBlock> it = iters.peek();
+            if (it.hasNext()) {
+                BasicBlock child = it.next();
+                enter.accept(child);
+                stack.push(child);
+                iters.push(children.get(child.getIndex()).iterator());
+            } else {
+                exit.accept(stack.pop());
+                iters.pop();
             }
         }
-        // CRITICAL: Sort children by block number to ensure they're processed in CFG order
-        // This prevents later blocks (like join points) from being processed before earlier blocks
-        children.sort((a, b) -> a.getNum() - b.getNum());
-        return children;
     }
 }
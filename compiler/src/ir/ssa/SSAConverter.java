@@ -3,15 +3,29 @@ package ir.ssa;
 import java.util.*;
 import ir.cfg.CFG;
 import ir.cfg.BasicBlock;
+import ir.cfg.IntSets;
 import ir.tac.*;
 import mocha.Symbol;
 
+/**
+ * Cytron-style SSA construction: phis at the iterated dominance frontiers of
+ * each symbol's definitions, then renaming along the dominator tree. The
+ * placement is pruned: a phi for a symbol only goes into a block where the
+ * symbol is live on entry, so temporaries that die inside one block and
+ * variables nobody reads after a join get no phis at all.
+ */
 public class SSAConverter {
     private CFG cfg;
     private DominatorAnalysis domAnalysis;
     private Map<Symbol, Set<BasicBlock>> variableDefs;
-    private Map<Symbol, Stack<Variable>> variableStacks;
+    private Map<Symbol, Deque<Variable>> variableStacks;
+    // Symbols whose stacks got a new version, in push order; each block pops
+    // back to where the log stood when it was entered
+    private List<Symbol> pushedSymbols;
+    private Deque<Integer> blockMarks;
     private Map<Symbol, Integer> variableVersionCounters;
+    // Number of each symbol in the live-in sets
+    private Map<Symbol, Integer> symbolIndex;
     private int nextInstructionId = 1;
 
     public SSAConverter(CFG cfg) {
@@ -33,17 +47,15 @@ public class SSAConverter {
     }
 
     public void convertToSSA() {
-        domAnalysis = new DominatorAnalysis(cfg);
-        domAnalysis.analyze();
-        cfg.setDominatorAnalysis(domAnalysis);
+        domAnalysis = cfg.getDominatorAnalysis();
 
         Set<Symbol> allVars = findVariableDefinitionsAndCollectSymbols();
-        insertPhiNodes(allVars);
+        insertPhiNodes(allVars, computeLiveIn(allVars));
         renameVariables(allVars);
     }
 
     private Set<Symbol> findVariableDefinitionsAndCollectSymbols() {
-        Set<Symbol> allVars = new HashSet<>();
+        Set<Symbol> allVars = new LinkedHashSet<>();
 
         for (BasicBlock block : cfg.getAllBlocks()) {
             for (TAC instruction : block.getInstructions()) {
@@ -54,17 +66,15 @@ public class SSAConverter {
                     allVars.add(sym);
 
                     // Track definition site
-                    variableDefs.putIfAbsent(sym, new HashSet<>());
+                    variableDefs.putIfAbsent(sym, new LinkedHashSet<>());
                     variableDefs.get(sym).add(block);
                 }
 
                 // Collect variable symbols from operands
-                List<Value> operands = instruction.getOperands();
-                if (operands != null) {
-                    for (Value op : operands) {
-                        if (op instanceof Variable) {
-                            allVars.add(((Variable) op).getSymbol());
-                        }
+                for (int i = 0; i < instruction.operandCount(); i++) {
+                    Value op = instruction.getOperand(i);
+                    if (op instanceof Variable) {
+                        allVars.add(((Variable) op).getSymbol());
                     }
                 }
             }
@@ -73,7 +83,7 @@ public class SSAConverter {
         // Add virtual definitions for parameters/globals at entry block
         for (Symbol sym : allVars) {
             if (!variableDefs.containsKey(sym)) {
-                variableDefs.put(sym, new HashSet<>());
+                variableDefs.put(sym, new LinkedHashSet<>());
                 variableDefs.get(sym).add(cfg.getEntryBlock());
             }
         }
@@ -81,13 +91,80 @@ public class SSAConverter {
         return allVars;
     }
 
-    private void insertPhiNodes(Set<Symbol> allVars) {
+    /**
+     * Symbols live on entry to each block, by block index, as sorted arrays of
+     * symbol numbers in allVars order. Only the code before phi placement is
+     * looked at, so every read and write is an ordinary operand or destination.
+     * A generated main can have as many symbols as blocks, so the sets hold
+     * only what is live rather than a bit per symbol per block.
+     */
+    private int[][] computeLiveIn(Set<Symbol> allVars) {
+        symbolIndex = new HashMap<>();
+        for (Symbol sym : allVars) {
+            symbolIndex.put(sym, symbolIndex.size());
+        }
+
+        List<BasicBlock> order = cfg.getReversePostorder();
+        int nblocks = cfg.getAllBlocks().size();
+        int[][] use = new int[nblocks][];
+        int[][] def = new int[nblocks][];
+        int[][] liveIn = new int[nblocks][];
+        Arrays.fill(liveIn, IntSets.EMPTY);
+        // Scratch sets for one block at a time, cleared after each
+        BitSet blockUse = new BitSet();
+        BitSet blockDef = new BitSet();
+        for (BasicBlock block : order) {
+            // USE[B]: read before any write in B; DEF[B]: written in B
+            for (TAC instruction : block.getInstructions()) {
+                for (int i = 0; i < instruction.operandCount(); i++) {
+                    Value op = instruction.getOperand(i);
+                    if (op instanceof Variable) {
+                        int v = symbolIndex.get(((Variable) op).getSymbol());
+                        if (!blockDef.get(v)) {
+                            blockUse.set(v);
+                        }
+                    }
+                }
+                if (instruction.getDest() instanceof Variable) {
+                    blockDef.set(symbolIndex.get(((Variable) instruction.getDest()).getSymbol()));
+                }
+            }
+            use[block.getIndex()] = blockUse.stream().toArray();
+            def[block.getIndex()] = blockDef.stream().toArray();
+            blockUse.clear();
+            blockDef.clear();
+        }
+
+        // Postorder sweeps; successors of a reachable block are reachable.
+        // IN only grows, so a change shows in its size
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (int k = order.size() - 1; k >= 0; k--) {
+                int b = order.get(k).getIndex();
+                // IN[B] = USE[B] union (OUT[B] - DEF[B])
+                int[] out = IntSets.EMPTY;
+                for (BasicBlock succ : order.get(k).getSuccessors()) {
+                    out = IntSets.union(out, liveIn[succ.getIndex()]);
+                }
+                int[] in = IntSets.union(IntSets.minus(out, def[b]), use[b]);
+                if (in.length != liveIn[b].length) {
+                    liveIn[b] = in;
+                    changed = true;
+                }
+            }
+        }
+        return liveIn;
+    }
+
+    private void insertPhiNodes(Set<Symbol> allVars, int[][] liveIn) {
         Map<BasicBlock, Set<Symbol>> phiPlacedMap = new HashMap<>();
 
         for (Symbol sym : allVars) {
             if (!variableDefs.containsKey(sym)) {
                 continue;
             }
+            int symIndex = symbolIndex.get(sym);
 
             Queue<BasicBlock> worklist = new LinkedList<>();
             Set<BasicBlock> inWorklist = new HashSet<>();
@@ -108,6 +185,10 @@ public class SSAConverter {
                     continue;
 
                 for (BasicBlock frontierBlock : dominanceFrontier) {
+                    // Pruned: nothing reads sym past this join before redefining it
+                    if (!IntSets.contains(liveIn[frontierBlock.getIndex()], symIndex)) {
+                        continue;
+                    }
                     phiPlacedMap.putIfAbsent(frontierBlock, new HashSet<>());
 
                     if (!phiPlacedMap.get(frontierBlock).contains(sym)) {
@@ -132,34 +213,26 @@ public class SSAConverter {
     private void renameVariables(Set<Symbol> allVars) {
         // Initialize stacks and counters for all variables
         for (Symbol sym : allVars) {
-            variableStacks.put(sym, new Stack<>());
+            variableStacks.put(sym, new ArrayDeque<>());
             variableVersionCounters.put(sym, 0);
             // Push v_0 for all variables (represents parameters/initial values)
             variableStacks.get(sym).push(new Variable(sym, 0));
         }
 
-        // Start recursive renaming from entry block
-        renameBlock(cfg.getEntryBlock());
+        // Walk the dominator tree from entry, undoing each block's versions
+        // once its subtree is done
+        pushedSymbols = new ArrayList<>();
+        blockMarks = new ArrayDeque<>();
+        domAnalysis.walkDomTree(this::renameBlock, this::popBlockVersions);
     }
 
     private void renameBlock(BasicBlock block) {
-        List<Variable> defsPushedThisBlock = new ArrayList<>();
+        blockMarks.push(pushedSymbols.size());
 
         // 1. Process PHI nodes - assign new versions to phi destinations
         for (Phi phi : block.getPhis()) {
             Variable phiDest = (Variable) phi.getDest();
-            Symbol sym = phiDest.getSymbol();
-
-            // Create new version
-            int newVersion = variableVersionCounters.get(sym) + 1;
-            variableVersionCounters.put(sym, newVersion);
-
-            Variable newSsaVar = new Variable(sym, newVersion);
-            phi.setDest(newSsaVar);
-
-            // Push onto stack
-            variableStacks.get(sym).push(newSsaVar);
-            defsPushedThisBlock.add(newSsaVar);
+            phi.setDest(pushNewVersion(phiDest.getSymbol()));
         }
 
         // 2. Process regular instructions
@@ -170,65 +243,7 @@ public class SSAConverter {
             // Rename definition (destination) - only for instructions that support it
             Value dest = instruction.getDest();
             if (dest instanceof Variable) {
-                Variable destVar = (Variable) dest;
-                Symbol sym = destVar.getSymbol();
-
-                // Create new version
-                int newVersion = variableVersionCounters.get(sym) + 1;
-                variableVersionCounters.put(sym, newVersion);
-
-                Variable newSsaVar = new Variable(sym, newVersion);
-
-                // Set destination based on instruction type
-                if (instruction instanceof Mov) {
-                    ((Mov) instruction).setDest(newSsaVar);
-                } else if (instruction instanceof Assign) {
-                    ((Assign) instruction).setDest(newSsaVar);
-                } else if (instruction instanceof Load) {
-                    ((Load) instruction).setDest(newSsaVar);
-                } else if (instruction instanceof LoadGP) {
-                    ((LoadGP) instruction).setDest(newSsaVar);
-                } else if (instruction instanceof LoadFP) {
-                    ((LoadFP) instruction).setDest(newSsaVar);
-                } else if (instruction instanceof Call) {
-                    ((Call) instruction).setDest(newSsaVar);
-                } else if (instruction instanceof Cmp) {
-                    ((Cmp) instruction).setDest(newSsaVar);
-                } else if (instruction instanceof Read) {
-                    ((Read) instruction).setDest(newSsaVar);
-                } else if (instruction instanceof ReadB) {
-                    ((ReadB) instruction).setDest(newSsaVar);
-                } else if (instruction instanceof Add) {
-                    ((Add) instruction).setDest(newSsaVar);
-                } else if (instruction instanceof Sub) {
-                    ((Sub) instruction).setDest(newSsaVar);
-                } else if (instruction instanceof Mul) {
-                    ((Mul) instruction).setDest(newSsaVar);
-                } else if (instruction instanceof Div) {
-                    ((Div) instruction).setDest(newSsaVar);
-                } else if (instruction instanceof Mod) {
-                    ((Mod) instruction).setDest(newSsaVar);
-                } else if (instruction instanceof Pow) {
-                    ((Pow) instruction).setDest(newSsaVar);
-                } else if (instruction instanceof And) {
-                    ((And) instruction).setDest(newSsaVar);
-                } else if (instruction instanceof Or) {
-                    ((Or) instruction).setDest(newSsaVar);
-                } else if (instruction instanceof Not) {
-                    ((Not) instruction).setDest(newSsaVar);
-                } else if (instruction instanceof Neg) {
-                    ((Neg) instruction).setDest(newSsaVar);
-                } else if (instruction instanceof Adda) {
-                    ((Adda) instruction).setDest(newSsaVar);
-                } else if (instruction instanceof AddaGP) {
-                    ((AddaGP) instruction).setDest(newSsaVar);
-                } else if (instruction instanceof AddaFP) {
-                    ((AddaFP) instruction).setDest(newSsaVar);
-                }
-
-                // Push onto stack
-                variableStacks.get(sym).push(newSsaVar);
-                defsPushedThisBlock.add(newSsaVar);
+                instruction.setDest(pushNewVersion(((Variable) dest).getSymbol()));
             }
         }
 
@@ -244,48 +259,37 @@ public class SSAConverter {
             }
         }
 
-        // 4. Recurse on dominator tree children
-        for (BasicBlock child : domAnalysis.getDomTreeChildren(block)) {
-            renameBlock(child);
-        }
+        // 4. Dominator tree children are visited next by walkDomTree
+    }
 
-        // 5. Backtrack: pop all versions pushed in this block
-        // CRITICAL: Pop in REVERSE order (LIFO - last pushed first)
-        for (int i = defsPushedThisBlock.size() - 1; i >= 0; i--) {
-            Variable def = defsPushedThisBlock.get(i);
-            Symbol sym = def.getSymbol();
-            Stack<Variable> stack = variableStacks.get(sym);
-            if (!stack.isEmpty() && stack.peek().getVersion() == def.getVersion()) {
-                stack.pop();
-            }
+    private Variable pushNewVersion(Symbol sym) {
+        int newVersion = variableVersionCounters.get(sym) + 1;
+        variableVersionCounters.put(sym, newVersion);
+
+        Variable newSsaVar = new Variable(sym, newVersion);
+        variableStacks.get(sym).push(newSsaVar);
+        pushedSymbols.add(sym);
+        return newSsaVar;
+    }
+
+    // 5. Backtrack: pop the versions pushed in this block, last pushed first
+    private void popBlockVersions(BasicBlock block) {
+        int mark = blockMarks.pop();
+        for (int i = pushedSymbols.size() - 1; i >= mark; i--) {
+            variableStacks.get(pushedSymbols.remove(i)).pop();
         }
     }
 
     private void renameUses(TAC instruction) {
-        List<Value> operands = instruction.getOperands();
-        if (operands == null || operands.isEmpty())
-            return;
-
-        List<Value> newOperands = new ArrayList<>(operands.size());
-        boolean changed = false;
-
-        for (Value operand : operands) {
+        for (int i = 0; i < instruction.operandCount(); i++) {
+            Value operand = instruction.getOperand(i);
             if (operand instanceof Variable) {
-                Variable var = (Variable) operand;
-                Symbol sym = var.getSymbol();
+                Symbol sym = ((Variable) operand).getSymbol();
 
                 // Replace with current version from stack
-                Variable currentVersion = variableStacks.get(sym).peek();
-                newOperands.add(currentVersion);
-                changed = true;
-            } else {
-                newOperands.add(operand);
+                instruction.setOperand(i, variableStacks.get(sym).peek());
             }
         }
-
-        if (changed) {
-            instruction.setOperands(newOperands);
-        }
     }
 
     private int getNextInstructionId() {
@@ -6,6 +6,11 @@ public class Adda extends Assign {
         super(id, dest, left, right);
     }
 
+    @Override
+    public Opcode opcode() {
+        return Opcode.ADDA;
+    }
+
     @Override
     public void accept(TACVisitor visitor) {
         visitor.visit(this);
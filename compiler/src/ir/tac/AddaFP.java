@@ -1,8 +1,5 @@
 package ir.tac;
 
-import java.util.ArrayList;
-import java.util.List;
-
 /**
  * AddaFP: Compute address from Frame Pointer
  * dest = FP + offset + index
@@ -10,6 +7,7 @@ import java.util.List;
 public class AddaFP extends TAC {
     private Variable dest;
     private int fpOffset;
+    private Immediate offsetOperand;
     private Value index;
 
     public AddaFP(int id, Variable dest, int fpOffset, Value index) {
@@ -23,6 +21,7 @@ public class AddaFP extends TAC {
         return dest;
     }
 
+    @Override
     public void setDest(Variable dest) {
         this.dest = dest;
     }
@@ -35,22 +34,40 @@ public class AddaFP extends TAC {
         return index;
     }
 
+    // Operand view of the offset, rebuilt only when the offset changes
+    private Immediate offsetOperand() {
+        if (offsetOperand == null || (Integer) offsetOperand.getValue() != fpOffset) {
+            offsetOperand = new Immediate(fpOffset);
+        }
+        return offsetOperand;
+    }
+
     @Override
-    public List<Value> getOperands() {
-        List<Value> ops = new ArrayList<>();
-        ops.add(new Immediate(fpOffset));
-        ops.add(index);
-        return ops;
+    public int operandCount() {
+        return 2;
     }
 
     @Override
-    public void setOperands(List<Value> operands) {
-        if (operands.size() >= 2) {
-            this.fpOffset = (int) ((Immediate) operands.get(0)).getValue();
-            this.index = operands.get(1);
+    public Value getOperand(int i) {
+        checkOperandIndex(i);
+        return i == 0 ? offsetOperand() : index;
+    }
+
+    @Override
+    public void setOperand(int i, Value value) {
+        checkOperandIndex(i);
+        if (i == 0) {
+            this.fpOffset = (int) ((Immediate) value).getValue();
+        } else {
+            this.index = value;
         }
     }
 
+    @Override
+    public Opcode opcode() {
+        return Opcode.ADDA_FP;
+    }
+
     @Override
     public void accept(TACVisitor visitor) {
         visitor.visit(this);
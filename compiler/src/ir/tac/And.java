@@ -6,6 +6,11 @@ public class And extends Assign {
         super(id, dest, left, right);
     }
     
+    @Override
+    public Opcode opcode() {
+        return Opcode.AND;
+    }
+
     @Override
     public void accept(TACVisitor visitor) {
         visitor.visit(this);
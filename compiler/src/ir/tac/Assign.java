@@ -1,8 +1,5 @@
 package ir.tac;
 
-import java.util.ArrayList;
-import java.util.List;
-
 public abstract class Assign extends TAC{
     
     private Variable dest; // lhs
@@ -21,11 +18,6 @@ public abstract class Assign extends TAC{
         return dest;
     }
 
-    @Override
-    public void setDest(Value dest) {
-        this.dest = (Variable) dest;
-    }
-    
     public Value getLeft() {
         return left;
     }
@@ -34,6 +26,7 @@ public abstract class Assign extends TAC{
         return right;
     }
     
+    @Override
     public void setDest(Variable dest) {
         this.dest = dest;
     }
@@ -47,18 +40,23 @@ public abstract class Assign extends TAC{
     }
     
     @Override
-    public List<Value> getOperands() {
-        List<Value> operands = new ArrayList<>();
-        operands.add(left);
-        operands.add(right);
-        return operands;
+    public int operandCount() {
+        return 2;
     }
-    
+
     @Override
-    public void setOperands(List<Value> operands) {
-        if (operands.size() >= 2) {
-            this.left = operands.get(0);
-            this.right = operands.get(1);
+    public Value getOperand(int i) {
+        checkOperandIndex(i);
+        return i == 0 ? left : right;
+    }
+
+    @Override
+    public void setOperand(int i, Value value) {
+        checkOperandIndex(i);
+        if (i == 0) {
+            this.left = value;
+        } else {
+            this.right = value;
         }
     }
-}
+    }
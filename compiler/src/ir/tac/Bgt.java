@@ -1,7 +1,5 @@
 package ir.tac;
 
-import java.util.ArrayList;
-import java.util.List;
 import ir.cfg.BasicBlock;
 
 public class Bgt extends TAC {
@@ -22,28 +20,38 @@ public class Bgt extends TAC {
         this.condition = condition;
     }
     
+    @Override
     public BasicBlock getTarget() {
         return target;
     }
     
+    @Override
     public void setTarget(BasicBlock target) {
         this.target = target;
     }
     
     @Override
-    public List<Value> getOperands() {
-        List<Value> operands = new ArrayList<>();
-        operands.add(condition);
-        return operands;
+    public int operandCount() {
+        return 1;
     }
-    
+
     @Override
-    public void setOperands(List<Value> operands) {
-        if (!operands.isEmpty()) {
-            this.condition = operands.get(0);
-        }
+    public Value getOperand(int i) {
+        checkOperandIndex(i);
+        return condition;
     }
-    
+
+    @Override
+    public void setOperand(int i, Value value) {
+        checkOperandIndex(i);
+        this.condition = value;
+    }
+        
+    @Override
+    public Opcode opcode() {
+        return Opcode.BGT;
+    }
+
     @Override
     public void accept(TACVisitor visitor) {
         visitor.visit(this);
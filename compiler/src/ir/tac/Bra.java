@@ -10,14 +10,21 @@ public class Bra extends TAC {
         this.target = target;
     }
     
+    @Override
     public BasicBlock getTarget() {
         return target;
     }
     
+    @Override
     public void setTarget(BasicBlock target) {
         this.target = target;
     }
     
+    @Override
+    public Opcode opcode() {
+        return Opcode.BRA;
+    }
+
     @Override
     public void accept(TACVisitor visitor) {
         visitor.visit(this);
@@ -25,6 +25,7 @@ public class Call extends TAC {
         return dest;
     }
 
+    @Override
     public void setDest(Variable dest) {
         this.dest = dest;
     }
@@ -46,10 +47,21 @@ public class Call extends TAC {
     }
 
     @Override
-    public List<Value> getOperands() {
-        return new ArrayList<>(arguments);
+    public int operandCount() {
+        return arguments.size();
+    }
+
+    @Override
+    public Value getOperand(int i) {
+        return arguments.get(i);
+    }
+
+    @Override
+    public void setOperand(int i, Value value) {
+        arguments.set(i, value);
     }
 
+    // The argument count may change here, unlike with setOperand
     @Override
     public void setOperands(List<Value> operands) {
         this.arguments = new ArrayList<>(operands);
@@ -76,6 +88,11 @@ public class Call extends TAC {
         return sb.toString();
     }
 
+    @Override
+    public Opcode opcode() {
+        return Opcode.CALL;
+    }
+
     @Override
     public void accept(TACVisitor visitor) {
         visitor.visit(this);
@@ -0,0 +1,57 @@
+package ir.tac;
+
+// Bounds check: traps unless 0 <= index < bound (DLX CHKI)
+public class Chk extends TAC {
+    private Value index;
+    private int bound;
+
+    public Chk(int id, Value index, int bound) {
+        super(id);
+        this.index = index;
+        this.bound = bound;
+    }
+
+    public Value getIndex() {
+        return index;
+    }
+
+    public void setIndex(Value index) {
+        this.index = index;
+    }
+
+    public int getBound() {
+        return bound;
+    }
+
+    @Override
+    public int operandCount() {
+        return 1;
+    }
+
+    @Override
+    public Value getOperand(int i) {
+        checkOperandIndex(i);
+        return index;
+    }
+
+    @Override
+    public void setOperand(int i, Value value) {
+        checkOperandIndex(i);
+        this.index = value;
+    }
+
+    @Override
+    public Opcode opcode() {
+        return Opcode.CHK;
+    }
+
+    @Override
+    public void accept(TACVisitor visitor) {
+        visitor.visit(this);
+    }
+
+    @Override
+    public String toString() {
+        return "chk " + index + " < " + bound;
+    }
+}
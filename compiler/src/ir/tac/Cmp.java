@@ -1,8 +1,5 @@
 package ir.tac;
 
-import java.util.ArrayList;
-import java.util.List;
-
 public class Cmp extends TAC {
     private Variable dest;
     private Value left;
@@ -24,6 +21,7 @@ public class Cmp extends TAC {
         this.isFloat = isFloat;
     }
 
+    @Override
     public boolean isFloat() {
         return isFloat;
     }
@@ -36,6 +34,7 @@ public class Cmp extends TAC {
         return dest;
     }
 
+    @Override
     public void setDest(Variable dest) {
         this.dest = dest;
     }
@@ -63,21 +62,31 @@ public class Cmp extends TAC {
     }
 
     @Override
-    public List<Value> getOperands() {
-        List<Value> operands = new ArrayList<>();
-        operands.add(left);
-        operands.add(right);
-        return operands;
+    public int operandCount() {
+        return 2;
     }
 
     @Override
-    public void setOperands(List<Value> operands) {
-        if (operands.size() >= 2) {
-            this.left = operands.get(0);
-            this.right = operands.get(1);
+    public Value getOperand(int i) {
+        checkOperandIndex(i);
+        return i == 0 ? left : right;
+    }
+
+    @Override
+    public void setOperand(int i, Value value) {
+        checkOperandIndex(i);
+        if (i == 0) {
+            this.left = value;
+        } else {
+            this.right = value;
         }
     }
 
+    @Override
+    public Opcode opcode() {
+        return Opcode.CMP;
+    }
+
     @Override
     public void accept(TACVisitor visitor) {
         visitor.visit(this);
@@ -0,0 +1,175 @@
+package ir.tac;
+
+import java.util.*;
+import ir.cfg.CFG;
+import ir.cfg.BasicBlock;
+
+/**
+ * Def-use chains for one CFG in SSA form, kept up to date while passes rewrite
+ * it, so they are built once per function instead of once per pass. Each value
+ * maps to its defining instruction and to its users; a user reading a value
+ * through two operands is listed twice.
+ *
+ * The chains only stay correct while changes go through this class:
+ * setOperand/replaceAllUsesWith for operands, and replace, eliminate and unlink
+ * for whole instructions. Structural CFG changes (CFG.removeBlock) drop them,
+ * as does the Optimizer once it is done with a function.
+ */
+public final class DefUseChains {
+    private final ValueNumbering numbering;
+    private final ValueMap<TAC> defs;
+    private final ValueMap<List<TAC>> uses;
+
+    private DefUseChains(ValueNumbering numbering) {
+        this.numbering = numbering;
+        this.defs = new ValueMap<>(numbering);
+        this.uses = new ValueMap<>(numbering);
+    }
+
+    public static DefUseChains of(CFG cfg) {
+        DefUseChains chains = new DefUseChains(ValueNumbering.of(cfg));
+        for (BasicBlock block : cfg.getAllBlocks()) {
+            if (block == null)
+                continue;
+            for (Phi phi : block.getPhis()) {
+                if (!phi.isEliminated())
+                    chains.add(phi);
+            }
+            for (TAC instruction : block.getInstructions()) {
+                if (!instruction.isEliminated())
+                    chains.add(instruction);
+            }
+        }
+        return chains;
+    }
+
+    public ValueNumbering getNumbering() {
+        return numbering;
+    }
+
+    // Queries ====================================================================
+
+    public TAC getDef(Variable v) {
+        return defs.get(v);
+    }
+
+    public TAC getDef(int n) {
+        return defs.get(n);
+    }
+
+    public List<TAC> getUses(Variable v) {
+        return getUses(numbering.lookup(v));
+    }
+
+    public List<TAC> getUses(int n) {
+        List<TAC> users = uses.get(n);
+        return users != null ? Collections.unmodifiableList(users) : Collections.emptyList();
+    }
+
+    public boolean isUsed(Variable v) {
+        List<TAC> users = uses.get(v);
+        return users != null && !users.isEmpty();
+    }
+
+    // Updates ====================================================================
+
+    /** Records a new (or re-added) instruction's definition and operands. */
+    public void add(TAC instruction) {
+        Value dest = instruction.getDest();
+        if (dest instanceof Variable) {
+            defs.put((Variable) dest, instruction);
+        }
+        for (int i = 0; i < instruction.operandCount(); i++) {
+            addUse(instruction.getOperand(i), instruction);
+        }
+    }
+
+    /** Forgets an instruction without touching the block it is in. */
+    public void remove(TAC instruction) {
+        Value dest = instruction.getDest();
+        if (dest instanceof Variable && defs.get((Variable) dest) == instruction) {
+            defs.put((Variable) dest, null);
+        }
+        for (int i = 0; i < instruction.operandCount(); i++) {
+            removeUse(instruction.getOperand(i), instruction);
+        }
+    }
+
+    /** Marks an instruction dead; it stays in its block until the next sweep. */
+    public void eliminate(TAC instruction) {
+        instruction.setEliminated(true);
+        remove(instruction);
+    }
+
+    /** Takes an instruction out of its block right away. */
+    public void unlink(TAC instruction) {
+        remove(instruction);
+        if (instruction.owner != null) {
+            instruction.owner.unlink(instruction);
+        }
+    }
+
+    /** Puts replacement where instruction was, in the block and in the chains. */
+    public void replace(TAC instruction, TAC replacement) {
+        remove(instruction);
+        if (instruction.owner != null) {
+            instruction.owner.replace(instruction, replacement);
+        }
+        add(replacement);
+    }
+
+    public void setOperand(TAC user, int i, Value value) {
+        Value old = user.getOperand(i);
+        if (old == value) {
+            return;
+        }
+        removeUse(old, user);
+        user.setOperand(i, value);
+        addUse(value, user);
+    }
+
+    /**
+     * Rewrites every use of from to to. Returns the users that changed, each
+     * once, in the order they started using from.
+     */
+    public Set<TAC> replaceAllUsesWith(Variable from, Value to) {
+        List<TAC> users = uses.get(from);
+        if (users == null || users.isEmpty() || from.equals(to)) {
+            return Collections.emptySet();
+        }
+        Set<TAC> changed = new LinkedHashSet<>(users);
+        uses.put(from, null);
+        for (TAC user : changed) {
+            for (int i = 0; i < user.operandCount(); i++) {
+                if (from.equals(user.getOperand(i))) {
+                    user.setOperand(i, to);
+                    addUse(to, user);
+                }
+            }
+        }
+        return changed;
+    }
+
+    private void addUse(Value value, TAC user) {
+        if (!(value instanceof Variable)) {
+            return;
+        }
+        int n = numbering.number((Variable) value);
+        List<TAC> users = uses.get(n);
+        if (users == null) {
+            users = new ArrayList<>(2);
+            uses.put(n, users);
+        }
+        users.add(user);
+    }
+
+    private void removeUse(Value value, TAC user) {
+        if (!(value instanceof Variable)) {
+            return;
+        }
+        List<TAC> users = uses.get((Variable) value);
+        if (users != null) {
+            users.remove(user);
+        }
+    }
+}
@@ -6,6 +6,11 @@ public class End extends TAC {
         super(id);
     }
     
+    @Override
+    public Opcode opcode() {
+        return Opcode.END;
+    }
+
     @Override
     public void accept(TACVisitor visitor) {
         visitor.visit(this);
@@ -0,0 +1,288 @@
+package ir.tac;
+
+import java.util.AbstractSequentialList;
+import java.util.Collection;
+import java.util.ConcurrentModificationException;
+import java.util.ListIterator;
+import java.util.NoSuchElementException;
+import java.util.function.Predicate;
+
+/**
+ * Intrusive doubly-linked list of instructions: the links live in the TAC
+ * itself, so inserting or removing next to a known instruction is O(1) and
+ * allocation-free. An instruction belongs to at most one list at a time and
+ * must be removed before it is added elsewhere.
+ *
+ * Positional List methods (get(i), add(i, x), ...) still work but walk from
+ * the nearer end; passes should use iterators or getPrev()/getNext().
+ */
+public final class InstructionList extends AbstractSequentialList<TAC> {
+    private TAC head;
+    private TAC tail;
+    private int size;
+
+    public InstructionList() {
+    }
+
+    public InstructionList(Collection<? extends TAC> instructions) {
+        addAll(instructions);
+    }
+
+    public TAC first() {
+        return head;
+    }
+
+    public TAC last() {
+        return tail;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean add(TAC instruction) {
+        insertBefore(null, instruction);
+        return true;
+    }
+
+    public void addFirst(TAC instruction) {
+        insertBefore(head, instruction);
+    }
+
+    /** Links instruction in front of pos, or at the end when pos is null. */
+    public void insertBefore(TAC pos, TAC instruction) {
+        if (instruction.owner != null) {
+            throw new IllegalStateException("Instruction already in a block: " + instruction);
+        }
+        if (pos != null && pos.owner != this) {
+            throw new IllegalArgumentException("Position not in this list: " + pos);
+        }
+        TAC prev = pos != null ? pos.prev : tail;
+        instruction.prev = prev;
+        instruction.next = pos;
+        instruction.owner = this;
+        if (prev != null) {
+            prev.next = instruction;
+        } else {
+            head = instruction;
+        }
+        if (pos != null) {
+            pos.prev = instruction;
+        } else {
+            tail = instruction;
+        }
+        size++;
+        modCount++;
+    }
+
+    /** Links instruction after pos, or at the front when pos is null. */
+    public void insertAfter(TAC pos, TAC instruction) {
+        insertBefore(pos != null ? pos.next : head, instruction);
+    }
+
+    public void unlink(TAC instruction) {
+        if (instruction.owner != this) {
+            throw new IllegalArgumentException("Instruction not in this list: " + instruction);
+        }
+        if (instruction.prev != null) {
+            instruction.prev.next = instruction.next;
+        } else {
+            head = instruction.next;
+        }
+        if (instruction.next != null) {
+            instruction.next.prev = instruction.prev;
+        } else {
+            tail = instruction.prev;
+        }
+        instruction.prev = null;
+        instruction.next = null;
+        instruction.owner = null;
+        size--;
+        modCount++;
+    }
+
+    /** Puts replacement where instruction was. */
+    public void replace(TAC instruction, TAC replacement) {
+        TAC pos = instruction.next;
+        unlink(instruction);
+        insertBefore(pos, replacement);
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return o instanceof TAC && ((TAC) o).owner == this;
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        if (!contains(o)) {
+            return false;
+        }
+        unlink((TAC) o);
+        return true;
+    }
+
+    @Override
+    public boolean removeIf(Predicate<? super TAC> filter) {
+        boolean removed = false;
+        TAC inst = head;
+        while (inst != null) {
+            TAC next = inst.next;
+            if (filter.test(inst)) {
+                unlink(inst);
+                removed = true;
+            }
+            inst = next;
+        }
+        return removed;
+    }
+
+    /** Unlinks every instruction an optimization has marked eliminated. */
+    public boolean sweepEliminated() {
+        return removeIf(TAC::isEliminated);
+    }
+
+    @Override
+    public void clear() {
+        TAC inst = head;
+        while (inst != null) {
+            TAC next = inst.next;
+            inst.prev = null;
+            inst.next = null;
+            inst.owner = null;
+            inst = next;
+        }
+        head = null;
+        tail = null;
+        size = 0;
+        modCount++;
+    }
+
+    @Override
+    public ListIterator<TAC> listIterator(int index) {
+        if (index < 0 || index > size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        return new Itr(index);
+    }
+
+    private TAC node(int index) {
+        if (index < size / 2) {
+            TAC inst = head;
+            for (int i = 0; i < index; i++) {
+                inst = inst.next;
+            }
+            return inst;
+        }
+        TAC inst = tail;
+        for (int i = size - 1; i > index; i--) {
+            inst = inst.prev;
+        }
+        return inst;
+    }
+
+    private final class Itr implements ListIterator<TAC> {
+        private TAC next;
+        private TAC lastReturned;
+        private int nextIndex;
+        private int expectedModCount = modCount;
+
+        Itr(int index) {
+            next = index == size ? null : node(index);
+            nextIndex = index;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return nextIndex < size;
+        }
+
+        @Override
+        public TAC next() {
+            checkForComodification();
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            lastReturned = next;
+            next = next.next;
+            nextIndex++;
+            return lastReturned;
+        }
+
+        @Override
+        public boolean hasPrevious() {
+            return nextIndex > 0;
+        }
+
+        @Override
+        public TAC previous() {
+            checkForComodification();
+            if (!hasPrevious()) {
+                throw new NoSuchElementException();
+            }
+            next = next == null ? tail : next.prev;
+            lastReturned = next;
+            nextIndex--;
+            return lastReturned;
+        }
+
+        @Override
+        public int nextIndex() {
+            return nextIndex;
+        }
+
+        @Override
+        public int previousIndex() {
+            return nextIndex - 1;
+        }
+
+        @Override
+        public void remove() {
+            checkForComodification();
+            if (lastReturned == null) {
+                throw new IllegalStateException();
+            }
+            if (next == lastReturned) {
+                next = lastReturned.next;
+            } else {
+                nextIndex--;
+            }
+            unlink(lastReturned);
+            lastReturned = null;
+            expectedModCount = modCount;
+        }
+
+        @Override
+        public void set(TAC instruction) {
+            checkForComodification();
+            if (lastReturned == null) {
+                throw new IllegalStateException();
+            }
+            if (instruction != lastReturned) {
+                replace(lastReturned, instruction);
+                if (next == lastReturned) {
+                    next = instruction;
+                }
+                lastReturned = instruction;
+            }
+            expectedModCount = modCount;
+        }
+
+        @Override
+        public void add(TAC instruction) {
+            checkForComodification();
+            insertBefore(next, instruction);
+            nextIndex++;
+            lastReturned = null;
+            expectedModCount = modCount;
+        }
+
+        private void checkForComodification() {
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+        }
+    }
+}
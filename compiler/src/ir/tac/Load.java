@@ -1,8 +1,5 @@
 package ir.tac;
 
-import java.util.ArrayList;
-import java.util.List;
-
 public class Load extends TAC {
     private Variable dest;
     private Value addr;
@@ -18,6 +15,7 @@ public class Load extends TAC {
         return dest;
     }
     
+    @Override
     public void setDest(Variable dest) {
         this.dest = dest;
     }
@@ -31,19 +29,27 @@ public class Load extends TAC {
     }
     
     @Override
-    public List<Value> getOperands() {
-        List<Value> operands = new ArrayList<>();
-        operands.add(addr);
-        return operands;
+    public int operandCount() {
+        return 1;
     }
-    
+
     @Override
-    public void setOperands(List<Value> operands) {
-        if (!operands.isEmpty()) {
-            this.addr = operands.get(0);
-        }
+    public Value getOperand(int i) {
+        checkOperandIndex(i);
+        return addr;
     }
-    
+
+    @Override
+    public void setOperand(int i, Value value) {
+        checkOperandIndex(i);
+        this.addr = value;
+    }
+        
+    @Override
+    public Opcode opcode() {
+        return Opcode.LOAD;
+    }
+
     @Override
     public void accept(TACVisitor visitor) {
         visitor.visit(this);
@@ -1,8 +1,5 @@
 package ir.tac;
 
-import java.util.ArrayList;
-import java.util.List;
-
 /**
  * LoadFP TAC instruction - loads a value from an FP-relative stack location.
  * Used for loading parameters and locals from the stack.
@@ -23,6 +20,7 @@ public class LoadFP extends TAC {
         return dest;
     }
     
+    @Override
     public void setDest(Variable dest) {
         this.dest = dest;
     }
@@ -34,18 +32,12 @@ public class LoadFP extends TAC {
     public void setFpOffset(int fpOffset) {
         this.fpOffset = fpOffset;
     }
-    
-    @Override
-    public List<Value> getOperands() {
-        // No operands - the offset is an immediate value
-        return new ArrayList<>();
-    }
-    
+            
     @Override
-    public void setOperands(List<Value> operands) {
-        // No operands to set
+    public Opcode opcode() {
+        return Opcode.LOAD_FP;
     }
-    
+
     @Override
     public void accept(TACVisitor visitor) {
         visitor.visit(this);
@@ -1,8 +1,5 @@
 package ir.tac;
 
-import java.util.ArrayList;
-import java.util.List;
-
 /**
  * LoadGP: Load from global pointer-relative address
  * dest = [GP + offset]
@@ -22,6 +19,7 @@ public class LoadGP extends TAC {
         return dest;
     }
 
+    @Override
     public void setDest(Variable dest) {
         this.dest = dest;
     }
@@ -31,13 +29,8 @@ public class LoadGP extends TAC {
     }
 
     @Override
-    public List<Value> getOperands() {
-        return new ArrayList<>();
-    }
-
-    @Override
-    public void setOperands(List<Value> operands) {
-        // No operands to set
+    public Opcode opcode() {
+        return Opcode.LOAD_GP;
     }
 
     @Override
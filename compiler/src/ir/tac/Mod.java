@@ -13,6 +13,7 @@ public class Mod extends Assign {
         this.isFloat = isFloat;
     }
 
+    @Override
     public boolean isFloat() {
         return isFloat;
     }
@@ -21,6 +22,11 @@ public class Mod extends Assign {
         this.isFloat = isFloat;
     }
 
+    @Override
+    public Opcode opcode() {
+        return Opcode.MOD;
+    }
+
     @Override
     public void accept(TACVisitor visitor) {
         visitor.visit(this);
@@ -1,8 +1,5 @@
 package ir.tac;
 
-import java.util.ArrayList;
-import java.util.List;
-
 /**
  * Mov TAC instruction - moves/copies a value
  * Format: dest = mov src
@@ -32,6 +29,7 @@ public class Mov extends TAC {
         return dest;
     }
 
+    @Override
     public void setDest(Variable dest) {
         this.dest = dest;
     }
@@ -44,6 +42,7 @@ public class Mov extends TAC {
         this.src = src;
     }
     
+    @Override
     public boolean isFloat() {
         return isFloat;
     }
@@ -53,17 +52,25 @@ public class Mov extends TAC {
     }
 
     @Override
-    public List<Value> getOperands() {
-        List<Value> operands = new ArrayList<>();
-        operands.add(src);
-        return operands;
+    public int operandCount() {
+        return 1;
+    }
+
+    @Override
+    public Value getOperand(int i) {
+        checkOperandIndex(i);
+        return src;
+    }
+
+    @Override
+    public void setOperand(int i, Value value) {
+        checkOperandIndex(i);
+        this.src = value;
     }
 
     @Override
-    public void setOperands(List<Value> operands) {
-        if (operands != null && !operands.isEmpty()) {
-            this.src = operands.get(0);
-        }
+    public Opcode opcode() {
+        return Opcode.MOV;
     }
 
     @Override
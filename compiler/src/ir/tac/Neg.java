@@ -1,8 +1,5 @@
 package ir.tac;
 
-import java.util.ArrayList;
-import java.util.List;
-
 public class Neg extends TAC {
     private Variable dest;
     private Value operand;
@@ -13,6 +10,7 @@ public class Neg extends TAC {
         this.operand = operand;
     }
 
+    @Override
     public void setDest(Variable dest) {
         this.dest = dest;
     }
@@ -31,17 +29,25 @@ public class Neg extends TAC {
     }
 
     @Override
-    public List<Value> getOperands() {
-        List<Value> operands = new ArrayList<>();
-        operands.add(operand);
-        return operands;
+    public int operandCount() {
+        return 1;
+    }
+
+    @Override
+    public Value getOperand(int i) {
+        checkOperandIndex(i);
+        return operand;
+    }
+
+    @Override
+    public void setOperand(int i, Value value) {
+        checkOperandIndex(i);
+        this.operand = value;
     }
 
     @Override
-    public void setOperands(List<Value> operands) {
-        if (!operands.isEmpty()) {
-            this.operand = operands.get(0);
-        }
+    public Opcode opcode() {
+        return Opcode.NEG;
     }
 
     @Override
@@ -6,6 +6,11 @@ public class Not extends Assign {
         super(id, dest, operand, null);
     }
     
+    @Override
+    public Opcode opcode() {
+        return Opcode.NOT;
+    }
+
     @Override
     public void accept(TACVisitor visitor) {
         visitor.visit(this);
@@ -0,0 +1,93 @@
+package ir.tac;
+
+/**
+ * Operation of a TAC instruction, with the properties passes dispatch on. A
+ * switch over opcode() or a flag test replaces chains of instanceof checks.
+ *
+ * - PURE: computes its dest from its operands alone, so equal instructions
+ *   compute equal values (CSE candidates)
+ * - ARITHMETIC: two-operand arithmetic/logic (constant folding, algebraic
+ *   simplification)
+ * - SIDE_EFFECT: must be kept even when its dest is unused
+ * - BRANCH: transfers control to getTarget()
+ * - COMMUTATIVE: operands may be swapped
+ * - FLOAT: isFloat() may be true
+ */
+public enum Opcode {
+    ADD(Opcode.PURE | Opcode.ARITHMETIC | Opcode.COMMUTATIVE | Opcode.FLOAT),
+    SUB(Opcode.PURE | Opcode.ARITHMETIC | Opcode.FLOAT),
+    MUL(Opcode.PURE | Opcode.ARITHMETIC | Opcode.COMMUTATIVE | Opcode.FLOAT),
+    DIV(Opcode.PURE | Opcode.ARITHMETIC | Opcode.FLOAT),
+    MOD(Opcode.PURE | Opcode.ARITHMETIC | Opcode.FLOAT),
+    POW(Opcode.PURE | Opcode.ARITHMETIC),
+    AND(Opcode.PURE | Opcode.ARITHMETIC | Opcode.COMMUTATIVE),
+    OR(Opcode.PURE | Opcode.ARITHMETIC | Opcode.COMMUTATIVE),
+    NOT(0),
+    NEG(0),
+    CMP(Opcode.PURE | Opcode.FLOAT),
+    MOV(Opcode.PURE | Opcode.FLOAT),
+    ADDA(Opcode.PURE | Opcode.ARITHMETIC),
+    ADDA_FP(Opcode.PURE),
+    ADDA_GP(Opcode.PURE),
+    LOAD(0),
+    LOAD_FP(0),
+    LOAD_GP(0),
+    STORE(Opcode.SIDE_EFFECT),
+    STORE_GP(Opcode.SIDE_EFFECT),
+    CHK(Opcode.SIDE_EFFECT),
+    // Reads consume input, so they stay even when the value is dropped
+    READ(Opcode.SIDE_EFFECT | Opcode.FLOAT),
+    READ_B(Opcode.SIDE_EFFECT),
+    WRITE(Opcode.SIDE_EFFECT | Opcode.FLOAT),
+    WRITE_B(Opcode.SIDE_EFFECT),
+    WRITE_NL(Opcode.SIDE_EFFECT),
+    CALL(Opcode.SIDE_EFFECT),
+    RETURN(Opcode.SIDE_EFFECT),
+    END(Opcode.SIDE_EFFECT),
+    BRA(Opcode.SIDE_EFFECT | Opcode.BRANCH),
+    BEQ(Opcode.SIDE_EFFECT | Opcode.BRANCH),
+    BNE(Opcode.SIDE_EFFECT | Opcode.BRANCH),
+    BLT(Opcode.SIDE_EFFECT | Opcode.BRANCH),
+    BLE(Opcode.SIDE_EFFECT | Opcode.BRANCH),
+    BGT(Opcode.SIDE_EFFECT | Opcode.BRANCH),
+    BGE(Opcode.SIDE_EFFECT | Opcode.BRANCH),
+    PHI(0),
+    SWAP(0);
+
+    private static final int PURE = 1;
+    private static final int ARITHMETIC = 1 << 1;
+    private static final int SIDE_EFFECT = 1 << 2;
+    private static final int BRANCH = 1 << 3;
+    private static final int COMMUTATIVE = 1 << 4;
+    private static final int FLOAT = 1 << 5;
+
+    private final int flags;
+
+    Opcode(int flags) {
+        this.flags = flags;
+    }
+
+    public boolean isPure() {
+        return (flags & PURE) != 0;
+    }
+
+    public boolean isArithmetic() {
+        return (flags & ARITHMETIC) != 0;
+    }
+
+    public boolean hasSideEffects() {
+        return (flags & SIDE_EFFECT) != 0;
+    }
+
+    public boolean isBranch() {
+        return (flags & BRANCH) != 0;
+    }
+
+    public boolean isCommutative() {
+        return (flags & COMMUTATIVE) != 0;
+    }
+
+    public boolean isFloatCapable() {
+        return (flags & FLOAT) != 0;
+    }
+}
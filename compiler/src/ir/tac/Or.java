@@ -6,6 +6,11 @@ public class Or extends Assign {
         super(id, dest, left, right);
     }
     
+    @Override
+    public Opcode opcode() {
+        return Opcode.OR;
+    }
+
     @Override
     public void accept(TACVisitor visitor) {
         visitor.visit(this);
@@ -23,6 +23,7 @@ public class Phi extends TAC {
         return dest;
     }
 
+    @Override
     public void setDest(Variable dest) {
         this.dest = dest;
     }
@@ -37,16 +38,39 @@ public class Phi extends TAC {
         return arguments;
     }
     
-    // *** Optional: If you still need a simple list of operand *values* for other passes ***
+    // Operands are the incoming values in predecessor order. Indexing walks the
+    // map, which is fine for the handful of predecessors a block has; passes
+    // that visit every argument should iterate getArgs() instead.
     @Override
-    public List<Value> getOperands() {
-        return new ArrayList<>(arguments.values());
+    public int operandCount() {
+        return arguments.size();
     }
-    
+
     @Override
-    public void setOperands(List<Value> operands) {
-        // Phi stores operands as a map with predecessors, so this doesn't apply directly
-        // No-op to satisfy the interface
+    public Value getOperand(int i) {
+        checkOperandIndex(i);
+        for (Value value : arguments.values()) {
+            if (i-- == 0) {
+                return value;
+            }
+        }
+        throw new IllegalStateException();
+    }
+
+    @Override
+    public void setOperand(int i, Value value) {
+        checkOperandIndex(i);
+        for (Map.Entry<BasicBlock, Value> entry : arguments.entrySet()) {
+            if (i-- == 0) {
+                entry.setValue(value);
+                return;
+            }
+        }
+    }
+
+    @Override
+    public List<Value> getOperands() {
+        return new ArrayList<>(arguments.values());
     }
     
     // *** Optional: If you need to replace the whole map (use with caution) ***
@@ -56,6 +80,11 @@ public class Phi extends TAC {
     }
 
 
+    @Override
+    public Opcode opcode() {
+        return Opcode.PHI;
+    }
+
     @Override
     public void accept(TACVisitor visitor) {
         visitor.visit(this);
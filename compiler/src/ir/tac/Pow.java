@@ -6,6 +6,11 @@ public class Pow extends Assign {
         super(id, dest, left, right);
     }
     
+    @Override
+    public Opcode opcode() {
+        return Opcode.POW;
+    }
+
     @Override
     public void accept(TACVisitor visitor) {
         visitor.visit(this);
@@ -1,8 +1,5 @@
 package ir.tac;
 
-import java.util.ArrayList;
-import java.util.List;
-
 public class Read extends TAC {
     private Variable dest;
     private boolean isFloat;
@@ -23,10 +20,12 @@ public class Read extends TAC {
         return dest;
     }
 
+    @Override
     public void setDest(Variable dest) {
         this.dest = dest;
     }
     
+    @Override
     public boolean isFloat() {
         return isFloat;
     }
@@ -36,13 +35,8 @@ public class Read extends TAC {
     }
 
     @Override
-    public List<Value> getOperands() {
-        return new ArrayList<>();
-    }
-
-    @Override
-    public void setOperands(List<Value> operands) {
-        // Read has no operands
+    public Opcode opcode() {
+        return Opcode.READ;
     }
 
     @Override
@@ -1,8 +1,5 @@
 package ir.tac;
 
-import java.util.ArrayList;
-import java.util.List;
-
 public class ReadB extends TAC {
     private Variable dest;
 
@@ -15,18 +12,14 @@ public class ReadB extends TAC {
         return dest;
     }
 
+    @Override
     public void setDest(Variable dest) {
         this.dest = dest;
     }
 
     @Override
-    public List<Value> getOperands() {
-        return new ArrayList<>();
-    }
-
-    @Override
-    public void setOperands(List<Value> operands) {
-        // ReadB has no operands
+    public Opcode opcode() {
+        return Opcode.READ_B;
     }
 
     @Override
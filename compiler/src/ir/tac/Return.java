@@ -1,6 +1,5 @@
 package ir.tac;
 
-import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -30,12 +29,20 @@ public class Return extends TAC {
     }
 
     @Override
-    public List<Value> getOperands() {
-        List<Value> operands = new ArrayList<>();
-        if (returnValue != null) {
-            operands.add(returnValue);
-        }
-        return operands;
+    public int operandCount() {
+        return returnValue != null ? 1 : 0;
+    }
+
+    @Override
+    public Value getOperand(int i) {
+        checkOperandIndex(i);
+        return returnValue;
+    }
+
+    @Override
+    public void setOperand(int i, Value value) {
+        checkOperandIndex(i);
+        this.returnValue = value;
     }
 
     @Override
@@ -47,6 +54,11 @@ public class Return extends TAC {
         }
     }
 
+    @Override
+    public Opcode opcode() {
+        return Opcode.RETURN;
+    }
+
     @Override
     public void accept(TACVisitor visitor) {
         visitor.visit(this);
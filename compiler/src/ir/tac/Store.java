@@ -1,8 +1,5 @@
 package ir.tac;
 
-import java.util.ArrayList;
-import java.util.List;
-
 public class Store extends TAC {
     private Value src;
     private Value addr;
@@ -30,21 +27,31 @@ public class Store extends TAC {
     }
     
     @Override
-    public List<Value> getOperands() {
-        List<Value> operands = new ArrayList<>();
-        operands.add(src);
-        operands.add(addr);
-        return operands;
+    public int operandCount() {
+        return 2;
     }
-    
+
+    @Override
+    public Value getOperand(int i) {
+        checkOperandIndex(i);
+        return i == 0 ? src : addr;
+    }
+
     @Override
-    public void setOperands(List<Value> operands) {
-        if (operands.size() >= 2) {
-            this.src = operands.get(0);
-            this.addr = operands.get(1);
+    public void setOperand(int i, Value value) {
+        checkOperandIndex(i);
+        if (i == 0) {
+            this.src = value;
+        } else {
+            this.addr = value;
         }
     }
-    
+        
+    @Override
+    public Opcode opcode() {
+        return Opcode.STORE;
+    }
+
     @Override
     public void accept(TACVisitor visitor) {
         visitor.visit(this);
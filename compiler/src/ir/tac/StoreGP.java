@@ -1,11 +1,9 @@
 package ir.tac;
 
-import java.util.ArrayList;
-import java.util.List;
-
 public class StoreGP extends TAC {
     private Value src;
     private int gpOffset;
+    private Immediate offsetOperand;
 
     public StoreGP(int id, Value src, int gpOffset) {
         super(id);
@@ -29,22 +27,40 @@ public class StoreGP extends TAC {
         this.gpOffset = gpOffset;
     }
 
+    // Operand view of the offset, rebuilt only when the offset changes
+    private Immediate offsetOperand() {
+        if (offsetOperand == null || (Integer) offsetOperand.getValue() != gpOffset) {
+            offsetOperand = new Immediate(gpOffset);
+        }
+        return offsetOperand;
+    }
+
+    @Override
+    public int operandCount() {
+        return 2;
+    }
+
     @Override
-    public List<Value> getOperands() {
-        List<Value> operands = new ArrayList<>();
-        operands.add(src);
-        operands.add(new Immediate(gpOffset));
-        return operands;
+    public Value getOperand(int i) {
+        checkOperandIndex(i);
+        return i == 0 ? src : offsetOperand();
     }
 
     @Override
-    public void setOperands(List<Value> operands) {
-        if (operands.size() >= 2) {
-            this.src = operands.get(0);
-            this.gpOffset = (int) ((Immediate) operands.get(1)).getValue();
+    public void setOperand(int i, Value value) {
+        checkOperandIndex(i);
+        if (i == 0) {
+            this.src = value;
+        } else {
+            this.gpOffset = (int) ((Immediate) value).getValue();
         }
     }
 
+    @Override
+    public Opcode opcode() {
+        return Opcode.STORE_GP;
+    }
+
     @Override
     public void accept(TACVisitor visitor) {
         visitor.visit(this);
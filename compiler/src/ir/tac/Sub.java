@@ -13,6 +13,7 @@ public class Sub extends Assign {
         this.isFloat = isFloat;
     }
 
+    @Override
     public boolean isFloat() {
         return isFloat;
     }
@@ -21,6 +22,11 @@ public class Sub extends Assign {
         this.isFloat = isFloat;
     }
 
+    @Override
+    public Opcode opcode() {
+        return Opcode.SUB;
+    }
+
     @Override
     public void accept(TACVisitor visitor) {
         visitor.visit(this);
@@ -1,8 +1,5 @@
 package ir.tac;
 
-import java.util.ArrayList;
-import java.util.List;
-
 /**
  * Swap instruction: Swap dest, src
  * Represents swapping the values of two registers/variables.
@@ -23,6 +20,7 @@ public class Swap extends TAC {
         return dest;
     }
 
+    @Override
     public void setDest(Variable dest) {
         this.dest = dest;
     }
@@ -36,17 +34,20 @@ public class Swap extends TAC {
     }
 
     @Override
-    public List<Value> getOperands() {
-        List<Value> ops = new ArrayList<>();
-        ops.add(src);
-        return ops;
+    public int operandCount() {
+        return 1;
     }
 
     @Override
-    public void setOperands(List<Value> operands) {
-        if (operands.size() > 0 && operands.get(0) instanceof Variable) {
-            this.src = (Variable) operands.get(0);
-        }
+    public Value getOperand(int i) {
+        checkOperandIndex(i);
+        return src;
+    }
+
+    @Override
+    public void setOperand(int i, Value value) {
+        checkOperandIndex(i);
+        this.src = (Variable) value;
     }
 
     @Override
@@ -54,6 +55,11 @@ public class Swap extends TAC {
         return "swap " + dest + ", " + src;
     }
 
+    @Override
+    public Opcode opcode() {
+        return Opcode.SWAP;
+    }
+
     @Override
     public void accept(TACVisitor visitor) {
         // visitor.visit(this); // Need to update visitor interface if we want to
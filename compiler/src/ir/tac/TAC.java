@@ -1,5 +1,6 @@
 package ir.tac;
 
+import ir.cfg.BasicBlock;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -8,7 +9,12 @@ public abstract class TAC implements Visitable{
     private int id; // instruction id
 
     private boolean eliminated; // if this instruction is not needed by any optimization, 
-                                // note: do not physically remove instructions
+                                // passes only mark; InstructionList.sweepEliminated() unlinks
+
+    // Links for the InstructionList this instruction belongs to, if any
+    TAC prev;
+    TAC next;
+    InstructionList owner;
 
     protected TAC(int id) {
         this.id = id;
@@ -21,6 +27,10 @@ public abstract class TAC implements Visitable{
         return id;
     }
 
+    public void setId(int id) {
+        this.id = id;
+    }
+
     public boolean isEliminated() {
         return eliminated;
     }
@@ -29,20 +39,73 @@ public abstract class TAC implements Visitable{
         this.eliminated = eliminated;
     }
 
+    public abstract Opcode opcode();
+
+    // Neighbours within the owning block, or null at either end
+    public TAC getPrev() {
+        return prev;
+    }
+
+    public TAC getNext() {
+        return next;
+    }
+
     public Value getDest() {
         return null;
     }
 
-    public void setDest(Value dest) {
+    public void setDest(Variable dest) {
         // Default: do nothing
     }
+
+    // Only meaningful where opcode().isFloatCapable()
+    public boolean isFloat() {
+        return false;
+    }
+
+    // Branch target, only meaningful where opcode().isBranch()
+    public BasicBlock getTarget() {
+        return null;
+    }
+
+    public void setTarget(BasicBlock target) {
+        throw new UnsupportedOperationException("Not a branch: " + this);
+    }
     
+    // Indexed operand access; unlike getOperands()/setOperands() these never copy,
+    // so passes walking every operand of every instruction should use them
+    public int operandCount() {
+        return 0;
+    }
+
+    public Value getOperand(int i) {
+        throw new IndexOutOfBoundsException("Operand " + i + " of " + this);
+    }
+
+    public void setOperand(int i, Value value) {
+        throw new IndexOutOfBoundsException("Operand " + i + " of " + this);
+    }
+
+    protected void checkOperandIndex(int i) {
+        if (i < 0 || i >= operandCount()) {
+            throw new IndexOutOfBoundsException("Operand " + i + " of " + this);
+        }
+    }
+
     public List<Value> getOperands() {
-        return new ArrayList<>();
+        int count = operandCount();
+        List<Value> operands = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            operands.add(getOperand(i));
+        }
+        return operands;
     }
-    
+
     public void setOperands(List<Value> operands) {
-        // Default: do nothing
+        int count = Math.min(operandCount(), operands.size());
+        for (int i = 0; i < count; i++) {
+            setOperand(i, operands.get(i));
+        }
     }
     
     public abstract String toString();
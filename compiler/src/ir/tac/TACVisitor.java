@@ -72,4 +72,6 @@ public interface TACVisitor {
     void visit(AddaGP addaGP);
 
     void visit(AddaFP addaFP);
+
+    void visit(Chk chk);
 }
@@ -0,0 +1,57 @@
+package ir.tac;
+
+import java.util.Arrays;
+
+/**
+ * Map from variables to T backed by an array indexed by value number. Null
+ * stands for "no entry", so null values cannot be stored.
+ */
+public final class ValueMap<T> {
+    private final ValueNumbering numbering;
+    private Object[] entries;
+
+    public ValueMap(ValueNumbering numbering) {
+        this.numbering = numbering;
+        this.entries = new Object[Math.max(numbering.size(), 8)];
+    }
+
+    public T get(Variable v) {
+        return get(numbering.lookup(v));
+    }
+
+    @SuppressWarnings("unchecked")
+    public T get(int n) {
+        return n >= 0 && n < entries.length ? (T) entries[n] : null;
+    }
+
+    public T getOrDefault(Variable v, T defaultValue) {
+        T value = get(v);
+        return value != null ? value : defaultValue;
+    }
+
+    public boolean containsKey(Variable v) {
+        return get(v) != null;
+    }
+
+    public void put(Variable v, T value) {
+        put(numbering.number(v), value);
+    }
+
+    public void put(int n, T value) {
+        if (n >= entries.length) {
+            entries = Arrays.copyOf(entries, Math.max(n + 1, entries.length * 2));
+        }
+        entries[n] = value;
+    }
+
+    public void putIfAbsent(Variable v, T value) {
+        int n = numbering.number(v);
+        if (get(n) == null) {
+            put(n, value);
+        }
+    }
+
+    public ValueNumbering getNumbering() {
+        return numbering;
+    }
+}
@@ -0,0 +1,90 @@
+package ir.tac;
+
+import java.util.*;
+import ir.cfg.CFG;
+import ir.cfg.BasicBlock;
+
+/**
+ * Dense numbering of the values in one CFG, so analyses can keep their side
+ * tables in arrays (ValueMap) and BitSets instead of hash maps keyed on
+ * Variable. Equal variables share a number.
+ *
+ * Variables are value objects created all over the IR, so numbers are handed
+ * out by a numbering rather than at construction. Each Variable object
+ * remembers the number it was last given; only the first lookup of an object
+ * hashes, repeated lookups in a dataflow loop are field reads. A numbering
+ * belongs to one CFG (the def-use chains keep theirs across passes), grows
+ * as new values appear, and is not thread-safe.
+ */
+public final class ValueNumbering {
+    private final Map<Variable, Integer> numbers = new HashMap<>();
+    private final List<Variable> values = new ArrayList<>();
+
+    // Numbers every variable defined or used in the CFG, in block order
+    public static ValueNumbering of(CFG cfg) {
+        ValueNumbering numbering = new ValueNumbering();
+        for (BasicBlock block : cfg.getAllBlocks()) {
+            if (block == null)
+                continue;
+            for (Phi phi : block.getPhis()) {
+                numbering.numberValue(phi.getDest());
+                if (phi.getArgs() != null) {
+                    for (Value arg : phi.getArgs().values()) {
+                        numbering.numberValue(arg);
+                    }
+                }
+            }
+            for (TAC instruction : block.getInstructions()) {
+                numbering.numberValue(instruction.getDest());
+                for (int i = 0; i < instruction.operandCount(); i++) {
+                    numbering.numberValue(instruction.getOperand(i));
+                }
+            }
+        }
+        return numbering;
+    }
+
+    private void numberValue(Value value) {
+        if (value instanceof Variable) {
+            number((Variable) value);
+        }
+    }
+
+    // The number of v, assigning the next free one if v is new
+    public int number(Variable v) {
+        if (v.numbering == this) {
+            return v.valueNumber;
+        }
+        Integer n = numbers.get(v);
+        if (n == null) {
+            n = values.size();
+            numbers.put(v, n);
+            values.add(v);
+        }
+        v.numbering = this;
+        v.valueNumber = n;
+        return n;
+    }
+
+    // The number of v, or -1 if it has none
+    public int lookup(Variable v) {
+        if (v.numbering == this) {
+            return v.valueNumber;
+        }
+        Integer n = numbers.get(v);
+        if (n == null) {
+            return -1;
+        }
+        v.numbering = this;
+        v.valueNumber = n;
+        return n;
+    }
+
+    public Variable get(int n) {
+        return values.get(n);
+    }
+
+    public int size() {
+        return values.size();
+    }
+}
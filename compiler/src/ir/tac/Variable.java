@@ -1,13 +1,15 @@
 package ir.tac;
 
 import mocha.Symbol;
-import java.util.Objects;
 
 public class Variable implements Value {
     private Symbol sym;
     private int version;
     private boolean isTemp;
     private int tempIndex;
+    // Number last handed out for this object by a ValueNumbering, see there
+    ValueNumbering numbering;
+    int valueNumber;
 
     public Variable(Symbol sym) {
         this(sym, 0, false, -1);
@@ -42,6 +44,7 @@ public class Variable implements Value {
 
     public void setVersion(int version) {
         this.version = version;
+        this.numbering = null;
     }
 
     public boolean isTemp() {
@@ -54,6 +57,7 @@ public class Variable implements Value {
 
     public void setTempIndex(int tempIndex) {
         this.tempIndex = tempIndex;
+        this.numbering = null;
     }
 
     public Variable withVersion(int newVersion) {
@@ -95,11 +99,11 @@ public class Variable implements Value {
     @Override
     public int hashCode() {
         if (isTemp) {
-            return Objects.hash(true, tempIndex);
+            return tempIndex;
         }
 
-        // Use symbol identity hash
-        return Objects.hash(false, System.identityHashCode(sym), version);
+        // Symbol identity, matching equals; no boxing on this path
+        return 31 * System.identityHashCode(sym) + version;
     }
 
 }
\ No newline at end of file
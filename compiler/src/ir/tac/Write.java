@@ -1,8 +1,5 @@
 package ir.tac;
 
-import java.util.ArrayList;
-import java.util.List;
-
 public class Write extends TAC {
     private Value src;
     private boolean isFloat;
@@ -27,6 +24,7 @@ public class Write extends TAC {
         this.src = src;
     }
     
+    @Override
     public boolean isFloat() {
         return isFloat;
     }
@@ -36,19 +34,27 @@ public class Write extends TAC {
     }
     
     @Override
-    public List<Value> getOperands() {
-        List<Value> operands = new ArrayList<>();
-        operands.add(src);
-        return operands;
+    public int operandCount() {
+        return 1;
     }
-    
+
     @Override
-    public void setOperands(List<Value> operands) {
-        if (!operands.isEmpty()) {
-            this.src = operands.get(0);
-        }
+    public Value getOperand(int i) {
+        checkOperandIndex(i);
+        return src;
     }
-    
+
+    @Override
+    public void setOperand(int i, Value value) {
+        checkOperandIndex(i);
+        this.src = value;
+    }
+        
+    @Override
+    public Opcode opcode() {
+        return Opcode.WRITE;
+    }
+
     @Override
     public void accept(TACVisitor visitor) {
         visitor.visit(this);
@@ -1,8 +1,5 @@
 package ir.tac;
 
-import java.util.ArrayList;
-import java.util.List;
-
 public class WriteB extends TAC {
     private Value src;
     
@@ -16,19 +13,27 @@ public class WriteB extends TAC {
     }
     
     @Override
-    public List<Value> getOperands() {
-        List<Value> operands = new ArrayList<>();
-        operands.add(src);
-        return operands;
+    public int operandCount() {
+        return 1;
     }
-    
+
     @Override
-    public void setOperands(List<Value> operands) {
-        if (!operands.isEmpty()) {
-            this.src = operands.get(0);
-        }
+    public Value getOperand(int i) {
+        checkOperandIndex(i);
+        return src;
     }
-    
+
+    @Override
+    public void setOperand(int i, Value value) {
+        checkOperandIndex(i);
+        this.src = value;
+    }
+        
+    @Override
+    public Opcode opcode() {
+        return Opcode.WRITE_B;
+    }
+
     @Override
     public void accept(TACVisitor visitor) {
         visitor.visit(this);
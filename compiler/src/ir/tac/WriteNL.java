@@ -6,6 +6,11 @@ public class WriteNL extends TAC {
         super(id);
     }
     
+    @Override
+    public Opcode opcode() {
+        return Opcode.WRITE_NL;
+    }
+
     @Override
     public void accept(TACVisitor visitor) {
         visitor.visit(this);
@@ -0,0 +1,110 @@
+package mocha;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import ast.AST;
+import ast.ASTArena;
+import ast.Computation;
+import ast.FunctionDeclaration;
+import ast.Node;
+import ast.VariableDeclaration;
+import types.FuncType;
+import types.TypeList;
+
+/**
+ * On-disk cache of parsed and type-checked ASTs, one ASTArena file per source
+ * hash. A hit skips scanning, parsing and type checking entirely.
+ *
+ * Only the global scope of the symbol table survives type checking (locals are
+ * scoped per function and re-inserted by IRGenerator), so on load it is rebuilt
+ * from the cached global declarations and function signatures.
+ */
+public class ASTCache {
+
+    private final File dir;
+
+    public ASTCache(String dir) {
+        this.dir = new File(dir);
+    }
+
+    // Returns null on a miss or an unreadable entry
+    public AST load(String sourceFileName, boolean lazyFunctions) {
+        File entry = entryFor(sourceFileName, lazyFunctions);
+        if (entry == null || !entry.isFile()) {
+            return null;
+        }
+        try (FileChannel ch = FileChannel.open(entry.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer buf = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+            Computation computation = ASTArena.readFrom(buf).toComputation();
+            return new AST(computation, rebuildGlobalScope(computation));
+        } catch (IOException | RuntimeException e) {
+            System.err.println("WARNING: ignoring AST cache entry " + entry + ": " + e);
+            return null;
+        }
+    }
+
+    public void store(String sourceFileName, boolean lazyFunctions, AST ast) {
+        File entry = entryFor(sourceFileName, lazyFunctions);
+        if (entry == null || ast.getComputation() == null) {
+            return;
+        }
+        try {
+            dir.mkdirs();
+            // Write aside and rename so a concurrent reader never maps a partial file
+            File tmp = File.createTempFile(entry.getName(), ".tmp", dir);
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+                ast.toArena().writeTo(out);
+            }
+            Files.move(tmp.toPath(), entry.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            System.err.println("WARNING: could not write AST cache entry " + entry + ": " + e.getMessage());
+        }
+    }
+
+    // Globals first, then function signatures, as the parser declares them
+    private SymbolTable rebuildGlobalScope(Computation computation) {
+        SymbolTable table = new SymbolTable();
+        for (Node decl : computation.variables().declarations()) {
+            VariableDeclaration vars = (VariableDeclaration) decl;
+            for (Token name : vars.names()) {
+                table.insert(name.lexeme(), vars.type());
+            }
+        }
+        for (Node decl : computation.functions().declarations()) {
+            FunctionDeclaration fn = (FunctionDeclaration) decl;
+            TypeList params = new TypeList();
+            for (Symbol formal : fn.formals()) {
+                params.append(formal.type());
+            }
+            table.insertFunction(fn.name().lexeme(), new FuncType(params, fn.returnType()));
+        }
+        return table;
+    }
+
+    // Lazy parsing drops unreachable bodies, so it gets its own entries
+    private File entryFor(String sourceFileName, boolean lazyFunctions) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(Files.readAllBytes(new File(sourceFileName).toPath()));
+            digest.update((byte) (lazyFunctions ? 1 : 0));
+            StringBuilder hex = new StringBuilder();
+            for (byte b : digest.digest()) {
+                hex.append(String.format("%02x", b));
+            }
+            return new File(dir, hex + ".ast");
+        } catch (IOException | NoSuchAlgorithmException e) {
+            return null;
+        }
+    }
+}
@@ -1,9 +1,15 @@
 package mocha;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.NoSuchElementException;
+import java.util.TreeMap;
+import java.util.TreeSet;
 import java.io.InputStream;
 
 import ast.*;
@@ -66,6 +72,19 @@ public class Compiler {
     private int savedTokenIndex; // Store token position for reset
     private ast.AST parsedAST; // Store the parsed AST
 
+    // Lazy function parsing: pass 1 records where each body starts, and only
+    // bodies reachable from main through calls are parsed in pass 2
+    private boolean lazyFunctions = false;
+    private Map<String, List<Integer>> functionStubs = new HashMap<>();
+    private Deque<String> pendingCalls = new ArrayDeque<>();
+
+    // Build SSA while lowering (Braun et al.) rather than with SSAConverter afterwards
+    private boolean directSSA = false;
+    // Workers for per-function IR generation
+    private int irThreads = 1;
+    // Emit CHKI on every array index (development builds)
+    private boolean boundsChecks = false;
+
     private int numDataRegisters; // available registers are [1..numDataRegisters]
     private List<Integer> instructions;
 
@@ -79,6 +98,22 @@ public class Compiler {
         this.sourceFileName = scanner.getSourceFileName();
     }
 
+    public void setLazyFunctionParsing(boolean lazy) {
+        this.lazyFunctions = lazy;
+    }
+
+    public void setDirectSSA(boolean direct) {
+        this.directSSA = direct;
+    }
+
+    public void setThreads(int threads) {
+        this.irThreads = threads;
+    }
+
+    public void setBoundsChecks(boolean checks) {
+        this.boundsChecks = checks;
+    }
+
     // TODO
     public ast.AST genAST() {
         initSymbolTable();
@@ -92,6 +127,20 @@ public class Compiler {
         }
     }
 
+    // Returns the cached AST for this source, or null when it must be parsed and checked
+    public ast.AST loadCachedAST(String cacheDir) {
+        ast.AST cached = new ASTCache(cacheDir).load(sourceFileName, lazyFunctions);
+        if (cached != null) {
+            parsedAST = cached;
+            symbolTable = cached.getSymbolTable();
+        }
+        return cached;
+    }
+
+    public void storeCachedAST(String cacheDir, ast.AST ast) {
+        new ASTCache(cacheDir).store(sourceFileName, lazyFunctions, ast);
+    }
+
     public void interpret(InputStream in) {
         if (hasError()) {
             System.out.println("Error parsing file.");
@@ -109,6 +158,17 @@ public class Compiler {
         System.out.flush();
     }
 
+    // Runs the type-checked AST on the slot-resolved interpreter
+    public void interpretFast(InputStream in) {
+        new FastInterpreter(this.symbolTable, in).interpret(parsedAST);
+    }
+
+    // Compiles the type-checked AST to stack bytecode and runs it on the VM
+    public void executeBytecode(InputStream in) {
+        vm.Bytecode program = new vm.BytecodeGenerator(this.symbolTable).generate(parsedAST);
+        new vm.BytecodeVM(program).execute(in);
+    }
+
     public int[] compile() {
         initSymbolTable();
         try {
@@ -131,14 +191,11 @@ public class Compiler {
 
     public java.util.List<ir.cfg.CFG> genSSA(ast.AST ast) {
         ir.IRGenerator generator = new ir.IRGenerator(this.symbolTable);
-        java.util.List<ir.cfg.CFG> cfgs = generator.generate(ast);
+        generator.setDirectSSA(directSSA);
+        generator.setBoundsChecks(boundsChecks);
+        java.util.List<ir.cfg.CFG> cfgs = generator.generateSSA(ast, irThreads);
         this.currentCFGs = cfgs;
 
-        for (ir.cfg.CFG cfg : cfgs) {
-                ir.ssa.SSAConverter converter = new ir.ssa.SSAConverter(cfg);
-                converter.convertToSSA();
-        }
-
         return cfgs;
     }
 
@@ -183,6 +240,20 @@ public class Compiler {
         return codegen.generate(currentCFGs);
     }
     
+    // Lowers the optimized CFGs to a JVM class and runs it in place of DLX; a
+    // function too large for a JVM method sends the program to the bytecode VM
+    public void executeOnJVM(InputStream in) {
+        if (currentCFGs == null) {
+            throw new RuntimeException("JVM backend requires prior IR generation.");
+        }
+        try {
+            new ir.jvm.JVMGenerator().execute(currentCFGs, in);
+        } catch (ir.jvm.JVMGenerator.MethodTooLargeException e) {
+            System.err.println(e.getMessage() + "; running on the bytecode VM instead");
+            executeBytecode(in);
+        }
+    }
+
     private java.util.List<ir.cfg.CFG> currentCFGs;
     
     public java.util.List<ir.cfg.CFG> getCurrentCFGs() {
@@ -321,13 +392,13 @@ public class Compiler {
     private Type tokenToType(Token t) {
         switch (t.kind()) {
             case INT:
-                return new IntType();
+                return IntType.INSTANCE;
             case FLOAT:
-                return new FloatType();
+                return FloatType.INSTANCE;
             case BOOL:
-                return new BoolType();
+                return BoolType.INSTANCE;
             case VOID:
-                return new VoidType();
+                return VoidType.INSTANCE;
             default:
                 return new ErrorType("Unknown type token: " + t.kind());
         }
@@ -503,6 +574,9 @@ public class Compiler {
 
         expect(Token.Kind.CLOSE_PAREN);
         tryResolveFunction(name);
+        if (lazyFunctions) {
+            pendingCalls.add(name.lexeme());
+        }
 
         return new FunctionCallExpression(name.lineNumber(), name.charPosition(), name, args);
     }
@@ -608,7 +682,7 @@ public class Compiler {
         // Create recursive ArrayType structure
         Type currentType = tokenToType(base);
         for (int i = dims.size() - 1; i >= 0; i--) {
-            currentType = new types.ArrayType(currentType, dims.get(i));
+            currentType = types.ArrayType.of(currentType, dims.get(i));
         }
         return currentType;
     }
@@ -648,7 +722,7 @@ public class Compiler {
         // Create recursive ArrayType structure
         Type currentType = tokenToType(base);
         for (int i = dims.size() - 1; i >= 0; i--) {
-            currentType = new types.ArrayType(currentType, dims.get(i));
+            currentType = types.ArrayType.of(currentType, dims.get(i));
         }
         return currentType;
     }
@@ -697,6 +771,7 @@ public class Compiler {
     private FunctionDeclaration funcDecl() {
         int startLine = lineNumber();
         int startChar = charPosition();
+        int declTokenIndex = scanner.getCurrentTokenIndex();
 
         expect(Token.Kind.FUNC);
         Token name = expectRetrieve(Token.Kind.IDENT);
@@ -725,6 +800,9 @@ public class Compiler {
         // Only declare function in symbol table during first pass
         if (firstPass) {
             tryDeclareFunction(name, funcType);
+            if (lazyFunctions) {
+                functionStubs.computeIfAbsent(name.lexeme(), k -> new ArrayList<>()).add(declTokenIndex);
+            }
 
             // Skip function body during first pass
             expect(Token.Kind.OPEN_BRACE);
@@ -771,6 +849,17 @@ public class Compiler {
             funcDecl();
         }
 
+        if (lazyFunctions) {
+            // Scanner already sits on main's body; parse it first so its calls
+            // seed the worklist, then pull in callee bodies on demand
+            firstPass = false;
+            StatementSequence mainSeq = mainBody();
+            materializeReachableFunctions(funcs);
+
+            Symbol mainSymbol = new Symbol("main");
+            return new Computation(startLine, startChar, mainSymbol, vars, funcs, mainSeq);
+        }
+
         // PASS 2: Parse function bodies (signatures already declared)
         // Reset scanner to saved token position and set firstPass = false
         scanner.resetToToken(savedTokenIndex - 1);
@@ -781,13 +870,58 @@ public class Compiler {
             funcs.add(funcDecl());
         }
 
+        StatementSequence mainSeq = mainBody();
+
+        Symbol mainSymbol = new Symbol("main");
+        return new Computation(startLine, startChar, mainSymbol, vars, funcs, mainSeq);
+    }
+
+    private StatementSequence mainBody() {
         expect(Token.Kind.OPEN_BRACE);
         StatementSequence mainSeq = statSeq();
         expect(Token.Kind.CLOSE_BRACE);
         expect(Token.Kind.PERIOD);
+        return mainSeq;
+    }
+
+    // Parses only bodies reachable from main. Each round drains the pending
+    // calls and visits the new bodies in source order, so the scanner mostly
+    // moves forward and only rewinds once per round.
+    private void materializeReachableFunctions(DeclarationList funcs) {
+        TreeMap<Integer, FunctionDeclaration> parsed = new TreeMap<>();
+        while (!pendingCalls.isEmpty()) {
+            TreeSet<Integer> round = new TreeSet<>();
+            while (!pendingCalls.isEmpty()) {
+                List<Integer> starts = functionStubs.remove(pendingCalls.poll());
+                if (starts != null) {
+                    round.addAll(starts);
+                }
+            }
+            for (int start : round) {
+                seekToToken(start);
+                parsed.put(start, funcDecl());
+            }
+        }
 
-        Symbol mainSymbol = new Symbol("main");
-        return new Computation(startLine, startChar, mainSymbol, vars, funcs, mainSeq);
+        // Keep declaration order identical to eager parsing
+        for (FunctionDeclaration decl : parsed.values()) {
+            funcs.add(decl);
+        }
+    }
+
+    // Make token number tokenIndex the current token, rescanning only when it lies behind us
+    private void seekToToken(int tokenIndex) {
+        if (scanner.getCurrentTokenIndex() == tokenIndex) {
+            return;
+        }
+        if (scanner.getCurrentTokenIndex() > tokenIndex - 1) {
+            scanner.resetToToken(tokenIndex - 1);
+        } else {
+            while (scanner.getCurrentTokenIndex() < tokenIndex - 1) {
+                scanner.next();
+            }
+        }
+        currentToken = scanner.next();
     }
 
     private void skipFunctionBody() {
@@ -24,6 +24,14 @@ public class CompilerTester {
         options.addOption("o", "opt", true, "Order-sensitive optimization -allowed to have multiple");
         options.addOption("loop", "convergence", false, "Run all optimization specified by -o until convergence");
         options.addOption("max", "maxOpt", false, "Run all optimizations till convergence");
+        options.addOption("lazy", "lazyFuncs", false, "Only parse function bodies reachable from main");
+        options.addOption("cache", "astCache", true, "Reuse parsed and type-checked ASTs from this directory");
+        options.addOption("braun", "directSSA", false, "Construct SSA during IR generation instead of with dominance frontiers");
+        options.addOption("j", "threads", true, "Worker threads for per-function front-end phases");
+        options.addOption("chk", "boundsCheck", false, "Check array indices at run time (CHKI)");
+        options.addOption("fast", "fastInterpret", false, "Run on the slot-resolved interpreter instead of DLX");
+        options.addOption("vm", "bytecodeVM", false, "Run as stack bytecode on the VM instead of DLX");
+        options.addOption("jvm", "jvmBackend", false, "Compile the optimized IR to a JVM class and run it instead of DLX");
 
 
         HelpFormatter formatter = new HelpFormatter();
@@ -82,25 +90,56 @@ public class CompilerTester {
         }
 
         
+        int threads = 1;
+        try {
+            threads = Math.max(1, Integer.parseInt(cmd.getOptionValue("threads", "1")));
+        } catch (NumberFormatException e) {
+            System.err.println("Error in option threads -- using 1");
+        }
+
         mocha.Compiler c = new mocha.Compiler(s, numRegs);
-        ast.AST ast = c.genAST();
+        c.setLazyFunctionParsing(cmd.hasOption("lazy"));
+        c.setDirectSSA(cmd.hasOption("braun"));
+        c.setThreads(threads);
+        c.setBoundsChecks(cmd.hasOption("chk"));
+        String cacheDir = cmd.getOptionValue("cache");
+        ast.AST ast = (cacheDir != null) ? c.loadCachedAST(cacheDir) : null;
+        boolean fromCache = ast != null;
+        if (!fromCache) {
+            ast = c.genAST();
+        }
         if (cmd.hasOption("a")) { // AST to Screen
             String ast_text = ast.printPreOrder();
             System.out.println(ast_text);
         }
         
-        if (c.hasError()) {
-            System.out.println("Error parsing file.");
-            System.out.println(c.errorReport());
-            System.exit(-8);
-        }
+        if (!fromCache) {
+            if (c.hasError()) {
+                System.out.println("Error parsing file.");
+                System.out.println(c.errorReport());
+                System.exit(-8);
+            }
+
+            types.TypeChecker tc = new types.TypeChecker();
 
-        types.TypeChecker tc = new types.TypeChecker();
+            if (!tc.check(ast, threads)) {
+                System.out.println("Error type-checking file.");
+                System.out.println(tc.errorReport());
+                System.exit(-4);
+            }
 
-        if (!tc.check(ast)) {
-            System.out.println("Error type-checking file.");
-            System.out.println(tc.errorReport());
-            System.exit(-4);
+            if (cacheDir != null) {
+                c.storeCachedAST(cacheDir, ast);
+            }
+        }
+
+        if (cmd.hasOption("fast")) { // at this point the program is well-formed
+            c.interpretFast(in);
+            System.exit(0);
+        }
+        if (cmd.hasOption("vm")) {
+            c.executeBytecode(in);
+            System.exit(0);
         }
 
         // if (cmd.hasOption("int")) { // Interpreter mode - at this point the program is well-formed
@@ -147,6 +186,11 @@ public class CompilerTester {
         String[] optArgs = cmd.getOptionValues("opt");
         List<String> optArguments = (optArgs!=null && optArgs.length != 0) ? Arrays.asList(optArgs) : new ArrayList<String>();
         c.optimization(optArguments, cmd.hasOption("loop"), cmd.hasOption("max"));
+
+        if (cmd.hasOption("jvm")) {
+            c.executeOnJVM(in);
+            System.exit(0);
+        }
         // we expect after this, there is file recording all transformations your compiler did
         // e.g., if we run -s test000.txt -o cp -o cf -o dce -loop
         // the file will have the name "record_test000_cp_cf_dce_loop.txt"
@@ -0,0 +1,772 @@
+package mocha;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.StringTokenizer;
+
+import ast.*;
+import types.*;
+
+/**
+ * Interpreter that resolves the type-checked AST into a tree of small
+ * executable closures before running anything. Variables become frame slot
+ * indices, every scalar is an unboxed int (floats as raw bits, bools as 0/1,
+ * the same encoding DLX uses) and arrays are flat int[] with strides fixed at
+ * declaration. User functions get real frames, so recursion works.
+ *
+ * Output and input prompts match DLX.execute, so a program prints the same
+ * thing here as it does through the compile-to-DLX path.
+ */
+public class FastInterpreter implements NodeVisitor {
+
+    // Executable forms ===========================================================
+
+    private static final class Frame {
+        final int[] slots;
+        final ArrayValue[] arrays;
+        int ret;
+
+        Frame(int scalars, int arrays) {
+            this.slots = new int[scalars];
+            this.arrays = new ArrayValue[arrays];
+        }
+    }
+
+    // Flat array storage; views of partially indexed arrays share data
+    private static final class ArrayValue {
+        final int[] data;
+        final int offset;
+        final int[] dims;
+        final int[] strides;
+
+        ArrayValue(int[] data, int offset, int[] dims, int[] strides) {
+            this.data = data;
+            this.offset = offset;
+            this.dims = dims;
+            this.strides = strides;
+        }
+    }
+
+    private interface Expr {
+        int eval(Frame f);
+    }
+
+    private interface ArrExpr {
+        ArrayValue eval(Frame f);
+    }
+
+    // Returns true once a return statement has executed
+    private interface Stmt {
+        boolean exec(Frame f);
+    }
+
+    private static final class Function {
+        int scalarSlots;
+        int arraySlots;
+        int[] paramSlots;
+        boolean[] paramIsArray;
+        int[] localArraySlots;
+        ArrayType[] localArrayTypes;
+        Stmt body;
+    }
+
+    // Where a name lives once resolved
+    private static final class Slot {
+        final boolean global;
+        final boolean array;
+        final int index;
+
+        Slot(boolean global, boolean array, int index) {
+            this.global = global;
+            this.array = array;
+            this.index = index;
+        }
+    }
+
+    // Runtime state ==============================================================
+
+    private final SymbolTable symbolTable;
+    private final BufferedReader reader;
+    private StringTokenizer tokens;
+    private Frame globals;
+
+    // Resolution state
+    private final Map<String, Slot> globalSlots = new HashMap<>();
+    private int globalScalars;
+    private int globalArrays;
+    private final List<ArrayType> globalArrayTypes = new ArrayList<>();
+    private final Map<Symbol, Function> functions = new HashMap<>();
+    private Map<String, Slot> localSlots;
+    private Function current;
+
+    private Expr expr;
+    private ArrExpr arr;
+    private Stmt stmt;
+
+    public FastInterpreter(SymbolTable symbolTable, InputStream input) {
+        this.symbolTable = symbolTable;
+        this.reader = new BufferedReader(new InputStreamReader(input));
+    }
+
+    public void interpret(AST ast) {
+        Computation comp = ast.getComputation();
+        comp.accept(this);
+        Stmt main = stmt;
+
+        globals = new Frame(globalScalars, globalArrays);
+        for (int i = 0; i < globalArrays; i++) {
+            globals.arrays[i] = allocate(globalArrayTypes.get(i));
+        }
+        main.exec(new Frame(0, 0));
+        System.out.flush();
+    }
+
+    private static ArrayValue allocate(ArrayType type) {
+        List<Integer> dimList = type.getDimensions();
+        List<Integer> strideList = type.getStrides();
+        int[] dims = new int[dimList.size()];
+        int[] strides = new int[dims.length];
+        for (int i = 0; i < dims.length; i++) {
+            dims[i] = dimList.get(i);
+            strides[i] = strideList.get(i);
+        }
+        return new ArrayValue(new int[type.getAllocationSize() / 4], 0, dims, strides);
+    }
+
+    // Resolution helpers =========================================================
+
+    private Expr compile(Expression e) {
+        e.accept(this);
+        return expr;
+    }
+
+    private ArrExpr compileArray(Expression e) {
+        e.accept(this);
+        return arr;
+    }
+
+    private Stmt compile(Statement s) {
+        s.accept(this);
+        return stmt;
+    }
+
+    private Slot resolve(String name) {
+        Slot slot = localSlots != null ? localSlots.get(name) : null;
+        if (slot == null) {
+            slot = globalSlots.get(name);
+        }
+        if (slot == null) {
+            throw new RuntimeException("Unknown variable: " + name);
+        }
+        return slot;
+    }
+
+    private static boolean isFloat(Expression e) {
+        return e.getType() instanceof FloatType;
+    }
+
+    private static float f(int bits) {
+        return Float.intBitsToFloat(bits);
+    }
+
+    private static int bits(float value) {
+        return Float.floatToRawIntBits(value);
+    }
+
+    // Same three-way result as DLX fCMP, including its epsilon
+    private static int fcmp(int a, int b) {
+        float result = f(a) - f(b);
+        if (result <= -DLX.EPS) {
+            return -1;
+        }
+        return result >= DLX.EPS ? 1 : 0;
+    }
+
+    private static int pow(int base, int exp) {
+        if (base < 0 || exp < 0) {
+            throw new RuntimeException("Illegal value (" + base + ")^(" + exp + ") in POW");
+        }
+        return (int) Math.round(Math.pow(base, exp));
+    }
+
+    // Read-modify-write of the old value, for compound assignments
+    private interface Update {
+        int apply(Frame f, int old);
+    }
+
+    // Assignment destination. Each execution addresses it once and keeps the
+    // address in locals, so a call in the source that runs the same statement
+    // again (recursion) cannot disturb it.
+    private interface Location {
+        void store(Frame f, Expr value);
+        void update(Frame f, Update op);
+    }
+
+    private Location location(Expression dest) {
+        if (dest instanceof Designator) {
+            Slot slot = resolve(((Designator) dest).name().lexeme());
+            final int i = slot.index;
+            if (slot.global) {
+                return new Location() {
+                    public void store(Frame f, Expr value) { globals.slots[i] = value.eval(f); }
+                    public void update(Frame f, Update op) { globals.slots[i] = op.apply(f, globals.slots[i]); }
+                };
+            }
+            return new Location() {
+                public void store(Frame f, Expr value) { f.slots[i] = value.eval(f); }
+                public void update(Frame f, Update op) { f.slots[i] = op.apply(f, f.slots[i]); }
+            };
+        }
+        // Array element: address before value, like the compiled Adda/Store order
+        final ArrExpr root = arrayRoot(dest);
+        final Expr[] idx = indices(dest);
+        return new Location() {
+            public void store(Frame f, Expr value) {
+                ArrayValue a = root.eval(f);
+                int at = elementOffset(a, idx, f);
+                a.data[at] = value.eval(f);
+            }
+            public void update(Frame f, Update op) {
+                ArrayValue a = root.eval(f);
+                int at = elementOffset(a, idx, f);
+                a.data[at] = op.apply(f, a.data[at]);
+            }
+        };
+    }
+
+    // Base designator of an index chain such as a[i][j]
+    private ArrExpr arrayRoot(Expression e) {
+        while (e instanceof ArrayIndex) {
+            e = ((ArrayIndex) e).base();
+        }
+        return compileArray(e);
+    }
+
+    private Expr[] indices(Expression e) {
+        List<Expr> list = new ArrayList<>();
+        while (e instanceof ArrayIndex) {
+            list.add(0, compile(((ArrayIndex) e).index()));
+            e = ((ArrayIndex) e).base();
+        }
+        return list.toArray(new Expr[0]);
+    }
+
+    private static int elementOffset(ArrayValue a, Expr[] idx, Frame f) {
+        int off = a.offset;
+        for (int k = 0; k < idx.length; k++) {
+            int i = idx[k].eval(f);
+            if (i < 0 || i >= a.dims[k]) {
+                throw new RuntimeException("Array index out of bounds: " + i);
+            }
+            off += i * a.strides[k];
+        }
+        return off;
+    }
+
+    // Literals ===================================================================
+
+    @Override
+    public void visit(BoolLiteral node) {
+        final int v = node.getValue() ? 1 : 0;
+        expr = f -> v;
+    }
+
+    @Override
+    public void visit(IntegerLiteral node) {
+        final int v = node.getValue();
+        expr = f -> v;
+    }
+
+    @Override
+    public void visit(FloatLiteral node) {
+        final int v = bits(node.getValue());
+        expr = f -> v;
+    }
+
+    // Designators ================================================================
+
+    @Override
+    public void visit(Designator node) {
+        Slot slot = resolve(node.name().lexeme());
+        final int i = slot.index;
+        if (slot.array) {
+            arr = slot.global ? f -> globals.arrays[i] : f -> f.arrays[i];
+        } else {
+            expr = slot.global ? f -> globals.slots[i] : f -> f.slots[i];
+        }
+    }
+
+    @Override
+    public void visit(ArrayIndex node) {
+        final ArrExpr root = arrayRoot(node);
+        final Expr[] idx = indices(node);
+        if (node.getType() instanceof ArrayType) {
+            // Partially indexed: a view over the remaining dimensions
+            arr = f -> {
+                ArrayValue a = root.eval(f);
+                int off = elementOffset(a, idx, f);
+                int rest = a.dims.length - idx.length;
+                int[] dims = new int[rest];
+                int[] strides = new int[rest];
+                System.arraycopy(a.dims, idx.length, dims, 0, rest);
+                System.arraycopy(a.strides, idx.length, strides, 0, rest);
+                return new ArrayValue(a.data, off, dims, strides);
+            };
+        } else {
+            expr = f -> {
+                ArrayValue a = root.eval(f);
+                return a.data[elementOffset(a, idx, f)];
+            };
+        }
+    }
+
+    @Override
+    public void visit(Dereference node) {
+        throw new RuntimeException("Dereference operator not supported in interpreter");
+    }
+
+    // Operators ==================================================================
+
+    @Override
+    public void visit(LogicalNot node) {
+        final Expr e = compile(node.operand());
+        expr = f -> e.eval(f) == 0 ? 1 : 0;
+    }
+
+    @Override
+    public void visit(Power node) {
+        final Expr l = compile(node.getLeft());
+        final Expr r = compile(node.getRight());
+        if (isFloat(node)) {
+            expr = f -> bits((float) Math.pow(f(l.eval(f)), f(r.eval(f))));
+        } else {
+            expr = f -> pow(l.eval(f), r.eval(f));
+        }
+    }
+
+    @Override
+    public void visit(Multiplication node) {
+        final Expr l = compile(node.getLeft());
+        final Expr r = compile(node.getRight());
+        expr = isFloat(node) ? f -> bits(f(l.eval(f)) * f(r.eval(f))) : f -> l.eval(f) * r.eval(f);
+    }
+
+    @Override
+    public void visit(Division node) {
+        final Expr l = compile(node.getLeft());
+        final Expr r = compile(node.getRight());
+        expr = isFloat(node) ? f -> bits(f(l.eval(f)) / f(r.eval(f))) : f -> l.eval(f) / r.eval(f);
+    }
+
+    @Override
+    public void visit(Modulo node) {
+        final Expr l = compile(node.getLeft());
+        final Expr r = compile(node.getRight());
+        expr = isFloat(node) ? f -> bits(f(l.eval(f)) % f(r.eval(f))) : f -> l.eval(f) % r.eval(f);
+    }
+
+    @Override
+    public void visit(LogicalAnd node) {
+        // Short-circuit: r runs only when l is true
+        final Expr l = compile(node.getLeft());
+        final Expr r = compile(node.getRight());
+        expr = f -> l.eval(f) != 0 ? r.eval(f) : 0;
+    }
+
+    @Override
+    public void visit(Addition node) {
+        final Expr l = compile(node.getLeft());
+        final Expr r = compile(node.getRight());
+        expr = isFloat(node) ? f -> bits(f(l.eval(f)) + f(r.eval(f))) : f -> l.eval(f) + r.eval(f);
+    }
+
+    @Override
+    public void visit(Subtraction node) {
+        final Expr l = compile(node.getLeft());
+        final Expr r = compile(node.getRight());
+        expr = isFloat(node) ? f -> bits(f(l.eval(f)) - f(r.eval(f))) : f -> l.eval(f) - r.eval(f);
+    }
+
+    @Override
+    public void visit(LogicalOr node) {
+        // Short-circuit: r runs only when l is false
+        final Expr l = compile(node.getLeft());
+        final Expr r = compile(node.getRight());
+        expr = f -> l.eval(f) != 0 ? 1 : r.eval(f);
+    }
+
+    @Override
+    public void visit(Relation node) {
+        final Expr l = compile(node.getLeft());
+        final Expr r = compile(node.getRight());
+        boolean fl = isFloat(node.getLeft());
+        switch (node.getOperator().kind()) {
+            case EQUAL_TO:
+                expr = fl ? f -> fcmp(l.eval(f), r.eval(f)) == 0 ? 1 : 0 : f -> l.eval(f) == r.eval(f) ? 1 : 0;
+                break;
+            case NOT_EQUAL:
+                expr = fl ? f -> fcmp(l.eval(f), r.eval(f)) != 0 ? 1 : 0 : f -> l.eval(f) != r.eval(f) ? 1 : 0;
+                break;
+            case LESS_THAN:
+                expr = fl ? f -> fcmp(l.eval(f), r.eval(f)) < 0 ? 1 : 0 : f -> l.eval(f) < r.eval(f) ? 1 : 0;
+                break;
+            case LESS_EQUAL:
+                expr = fl ? f -> fcmp(l.eval(f), r.eval(f)) <= 0 ? 1 : 0 : f -> l.eval(f) <= r.eval(f) ? 1 : 0;
+                break;
+            case GREATER_THAN:
+                expr = fl ? f -> fcmp(l.eval(f), r.eval(f)) > 0 ? 1 : 0 : f -> l.eval(f) > r.eval(f) ? 1 : 0;
+                break;
+            case GREATER_EQUAL:
+                expr = fl ? f -> fcmp(l.eval(f), r.eval(f)) >= 0 ? 1 : 0 : f -> l.eval(f) >= r.eval(f) ? 1 : 0;
+                break;
+            default:
+                throw new RuntimeException("Unknown relation: " + node.getOperator().kind());
+        }
+    }
+
+    // Calls ======================================================================
+
+    @Override
+    public void visit(ArgumentList node) {
+        // Arguments are compiled by the call that owns them
+    }
+
+    @Override
+    public void visit(FunctionCallStatement node) {
+        final Expr call = compile(node.getFunctionCall());
+        stmt = f -> {
+            call.eval(f);
+            return false;
+        };
+    }
+
+    @Override
+    public void visit(FunctionCallExpression node) {
+        List<Expression> args = node.arguments().args();
+        List<Type> argTypes = new ArrayList<>();
+        for (Expression arg : args) {
+            argTypes.add(arg.getType());
+        }
+        Symbol callee = symbolTable.lookupFunction(node.name().lexeme(), argTypes);
+        final Function fn = functions.get(callee);
+        if (fn == null) {
+            expr = builtin(node.name().lexeme(), args);
+            return;
+        }
+
+        final int n = args.size();
+        final Expr[] scalars = new Expr[n];
+        final ArrExpr[] arrays = new ArrExpr[n];
+        for (int i = 0; i < n; i++) {
+            if (args.get(i).getType() instanceof ArrayType) {
+                arrays[i] = compileArray(args.get(i));
+            } else {
+                scalars[i] = compile(args.get(i));
+            }
+        }
+        expr = f -> {
+            Frame callee_ = new Frame(fn.scalarSlots, fn.arraySlots);
+            for (int i = 0; i < n; i++) {
+                if (fn.paramIsArray[i]) {
+                    callee_.arrays[fn.paramSlots[i]] = arrays[i].eval(f);
+                } else {
+                    callee_.slots[fn.paramSlots[i]] = scalars[i].eval(f);
+                }
+            }
+            for (int i = 0; i < fn.localArraySlots.length; i++) {
+                callee_.arrays[fn.localArraySlots[i]] = allocate(fn.localArrayTypes[i]);
+            }
+            fn.body.exec(callee_);
+            return callee_.ret;
+        };
+    }
+
+    private Expr builtin(String name, List<Expression> args) {
+        switch (name) {
+            case "readInt":
+                return f -> {
+                    System.out.print("int? ");
+                    return Integer.parseInt(nextInput());
+                };
+            case "readFloat":
+                return f -> {
+                    System.out.print("float? ");
+                    return bits(Float.parseFloat(nextInput()));
+                };
+            case "readBool":
+                return f -> {
+                    System.out.print("true or false? ");
+                    return Boolean.parseBoolean(nextInput()) ? 1 : 0;
+                };
+            case "printInt": {
+                final Expr e = compile(args.get(0));
+                return f -> {
+                    System.out.print(e.eval(f) + " ");
+                    return 0;
+                };
+            }
+            case "printFloat": {
+                final Expr e = compile(args.get(0));
+                return f -> {
+                    System.out.printf("%.2f ", f(e.eval(f)));
+                    return 0;
+                };
+            }
+            case "printBool": {
+                final Expr e = compile(args.get(0));
+                return f -> {
+                    System.out.print((e.eval(f) == 1) + " ");
+                    return 0;
+                };
+            }
+            case "println":
+                return f -> {
+                    System.out.println();
+                    return 0;
+                };
+            default:
+                throw new RuntimeException("Unknown function: " + name);
+        }
+    }
+
+    // Same tokenization as DLX.nextInput
+    private String nextInput() {
+        try {
+            while (tokens == null || !tokens.hasMoreTokens()) {
+                String line = reader.readLine();
+                if (line == null) {
+                    throw new RuntimeException("Input exhausted");
+                }
+                tokens = new StringTokenizer(line);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Couldn't read data file", e);
+        }
+        return tokens.nextToken();
+    }
+
+    // Statements =================================================================
+
+    @Override
+    public void visit(Assignment node) {
+        final Location dest = location(node.getDestination());
+        Token.Kind op = node.getOperator().kind();
+        boolean fl = isFloat(node.getDestination());
+
+        if (op == Token.Kind.ASSIGN) {
+            final Expr src = compile(node.getSource());
+            stmt = f -> {
+                dest.store(f, src);
+                return false;
+            };
+            return;
+        }
+
+        // ++/-- have no source; they add or subtract one
+        final Expr src = node.getSource() != null
+                ? compile(node.getSource())
+                : (fl ? g -> bits(1.0f) : g -> 1);
+        final Update combined;
+        switch (op) {
+            case ADD_ASSIGN:
+            case UNI_INC:
+                combined = fl ? (f, old) -> bits(f(old) + f(src.eval(f))) : (f, old) -> old + src.eval(f);
+                break;
+            case SUB_ASSIGN:
+            case UNI_DEC:
+                combined = fl ? (f, old) -> bits(f(old) - f(src.eval(f))) : (f, old) -> old - src.eval(f);
+                break;
+            case MUL_ASSIGN:
+                combined = fl ? (f, old) -> bits(f(old) * f(src.eval(f))) : (f, old) -> old * src.eval(f);
+                break;
+            case DIV_ASSIGN:
+                combined = fl ? (f, old) -> bits(f(old) / f(src.eval(f))) : (f, old) -> old / src.eval(f);
+                break;
+            case MOD_ASSIGN:
+                combined = fl ? (f, old) -> bits(f(old) % f(src.eval(f))) : (f, old) -> old % src.eval(f);
+                break;
+            case POW_ASSIGN:
+                combined = (f, old) -> pow(old, src.eval(f));
+                break;
+            default:
+                throw new RuntimeException("Unknown assignment operator: " + op);
+        }
+        stmt = f -> {
+            dest.update(f, combined);
+            return false;
+        };
+    }
+
+    @Override
+    public void visit(IfStatement node) {
+        final Expr cond = compile(node.condition());
+        final Stmt then = compile(node.thenBlock());
+        final Stmt otherwise = node.elseBlock() != null ? compile(node.elseBlock()) : null;
+        stmt = f -> {
+            if (cond.eval(f) != 0) {
+                return then.exec(f);
+            }
+            return otherwise != null && otherwise.exec(f);
+        };
+    }
+
+    @Override
+    public void visit(WhileStatement node) {
+        final Expr cond = compile(node.condition());
+        final Stmt body = compile(node.body());
+        stmt = f -> {
+            while (cond.eval(f) != 0) {
+                if (body.exec(f)) {
+                    return true;
+                }
+            }
+            return false;
+        };
+    }
+
+    @Override
+    public void visit(RepeatStatement node) {
+        final Stmt body = compile(node.body());
+        final Expr cond = compile(node.condition());
+        stmt = f -> {
+            do {
+                if (body.exec(f)) {
+                    return true;
+                }
+            } while (cond.eval(f) == 0);
+            return false;
+        };
+    }
+
+    @Override
+    public void visit(ReturnStatement node) {
+        if (node.value() == null) {
+            stmt = f -> true;
+            return;
+        }
+        final Expr value = compile(node.value());
+        stmt = f -> {
+            f.ret = value.eval(f);
+            return true;
+        };
+    }
+
+    @Override
+    public void visit(StatementSequence node) {
+        final Stmt[] body = new Stmt[node.getStatements().size()];
+        for (int i = 0; i < body.length; i++) {
+            body[i] = compile(node.getStatements().get(i));
+        }
+        stmt = f -> {
+            for (Stmt s : body) {
+                if (s.exec(f)) {
+                    return true;
+                }
+            }
+            return false;
+        };
+    }
+
+    // Declarations ===============================================================
+
+    @Override
+    public void visit(VariableDeclaration node) {
+        for (Token name : node.names()) {
+            boolean isArray = node.type() instanceof ArrayType;
+            if (current == null) {
+                if (globalSlots.containsKey(name.lexeme())) {
+                    continue;
+                }
+                int index = isArray ? globalArrays++ : globalScalars++;
+                if (isArray) {
+                    globalArrayTypes.add((ArrayType) node.type());
+                }
+                globalSlots.put(name.lexeme(), new Slot(true, isArray, index));
+            } else {
+                // A local named like a parameter refers to the parameter, as in IRGenerator
+                if (localSlots.containsKey(name.lexeme())) {
+                    continue;
+                }
+                int index = isArray ? current.arraySlots++ : current.scalarSlots++;
+                localSlots.put(name.lexeme(), new Slot(false, isArray, index));
+                if (isArray) {
+                    int n = current.localArraySlots.length;
+                    current.localArraySlots = java.util.Arrays.copyOf(current.localArraySlots, n + 1);
+                    current.localArrayTypes = java.util.Arrays.copyOf(current.localArrayTypes, n + 1);
+                    current.localArraySlots[n] = index;
+                    current.localArrayTypes[n] = (ArrayType) node.type();
+                }
+            }
+        }
+    }
+
+    @Override
+    public void visit(FunctionBody node) {
+        for (VariableDeclaration local : node.locals()) {
+            local.accept(this);
+        }
+        current.body = compile(node.statements());
+    }
+
+    @Override
+    public void visit(FunctionDeclaration node) {
+        if (node.body() == null) {
+            return;
+        }
+        current = functions.get(functionSymbol(node));
+        localSlots = new HashMap<>();
+
+        List<Symbol> formals = node.formals();
+        current.paramSlots = new int[formals.size()];
+        current.paramIsArray = new boolean[formals.size()];
+        current.localArraySlots = new int[0];
+        current.localArrayTypes = new ArrayType[0];
+        for (int i = 0; i < formals.size(); i++) {
+            Symbol param = formals.get(i);
+            boolean isArray = param.type() instanceof ArrayType;
+            int index = isArray ? current.arraySlots++ : current.scalarSlots++;
+            current.paramSlots[i] = index;
+            current.paramIsArray[i] = isArray;
+            localSlots.put(param.name(), new Slot(false, isArray, index));
+        }
+
+        node.body().accept(this);
+
+        current = null;
+        localSlots = null;
+    }
+
+    private Symbol functionSymbol(FunctionDeclaration node) {
+        List<Type> paramTypes = new ArrayList<>();
+        for (Symbol param : node.formals()) {
+            paramTypes.add(param.type());
+        }
+        return symbolTable.lookupFunction(node.name().lexeme(), paramTypes);
+    }
+
+    @Override
+    public void visit(DeclarationList node) {
+        for (Node decl : node.declarations()) {
+            decl.accept(this);
+        }
+    }
+
+    @Override
+    public void visit(Computation node) {
+        node.variables().accept(this);
+
+        // Every function gets its shell first so calls can bind before bodies exist
+        for (Node decl : node.functions().declarations()) {
+            functions.put(functionSymbol((FunctionDeclaration) decl), new Function());
+        }
+        node.functions().accept(this);
+
+        stmt = compile(node.mainStatementSequence());
+    }
+}
@@ -26,32 +26,6 @@ public class Interpreter implements NodeVisitor {
         this.valueStack = new Stack<>();
     }
     
-    // Helper methods to work with recursive ArrayType structure
-    private List<Integer> getArrayDimensions(ArrayType arrayType) {
-        List<Integer> dims = new ArrayList<>();
-        Type currentType = arrayType;
-        
-        while (currentType instanceof ArrayType) {
-            ArrayType at = (ArrayType) currentType;
-            dims.add(at.getSize());
-            currentType = at.getElementType();
-        }
-        
-        return dims;
-    }
-    
-    private Type getArrayBaseType(ArrayType arrayType) {
-        Type currentType = arrayType;
-        
-        while (currentType instanceof ArrayType) {
-            ArrayType at = (ArrayType) currentType;
-            currentType = at.getElementType();
-        }
-        
-        return currentType;
-    }
-    
-    
     public void interpret(AST ast) {
         Computation comp = ast.getComputation();
         comp.accept(this);
@@ -93,21 +67,12 @@ public class Interpreter implements NodeVisitor {
         }
     }
 
-    private static List<Integer> computeStrides(List<Integer> dims) {
-        ArrayList<Integer> strides = new ArrayList<>(dims.size());
-        int acc = 1;
-        for (int i = dims.size() - 1; i >= 0; i--) {
-            strides.add(0, acc);
-            acc *= dims.get(i);
-        }
-        return strides;
-    }
-
-    private static int computeFlatOffset(List<Integer> dims, List<Integer> indices) {
+    private static int computeFlatOffset(ArrayType at, List<Integer> indices) {
+        List<Integer> dims = at.getDimensions();
         if (indices.size() != dims.size()) {
             throw new RuntimeException("Index count mismatch. Expected " + dims.size() + " indices, got " + indices.size());
         }
-        List<Integer> strides = computeStrides(dims);
+        List<Integer> strides = at.getStrides();
         int off = 0;
         for (int i = 0; i < indices.size(); i++) {
             int idx = indices.get(i);
@@ -160,9 +125,8 @@ public class Interpreter implements NodeVisitor {
 
         if (!(sym.type() instanceof ArrayType)) throw new RuntimeException("Variable is not an array: " + sym.name());
         ArrayType at = (ArrayType) sym.type();
-        List<Integer> dims = getArrayDimensions(at);
         Object[] data = (Object[]) memory.get(sym.name());
-        int offset = computeFlatOffset(dims, indices);
+        int offset = computeFlatOffset(at, indices);
         valueStack.push(data[offset]);
     }
     
@@ -244,48 +208,30 @@ public class Interpreter implements NodeVisitor {
     
     @Override
     public void visit(LogicalAnd node) {
-        // Short-circuit version 
-        // node.getLeft().accept(this);
-        // Object left = getStoredValue();
-        // if (!(left instanceof Boolean && (Boolean) left)) {
-        //     valueStack.push(false);
-        //     return;
-        // }
-        // node.getRight().accept(this);
-        // Object right = getStoredValue();
-        // valueStack.push(left instanceof Boolean && right instanceof Boolean && (Boolean) left && (Boolean) right);
-
-        // Assignment semantics: evaluate both sides (no short-circuit) to preserve side-effects
+        // Short-circuit: the right operand is only evaluated when the left is true
         node.getLeft().accept(this);
         Object left = getStoredValue();
+        if (!(left instanceof Boolean && (Boolean) left)) {
+            valueStack.push(false);
+            return;
+        }
         node.getRight().accept(this);
         Object right = getStoredValue();
-        boolean lv = (left instanceof Boolean) ? (Boolean) left : false;
-        boolean rv = (right instanceof Boolean) ? (Boolean) right : false;
-        valueStack.push(lv && rv);
+        valueStack.push(right instanceof Boolean && (Boolean) right);
     }
     
     @Override
     public void visit(LogicalOr node) {
-        // Short-circuit version
-        // node.getLeft().accept(this);
-        // Object left = getStoredValue();
-        // if (left instanceof Boolean && (Boolean) left) {
-        //     valueStack.push(true);
-        //     return;
-        // }
-        // node.getRight().accept(this);
-        // Object right = getStoredValue();
-        // valueStack.push(right instanceof Boolean && (Boolean) right);
-
-        // Assignment semantics: evaluate both sides (no short-circuit) to preserve side-effects
+        // Short-circuit: the right operand is only evaluated when the left is false
         node.getLeft().accept(this);
         Object left = getStoredValue();
+        if (left instanceof Boolean && (Boolean) left) {
+            valueStack.push(true);
+            return;
+        }
         node.getRight().accept(this);
         Object right = getStoredValue();
-        boolean lv = (left instanceof Boolean) ? (Boolean) left : false;
-        boolean rv = (right instanceof Boolean) ? (Boolean) right : false;
-        valueStack.push(lv || rv);
+        valueStack.push(right instanceof Boolean && (Boolean) right);
     }
     
     @Override
@@ -620,9 +566,8 @@ public class Interpreter implements NodeVisitor {
 
             if (!(sym.type() instanceof ArrayType)) throw new RuntimeException("Variable is not an array: " + sym.name());
             ArrayType at = (ArrayType) sym.type();
-            List<Integer> dims = getArrayDimensions(at);
             Object[] data = (Object[]) memory.get(sym.name());
-            int offset = computeFlatOffset(dims, indices);
+            int offset = computeFlatOffset(at, indices);
             data[offset] = value;
         }
     }
@@ -677,10 +622,8 @@ public class Interpreter implements NodeVisitor {
             Object value;
             if (varType instanceof ArrayType) {
                 ArrayType at = (ArrayType) varType;
-                List<Integer> dims = getArrayDimensions(at);
-                int total = 1;
-                for (int d : dims) total *= d;
-                Object elementDefault = defaultFor(getArrayBaseType(at));
+                int total = at.getAllocationSize() / 4;
+                Object elementDefault = defaultFor(at.getBaseElementType());
 
                 // IMPORTANT: Allocate Object array, NOT ArrayList
                 Object[] data = new Object[total];
@@ -40,6 +40,10 @@ public class Symbol {
         return name;
     }
 
+    public void setName(String name) {
+        this.name = name;
+    }
+
     public Type type() {
         return type;
     }
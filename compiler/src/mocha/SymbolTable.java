@@ -2,84 +2,169 @@ package mocha;
 
 import java.util.HashMap;
 import java.util.Map;
-import java.util.Stack;
 import java.util.List;
 import java.util.ArrayList;
 import types.*;
 
 public class SymbolTable {
 
-    private Stack<Map<String, List<Symbol>>> scopeStack;
+    // name -> declarations of that name, one entry per scope, innermost last.
+    // Lookups only ever look at the tail, so they do not depend on nesting depth.
+    private Map<String, ArrayList<ScopeEntry>> bindings;
+    // names bound in each open scope, so exitScope knows what to pop
+    private ArrayList<List<String>> scopeNames;
+    // (name + argument signature) -> resolved overload
+    private Map<String, Symbol> overloadCache;
+    // Set on forked tables: the table whose global scope this one sees through
+    private final SymbolTable parent;
+
+    private static class ScopeEntry {
+        final int depth;
+        final List<Symbol> symbols = new ArrayList<>();
+
+        ScopeEntry(int depth) {
+            this.depth = depth;
+        }
+    }
 
     public SymbolTable() {
-        scopeStack = new Stack<>();
+        bindings = new HashMap<>();
+        scopeNames = new ArrayList<>();
+        overloadCache = new HashMap<>();
+        parent = null;
         enterScope();
         initializePredefinedFunctions();
     }
 
+    private SymbolTable(SymbolTable parent) {
+        bindings = new HashMap<>();
+        scopeNames = new ArrayList<>();
+        overloadCache = new HashMap<>();
+        this.parent = parent;
+        enterScope();
+    }
+
+    // A table that resolves through this one's global scope but keeps its own
+    // nested scopes and caches. This table is only read through the fork, so
+    // forks can be used on separate threads as long as nobody inserts here.
+    public SymbolTable fork() {
+        return new SymbolTable(this);
+    }
+
     public void enterScope() {
-        scopeStack.push(new HashMap<String, List<Symbol>>());
+        scopeNames.add(new ArrayList<String>());
     }
 
     public void exitScope() {
-        if (scopeStack.size() > 1) { // dont pop global scope
-            scopeStack.pop();
+        if (scopeNames.size() > 1) { // dont pop global scope
+            List<String> names = scopeNames.remove(scopeNames.size() - 1);
+            for (String name : names) {
+                ArrayList<ScopeEntry> chain = bindings.get(name);
+                ScopeEntry popped = chain.remove(chain.size() - 1);
+                if (chain.isEmpty()) {
+                    bindings.remove(name);
+                }
+                for (Symbol symbol : popped.symbols) {
+                    if (symbol.isFunction()) {
+                        overloadCache.clear();
+                        break;
+                    }
+                }
+            }
         }
     }
 
-    private Map<String, List<Symbol>> getCurrentScope() {
-        return scopeStack.peek();
+    // symbols declared under name in the current scope, created on demand
+    private List<Symbol> currentScopeSymbols(String name) {
+        int depth = scopeNames.size();
+        ArrayList<ScopeEntry> chain = bindings.get(name);
+        if (chain == null) {
+            chain = new ArrayList<>();
+            bindings.put(name, chain);
+        }
+        if (chain.isEmpty() || chain.get(chain.size() - 1).depth != depth) {
+            chain.add(new ScopeEntry(depth));
+            scopeNames.get(depth - 1).add(name);
+        }
+        return chain.get(chain.size() - 1).symbols;
     }
 
     // lookup name in SymbolTable (returns first match for variables)
     public Symbol lookup(String name) throws SymbolNotFoundError {
-        // Search from top (innermost) to bottom (global)
-        for (int i = scopeStack.size() - 1; i >= 0; i--) {
-            Map<String, List<Symbol>> scope = scopeStack.get(i);
-            if (scope.containsKey(name) && !scope.get(name).isEmpty()) {
-                return scope.get(name).get(0); // Return first symbol (for variables)
+        ArrayList<ScopeEntry> chain = bindings.get(name);
+        if (chain != null) {
+            // innermost (last) scope declaring name wins
+            for (int i = chain.size() - 1; i >= 0; i--) {
+                List<Symbol> symbols = chain.get(i).symbols;
+                if (!symbols.isEmpty()) {
+                    return symbols.get(0); // Return first symbol (for variables)
+                }
             }
         }
+        if (parent != null) {
+            return parent.lookup(name);
+        }
         throw new SymbolNotFoundError(name);
     }
 
     // lookup function by name and parameter types (for function overloading)
     public Symbol lookupFunction(String name, List<Type> paramTypes) throws SymbolNotFoundError {
-        // Search from top (innermost) to bottom (global)
-        for (int i = scopeStack.size() - 1; i >= 0; i--) {
-            Map<String, List<Symbol>> scope = scopeStack.get(i);
-            if (scope.containsKey(name)) {
-                List<Symbol> symbols = scope.get(name);
-                for (Symbol symbol : symbols) {
-                    if (symbol.isFunction() && symbol.type() instanceof FuncType) {
-                        FuncType funcType = (FuncType) symbol.type();
-                        if (funcType.getParams().getList().size() == paramTypes.size()) {
-                            boolean match = true;
-                            for (int j = 0; j < paramTypes.size(); j++) {
-                                if (!funcType.getParams().getList().get(j).equivalent(paramTypes.get(j))) {
-                                    match = false;
-                                    break;
-                                }
-                            }
-                            if (match) {
-                                return symbol;
-                            }
-                        }
+        String key = signatureKey(name, paramTypes);
+        Symbol cached = overloadCache.get(key);
+        if (cached != null) {
+            return cached;
+        }
+
+        Symbol resolved = findFunction(name, paramTypes);
+        if (resolved == null) {
+            throw new SymbolNotFoundError(name);
+        }
+        overloadCache.put(key, resolved);
+        return resolved;
+    }
+
+    // Uncached overload search; touches no mutable state, so forks may call it on their parent
+    private Symbol findFunction(String name, List<Type> paramTypes) {
+        ArrayList<ScopeEntry> chain = bindings.get(name);
+        if (chain != null) {
+            // Search from innermost to global scope
+            for (int i = chain.size() - 1; i >= 0; i--) {
+                for (Symbol symbol : chain.get(i).symbols) {
+                    if (symbol.isFunction() && symbol.type() instanceof FuncType
+                            && sameParams(((FuncType) symbol.type()).getParams().getList(), paramTypes)) {
+                        return symbol;
                     }
                 }
             }
         }
-        throw new SymbolNotFoundError(name);
+        return parent != null ? parent.findFunction(name, paramTypes) : null;
     }
 
-    // insert name in SymbolTable
-    public Symbol insert(String name) throws RedeclarationError {
-        Map<String, List<Symbol>> currentScope = getCurrentScope();
-        if (!currentScope.containsKey(name)) {
-            currentScope.put(name, new ArrayList<Symbol>());
+    private static boolean sameParams(List<Type> declared, List<Type> actual) {
+        if (declared.size() != actual.size()) {
+            return false;
+        }
+        for (int j = 0; j < actual.size(); j++) {
+            if (!declared.get(j).equivalent(actual.get(j))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Types with equal printed forms are always equivalent, so the printed
+    // argument list is a safe cache key
+    private static String signatureKey(String name, List<Type> paramTypes) {
+        StringBuilder sb = new StringBuilder(name).append('(');
+        for (Type t : paramTypes) {
+            sb.append(t).append(',');
         }
+        return sb.append(')').toString();
+    }
 
-        List<Symbol> symbols = currentScope.get(name);
+    // insert name in SymbolTable
+    public Symbol insert(String name) throws RedeclarationError {
+        List<Symbol> symbols = currentScopeSymbols(name);
         // Check for variable redeclaration (only one variable per name per scope)
         for (Symbol symbol : symbols) {
             if (!symbol.isFunction()) {
@@ -88,7 +173,7 @@ public class SymbolTable {
         }
 
         Symbol symbol = new Symbol(name);
-        if (scopeStack.size() == 1) {
+        if (scopeNames.size() == 1 && parent == null) {
             symbol.setGlobal(true);
         }
         symbols.add(symbol);
@@ -97,12 +182,7 @@ public class SymbolTable {
 
     // insert symbol with type in current scope
     public Symbol insert(String name, Type type) throws RedeclarationError {
-        Map<String, List<Symbol>> currentScope = getCurrentScope();
-        if (!currentScope.containsKey(name)) {
-            currentScope.put(name, new ArrayList<Symbol>());
-        }
-
-        List<Symbol> symbols = currentScope.get(name);
+        List<Symbol> symbols = currentScopeSymbols(name);
         // Check for variable redeclaration (only one variable per name per scope)
         for (Symbol symbol : symbols) {
             if (!symbol.isFunction()) {
@@ -111,7 +191,7 @@ public class SymbolTable {
         }
 
         Symbol symbol = new Symbol(name, type);
-        if (scopeStack.size() == 1) {
+        if (scopeNames.size() == 1 && parent == null) {
             symbol.setGlobal(true);
         }
         symbols.add(symbol);
@@ -120,38 +200,22 @@ public class SymbolTable {
 
     // insert function symbol in current scope (supports overloading)
     public Symbol insertFunction(String name, Type type) throws RedeclarationError {
-        Map<String, List<Symbol>> currentScope = getCurrentScope();
-        if (!currentScope.containsKey(name)) {
-            currentScope.put(name, new ArrayList<Symbol>());
-        }
-
-        List<Symbol> symbols = currentScope.get(name);
+        List<Symbol> symbols = currentScopeSymbols(name);
 
         // Check for function signature conflicts
         if (type instanceof FuncType) {
-            FuncType newFuncType = (FuncType) type;
+            List<Type> newParams = ((FuncType) type).getParams().getList();
             for (Symbol symbol : symbols) {
-                if (symbol.isFunction() && symbol.type() instanceof FuncType) {
-                    FuncType existingFuncType = (FuncType) symbol.type();
-                    if (existingFuncType.getParams().getList().size() == newFuncType.getParams().getList().size()) {
-                        boolean sameSignature = true;
-                        for (int i = 0; i < newFuncType.getParams().getList().size(); i++) {
-                            if (!existingFuncType.getParams().getList().get(i)
-                                    .equivalent(newFuncType.getParams().getList().get(i))) {
-                                sameSignature = false;
-                                break;
-                            }
-                        }
-                        if (sameSignature) {
-                            throw new RedeclarationError(name);
-                        }
-                    }
+                if (symbol.isFunction() && symbol.type() instanceof FuncType
+                        && sameParams(((FuncType) symbol.type()).getParams().getList(), newParams)) {
+                    throw new RedeclarationError(name);
                 }
             }
         }
 
+        overloadCache.clear();
         Symbol symbol = new Symbol(name, type, true);
-        if (scopeStack.size() == 1) {
+        if (scopeNames.size() == 1 && parent == null) {
             symbol.setGlobal(true);
         }
         symbols.add(symbol);
@@ -160,34 +224,34 @@ public class SymbolTable {
 
     private void initializePredefinedFunctions() {
         TypeList printIntParams = new TypeList();
-        printIntParams.append(new IntType());
-        FuncType printIntType = new FuncType(printIntParams, new VoidType());
+        printIntParams.append(IntType.INSTANCE);
+        FuncType printIntType = new FuncType(printIntParams, VoidType.INSTANCE);
         insertFunction("printInt", printIntType);
 
         TypeList printFloatParams = new TypeList();
-        printFloatParams.append(new FloatType());
-        FuncType printFloatType = new FuncType(printFloatParams, new VoidType());
+        printFloatParams.append(FloatType.INSTANCE);
+        FuncType printFloatType = new FuncType(printFloatParams, VoidType.INSTANCE);
         insertFunction("printFloat", printFloatType);
 
         TypeList printBoolParams = new TypeList();
-        printBoolParams.append(new BoolType());
-        FuncType printBoolType = new FuncType(printBoolParams, new VoidType());
+        printBoolParams.append(BoolType.INSTANCE);
+        FuncType printBoolType = new FuncType(printBoolParams, VoidType.INSTANCE);
         insertFunction("printBool", printBoolType);
 
         TypeList printlnParams = new TypeList();
-        FuncType printlnType = new FuncType(printlnParams, new VoidType());
+        FuncType printlnType = new FuncType(printlnParams, VoidType.INSTANCE);
         insertFunction("println", printlnType);
 
         TypeList readIntParams = new TypeList();
-        FuncType readIntType = new FuncType(readIntParams, new IntType());
+        FuncType readIntType = new FuncType(readIntParams, IntType.INSTANCE);
         insertFunction("readInt", readIntType);
 
         TypeList readFloatParams = new TypeList();
-        FuncType readFloatType = new FuncType(readFloatParams, new FloatType());
+        FuncType readFloatType = new FuncType(readFloatParams, FloatType.INSTANCE);
         insertFunction("readFloat", readFloatType);
 
         TypeList readBoolParams = new TypeList();
-        FuncType readBoolType = new FuncType(readBoolParams, new BoolType());
+        FuncType readBoolType = new FuncType(readBoolParams, BoolType.INSTANCE);
         insertFunction("readBool", readBoolType);
     }
 
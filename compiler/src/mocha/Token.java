@@ -177,6 +177,14 @@ public class Token {
         return tok;
     }
         
+    // Rebuild a token whose kind is already known (e.g. decoded from an ASTArena)
+    public static Token of(Kind kind, String lexeme, int lineNum, int charPos) {
+        Token tok = new Token(lineNum, charPos);
+        tok.lexeme = lexeme;
+        tok.kind = kind;
+        return tok;
+    }
+
     public static Token Error(String lexeme, int lineNum, int charPos) {
         Token tok = new Token(lineNum, charPos);
         tok.lexeme = lexeme;
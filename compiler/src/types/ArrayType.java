@@ -1,17 +1,63 @@
 package types;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class ArrayType extends Type {
 
+    // Canonical instances keyed by element type, then size. Element types are
+    // canonical themselves, so the outer map can rely on identity hashing.
+    private static final Map<Type, Map<Integer, ArrayType>> INTERNED = new ConcurrentHashMap<>();
+
     private final Type elementType; // type of each element; can be ArrayType itself
     private final int size;         // -1 if unknown
 
-    public ArrayType(Type elementType, int size) {
+    // Shape data is fixed per instance, so compute it once
+    private final Type baseElementType;
+    private final List<Integer> dimensions;
+    private final List<Integer> strides; // elements skipped per step in each dimension
+    private final int allocationSize;
+    private final String name;
+    private ArrayType erasure;          // same shape with every size unknown
+
+    public static ArrayType of(Type elementType, int size) {
+        return INTERNED.computeIfAbsent(elementType, k -> new ConcurrentHashMap<>())
+                .computeIfAbsent(size, k -> new ArrayType(elementType, size));
+    }
+
+    private ArrayType(Type elementType, int size) {
         this.elementType = elementType;
         this.size = size;
+
+        List<Integer> dims = new ArrayList<>();
+        dims.add(size);
+        if (elementType instanceof ArrayType) {
+            ArrayType inner = (ArrayType) elementType;
+            dims.addAll(inner.dimensions);
+            this.baseElementType = inner.baseElementType;
+        } else {
+            this.baseElementType = elementType;
+        }
+        this.dimensions = Collections.unmodifiableList(dims);
+
+        Integer[] str = new Integer[dims.size()];
+        int acc = 1;
+        for (int i = dims.size() - 1; i >= 0; i--) {
+            str[i] = acc;
+            acc *= dims.get(i);
+        }
+        this.strides = Collections.unmodifiableList(Arrays.asList(str));
+        this.allocationSize = 4 * acc;
+
+        StringBuilder sb = new StringBuilder(baseElementType.toString());
+        for (int d : dims) {
+            sb.append(d < 0 ? "[]" : "[" + d + "]");
+        }
+        this.name = sb.toString();
     }
 
     public Type getElementType() {
@@ -23,52 +69,39 @@ public class ArrayType extends Type {
     }
 
     public Type getBaseElementType() {
-        Type baseType = this;
-        while (baseType instanceof ArrayType) {
-            baseType = ((ArrayType) baseType).getElementType();
-        }
-        return baseType;
+        return baseElementType;
     }
 
     public List<Integer> getDimensions() {
-        List<Integer> dims = new ArrayList<>();
-        Type currentType = this;
-        while (currentType instanceof ArrayType) {
-            ArrayType at = (ArrayType) currentType;
-            dims.add(at.getSize());
-            currentType = at.getElementType();
-        }
-        return dims;
+        return dimensions;
+    }
+
+    public List<Integer> getStrides() {
+        return strides;
     }
 
     public int getAllocationSize() {
-        int totalElements = 1;
-        for (int dim : getDimensions()) {
-            totalElements *= dim;
+        return allocationSize;
+    }
+
+    public ArrayType erasure() {
+        if (erasure == null) {
+            Type elem = elementType instanceof ArrayType ? ((ArrayType) elementType).erasure() : elementType;
+            erasure = of(elem, -1);
         }
-        return 4 * totalElements;
+        return erasure;
     }
 
     @Override
     public String toString() {
-        StringBuilder sb = new StringBuilder();
-
-        Type baseType = getBaseElementType();
-        sb.append(baseType.toString());
-
-        for (int size : getDimensions()) {
-            sb.append(size < 0 ? "[]" : "[" + size + "]");
-        }
-
-        return sb.toString();
+        return name;
     }
 
     @Override
     public boolean equivalent(Type that) {
         if (!(that instanceof ArrayType)) return false;
-        ArrayType other = (ArrayType) that;
         // element types must be equivalent; ignore exact size
-        return this.elementType.equivalent(other.elementType);
+        return this.erasure() == ((ArrayType) that).erasure();
     }
 
     @Override
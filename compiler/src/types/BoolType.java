@@ -1,6 +1,11 @@
 package types;
 
 public class BoolType extends Type {
+
+    public static final BoolType INSTANCE = new BoolType();
+
+    private BoolType() {
+    }
     
     @Override
     public Type assign(Type source) {
@@ -13,7 +18,7 @@ public class BoolType extends Type {
     @Override
     public Type and(Type that) {
         if (that instanceof BoolType) {
-            return new BoolType();
+            return BoolType.INSTANCE;
         }
         return new ErrorType("Cannot perform logical and with " + that + ".");
     }
@@ -21,20 +26,20 @@ public class BoolType extends Type {
     @Override
     public Type or(Type that) {
         if (that instanceof BoolType) {
-            return new BoolType();
+            return BoolType.INSTANCE;
         }
         return new ErrorType("Cannot perform logical or with " + that + ".");
     }
 
     @Override
     public Type not() {
-        return new BoolType();
+        return BoolType.INSTANCE;
     }
 
     @Override
     public Type compare(Type that) {
         if (that instanceof BoolType) {
-            return new BoolType();
+            return BoolType.INSTANCE;
         }
         return new ErrorType("Cannot compare " + this + " with " + that + ".");
     }
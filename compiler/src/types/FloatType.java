@@ -2,6 +2,11 @@ package types;
 
 public class FloatType extends Type {
 
+    public static final FloatType INSTANCE = new FloatType();
+
+    private FloatType() {
+    }
+
     @Override
     public Type assign(Type source) {
         if (source instanceof FloatType) {
@@ -13,7 +18,7 @@ public class FloatType extends Type {
     @Override
     public Type add(Type that) {
         if (that instanceof FloatType) {
-            return new FloatType();
+            return FloatType.INSTANCE;
         }
         return new ErrorType("Cannot add " + this + " to " + that + ".");
     }
@@ -21,7 +26,7 @@ public class FloatType extends Type {
     @Override
     public Type sub(Type that) {
         if (that instanceof FloatType) {
-            return new FloatType();
+            return FloatType.INSTANCE;
         }
         return new ErrorType("Cannot subtract " + that + " from " + this + ".");
     }
@@ -29,7 +34,7 @@ public class FloatType extends Type {
     @Override
     public Type mul(Type that) {
         if (that instanceof FloatType) {
-            return new FloatType();
+            return FloatType.INSTANCE;
         }
         return new ErrorType("Cannot multiply " + this + " with " + that + ".");
     }
@@ -37,7 +42,7 @@ public class FloatType extends Type {
     @Override
     public Type div(Type that) {
         if (that instanceof FloatType) {
-            return new FloatType();
+            return FloatType.INSTANCE;
         }
         return new ErrorType("Cannot divide " + this + " by " + that + ".");
     }
@@ -45,7 +50,7 @@ public class FloatType extends Type {
     @Override
     public Type compare(Type that) {
         if (that instanceof FloatType) {
-            return new BoolType();
+            return BoolType.INSTANCE;
         }
         return new ErrorType("Cannot compare " + this + " with " + that + ".");
     }
@@ -53,7 +58,7 @@ public class FloatType extends Type {
     @Override
     public Type power(Type that) {
         if (that instanceof FloatType) {
-            return new FloatType();
+            return FloatType.INSTANCE;
         }
         return new ErrorType("Cannot raise " + this + " to " + that + ".");
     }
@@ -61,7 +66,7 @@ public class FloatType extends Type {
     @Override
     public Type mod(Type that) {
         if (that instanceof FloatType) {
-            return new FloatType();
+            return FloatType.INSTANCE;
         }
         return new ErrorType("Cannot modulo " + this + " by " + that + ".");
     }
@@ -63,8 +63,10 @@ public abstract class Type {
         return new ErrorType("Cannot call " + this + " using " + args + ".");
     }
 
+    // Scalar types are singletons and array types are interned (see ArrayType.of),
+    // so identity is equivalence unless a subclass relaxes it
     public boolean equivalent (Type other) {
-        return this.getClass().equals(other.getClass());
+        return this == other;
     }
 
 }
@@ -2,6 +2,10 @@ package types;
 
 import java.util.List;
 import java.util.ArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import ast.*;
 
@@ -27,6 +31,48 @@ public class TypeChecker implements NodeVisitor {
         return !hasError();
     }
 
+    // Globals are checked here first; then each function body and main get their
+    // own checker over a fork of the symbol table. Reports are appended in
+    // declaration order, so the result matches check(ast) exactly.
+    public boolean check(AST ast, int threads) {
+        if (threads <= 1) {
+            return check(ast);
+        }
+        this.symbolTable = ast.getSymbolTable();
+        Computation comp = ast.getComputation();
+        comp.variables().accept(this);
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<String>> reports = new ArrayList<>();
+            for (Node func : comp.functions().declarations()) {
+                reports.add(pool.submit(() -> checkIsolated(func)));
+            }
+            reports.add(pool.submit(() -> checkIsolated(comp.mainStatementSequence())));
+            for (Future<String> report : reports) {
+                errorBuffer.append(report.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Type checking interrupted", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new RuntimeException(e.getCause());
+        } finally {
+            pool.shutdown();
+        }
+        return !hasError();
+    }
+
+    private String checkIsolated(Node node) {
+        TypeChecker worker = new TypeChecker();
+        worker.symbolTable = symbolTable.fork();
+        node.accept(worker);
+        return worker.errorReport();
+    }
+
     /* 
      * Useful error strings:
      *
@@ -90,10 +136,10 @@ public class TypeChecker implements NodeVisitor {
 
     private Type tokenToType(Token t) {
         switch (t.kind()) {
-            case INT: return new IntType();
-            case FLOAT: return new FloatType();
-            case BOOL: return new BoolType();
-            case VOID: return new VoidType();
+            case INT: return IntType.INSTANCE;
+            case FLOAT: return FloatType.INSTANCE;
+            case BOOL: return BoolType.INSTANCE;
+            case VOID: return VoidType.INSTANCE;
             default: return new ErrorType("Unknown type token: " + t.kind());
         }
     }
@@ -154,19 +200,19 @@ public class TypeChecker implements NodeVisitor {
 
     @Override
     public void visit(BoolLiteral node) {
-        node.setType(new BoolType());
+        node.setType(BoolType.INSTANCE);
         node.setLValue(false);
     }
 
     @Override
     public void visit(IntegerLiteral node) {
-        node.setType(new IntType());
+        node.setType(IntType.INSTANCE);
         node.setLValue(false);
     }
 
     @Override
     public void visit(FloatLiteral node) {
-        node.setType(new FloatType());
+        node.setType(FloatType.INSTANCE);
         node.setLValue(false);
     }
 
@@ -646,6 +692,14 @@ public class TypeChecker implements NodeVisitor {
 
         // Add formal parameters into scope
         for (Symbol param : node.formals()) {
+            // Parameters are declared without sizes and arrays are passed as a
+            // bare address, so a callee cannot know the stride of an inner dimension
+            if (param.type() instanceof ArrayType
+                    && ((ArrayType) param.type()).getElementType() instanceof ArrayType) {
+                reportError(node.lineNumber(), node.charPosition(),
+                    "Array parameter " + param.name() + " of type " + param.type()
+                    + " has unsized inner dimensions; only one-dimensional arrays can be passed.");
+            }
             try { 
                 symbolTable.insert(param.name(), param.type()); 
             } catch (Error ignored) {}
@@ -2,6 +2,11 @@ package types;
 
 public class VoidType extends Type {
 
+    public static final VoidType INSTANCE = new VoidType();
+
+    private VoidType() {
+    }
+
     @Override
     public String toString() {
         return "void";
@@ -0,0 +1,161 @@
+package vm;
+
+import java.util.Arrays;
+
+/**
+ * A compiled Mocha program for BytecodeVM: one flat code array (opcode words
+ * followed by their inline operands) plus a per-function table of entry points
+ * and frame sizes. Function 0 is main.
+ *
+ * Frame layout, all inside the VM's single int[] memory:
+ *   fp+0 return pc, fp+1 caller fp, fp+2 caller frame top,
+ *   fp+3.. parameters, then scalar locals, then local arrays inline.
+ * Globals (scalars and arrays) sit at the bottom of memory, below main's frame.
+ */
+public final class Bytecode {
+
+    public static final int FRAME_HEADER = 3;
+
+    // constants, variables, memory
+    public static final int ICONST = 0;   // k          push k
+    public static final int LOAD   = 1;   // s          push mem[fp+s]
+    public static final int STORE  = 2;   // s          mem[fp+s] = pop
+    public static final int GLOAD  = 3;   // a          push mem[a]
+    public static final int GSTORE = 4;   // a          mem[a] = pop
+    public static final int LADDR  = 5;   // s          push fp+s
+    public static final int POP    = 6;
+    public static final int DUP    = 7;
+    public static final int INDEX  = 8;   // dim stride addr,i -> addr+i*stride
+    public static final int LOADI  = 9;   //            addr -> mem[addr]
+    public static final int STOREI = 10;  //            addr,v -> (mem[addr] = v)
+
+    // integer arithmetic
+    public static final int IADD = 11;
+    public static final int ISUB = 12;
+    public static final int IMUL = 13;
+    public static final int IDIV = 14;
+    public static final int IMOD = 15;
+    public static final int IPOW = 16;
+
+    // float arithmetic, operands are raw float bits
+    public static final int FADD = 17;
+    public static final int FSUB = 18;
+    public static final int FMUL = 19;
+    public static final int FDIV = 20;
+    public static final int FMOD = 21;
+    public static final int FPOW = 22;
+
+    // logic, both operands already evaluated; and/or with a right operand
+    // that may be observed jump around it instead
+    public static final int AND = 23;
+    public static final int OR  = 24;
+    public static final int NOT = 25;
+
+    // comparisons push 0/1; float ones use DLX.EPS like fCMP
+    public static final int IEQ = 26;
+    public static final int INE = 27;
+    public static final int ILT = 28;
+    public static final int ILE = 29;
+    public static final int IGT = 30;
+    public static final int IGE = 31;
+    public static final int FEQ = 32;
+    public static final int FNE = 33;
+    public static final int FLT = 34;
+    public static final int FLE = 35;
+    public static final int FGT = 36;
+    public static final int FGE = 37;
+
+    // control
+    public static final int JMP  = 38;    // t
+    public static final int IFZ  = 39;    // t          jump if pop == 0
+    public static final int CALL = 40;    // f
+    public static final int RET  = 41;
+    public static final int HALT = 42;
+
+    // input/output
+    public static final int READI = 43;
+    public static final int READF = 44;
+    public static final int READB = 45;
+    public static final int WRI   = 46;
+    public static final int WRF   = 47;
+    public static final int WRB   = 48;
+    public static final int WRL   = 49;
+
+    // superinstructions
+    public static final int ALOAD  = 50;  // dim stride addr,i -> mem[addr+i*stride]
+    public static final int IINC   = 51;  // s k        mem[fp+s] += k
+    public static final int GIINC  = 52;  // a k        mem[a] += k
+    // compare-and-branch: t, jump when the comparison holds
+    public static final int IF_IEQ = 53;
+    public static final int IF_INE = 54;
+    public static final int IF_ILT = 55;
+    public static final int IF_ILE = 56;
+    public static final int IF_IGT = 57;
+    public static final int IF_IGE = 58;
+    public static final int IF_FEQ = 59;
+    public static final int IF_FNE = 60;
+    public static final int IF_FLT = 61;
+    public static final int IF_FLE = 62;
+    public static final int IF_FGT = 63;
+    public static final int IF_FGE = 64;
+
+    static final String[] NAMES = {
+        "ICONST", "LOAD", "STORE", "GLOAD", "GSTORE", "LADDR", "POP", "DUP", "INDEX", "LOADI", "STOREI",
+        "IADD", "ISUB", "IMUL", "IDIV", "IMOD", "IPOW",
+        "FADD", "FSUB", "FMUL", "FDIV", "FMOD", "FPOW",
+        "AND", "OR", "NOT",
+        "IEQ", "INE", "ILT", "ILE", "IGT", "IGE", "FEQ", "FNE", "FLT", "FLE", "FGT", "FGE",
+        "JMP", "IFZ", "CALL", "RET", "HALT",
+        "READI", "READF", "READB", "WRI", "WRF", "WRB", "WRL",
+        "ALOAD", "IINC", "GIINC",
+        "IF_IEQ", "IF_INE", "IF_ILT", "IF_ILE", "IF_IGT", "IF_IGE",
+        "IF_FEQ", "IF_FNE", "IF_FLT", "IF_FLE", "IF_FGT", "IF_FGE",
+    };
+
+    static final int[] OPERANDS = {
+        1, 1, 1, 1, 1, 1, 0, 0, 2, 0, 0,
+        0, 0, 0, 0, 0, 0,
+        0, 0, 0, 0, 0, 0,
+        0, 0, 0,
+        0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0,
+        1, 1, 1, 0, 0,
+        0, 0, 0, 0, 0, 0, 0,
+        2, 2, 2,
+        1, 1, 1, 1, 1, 1,
+        1, 1, 1, 1, 1, 1,
+    };
+
+    final int[] code;
+    final int[] entry;
+    final int[] params;
+    final int[] frameSize;
+    final int globalSize;
+
+    Bytecode(int[] code, int[] entry, int[] params, int[] frameSize, int globalSize) {
+        this.code = code;
+        this.entry = entry;
+        this.params = params;
+        this.frameSize = frameSize;
+        this.globalSize = globalSize;
+    }
+
+    public int length() {
+        return code.length;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (int pc = 0; pc < code.length; ) {
+            int op = code[pc];
+            sb.append(pc).append(":\t").append(NAMES[op]);
+            for (int i = 1; i <= OPERANDS[op]; i++) {
+                sb.append(' ').append(code[pc + i]);
+            }
+            sb.append('\n');
+            pc += 1 + OPERANDS[op];
+        }
+        sb.append("entries ").append(Arrays.toString(entry)).append('\n');
+        return sb.toString();
+    }
+}
@@ -0,0 +1,616 @@
+package vm;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import ast.*;
+import mocha.Symbol;
+import mocha.SymbolTable;
+import mocha.Token;
+import types.*;
+
+import static vm.Bytecode.*;
+
+/**
+ * Lowers a type-checked AST straight to stack bytecode, skipping IR, register
+ * allocation and DLX. Evaluation order, array layout (static strides, row
+ * major) and the short-circuit And/Or follow IRGenerator so programs
+ * behave as they do on the DLX path.
+ *
+ * Conditions on a single relation become one compare-and-branch; the last
+ * index of an array read is folded into ALOAD; ++, -- and += / -= by a
+ * constant on an int variable become IINC/GIINC.
+ */
+public class BytecodeGenerator implements NodeVisitor {
+
+    private static final int GLOBAL_SCALAR = 0;
+    private static final int GLOBAL_ARRAY = 1;
+    private static final int LOCAL_SCALAR = 2;
+    private static final int LOCAL_ARRAY = 3;
+    private static final int PARAM_ARRAY = 4;  // slot holds the caller's array address
+
+    private static final class Slot {
+        final int kind;
+        final int index;
+        final Type type;
+
+        Slot(int kind, int index, Type type) {
+            this.kind = kind;
+            this.index = index;
+            this.type = type;
+        }
+    }
+
+    private final SymbolTable symbolTable;
+
+    private int[] code = new int[256];
+    private int pc;
+
+    private final Map<String, Slot> globals = new HashMap<>();
+    private int globalSize;
+    private Map<String, Slot> locals;
+    private int frameTop;
+
+    private final Map<Symbol, Integer> functionIndex = new HashMap<>();
+    private final List<Integer> entries = new ArrayList<>();
+    private final List<Integer> paramCounts = new ArrayList<>();
+    private final List<Integer> frameSizes = new ArrayList<>();
+
+    public BytecodeGenerator(SymbolTable symbolTable) {
+        this.symbolTable = symbolTable;
+    }
+
+    public Bytecode generate(AST ast) {
+        ast.getComputation().accept(this);
+        int n = entries.size();
+        int[] entry = new int[n];
+        int[] params = new int[n];
+        int[] frames = new int[n];
+        for (int i = 0; i < n; i++) {
+            entry[i] = entries.get(i);
+            params[i] = paramCounts.get(i);
+            frames[i] = frameSizes.get(i);
+        }
+        return new Bytecode(Arrays.copyOf(code, pc), entry, params, frames, globalSize);
+    }
+
+    // Emission ===================================================================
+
+    private void emit(int... words) {
+        if (pc + words.length > code.length) {
+            code = Arrays.copyOf(code, Math.max(code.length * 2, pc + words.length));
+        }
+        for (int w : words) {
+            code[pc++] = w;
+        }
+    }
+
+    // Emits a jump with an unresolved target and returns the operand position
+    private int emitJump(int op) {
+        emit(op, -1);
+        return pc - 1;
+    }
+
+    private void patch(int at) {
+        code[at] = pc;
+    }
+
+    // Names and addresses ========================================================
+
+    private Slot resolve(String name) {
+        Slot slot = locals != null ? locals.get(name) : null;
+        if (slot == null) {
+            slot = globals.get(name);
+        }
+        if (slot == null) {
+            throw new RuntimeException("Unknown variable: " + name);
+        }
+        return slot;
+    }
+
+    private static int words(Type type) {
+        return type instanceof ArrayType ? ((ArrayType) type).getAllocationSize() / 4 : 1;
+    }
+
+    private static boolean isFloat(Expression e) {
+        return e.getType() instanceof FloatType;
+    }
+
+    private void pushArrayBase(Slot slot) {
+        switch (slot.kind) {
+            case GLOBAL_ARRAY:
+                emit(ICONST, slot.index);
+                break;
+            case LOCAL_ARRAY:
+                emit(LADDR, slot.index);
+                break;
+            case PARAM_ARRAY:
+                emit(LOAD, slot.index);
+                break;
+            default:
+                throw new RuntimeException("Not an array: " + slot.kind);
+        }
+    }
+
+    // Pushes the address of an element or sub-array, or with load set the
+    // element itself, for an index chain such as a[i][j]
+    private void arrayAccess(ArrayIndex node, boolean load) {
+        List<Expression> indices = new ArrayList<>();
+        Expression e = node;
+        while (e instanceof ArrayIndex) {
+            indices.add(0, ((ArrayIndex) e).index());
+            e = ((ArrayIndex) e).base();
+        }
+        Slot slot = resolve(((Designator) e).name().lexeme());
+        ArrayType type = (ArrayType) slot.type;
+        List<Integer> dims = type.getDimensions();
+        List<Integer> strides = type.getStrides();
+
+        pushArrayBase(slot);
+        for (int k = 0; k < indices.size(); k++) {
+            int stride = strides.get(k);
+            if (stride < 0) {
+                throw new RuntimeException("Unsized inner dimension in array parameter " + slot.type);
+            }
+            indices.get(k).accept(this);
+            boolean last = k == indices.size() - 1;
+            emit(load && last ? ALOAD : INDEX, dims.get(k), stride);
+        }
+    }
+
+    // Conditions =================================================================
+
+    private static int compareBranch(Token.Kind kind, boolean isFloat, boolean when) {
+        if (!when) {
+            kind = negate(kind);
+        }
+        switch (kind) {
+            case EQUAL_TO:      return isFloat ? IF_FEQ : IF_IEQ;
+            case NOT_EQUAL:     return isFloat ? IF_FNE : IF_INE;
+            case LESS_THAN:     return isFloat ? IF_FLT : IF_ILT;
+            case LESS_EQUAL:    return isFloat ? IF_FLE : IF_ILE;
+            case GREATER_THAN:  return isFloat ? IF_FGT : IF_IGT;
+            case GREATER_EQUAL: return isFloat ? IF_FGE : IF_IGE;
+            default:
+                throw new RuntimeException("Unknown relation: " + kind);
+        }
+    }
+
+    private static Token.Kind negate(Token.Kind kind) {
+        switch (kind) {
+            case EQUAL_TO:      return Token.Kind.NOT_EQUAL;
+            case NOT_EQUAL:     return Token.Kind.EQUAL_TO;
+            case LESS_THAN:     return Token.Kind.GREATER_EQUAL;
+            case LESS_EQUAL:    return Token.Kind.GREATER_THAN;
+            case GREATER_THAN:  return Token.Kind.LESS_EQUAL;
+            case GREATER_EQUAL: return Token.Kind.LESS_THAN;
+            default:
+                throw new RuntimeException("Unknown relation: " + kind);
+        }
+    }
+
+    // Emits a branch taken when cond is false and returns its operand position
+    private int branchIfFalse(Expression cond) {
+        if (cond instanceof Relation) {
+            Relation rel = (Relation) cond;
+            rel.getLeft().accept(this);
+            rel.getRight().accept(this);
+            return emitJump(compareBranch(rel.getOperator().kind(), isFloat(rel.getLeft()), false));
+        }
+        cond.accept(this);
+        return emitJump(IFZ);
+    }
+
+    // Literals ===================================================================
+
+    @Override
+    public void visit(BoolLiteral node) {
+        emit(ICONST, node.getValue() ? 1 : 0);
+    }
+
+    @Override
+    public void visit(IntegerLiteral node) {
+        emit(ICONST, node.getValue());
+    }
+
+    @Override
+    public void visit(FloatLiteral node) {
+        emit(ICONST, Float.floatToRawIntBits(node.getValue()));
+    }
+
+    // Designators ================================================================
+
+    @Override
+    public void visit(Designator node) {
+        Slot slot = resolve(node.name().lexeme());
+        switch (slot.kind) {
+            case GLOBAL_SCALAR:
+                emit(GLOAD, slot.index);
+                break;
+            case LOCAL_SCALAR:
+                emit(LOAD, slot.index);
+                break;
+            default:
+                // Whole arrays are only used as call arguments
+                pushArrayBase(slot);
+                break;
+        }
+    }
+
+    @Override
+    public void visit(ArrayIndex node) {
+        arrayAccess(node, !(node.getType() instanceof ArrayType));
+    }
+
+    @Override
+    public void visit(Dereference node) {
+        throw new RuntimeException("Dereference not supported in bytecode");
+    }
+
+    // Operators ==================================================================
+
+    private void binary(Expression left, Expression right, int op) {
+        left.accept(this);
+        right.accept(this);
+        emit(op);
+    }
+
+    @Override
+    public void visit(LogicalNot node) {
+        node.operand().accept(this);
+        emit(NOT);
+    }
+
+    @Override
+    public void visit(Power node) {
+        binary(node.getLeft(), node.getRight(), isFloat(node) ? FPOW : IPOW);
+    }
+
+    @Override
+    public void visit(Multiplication node) {
+        binary(node.getLeft(), node.getRight(), isFloat(node) ? FMUL : IMUL);
+    }
+
+    @Override
+    public void visit(Division node) {
+        binary(node.getLeft(), node.getRight(), isFloat(node) ? FDIV : IDIV);
+    }
+
+    @Override
+    public void visit(Modulo node) {
+        binary(node.getLeft(), node.getRight(), isFloat(node) ? FMOD : IMOD);
+    }
+
+    // and/or short-circuit. A right operand that cannot be observed is
+    // evaluated anyway and combined with AND/OR, which needs no jump
+    private void logical(Expression left, Expression right, int op) {
+        if (!SideEffects.mayHave(right)) {
+            binary(left, right, op);
+            return;
+        }
+        left.accept(this);
+        emit(DUP);
+        if (op == AND) {
+            // false stays on the stack as the result
+            int toEnd = emitJump(IFZ);
+            emit(POP);
+            right.accept(this);
+            patch(toEnd);
+        } else {
+            int toRight = emitJump(IFZ);
+            int toEnd = emitJump(JMP);
+            patch(toRight);
+            emit(POP);
+            right.accept(this);
+            patch(toEnd);
+        }
+    }
+
+    @Override
+    public void visit(LogicalAnd node) {
+        logical(node.getLeft(), node.getRight(), AND);
+    }
+
+    @Override
+    public void visit(Addition node) {
+        binary(node.getLeft(), node.getRight(), isFloat(node) ? FADD : IADD);
+    }
+
+    @Override
+    public void visit(Subtraction node) {
+        binary(node.getLeft(), node.getRight(), isFloat(node) ? FSUB : ISUB);
+    }
+
+    @Override
+    public void visit(LogicalOr node) {
+        logical(node.getLeft(), node.getRight(), OR);
+    }
+
+    @Override
+    public void visit(Relation node) {
+        boolean fl = isFloat(node.getLeft());
+        int op;
+        switch (node.getOperator().kind()) {
+            case EQUAL_TO:      op = fl ? FEQ : IEQ; break;
+            case NOT_EQUAL:     op = fl ? FNE : INE; break;
+            case LESS_THAN:     op = fl ? FLT : ILT; break;
+            case LESS_EQUAL:    op = fl ? FLE : ILE; break;
+            case GREATER_THAN:  op = fl ? FGT : IGT; break;
+            case GREATER_EQUAL: op = fl ? FGE : IGE; break;
+            default:
+                throw new RuntimeException("Unknown relation: " + node.getOperator().kind());
+        }
+        binary(node.getLeft(), node.getRight(), op);
+    }
+
+    // Calls ======================================================================
+
+    @Override
+    public void visit(ArgumentList node) {
+        for (Expression arg : node.args()) {
+            arg.accept(this);
+        }
+    }
+
+    @Override
+    public void visit(FunctionCallStatement node) {
+        FunctionCallExpression call = node.getFunctionCall();
+        call.accept(this);
+        // Discard a result nobody reads
+        if (!(((FuncType) callee(call).type()).getReturnType() instanceof VoidType)) {
+            emit(POP);
+        }
+    }
+
+    private Symbol callee(FunctionCallExpression node) {
+        List<Type> argTypes = new ArrayList<>();
+        for (Expression arg : node.arguments().args()) {
+            argTypes.add(arg.getType());
+        }
+        return symbolTable.lookupFunction(node.name().lexeme(), argTypes);
+    }
+
+    @Override
+    public void visit(FunctionCallExpression node) {
+        Integer index = functionIndex.get(callee(node));
+        node.arguments().accept(this);
+        if (index != null) {
+            emit(CALL, index);
+            return;
+        }
+        switch (node.name().lexeme()) {
+            case "readInt":    emit(READI); break;
+            case "readFloat":  emit(READF); break;
+            case "readBool":   emit(READB); break;
+            case "printInt":   emit(WRI); break;
+            case "printFloat": emit(WRF); break;
+            case "printBool":  emit(WRB); break;
+            case "println":    emit(WRL); break;
+            default:
+                throw new RuntimeException("Unknown function: " + node.name().lexeme());
+        }
+    }
+
+    // Statements =================================================================
+
+    @Override
+    public void visit(Assignment node) {
+        Expression dest = node.getDestination();
+        Token.Kind op = node.getOperator().kind();
+        boolean fl = isFloat(dest);
+
+        if (dest instanceof Designator) {
+            Slot slot = resolve(((Designator) dest).name().lexeme());
+            boolean global = slot.kind == GLOBAL_SCALAR;
+
+            Integer step = fl ? null : constantStep(op, node.getSource());
+            if (step != null) {
+                emit(global ? GIINC : IINC, slot.index, step);
+                return;
+            }
+            if (op != Token.Kind.ASSIGN) {
+                emit(global ? GLOAD : LOAD, slot.index);
+                compound(op, node.getSource(), fl);
+            } else {
+                node.getSource().accept(this);
+            }
+            emit(global ? GSTORE : STORE, slot.index);
+            return;
+        }
+
+        arrayAccess((ArrayIndex) dest, false);
+        if (op != Token.Kind.ASSIGN) {
+            emit(DUP, LOADI);
+            compound(op, node.getSource(), fl);
+        } else {
+            node.getSource().accept(this);
+        }
+        emit(STOREI);
+    }
+
+    // ++, -- and += / -= by an int literal
+    private static Integer constantStep(Token.Kind op, Expression source) {
+        switch (op) {
+            case UNI_INC:
+                return 1;
+            case UNI_DEC:
+                return -1;
+            case ADD_ASSIGN:
+                return source instanceof IntegerLiteral ? ((IntegerLiteral) source).getValue() : null;
+            case SUB_ASSIGN:
+                return source instanceof IntegerLiteral ? -((IntegerLiteral) source).getValue() : null;
+            default:
+                return null;
+        }
+    }
+
+    // Current value is on the stack; combines it with the source
+    private void compound(Token.Kind op, Expression source, boolean fl) {
+        if (source != null) {
+            source.accept(this);
+        } else {
+            emit(ICONST, fl ? Float.floatToRawIntBits(1.0f) : 1);
+        }
+        switch (op) {
+            case ADD_ASSIGN:
+            case UNI_INC:
+                emit(fl ? FADD : IADD);
+                break;
+            case SUB_ASSIGN:
+            case UNI_DEC:
+                emit(fl ? FSUB : ISUB);
+                break;
+            case MUL_ASSIGN:
+                emit(fl ? FMUL : IMUL);
+                break;
+            case DIV_ASSIGN:
+                emit(fl ? FDIV : IDIV);
+                break;
+            case MOD_ASSIGN:
+                emit(fl ? FMOD : IMOD);
+                break;
+            case POW_ASSIGN:
+                emit(fl ? FPOW : IPOW);
+                break;
+            default:
+                throw new RuntimeException("Unknown assignment operator: " + op);
+        }
+    }
+
+    @Override
+    public void visit(IfStatement node) {
+        int toElse = branchIfFalse(node.condition());
+        node.thenBlock().accept(this);
+        if (node.elseBlock() == null) {
+            patch(toElse);
+            return;
+        }
+        int toEnd = emitJump(JMP);
+        patch(toElse);
+        node.elseBlock().accept(this);
+        patch(toEnd);
+    }
+
+    @Override
+    public void visit(WhileStatement node) {
+        int top = pc;
+        int exit = branchIfFalse(node.condition());
+        node.body().accept(this);
+        emit(JMP, top);
+        patch(exit);
+    }
+
+    @Override
+    public void visit(RepeatStatement node) {
+        int top = pc;
+        node.body().accept(this);
+        // repeat ... until cond: loop back while cond is false
+        code[branchIfFalse(node.condition())] = top;
+    }
+
+    @Override
+    public void visit(ReturnStatement node) {
+        if (node.value() != null) {
+            node.value().accept(this);
+        }
+        emit(locals == null ? HALT : RET);
+    }
+
+    @Override
+    public void visit(StatementSequence node) {
+        for (Statement s : node.getStatements()) {
+            s.accept(this);
+        }
+    }
+
+    // Declarations ===============================================================
+
+    @Override
+    public void visit(VariableDeclaration node) {
+        boolean isArray = node.type() instanceof ArrayType;
+        for (Token name : node.names()) {
+            if (locals == null) {
+                if (!globals.containsKey(name.lexeme())) {
+                    globals.put(name.lexeme(), new Slot(isArray ? GLOBAL_ARRAY : GLOBAL_SCALAR, globalSize, node.type()));
+                    globalSize += words(node.type());
+                }
+            } else if (!locals.containsKey(name.lexeme())) {
+                // A local named like a parameter refers to the parameter, as in IRGenerator
+                locals.put(name.lexeme(), new Slot(isArray ? LOCAL_ARRAY : LOCAL_SCALAR, frameTop, node.type()));
+                frameTop += words(node.type());
+            }
+        }
+    }
+
+    @Override
+    public void visit(FunctionBody node) {
+        for (VariableDeclaration local : node.locals()) {
+            local.accept(this);
+        }
+        node.statements().accept(this);
+    }
+
+    @Override
+    public void visit(FunctionDeclaration node) {
+        if (node.body() == null) {
+            return;
+        }
+        int index = functionIndex.get(functionSymbol(node));
+        locals = new HashMap<>();
+        frameTop = FRAME_HEADER;
+        for (Symbol param : node.formals()) {
+            int kind = param.type() instanceof ArrayType ? PARAM_ARRAY : LOCAL_SCALAR;
+            locals.put(param.name(), new Slot(kind, frameTop++, param.type()));
+        }
+
+        entries.set(index, pc);
+        paramCounts.set(index, node.formals().size());
+        node.body().accept(this);
+        // Falling off the end of a void function
+        emit(RET);
+        frameSizes.set(index, frameTop);
+
+        locals = null;
+    }
+
+    private Symbol functionSymbol(FunctionDeclaration node) {
+        List<Type> paramTypes = new ArrayList<>();
+        for (Symbol param : node.formals()) {
+            paramTypes.add(param.type());
+        }
+        return symbolTable.lookupFunction(node.name().lexeme(), paramTypes);
+    }
+
+    @Override
+    public void visit(DeclarationList node) {
+        for (Node decl : node.declarations()) {
+            decl.accept(this);
+        }
+    }
+
+    @Override
+    public void visit(Computation node) {
+        node.variables().accept(this);
+
+        // Main is function 0 and runs from pc 0 in a header-only frame
+        entries.add(0);
+        paramCounts.add(0);
+        frameSizes.add(FRAME_HEADER);
+        for (Node decl : node.functions().declarations()) {
+            FunctionDeclaration func = (FunctionDeclaration) decl;
+            if (func.body() != null) {
+                functionIndex.put(functionSymbol(func), entries.size());
+                entries.add(-1);
+                paramCounts.add(0);
+                frameSizes.add(FRAME_HEADER);
+            }
+        }
+
+        node.mainStatementSequence().accept(this);
+        emit(HALT);
+        node.functions().accept(this);
+    }
+}
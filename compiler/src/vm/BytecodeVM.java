@@ -0,0 +1,262 @@
+package vm;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.Arrays;
+import java.util.StringTokenizer;
+
+import mocha.DLX;
+
+import static vm.Bytecode.*;
+
+/**
+ * Stack machine for Bytecode. Globals and every call frame share one int[]
+ * memory; the operand stack is a second int[]. The dispatch loop keeps pc, sp,
+ * fp and the frame top in locals so the JIT can hold them in registers.
+ *
+ * I/O and float comparison follow DLX.execute exactly, so a program prints the
+ * same output on either tier.
+ */
+public class BytecodeVM {
+
+    private static final int MEM_WORDS = 1 << 20;
+    private static final int STACK_WORDS = 1 << 16;
+
+    private final Bytecode program;
+    private BufferedReader reader;
+    private StringTokenizer tokens;
+
+    public BytecodeVM(Bytecode program) {
+        this.program = program;
+    }
+
+    private static float f(int bits) {
+        return Float.intBitsToFloat(bits);
+    }
+
+    private static int bits(float value) {
+        return Float.floatToRawIntBits(value);
+    }
+
+    // Same three-way result as DLX fCMP, including its epsilon
+    private static int fcmp(int a, int b) {
+        float result = f(a) - f(b);
+        if (result <= -DLX.EPS) {
+            return -1;
+        }
+        return result >= DLX.EPS ? 1 : 0;
+    }
+
+    private static int checked(int index, int dim) {
+        if (index < 0 || (dim > 0 && index >= dim)) {
+            throw new RuntimeException("Array index out of bounds: " + index);
+        }
+        return index;
+    }
+
+    public void execute(InputStream in) {
+        reader = new BufferedReader(new InputStreamReader(in));
+        tokens = null;
+
+        final int[] code = program.code;
+        final int[] mem = new int[program.globalSize + MEM_WORDS];
+        final int[] stack = new int[STACK_WORDS];
+        int pc = 0;
+        int sp = 0;
+        int fp = program.globalSize;
+        int top = fp + program.frameSize[0];
+        int a, b;
+
+        try {
+            while (true) {
+                switch (code[pc++]) {
+                    case ICONST:
+                        stack[sp++] = code[pc++];
+                        break;
+                    case LOAD:
+                        stack[sp++] = mem[fp + code[pc++]];
+                        break;
+                    case STORE:
+                        mem[fp + code[pc++]] = stack[--sp];
+                        break;
+                    case GLOAD:
+                        stack[sp++] = mem[code[pc++]];
+                        break;
+                    case GSTORE:
+                        mem[code[pc++]] = stack[--sp];
+                        break;
+                    case LADDR:
+                        stack[sp++] = fp + code[pc++];
+                        break;
+                    case POP:
+                        sp--;
+                        break;
+                    case DUP:
+                        stack[sp] = stack[sp - 1];
+                        sp++;
+                        break;
+                    case INDEX:
+                        a = checked(stack[--sp], code[pc]);
+                        stack[sp - 1] += a * code[pc + 1];
+                        pc += 2;
+                        break;
+                    case LOADI:
+                        stack[sp - 1] = mem[stack[sp - 1]];
+                        break;
+                    case STOREI:
+                        mem[stack[sp - 2]] = stack[sp - 1];
+                        sp -= 2;
+                        break;
+
+                    case IADD: b = stack[--sp]; stack[sp - 1] += b; break;
+                    case ISUB: b = stack[--sp]; stack[sp - 1] -= b; break;
+                    case IMUL: b = stack[--sp]; stack[sp - 1] *= b; break;
+                    case IDIV: b = stack[--sp]; stack[sp - 1] /= b; break;
+                    case IMOD: b = stack[--sp]; stack[sp - 1] %= b; break;
+                    case IPOW:
+                        b = stack[--sp];
+                        a = stack[sp - 1];
+                        if (a < 0 || b < 0) {
+                            throw new RuntimeException("Illegal value (" + a + ")^(" + b + ") in POW");
+                        }
+                        stack[sp - 1] = (int) Math.round(Math.pow(a, b));
+                        break;
+
+                    case FADD: b = stack[--sp]; stack[sp - 1] = bits(f(stack[sp - 1]) + f(b)); break;
+                    case FSUB: b = stack[--sp]; stack[sp - 1] = bits(f(stack[sp - 1]) - f(b)); break;
+                    case FMUL: b = stack[--sp]; stack[sp - 1] = bits(f(stack[sp - 1]) * f(b)); break;
+                    case FDIV: b = stack[--sp]; stack[sp - 1] = bits(f(stack[sp - 1]) / f(b)); break;
+                    case FMOD: b = stack[--sp]; stack[sp - 1] = bits(f(stack[sp - 1]) % f(b)); break;
+                    case FPOW:
+                        b = stack[--sp];
+                        stack[sp - 1] = bits((float) Math.pow(f(stack[sp - 1]), f(b)));
+                        break;
+
+                    case AND: b = stack[--sp]; stack[sp - 1] &= b; break;
+                    case OR:  b = stack[--sp]; stack[sp - 1] |= b; break;
+                    case NOT: stack[sp - 1] = stack[sp - 1] == 0 ? 1 : 0; break;
+
+                    case IEQ: b = stack[--sp]; stack[sp - 1] = stack[sp - 1] == b ? 1 : 0; break;
+                    case INE: b = stack[--sp]; stack[sp - 1] = stack[sp - 1] != b ? 1 : 0; break;
+                    case ILT: b = stack[--sp]; stack[sp - 1] = stack[sp - 1] < b ? 1 : 0; break;
+                    case ILE: b = stack[--sp]; stack[sp - 1] = stack[sp - 1] <= b ? 1 : 0; break;
+                    case IGT: b = stack[--sp]; stack[sp - 1] = stack[sp - 1] > b ? 1 : 0; break;
+                    case IGE: b = stack[--sp]; stack[sp - 1] = stack[sp - 1] >= b ? 1 : 0; break;
+                    case FEQ: b = stack[--sp]; stack[sp - 1] = fcmp(stack[sp - 1], b) == 0 ? 1 : 0; break;
+                    case FNE: b = stack[--sp]; stack[sp - 1] = fcmp(stack[sp - 1], b) != 0 ? 1 : 0; break;
+                    case FLT: b = stack[--sp]; stack[sp - 1] = fcmp(stack[sp - 1], b) < 0 ? 1 : 0; break;
+                    case FLE: b = stack[--sp]; stack[sp - 1] = fcmp(stack[sp - 1], b) <= 0 ? 1 : 0; break;
+                    case FGT: b = stack[--sp]; stack[sp - 1] = fcmp(stack[sp - 1], b) > 0 ? 1 : 0; break;
+                    case FGE: b = stack[--sp]; stack[sp - 1] = fcmp(stack[sp - 1], b) >= 0 ? 1 : 0; break;
+
+                    case JMP:
+                        pc = code[pc];
+                        break;
+                    case IFZ:
+                        pc = stack[--sp] == 0 ? code[pc] : pc + 1;
+                        break;
+                    case CALL: {
+                        int fn = code[pc++];
+                        int n = program.params[fn];
+                        int callee = top;
+                        int calleeTop = callee + program.frameSize[fn];
+                        // Fresh frames start zeroed, as DLX globals do
+                        Arrays.fill(mem, callee + FRAME_HEADER + n, calleeTop, 0);
+                        sp -= n;
+                        System.arraycopy(stack, sp, mem, callee + FRAME_HEADER, n);
+                        mem[callee] = pc;
+                        mem[callee + 1] = fp;
+                        mem[callee + 2] = top;
+                        fp = callee;
+                        top = calleeTop;
+                        pc = program.entry[fn];
+                        break;
+                    }
+                    case RET:
+                        pc = mem[fp];
+                        top = mem[fp + 2];
+                        fp = mem[fp + 1];
+                        break;
+                    case HALT:
+                        System.out.flush();
+                        return;
+
+                    case READI:
+                        System.out.print("int? ");
+                        stack[sp++] = Integer.parseInt(nextInput());
+                        break;
+                    case READF:
+                        System.out.print("float? ");
+                        stack[sp++] = bits(Float.parseFloat(nextInput()));
+                        break;
+                    case READB:
+                        System.out.print("true or false? ");
+                        stack[sp++] = Boolean.parseBoolean(nextInput()) ? 1 : 0;
+                        break;
+                    case WRI:
+                        System.out.print(stack[--sp] + " ");
+                        break;
+                    case WRF:
+                        System.out.printf("%.2f ", f(stack[--sp]));
+                        break;
+                    case WRB:
+                        System.out.print((stack[--sp] == 1) + " ");
+                        break;
+                    case WRL:
+                        System.out.println();
+                        break;
+
+                    case ALOAD:
+                        a = checked(stack[--sp], code[pc]);
+                        stack[sp - 1] = mem[stack[sp - 1] + a * code[pc + 1]];
+                        pc += 2;
+                        break;
+                    case IINC:
+                        mem[fp + code[pc]] += code[pc + 1];
+                        pc += 2;
+                        break;
+                    case GIINC:
+                        mem[code[pc]] += code[pc + 1];
+                        pc += 2;
+                        break;
+
+                    case IF_IEQ: sp -= 2; pc = stack[sp] == stack[sp + 1] ? code[pc] : pc + 1; break;
+                    case IF_INE: sp -= 2; pc = stack[sp] != stack[sp + 1] ? code[pc] : pc + 1; break;
+                    case IF_ILT: sp -= 2; pc = stack[sp] < stack[sp + 1] ? code[pc] : pc + 1; break;
+                    case IF_ILE: sp -= 2; pc = stack[sp] <= stack[sp + 1] ? code[pc] : pc + 1; break;
+                    case IF_IGT: sp -= 2; pc = stack[sp] > stack[sp + 1] ? code[pc] : pc + 1; break;
+                    case IF_IGE: sp -= 2; pc = stack[sp] >= stack[sp + 1] ? code[pc] : pc + 1; break;
+                    case IF_FEQ: sp -= 2; pc = fcmp(stack[sp], stack[sp + 1]) == 0 ? code[pc] : pc + 1; break;
+                    case IF_FNE: sp -= 2; pc = fcmp(stack[sp], stack[sp + 1]) != 0 ? code[pc] : pc + 1; break;
+                    case IF_FLT: sp -= 2; pc = fcmp(stack[sp], stack[sp + 1]) < 0 ? code[pc] : pc + 1; break;
+                    case IF_FLE: sp -= 2; pc = fcmp(stack[sp], stack[sp + 1]) <= 0 ? code[pc] : pc + 1; break;
+                    case IF_FGT: sp -= 2; pc = fcmp(stack[sp], stack[sp + 1]) > 0 ? code[pc] : pc + 1; break;
+                    case IF_FGE: sp -= 2; pc = fcmp(stack[sp], stack[sp + 1]) >= 0 ? code[pc] : pc + 1; break;
+
+                    default:
+                        throw new RuntimeException("BytecodeVM: unknown opcode " + code[pc - 1] + " at " + (pc - 1));
+                }
+            }
+        } catch (ArrayIndexOutOfBoundsException e) {
+            throw new RuntimeException("BytecodeVM: stack or memory overflow at " + (pc - 1), e);
+        }
+    }
+
+    // Same tokenization as DLX.nextInput
+    private String nextInput() {
+        try {
+            while (tokens == null || !tokens.hasMoreTokens()) {
+                String line = reader.readLine();
+                if (line == null) {
+                    throw new RuntimeException("Input exhausted");
+                }
+                tokens = new StringTokenizer(line);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Couldn't read data file", e);
+        }
+        return tokens.nextToken();
+    }
+}
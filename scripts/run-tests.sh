@@ -9,6 +9,16 @@ TEST_DIR="${TEST_DIR:-tests}"
 LIMIT="${LIMIT:-0}"
 OPT_MODE="${OPT_MODE:--max}"
 GEN_CFG="${GEN_CFG:-1}"
+# Comma-separated flag sets, e.g. "-fast,-vm,-jvm". Each is run after the DLX
+# run and must print the same output and agree on whether the program trapped.
+# Combine with OPT_MODE="-max -chk" so DLX checks array bounds like the tiers.
+COMPARE_MODES="${COMPARE_MODES:-}"
+
+# Per-test expectations next to testNNN.txt:
+#   testNNN.out   expected stdout of the DLX run
+#   testNNN.trap  expected exit status, one "STATUS" or "FLAG STATUS" per line;
+#                 the last line whose FLAG is in OPT_MODE (or has none) applies.
+#                 Without a matching line the run must exit 0.
 
 mkdir -p "$ART/logs" "$ART/records" "$ART/graphs" "$ART/asm"
 
@@ -35,6 +45,24 @@ summary="$ART/logs/test-summary.txt"
 : > "$summary"
 
 read -r -a OPT_ARGS <<< "$OPT_MODE"
+COMPARE_LIST=()
+if [ -n "$COMPARE_MODES" ]; then
+  IFS=',' read -r -a COMPARE_LIST <<< "$COMPARE_MODES"
+fi
+
+expected_status() {
+  local trap_file="$1" status=0 flag code
+  [ -f "$trap_file" ] || { echo 0; return; }
+  while read -r flag code; do
+    [ -n "$flag" ] || continue
+    if [ -z "$code" ]; then
+      status="$flag"
+    elif [[ " $OPT_MODE " == *" $flag "* ]]; then
+      status="$code"
+    fi
+  done < "$trap_file"
+  echo "$status"
+}
 
 pushd "$ROOT" >/dev/null
 mkdir -p graphs
@@ -58,12 +86,40 @@ for test_file in "$TEST_DIR"/test*.txt; do
 
   stdout_file="$ART/logs/${base}.stdout"
   stderr_file="$ART/logs/${base}.stderr"
-  if "${cmd[@]}" >"$stdout_file" 2>"$stderr_file"; then
+  status=0
+  "${cmd[@]}" >"$stdout_file" 2>"$stderr_file" || status=$?
+
+  problems=()
+  expected="$(expected_status "$TEST_DIR/${base}.trap")"
+  if [ "$status" -ne "$expected" ]; then
+    problems+=("exit status $status, expected $expected")
+  fi
+  if [ -f "$TEST_DIR/${base}.out" ] && ! cmp -s "$TEST_DIR/${base}.out" "$stdout_file"; then
+    problems+=("stdout differs from ${base}.out")
+  fi
+  for mode in "${COMPARE_LIST[@]}"; do
+    read -r -a mode_args <<< "$mode"
+    tag="${mode_args[0]#-}"
+    tier_stdout="$ART/logs/${base}.${tag}.stdout"
+    tier_stderr="$ART/logs/${base}.${tag}.stderr"
+    tier_status=0
+    java -cp "$CLS:$JAR" mocha.CompilerTester -s "$test_file" -i "$input" "${OPT_ARGS[@]}" "${mode_args[@]}" \
+      >"$tier_stdout" 2>"$tier_stderr" || tier_status=$?
+    if ! cmp -s "$stdout_file" "$tier_stdout"; then
+      problems+=("$mode stdout differs from DLX")
+    fi
+    if { [ "$status" -eq 0 ] && [ "$tier_status" -ne 0 ]; } || { [ "$status" -ne 0 ] && [ "$tier_status" -eq 0 ]; }; then
+      problems+=("$mode exit status $tier_status, DLX $status")
+    fi
+  done
+
+  if [ "${#problems[@]}" -eq 0 ]; then
     pass=$((pass + 1))
     echo "PASS $base" | tee -a "$summary" >/dev/null
   else
     fail=$((fail + 1))
     echo "FAIL $base" | tee -a "$summary" >/dev/null
+    printf '  %s\n' "${problems[@]}" >> "$summary"
     cat "$stderr_file" >> "$summary"
   fi
 